@@ -5,6 +5,7 @@ plugins {
     id("io.spring.dependency-management") version "1.1.5"
     id("java")
     id("com.google.protobuf") version "0.9.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "ru.tinkoff.invest"
@@ -64,6 +65,32 @@ tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+// Микробенчмарки ядра: ./gradlew jmh (исходники в src/jmh/java)
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("TEXT")
+}
+
+// Воспроизведение журнала команд со сверкой сделок: ./gradlew replayJournal -Pjournal=data/journal.bin [-PbookType=LADDER]
+tasks.register<JavaExec>("replayJournal") {
+    group = "verification"
+    description = "Replays the command journal through the matching engine and verifies recorded trades"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("ru.tinkoff.invest.emulator.core.matching.JournalReplayer")
+    args(listOfNotNull(findProperty("journal")?.toString() ?: "data/journal.bin", findProperty("bookType")?.toString()))
+}
+
+// Конвертация исторических данных из CSV в бинарный формат: ./gradlew convertTicks -Pcsv=ticks.csv -Pout=ticks.bin
+tasks.register<JavaExec>("convertTicks") {
+    group = "application"
+    description = "Converts a CSV tick file into the compact binary feed format"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("ru.tinkoff.invest.emulator.core.feed.BinaryTickWriter")
+    args(listOfNotNull(findProperty("csv")?.toString(), findProperty("out")?.toString()))
+}
+
 tasks.withType<JavaCompile> {
     options.encoding = "UTF-8"
 }
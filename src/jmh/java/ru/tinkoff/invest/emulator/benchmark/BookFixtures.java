@@ -0,0 +1,69 @@
+package ru.tinkoff.invest.emulator.benchmark;
+
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.model.OrderSource;
+import ru.tinkoff.invest.emulator.core.model.OrderType;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Общие заготовки для бенчмарков: конфигурация инструмента и построение заявок.
+ */
+final class BookFixtures {
+    static final String INSTRUMENT_ID = "BENCH";
+
+    private BookFixtures() {
+    }
+
+    /**
+     * Шина без подписчиков: измеряется запись и сброс событий, но не доставка.
+     */
+    static EventBus eventBus() {
+        return new EventBus(1);
+    }
+
+    static EmulatorProperties properties(BookType bookType) {
+        EmulatorProperties props = new EmulatorProperties();
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(INSTRUMENT_ID);
+        inst.setTicker(INSTRUMENT_ID);
+        inst.setFigi(INSTRUMENT_ID);
+        inst.setLot(1);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
+        props.setInstrument(inst);
+        EmulatorProperties.OrderBook orderbook = new EmulatorProperties.OrderBook();
+        orderbook.setBookType(bookType);
+        props.setOrderbook(orderbook);
+        return props;
+    }
+
+    static Order limit(OrderDirection direction, long price, long quantity) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT_ID)
+                .accountId("bench")
+                .direction(direction)
+                .type(OrderType.LIMIT)
+                .price(price)
+                .quantity(quantity)
+                .source(OrderSource.ADMIN_PANEL)
+                .build();
+    }
+
+    static Order market(OrderDirection direction, long quantity) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT_ID)
+                .accountId("bench")
+                .direction(direction)
+                .type(OrderType.MARKET)
+                .quantity(quantity)
+                .source(OrderSource.API)
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package ru.tinkoff.invest.emulator.benchmark;
+
+import io.grpc.Drainable;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.emulator.grpc.marshal.PreSerializedMarshaller;
+import ru.tinkoff.invest.emulator.grpc.marshal.SerializedMessage;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.Order;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рассылка одного обновления стакана (50 уровней с каждой стороны) {@code subscribers} gRPC-вызовам.
+ * <p>
+ * {@code perSubscriber}: сгенерированный маршаллер, сообщение кодируется заново для каждого вызова.
+ * {@code serializedOnce}: {@link SerializedMessage} кодируется один раз, каждому вызову уходят готовые байты.
+ * Запись в транспорт моделируется копированием кадра в переиспользуемый буфер — как это делает MessageFramer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FanOutBenchmark {
+
+    private static final int LEVELS = 50;
+
+    @Param({"1", "100", "5000"})
+    public int subscribers;
+
+    private final MethodDescriptor.Marshaller<MarketDataResponse> protoMarshaller =
+            ProtoUtils.marshaller(MarketDataResponse.getDefaultInstance());
+    private final MethodDescriptor.Marshaller<Object> preSerializedMarshaller =
+            PreSerializedMarshaller.of(MarketDataResponse.getDefaultInstance());
+    private final ByteArrayOutputStream transport = new ByteArrayOutputStream(16 * 1024);
+    private MarketDataResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OrderBook.Builder book = OrderBook.newBuilder()
+                .setFigi(BookFixtures.INSTRUMENT_ID)
+                .setInstrumentUid(BookFixtures.INSTRUMENT_ID)
+                .setDepth(LEVELS)
+                .setIsConsistent(true);
+        for (int i = 0; i < LEVELS; i++) {
+            book.addBids(level(768 - i, 10 + i));
+            book.addAsks(level(770 + i, 10 + i));
+        }
+        response = MarketDataResponse.newBuilder().setOrderbook(book).build();
+    }
+
+    private static Order level(long ticks, long quantity) {
+        return Order.newBuilder()
+                .setPrice(Quotation.newBuilder().setUnits(ticks / 100).setNano((int) (ticks % 100) * 10_000_000))
+                .setQuantity(quantity)
+                .build();
+    }
+
+    @Benchmark
+    public int perSubscriber() throws IOException {
+        int written = 0;
+        for (int i = 0; i < subscribers; i++) {
+            written += write(protoMarshaller.stream(response));
+        }
+        return written;
+    }
+
+    @Benchmark
+    public int serializedOnce() throws IOException {
+        SerializedMessage message = SerializedMessage.of(response);
+        int written = 0;
+        for (int i = 0; i < subscribers; i++) {
+            written += write(preSerializedMarshaller.stream(message));
+        }
+        return written;
+    }
+
+    private int write(java.io.InputStream stream) throws IOException {
+        transport.reset();
+        return ((Drainable) stream).drainTo(transport);
+    }
+}
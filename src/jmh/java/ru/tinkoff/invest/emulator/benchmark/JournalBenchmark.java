@@ -0,0 +1,82 @@
+package ru.tinkoff.invest.emulator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.journal.CommandJournal;
+import ru.tinkoff.invest.emulator.core.matching.MatchingResult;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
+import ru.tinkoff.invest.emulator.core.matching.ProRataMatchingEngine;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка post + cancel через {@link OrderGateway} без журнала и с журналом команд.
+ * <p>
+ * Разница — цена двух записей в отображённый файл; {@code force()} идёт в фоне и в измерение не входит.
+ * Заявки не пересекают спред, поэтому стакан остаётся в исходном состоянии, а журнал растёт сегментами.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JournalBenchmark {
+
+    private static final long BEST_BID = 768;
+    private static final long BEST_ASK = 770;
+
+    @Param({"false", "true"})
+    public boolean journaled;
+
+    private Path file;
+    private CommandJournal journal;
+    private OrderGateway gateway;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        EmulatorProperties props = BookFixtures.properties(BookType.TREE_MAP);
+        file = Files.createTempFile("journal-bench", ".bin");
+        EmulatorProperties.Journal config = props.getJournal();
+        config.setEnabled(journaled);
+        config.setPath(file.toString());
+        config.setSegmentSize(DataSize.ofMegabytes(256));
+        journal = new CommandJournal(props);
+        journal.open();
+
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        OrderBookManager orderBookManager = registry.getDefaultBook();
+        for (int i = 0; i < 20; i++) {
+            orderBookManager.addOrder(BookFixtures.limit(OrderDirection.BUY, BEST_BID - i, 1_000));
+            orderBookManager.addOrder(BookFixtures.limit(OrderDirection.SELL, BEST_ASK + i, 1_000));
+        }
+        EventBus eventBus = BookFixtures.eventBus();
+        gateway = new OrderGateway(registry, new ProRataMatchingEngine(registry, eventBus, clock), eventBus, props, clock, journal);
+        gateway.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        gateway.shutdown();
+        journal.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public MatchingResult placeAndCancel() {
+        Order order = BookFixtures.limit(OrderDirection.BUY, BEST_BID - 5, 10);
+        gateway.place(order).join();
+        return gateway.cancel(order.getId()).join();
+    }
+}
@@ -0,0 +1,66 @@
+package ru.tinkoff.invest.emulator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.matching.ProRataMatchingEngine;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.model.Trade;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность matching engine на стакане с {@code levels} уровнями с каждой стороны.
+ * <p>
+ * {@code crossBestAsk}: выставляем продажу внутрь спреда и тут же съедаем её рыночной покупкой —
+ * стакан возвращается в исходное состояние, измеряется полный цикл add + match + удаление уровня.
+ * {@code nonCrossingLimit}: лимитная покупка по best bid — только сравнение цены с лучшим уровнем.
+ * {@code bookType} сравнивает TreeMap-стакан с массивом уровней (LADDER).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MatchingBenchmark {
+
+    private static final long BEST_BID = 768;
+    private static final long BEST_ASK = 770;
+
+    @Param({"20", "1000"})
+    public int levels;
+
+    @Param({"TREE_MAP", "LADDER"})
+    public BookType bookType;
+
+    private OrderBookManager orderBookManager;
+    private ProRataMatchingEngine matchingEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(BookFixtures.properties(bookType), clock);
+        registry.init();
+        orderBookManager = registry.getDefaultBook();
+        matchingEngine = new ProRataMatchingEngine(registry, BookFixtures.eventBus(), clock);
+        for (int i = 0; i < levels; i++) {
+            for (int j = 0; j < 5; j++) {
+                orderBookManager.addOrder(BookFixtures.limit(OrderDirection.BUY, BEST_BID - i, 1_000));
+                orderBookManager.addOrder(BookFixtures.limit(OrderDirection.SELL, BEST_ASK + i, 1_000));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Trade> crossBestAsk() {
+        orderBookManager.addOrder(BookFixtures.limit(OrderDirection.SELL, BEST_ASK - 1, 10));
+        return matchingEngine.executeOrder(BookFixtures.market(OrderDirection.BUY, 10));
+    }
+
+    @Benchmark
+    public List<Trade> nonCrossingLimit() {
+        return matchingEngine.executeOrder(BookFixtures.limit(OrderDirection.BUY, BEST_BID, 10));
+    }
+}
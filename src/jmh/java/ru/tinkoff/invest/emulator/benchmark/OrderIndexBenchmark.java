@@ -0,0 +1,174 @@
+package ru.tinkoff.invest.emulator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.model.OrderNode;
+import ru.tinkoff.invest.emulator.core.model.PriceLevel;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Индекс заявок стакана: {@link HashMap}{@code <UUID, OrderNode>} против {@link OrderIndex} на открытой адресации.
+ * <p>
+ * {@code lookup*}: поиск существующей заявки (cancel, проверка владельца).
+ * {@code churn*}: вставка новой заявки и снятие самой старой — размер индекса постоянный.
+ * Аллокации на операцию — запуск с {@code -prof gc}, метрика {@code gc.alloc.rate.norm}.
+ * Память на заявку: слот {@link OrderIndex} — 20 байт при заполнении до 1/2, запись HashMap — ~48 байт.
+ * <p>
+ * {@code *Book}: то же через {@link OrderBookManager} целиком — индекс, уровень и копия заявки для читателей,
+ * то есть всё, что стакан держит и выделяет на одну стоящую заявку.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderIndexBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private UUID[] ids;
+    private OrderNode[] nodes;
+    private Map<UUID, OrderNode> hashMap;
+    private OrderIndex orderIndex;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Ключи и узлы для churn создаются заранее, чтобы мерить только индекс
+        ids = new UUID[size * 2];
+        nodes = new OrderNode[size * 2];
+        PriceLevel level = new PriceLevel(100);
+        for (int i = 0; i < ids.length; i++) {
+            nodes[i] = level.addOrder(BookFixtures.limit(OrderDirection.BUY, 100, 1));
+            ids[i] = nodes[i].getOrder().getId();
+        }
+        hashMap = new HashMap<>();
+        orderIndex = new OrderIndex();
+        for (int i = 0; i < size; i++) {
+            hashMap.put(ids[i], nodes[i]);
+            orderIndex.put(ids[i], nodes[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCursor() {
+        cursor = 0;
+    }
+
+    private UUID nextExisting() {
+        int i = cursor;
+        cursor = i + 1 == size ? 0 : i + 1;
+        return ids[i];
+    }
+
+    @Benchmark
+    public OrderNode lookupHashMap() {
+        return hashMap.get(nextExisting());
+    }
+
+    @Benchmark
+    public OrderNode lookupOrderIndex() {
+        return orderIndex.get(nextExisting());
+    }
+
+    @State(Scope.Thread)
+    public static class Churn {
+        Map<UUID, OrderNode> hashMap;
+        OrderIndex orderIndex;
+        int next;
+        int oldest;
+
+        @Setup(Level.Iteration)
+        public void setUp(OrderIndexBenchmark bench) {
+            hashMap = new HashMap<>();
+            orderIndex = new OrderIndex();
+            for (int i = 0; i < bench.size; i++) {
+                hashMap.put(bench.ids[i], bench.nodes[i]);
+                orderIndex.put(bench.ids[i], bench.nodes[i]);
+            }
+            next = bench.size;
+            oldest = 0;
+        }
+
+        int advanceNext(int limit) {
+            int i = next;
+            next = i + 1 == limit ? 0 : i + 1;
+            return i;
+        }
+
+        int advanceOldest(int limit) {
+            int i = oldest;
+            oldest = i + 1 == limit ? 0 : i + 1;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public OrderNode churnHashMap(Churn churn) {
+        int i = churn.advanceNext(ids.length);
+        churn.hashMap.put(ids[i], nodes[i]);
+        return churn.hashMap.remove(ids[churn.advanceOldest(ids.length)]);
+    }
+
+    @Benchmark
+    public OrderNode churnOrderIndex(Churn churn) {
+        int i = churn.advanceNext(ids.length);
+        churn.orderIndex.put(ids[i], nodes[i]);
+        return churn.orderIndex.remove(ids[churn.advanceOldest(ids.length)]);
+    }
+
+    @State(Scope.Thread)
+    public static class Book {
+        OrderBookManager book;
+        Order[] orders;
+        int next;
+        int oldest;
+
+        @Setup(Level.Iteration)
+        public void setUp(OrderIndexBenchmark bench) {
+            book = new OrderBookManager(BookFixtures.properties(BookType.TREE_MAP), new WallClock());
+            orders = new Order[bench.size * 2];
+            for (int i = 0; i < orders.length; i++) {
+                orders[i] = BookFixtures.limit(OrderDirection.BUY, 100 + i % 100, 1);
+            }
+            for (int i = 0; i < bench.size; i++) {
+                book.addOrder(orders[i]);
+            }
+            next = bench.size;
+            oldest = 0;
+        }
+
+        Order advanceNext() {
+            Order order = orders[next];
+            next = next + 1 == orders.length ? 0 : next + 1;
+            return order;
+        }
+
+        Order advanceOldest() {
+            Order order = orders[oldest];
+            oldest = oldest + 1 == orders.length ? 0 : oldest + 1;
+            return order;
+        }
+    }
+
+    @Benchmark
+    public Order lookupBook(Book book) {
+        int i = cursor;
+        cursor = i + 1 == size ? 0 : i + 1;
+        return book.book.getOrder(book.orders[i].getId());
+    }
+
+    @Benchmark
+    public boolean churnBook(Book book) {
+        book.book.addOrder(book.advanceNext());
+        return book.book.removeOrder(book.advanceOldest().getId());
+    }
+}
@@ -0,0 +1,42 @@
+package ru.tinkoff.invest.emulator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.emulator.core.matching.ProRataAllocator;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ядро pro-rata распределения на уровне из {@code orders} заявок случайного размера.
+ * Исполняется треть объёма уровня — с хвостом, который раздаётся по FIFO.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProRataBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int orders;
+
+    private final ProRataAllocator allocator = new ProRataAllocator();
+    private long[] levelSizes;
+    private long total;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        levelSizes = new long[orders];
+        total = 0;
+        for (int i = 0; i < orders; i++) {
+            levelSizes[i] = random.nextLong(1, 10_000);
+            total += levelSizes[i];
+        }
+    }
+
+    @Benchmark
+    public long[] allocate() {
+        long[] sizes = allocator.sizes(orders);
+        System.arraycopy(levelSizes, 0, sizes, 0, orders);
+        return allocator.allocate(orders, total / 3 + 1, total);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.tinkoff.invest.emulator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.matching.MatchingMode;
+import ru.tinkoff.invest.emulator.core.matching.MatchingResult;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
+import ru.tinkoff.invest.emulator.core.matching.ProRataMatchingEngine;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность post + cancel одного стакана под конкурентной нагрузкой из нескольких потоков.
+ * <p>
+ * {@code LOCKING}: потоки соревнуются за write lock стакана. {@code SEQUENCER}: потоки только публикуют
+ * команды в кольцевой буфер, стакан меняет единственный поток-писатель.
+ * Заявки не пересекают спред, поэтому стакан остаётся в исходном состоянии.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class SequencerBenchmark {
+
+    private static final long BEST_BID = 768;
+    private static final long BEST_ASK = 770;
+
+    @Param({"LOCKING", "SEQUENCER"})
+    public MatchingMode mode;
+
+    private OrderGateway gateway;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EmulatorProperties props = BookFixtures.properties(BookType.TREE_MAP);
+        props.getMatching().setMode(mode);
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        OrderBookManager orderBookManager = registry.getDefaultBook();
+        for (int i = 0; i < 20; i++) {
+            orderBookManager.addOrder(BookFixtures.limit(OrderDirection.BUY, BEST_BID - i, 1_000));
+            orderBookManager.addOrder(BookFixtures.limit(OrderDirection.SELL, BEST_ASK + i, 1_000));
+        }
+        EventBus eventBus = BookFixtures.eventBus();
+        ProRataMatchingEngine matchingEngine = new ProRataMatchingEngine(registry, eventBus, clock);
+        gateway = new OrderGateway(registry, matchingEngine, eventBus, props, clock);
+        gateway.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        gateway.shutdown();
+    }
+
+    @Benchmark
+    public MatchingResult placeAndCancel() {
+        Order order = BookFixtures.limit(OrderDirection.BUY, BEST_BID - 5, 10);
+        gateway.place(order).join();
+        return gateway.cancel(order.getId()).join();
+    }
+}
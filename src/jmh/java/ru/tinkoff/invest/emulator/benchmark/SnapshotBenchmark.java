@@ -0,0 +1,92 @@
+package ru.tinkoff.invest.emulator.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.journal.CommandJournal;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
+import ru.tinkoff.invest.emulator.core.matching.ProRataMatchingEngine;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+import ru.tinkoff.invest.emulator.core.snapshot.SnapshotInfo;
+import ru.tinkoff.invest.emulator.core.snapshot.SnapshotService;
+import ru.tinkoff.invest.emulator.core.state.AccountManager;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка стакана из бинарного снапшота: чтение файла и {@link OrderBookManager#load(List)} за одну блокировку.
+ * Заявки распределены по 1000 уровням с каждой стороны.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SnapshotBenchmark {
+
+    private static final long BEST_BID = 10_000;
+    private static final int LEVELS = 1_000;
+
+    @Param({"100000", "1000000"})
+    public int orders;
+
+    @Param({"TREE_MAP", "LADDER"})
+    public BookType bookType;
+
+    private Path file;
+    private EventBus eventBus;
+    private SnapshotService snapshotService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        EmulatorProperties props = BookFixtures.properties(bookType);
+        EmulatorProperties.Account account = new EmulatorProperties.Account();
+        account.setId("bench");
+        account.setInitialBalance(new BigDecimal("100000"));
+        props.setAccount(account);
+        file = Files.createTempFile("snapshot-bench", ".bin");
+
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        List<Order> resting = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            int level = (i / 2) % LEVELS;
+            resting.add(i % 2 == 0
+                    ? BookFixtures.limit(OrderDirection.BUY, BEST_BID - level, 10)
+                    : BookFixtures.limit(OrderDirection.SELL, BEST_BID + 1 + level, 10));
+        }
+        registry.getDefaultBook().load(resting);
+
+        eventBus = BookFixtures.eventBus();
+        AccountManager accountManager = new AccountManager(props, eventBus);
+        accountManager.init();
+        snapshotService = new SnapshotService(props, registry,
+                new OrderGateway(registry, new ProRataMatchingEngine(registry, eventBus, clock), eventBus, props, clock),
+                accountManager, CommandJournal.disabled(), clock);
+        snapshotService.write(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        eventBus.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public SnapshotInfo restore() {
+        return snapshotService.restore(file);
+    }
+}
@@ -0,0 +1,31 @@
+package ru.tinkoff.invest.emulator.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.tinkoff.invest.emulator.core.clock.AcceleratedClock;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.FixedStepClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+
+import java.time.Instant;
+
+@Slf4j
+@Configuration
+public class ClockConfig {
+
+    @Bean
+    public EmulatorClock emulatorClock(EmulatorProperties properties) {
+        EmulatorProperties.Clock config = properties.getClock();
+        long start = config.getStart() != null
+                ? EmulatorClock.toEpochNanos(Instant.parse(config.getStart()))
+                : EmulatorClock.toEpochNanos(Instant.now());
+        EmulatorClock clock = switch (config.getType()) {
+            case WALL -> new WallClock();
+            case FIXED_STEP -> new FixedStepClock(start, config.getStep());
+            case ACCELERATED -> new AcceleratedClock(start, config.getSpeed());
+        };
+        log.info("ClockConfig: {} starting at {}", clock, clock.instant());
+        return clock;
+    }
+}
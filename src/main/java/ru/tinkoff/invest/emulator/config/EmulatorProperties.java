@@ -3,16 +3,50 @@ package ru.tinkoff.invest.emulator.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import ru.tinkoff.invest.emulator.core.clock.ClockType;
+import ru.tinkoff.invest.emulator.core.matching.MatchingMode;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "emulator")
 public class EmulatorProperties {
     private Instrument instrument;
+    // Дополнительные инструменты (watchlist), у каждого свой стакан
+    private List<Instrument> instruments = new ArrayList<>();
     private OrderBook orderbook;
     private Account account;
+    private Matching matching = new Matching();
+    private Events events = new Events();
+    private Streams streams = new Streams();
+    private WebSocket websocket = new WebSocket();
+    private Journal journal = new Journal();
+    private Snapshot snapshot = new Snapshot();
+    private Feed feed = new Feed();
+    private Clock clock = new Clock();
+
+    /**
+     * Все торгуемые инструменты: основной {@code instrument} и затем {@code instruments} без повторов по uid.
+     */
+    public List<Instrument> getWatchlist() {
+        List<Instrument> watchlist = new ArrayList<>();
+        if (instrument != null) {
+            watchlist.add(instrument);
+        }
+        for (Instrument candidate : instruments) {
+            boolean duplicate = watchlist.stream().anyMatch(i -> i.getUid().equals(candidate.getUid()));
+            if (!duplicate) {
+                watchlist.add(candidate);
+            }
+        }
+        return watchlist;
+    }
 
     @Data
     public static class Instrument {
@@ -22,6 +56,10 @@ public class EmulatorProperties {
         private int lot;
         private BigDecimal minPriceIncrement;
         private String currency;
+        // Полуширина окна цен (в шагах) для стакана типа LADDER
+        private int priceBandTicks = 2048;
+        // Настройки стакана инструмента; если не заданы — используется общий emulator.orderbook
+        private OrderBook orderbook;
     }
 
     @Data
@@ -29,11 +67,20 @@ public class EmulatorProperties {
         private BigDecimal initialBid;
         private BigDecimal initialAsk;
         private int depth;
+        // Глубина публикуемого снапшота стакана (уровней с каждой стороны), максимум для чтения
+        private int snapshotDepth = 50;
+        // Минимальный интервал между рассылками снапшота подписчикам, мс (общий для всех стаканов)
+        private long publishIntervalMs = 50;
+        // Каждая N-я рассылка — полный снапшот без дельты (ресинхронизация подписчиков дельт)
+        private int fullSnapshotEvery = 100;
+        private BookType bookType = BookType.TREE_MAP;
         private int levelsCount = 20;
         private long bestPriceVolumeMin = 2000000;
         private long bestPriceVolumeMax = 5000000;
         private long otherVolumeMin = 10000;
         private long otherVolumeMax = 500000;
+        // Зерно случайных объёмов начальной ликвидности; если не задано — своё на каждый запуск, но сброс его повторяет
+        private Long seed;
         private MarketMaker marketMaker = new MarketMaker();
     }
 
@@ -44,6 +91,83 @@ public class EmulatorProperties {
         private long volume = 7000000;
     }
 
+    @Data
+    public static class Matching {
+        // LOCKING — исполнение в потоке клиента под блокировкой стакана, SEQUENCER — один поток-писатель на стакан
+        private MatchingMode mode = MatchingMode.LOCKING;
+        // Размер кольцевого буфера команд на инструмент (степень двойки)
+        private int ringBufferSize = 4096;
+    }
+
+    @Data
+    public static class Events {
+        // Потоки доставки событий исполнения; события с одним ключом (счёт, инструмент) идут в один поток
+        private int dispatchThreads = 4;
+        // Событий в очереди одной дорожки; при полной очереди писатель ждёт места — события не теряются
+        private int laneCapacity = 65_536;
+    }
+
+    @Data
+    public static class Streams {
+        // Сообщений в очереди одного стрима, пока клиент не читает; сверх лимита — конфляция или отключение
+        private int queueCapacity = 1024;
+    }
+
+    @Data
+    public static class WebSocket {
+        // Отправка в сессию админ-панели дольше лимита или переполненный буфер — клиент отключается
+        private long sendTimeLimitMs = 5000;
+        private int bufferSizeLimit = 512 * 1024;
+    }
+
+    @Data
+    public static class Journal {
+        // Журнал принятых команд: при старте стаканы и счёт восстанавливаются из него
+        private boolean enabled = false;
+        private String path = "data/journal.bin";
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        // Фоновый force() на диск раз в интервал; 0 — без периодического force()
+        private long syncIntervalMs = 100;
+        // Дополнительный force() после каждых N записей; 0 — только по интервалу
+        private int syncEveryRecords = 0;
+        // Сделки каждой команды: по ним JournalReplayer сверяет воспроизведение
+        private boolean recordTrades = true;
+    }
+
+    @Data
+    public static class Snapshot {
+        // Бинарный снапшот стаканов и счёта: пишется по запросу из админки или по расписанию
+        private String path = "data/snapshot.bin";
+        // Поднять состояние из снапшота при старте вместо начальной ликвидности из конфига
+        private boolean restoreOnStartup = false;
+        private boolean scheduled = false;
+        private long intervalMs = 60000;
+    }
+
+    @Data
+    public static class Feed {
+        // Воспроизведение исторических данных в стаканы (см. MarketDataFeed)
+        private boolean enabled = false;
+        // CSV (*.csv) или бинарный формат, проигрываются по порядку
+        private List<String> files = new ArrayList<>();
+        // Множитель скорости: 1 — реальное время, 10 — в 10 раз быстрее, 0 — без пауз
+        private double speed = 1.0;
+        // Перед воспроизведением снять начальную ликвидность
+        private boolean clearBooks = true;
+        private boolean loop = false;
+    }
+
+    @Data
+    public static class Clock {
+        private ClockType type = ClockType.WALL;
+        // Начальное время для FIXED_STEP и ACCELERATED (ISO-8601); по умолчанию — момент старта
+        private String start;
+        // Множитель ACCELERATED: 60 — торговый день примерно за 9 минут
+        private double speed = 60.0;
+        // Сдвиг FIXED_STEP на каждое чтение времени
+        private Duration step = Duration.ofMillis(1);
+    }
+
     @Data
     public static class Account {
         private String id;
@@ -0,0 +1,39 @@
+package ru.tinkoff.invest.emulator.core.clock;
+
+/**
+ * Ускоренное время: от {@code start} идёт в {@code speed} раз быстрее реального.
+ * При {@code speed = 60} торговый день проходит примерно за 9 минут.
+ */
+public final class AcceleratedClock extends EmulatorClock {
+    private final long startNanos;
+    private final long originTicks;
+    private final double speed;
+
+    public AcceleratedClock(long startNanos, double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Clock speed must be positive, got " + speed);
+        }
+        this.startNanos = startNanos;
+        this.originTicks = System.nanoTime();
+        this.speed = speed;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    @Override
+    public long nanos() {
+        return startNanos + (long) ((System.nanoTime() - originTicks) * speed);
+    }
+
+    @Override
+    public long toWallNanos(long simulatedNanos) {
+        return (long) (simulatedNanos / speed);
+    }
+
+    @Override
+    public String toString() {
+        return "AcceleratedClock(" + speed + "x)";
+    }
+}
@@ -0,0 +1,62 @@
+package ru.tinkoff.invest.emulator.core.clock;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодические задачи с периодом во времени эмулятора: при ускоренных часах они выполняются
+ * во столько же раз чаще, чем {@code @Scheduled}.
+ */
+@Slf4j
+@Component
+public class ClockScheduler {
+    // Нижняя граница реального периода, чтобы сильное ускорение не превращало задачу в цикл
+    private static final long MIN_WALL_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final EmulatorClock clock;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "clock-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ClockScheduler(EmulatorClock clock) {
+        this.clock = clock;
+    }
+
+    public ScheduledFuture<?> scheduleAtFixedRate(String name, Runnable task, Duration period) {
+        return scheduleAtFixedRate(name, task, period, null);
+    }
+
+    /**
+     * То же, но реальный период не больше {@code maxWallPeriod}: при замедленных часах задача,
+     * которая держит соединения живыми, всё равно выполняется вовремя.
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(String name, Runnable task, Duration period, Duration maxWallPeriod) {
+        long wallPeriod = Math.max(MIN_WALL_PERIOD_NANOS, clock.toWallNanos(period.toNanos()));
+        if (maxWallPeriod != null) {
+            wallPeriod = Math.min(wallPeriod, maxWallPeriod.toNanos());
+        }
+        log.info("ClockScheduler: {} every {} ({} ms wall time)", name, period, wallPeriod / 1_000_000);
+        return executor.scheduleAtFixedRate(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Исключение отменило бы все следующие запуски
+                log.error("ClockScheduler: {} failed", name, e);
+            }
+        }, wallPeriod, wallPeriod, TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,16 @@
+package ru.tinkoff.invest.emulator.core.clock;
+
+public enum ClockType {
+    /**
+     * Реальное время ({@link WallClock}).
+     */
+    WALL,
+    /**
+     * Сдвиг на фиксированный шаг при каждом чтении ({@link FixedStepClock}).
+     */
+    FIXED_STEP,
+    /**
+     * Реальное время, умноженное на {@code speed} ({@link AcceleratedClock}).
+     */
+    ACCELERATED
+}
@@ -0,0 +1,75 @@
+package ru.tinkoff.invest.emulator.core.clock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Часы эмулятора: источник всех меток времени (заявки, сделки, стримы) и темпа расписаний.
+ * <p>
+ * Время — наносекунды от эпохи в {@code long}: чтение на горячем пути не создаёт {@link Instant},
+ * он создаётся только на границе ({@link #instant()}, REST/WebSocket DTO).
+ * <p>
+ * Единственный экземпляр — Spring-бин {@code emulatorClock}; его получают конструктором те, кто создаёт
+ * заявки и сделки (движок matching, реестр стаканов, gRPC и админка), и передают время в модели явно.
+ */
+public abstract class EmulatorClock {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    public static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(epochSecond(epochNanos), nanoOfSecond(epochNanos));
+    }
+
+    public static long epochSecond(long epochNanos) {
+        return Math.floorDiv(epochNanos, NANOS_PER_SECOND);
+    }
+
+    public static int nanoOfSecond(long epochNanos) {
+        return (int) Math.floorMod(epochNanos, NANOS_PER_SECOND);
+    }
+
+    public static long toEpochNanos(long epochSecond, int nanoOfSecond) {
+        return epochSecond * NANOS_PER_SECOND + nanoOfSecond;
+    }
+
+    public static long toEpochNanos(Instant instant) {
+        return toEpochNanos(instant.getEpochSecond(), instant.getNano());
+    }
+
+    /**
+     * Текущее время эмулятора, наносекунды от эпохи.
+     */
+    public abstract long nanos();
+
+    public long millis() {
+        return nanos() / 1_000_000L;
+    }
+
+    public Instant instant() {
+        return toInstant(nanos());
+    }
+
+    /**
+     * Сколько реального времени занимает {@code simulatedNanos} времени эмулятора.
+     */
+    public abstract long toWallNanos(long simulatedNanos);
+
+    public Duration toWall(Duration simulated) {
+        return Duration.ofNanos(toWallNanos(simulated.toNanos()));
+    }
+
+    /**
+     * Ждёт, пока время эмулятора дойдёт до {@code epochNanos}.
+     *
+     * @throws InterruptedException если поток прерван во время ожидания
+     */
+    public void sleepUntil(long epochNanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = epochNanos - nanos()) > 0) {
+            LockSupport.parkNanos(toWallNanos(remaining));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.tinkoff.invest.emulator.core.clock;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Детерминированное время для тестов и воспроизведения: каждое чтение сдвигает часы на {@code step},
+ * реальное время не влияет. {@link #sleepUntil(long)} не ждёт, а переводит часы вперёд.
+ * Расписания идут в реальном времени: у этих часов нет собственного темпа.
+ */
+public final class FixedStepClock extends EmulatorClock {
+    private final AtomicLong nanos;
+    private final long stepNanos;
+
+    public FixedStepClock(long startNanos, Duration step) {
+        if (step.isNegative()) {
+            throw new IllegalArgumentException("Clock step must not be negative, got " + step);
+        }
+        this.nanos = new AtomicLong(startNanos);
+        this.stepNanos = step.toNanos();
+    }
+
+    @Override
+    public long nanos() {
+        return nanos.getAndAdd(stepNanos);
+    }
+
+    /**
+     * Текущее время без сдвига.
+     */
+    public long peek() {
+        return nanos.get();
+    }
+
+    public void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    @Override
+    public long toWallNanos(long simulatedNanos) {
+        return simulatedNanos;
+    }
+
+    @Override
+    public void sleepUntil(long epochNanos) {
+        nanos.accumulateAndGet(epochNanos, Math::max);
+    }
+
+    @Override
+    public String toString() {
+        return "FixedStepClock(" + Duration.ofNanos(stepNanos) + ")";
+    }
+}
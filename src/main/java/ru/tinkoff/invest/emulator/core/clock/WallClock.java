@@ -0,0 +1,30 @@
+package ru.tinkoff.invest.emulator.core.clock;
+
+/**
+ * Реальное время. Наносекунды считаются от {@link System#nanoTime()} с привязкой к системным часам
+ * при создании: монотонно и без аллокаций, в отличие от {@code Instant.now()}.
+ */
+public final class WallClock extends EmulatorClock {
+    private final long originNanos;
+    private final long originTicks;
+
+    public WallClock() {
+        this.originNanos = System.currentTimeMillis() * 1_000_000L;
+        this.originTicks = System.nanoTime();
+    }
+
+    @Override
+    public long nanos() {
+        return originNanos + (System.nanoTime() - originTicks);
+    }
+
+    @Override
+    public long toWallNanos(long simulatedNanos) {
+        return simulatedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "WallClock";
+    }
+}
@@ -0,0 +1,214 @@
+package ru.tinkoff.invest.emulator.core.event;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Шина событий исполнения (сделки, состояния заявок), отвязанная от критической секции стакана.
+ * <p>
+ * Под write lock события только записываются в буфер текущего потока ({@link #record}) — без блокировок
+ * и без вызова слушателей. Тот, кто отпускает блокировку, непосредственно перед unlock вызывает {@link #flush()}:
+ * события в порядке записи раскладываются по очередям дорожек — однопоточных исполнителей. Постановка в очередь
+ * не вызывает слушателей, а порядок в дорожке совпадает с порядком исполнения на стакане даже при нескольких
+ * писателях одного инструмента. Дорожка выбирается по ключу, который задаёт
+ * подписчик (счёт, инструмент), поэтому события с одним ключом доходят до слушателя в исходном порядке,
+ * а медленный слушатель задерживает только свою дорожку, но не matching.
+ * <p>
+ * Очередь дорожки ограничена ({@code emulator.events.lane-capacity}). Сделки и состояния заявок нельзя
+ * терять или схлопывать — по ним считается счёт, — поэтому при полной очереди {@link #flush()} ждёт места:
+ * отставший слушатель тормозит писателей (и держит блокировку стакана), но память не растёт без предела.
+ * Ожидания считаются в {@link #getFullLaneWaits()}. Слушатели не должны публиковать в шину:
+ * поток дорожки, ждущий места в собственной очереди, не дождётся его никогда.
+ */
+@Slf4j
+@Service
+public class EventBus {
+    public static final int DEFAULT_LANE_CAPACITY = 65_536;
+
+    private final ThreadPoolExecutor[] lanes;
+    private final LongAdder fullLaneWaits = new LongAdder();
+    private final Map<Class<?>, List<Subscription<?>>> subscriptions = new ConcurrentHashMap<>();
+    private final ThreadLocal<List<Object>> recorded = ThreadLocal.withInitial(ArrayList::new);
+
+    @Autowired
+    public EventBus(EmulatorProperties properties) {
+        this(properties.getEvents().getDispatchThreads(), properties.getEvents().getLaneCapacity());
+    }
+
+    public EventBus(int dispatchThreads) {
+        this(dispatchThreads, DEFAULT_LANE_CAPACITY);
+    }
+
+    public EventBus(int dispatchThreads, int laneCapacity) {
+        if (dispatchThreads < 1) {
+            throw new IllegalArgumentException("dispatchThreads must be positive: " + dispatchThreads);
+        }
+        if (laneCapacity < 1) {
+            throw new IllegalArgumentException("laneCapacity must be positive: " + laneCapacity);
+        }
+        lanes = new ThreadPoolExecutor[dispatchThreads];
+        for (int i = 0; i < dispatchThreads; i++) {
+            String name = "event-dispatch-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(laneCapacity), r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }, this::waitForSpace);
+        }
+    }
+
+    /**
+     * Подписка на события типа {@code type} (точное совпадение класса).
+     *
+     * @param key ключ упорядочивания: события с равным ключом обрабатываются последовательно и по порядку
+     */
+    public <E> void subscribe(Class<E> type, Function<? super E, ?> key, Consumer<? super E> listener) {
+        subscriptions.computeIfAbsent(type, k -> new CopyOnWriteArrayList<>()).add(new Subscription<>(key, listener));
+    }
+
+    /**
+     * Записывает событие в буфер текущего потока. Вызывается под блокировкой стакана;
+     * слушатели получат событие после {@link #flush()}.
+     */
+    public void record(Object event) {
+        recorded.get().add(event);
+    }
+
+    /**
+     * Ставит записанные текущим потоком события в очереди дорожек слушателей. Вызывается под блокировкой
+     * стакана перед её снятием; сами слушатели выполняются в потоках дорожек.
+     */
+    public void flush() {
+        List<Object> events = recorded.get();
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            for (Object event : events) {
+                dispatch(event);
+            }
+        } finally {
+            events.clear();
+        }
+    }
+
+    /**
+     * Публикация вне критической секции: {@link #record} и {@link #flush()} одним вызовом.
+     */
+    public void publish(Object event) {
+        record(event);
+        flush();
+    }
+
+    /**
+     * Завершается, когда дорожка ключа {@code key} обработает всё, что было в неё отдано до вызова.
+     */
+    public CompletableFuture<Void> barrier(Object key) {
+        return CompletableFuture.runAsync(() -> { }, lane(key));
+    }
+
+    /**
+     * Завершается, когда все дорожки обработают всё, что было в них отдано до вызова.
+     */
+    public CompletableFuture<Void> barrierAll() {
+        CompletableFuture<?>[] barriers = new CompletableFuture<?>[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            barriers[i] = CompletableFuture.runAsync(() -> { }, lanes[i]);
+        }
+        return CompletableFuture.allOf(barriers);
+    }
+
+    /**
+     * Выполняет задачу в дорожке ключа {@code key} после всего, что уже в ней стоит: задача упорядочена
+     * с событиями этого ключа так же, как слушатели.
+     */
+    public <T> CompletableFuture<T> submit(Object key, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, lane(key));
+    }
+
+    /**
+     * Сколько раз постановка в дорожку ждала места в полной очереди.
+     */
+    public long getFullLaneWaits() {
+        return fullLaneWaits.sum();
+    }
+
+    /**
+     * Политика полной очереди: ждать места, а не отбрасывать и не выполнять в потоке писателя
+     * (это нарушило бы порядок дорожки).
+     */
+    private void waitForSpace(Runnable task, ThreadPoolExecutor lane) {
+        if (lane.isShutdown()) {
+            throw new RejectedExecutionException("Event lane is shut down");
+        }
+        fullLaneWaits.increment();
+        try {
+            lane.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a full event lane", e);
+        }
+    }
+
+    private ExecutorService lane(Object key) {
+        return lanes[key == null ? 0 : Math.floorMod(key.hashCode(), lanes.length)];
+    }
+
+    private void dispatch(Object event) {
+        List<Subscription<?>> listeners = subscriptions.get(event.getClass());
+        if (listeners == null) {
+            return;
+        }
+        for (Subscription<?> subscription : listeners) {
+            subscription.dispatch(event);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    private final class Subscription<E> {
+        private final Function<? super E, ?> key;
+        private final Consumer<? super E> listener;
+
+        Subscription(Function<? super E, ?> key, Consumer<? super E> listener) {
+            this.key = key;
+            this.listener = listener;
+        }
+
+        @SuppressWarnings("unchecked")
+        void dispatch(Object event) {
+            E typed = (E) event;
+            lane(key.apply(typed)).execute(() -> {
+                try {
+                    listener.accept(typed);
+                } catch (RuntimeException e) {
+                    log.error("Event listener failed on {}", event.getClass().getSimpleName(), e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.tinkoff.invest.emulator.core.event;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ожидания места в очередях дорожек {@link EventBus} в метриках actuator: рост означает, что слушатель
+ * отстаёт и тормозит matching.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventBusMetrics implements MeterBinder {
+
+    private final EventBus eventBus;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("emulator.events.full.lane.waits", eventBus, EventBus::getFullLaneWaits)
+                .description("Event dispatches that waited for space in a full lane queue")
+                .register(registry);
+    }
+}
@@ -3,13 +3,39 @@ package ru.tinkoff.invest.emulator.core.event;
 import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 import ru.tinkoff.invest.emulator.core.model.OrderBook;
+import ru.tinkoff.invest.emulator.core.model.OrderBookDelta;
 
 @Getter
 public class OrderBookChangedEvent extends ApplicationEvent {
     private final OrderBook orderBook;
+    // Предыдущая публикация; null — подписчикам дельт нужен полный снапшот
+    private final OrderBook previous;
 
     public OrderBookChangedEvent(Object source, OrderBook orderBook) {
+        this(source, orderBook, null);
+    }
+
+    public OrderBookChangedEvent(Object source, OrderBook orderBook, OrderBook previous) {
         super(source);
         this.orderBook = orderBook;
+        this.previous = previous;
+    }
+
+    public boolean isFull() {
+        return previous == null;
+    }
+
+    /**
+     * Изменения относительно предыдущей публикации или {@code null}, если событие полное.
+     */
+    public OrderBookDelta getDelta() {
+        return previous != null ? OrderBookDelta.between(previous, orderBook) : null;
+    }
+
+    /**
+     * Изменения среди {@code depth} лучших уровней: уровень, ушедший за глубину, приходит как удалённый.
+     */
+    public OrderBookDelta getDelta(int depth) {
+        return previous != null ? OrderBookDelta.between(previous.withDepth(depth), orderBook.withDepth(depth)) : null;
     }
 }
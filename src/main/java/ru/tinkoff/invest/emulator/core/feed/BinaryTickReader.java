@@ -0,0 +1,81 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Чтение компактного бинарного формата {@link BinaryTickWriter}.
+ */
+final class BinaryTickReader implements TickReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataInputStream in;
+    private final List<String> instruments = new ArrayList<>();
+
+    BinaryTickReader(Path path) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        try {
+            int magic = in.readInt();
+            int version = in.readInt();
+            if (magic != BinaryTickWriter.MAGIC || version != BinaryTickWriter.VERSION) {
+                throw new IOException("Not a tick file (magic=" + Integer.toHexString(magic)
+                        + ", version=" + version + "): " + path);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public TickEvent next() throws IOException {
+        int kind;
+        while ((kind = in.read()) == BinaryTickWriter.DEFINE) {
+            int index = in.readUnsignedShort();
+            byte[] bytes = new byte[in.readUnsignedShort()];
+            in.readFully(bytes);
+            if (index != instruments.size()) {
+                throw new IOException("Unexpected instrument index " + index);
+            }
+            instruments.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        if (kind < 0) {
+            return null;
+        }
+        if (kind != BinaryTickWriter.BOOK && kind != BinaryTickWriter.TRADE) {
+            throw new IOException("Unknown record kind " + kind);
+        }
+        try {
+            long timestampNanos = in.readLong();
+            int index = in.readUnsignedShort();
+            OrderDirection side = in.readByte() == 0 ? OrderDirection.BUY : OrderDirection.SELL;
+            long unscaledPrice = in.readLong();
+            int scale = in.readByte();
+            long quantity = in.readLong();
+            if (index >= instruments.size()) {
+                throw new IOException("Undefined instrument index " + index);
+            }
+            return new TickEvent(timestampNanos, instruments.get(index),
+                    kind == BinaryTickWriter.BOOK ? TickType.BOOK : TickType.TRADE, side,
+                    new BigDecimal(BigInteger.valueOf(unscaledPrice), scale), quantity);
+        } catch (EOFException e) {
+            throw new IOException("Truncated tick record", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Компактный бинарный формат исторических данных.
+ * <p>
+ * Заголовок {@code [int magic][int version]}, затем записи:
+ * <ul>
+ *   <li>{@code [byte 0][ushort index][ushort len][utf-8]} — инструмент получает индекс при первом появлении;</li>
+ *   <li>{@code [byte 1|2][long timestampNanos][ushort index][byte side][long unscaledPrice][byte scale][long quantity]}
+ *       — BOOK или TRADE, 36 байт.</li>
+ * </ul>
+ * Конвертация CSV: {@code ./gradlew convertTicks -Pcsv=ticks.csv -Pout=ticks.bin}.
+ */
+public class BinaryTickWriter implements Closeable {
+    static final int MAGIC = 0x5449434B; // "TICK"
+    static final int VERSION = 1;
+    static final int DEFINE = 0;
+    static final int BOOK = 1;
+    static final int TRADE = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> instruments = new HashMap<>();
+
+    public BinaryTickWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BinaryTickWriter <ticks.csv> <ticks.bin>");
+            System.exit(2);
+        }
+        long events = 0;
+        try (TickReader reader = TickReader.open(Path.of(args[0]));
+             BinaryTickWriter writer = new BinaryTickWriter(Files.newOutputStream(Path.of(args[1])))) {
+            TickEvent event;
+            while ((event = reader.next()) != null) {
+                writer.write(event);
+                events++;
+            }
+        }
+        System.out.println("Converted " + events + " ticks to " + args[1]);
+    }
+
+    public void write(TickEvent event) throws IOException {
+        int index = index(event.instrumentId());
+        BigDecimal price = event.price();
+        out.writeByte(event.type() == TickType.BOOK ? BOOK : TRADE);
+        out.writeLong(event.timestampNanos());
+        out.writeShort(index);
+        out.writeByte(event.side().ordinal());
+        out.writeLong(price.unscaledValue().longValueExact());
+        out.writeByte(price.scale());
+        out.writeLong(event.quantity());
+    }
+
+    private int index(String instrumentId) throws IOException {
+        Integer index = instruments.get(instrumentId);
+        if (index != null) {
+            return index;
+        }
+        if (instruments.size() > 0xFFFF) {
+            throw new IOException("Too many instruments");
+        }
+        int next = instruments.size();
+        byte[] bytes = instrumentId.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(DEFINE);
+        out.writeShort(next);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+        instruments.put(instrumentId, next);
+        return next;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
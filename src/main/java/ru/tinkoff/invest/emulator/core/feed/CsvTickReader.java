@@ -0,0 +1,85 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * CSV с историческими данными, по событию на строку:
+ * {@code timestamp,instrumentId,BOOK|TRADE,BUY|SELL,price,quantity}.
+ * <p>
+ * {@code timestamp} — ISO-8601 ({@code 2024-03-01T10:00:00.125Z}) или миллисекунды от эпохи.
+ * Пустые строки, комментарии {@code #} и строка заголовка пропускаются.
+ */
+final class CsvTickReader implements TickReader {
+    private static final int FIELDS = 6;
+
+    private final BufferedReader reader;
+    private final String[] fields = new String[FIELDS];
+    private long lineNumber;
+
+    CsvTickReader(Path path) throws IOException {
+        this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public TickEvent next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("timestamp")) {
+                continue;
+            }
+            try {
+                return parse(line);
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid tick at line " + lineNumber + ": " + line, e);
+            }
+        }
+        return null;
+    }
+
+    private TickEvent parse(String line) {
+        split(line);
+        return new TickEvent(
+                timestampNanos(fields[0]),
+                fields[1],
+                TickType.valueOf(fields[2]),
+                OrderDirection.valueOf(fields[3]),
+                new BigDecimal(fields[4]),
+                Long.parseLong(fields[5]));
+    }
+
+    private void split(String line) {
+        int start = 0;
+        for (int i = 0; i < FIELDS - 1; i++) {
+            int comma = line.indexOf(',', start);
+            if (comma < 0) {
+                throw new IllegalArgumentException("expected " + FIELDS + " fields");
+            }
+            fields[i] = line.substring(start, comma).strip();
+            start = comma + 1;
+        }
+        fields[FIELDS - 1] = line.substring(start).strip();
+    }
+
+    private static long timestampNanos(String value) {
+        if (value.indexOf('T') < 0) {
+            return Long.parseLong(value) * 1_000_000L;
+        }
+        Instant instant = Instant.parse(value);
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+
+/**
+ * Темп воспроизведения: событие с историческим временем {@code t} выдаётся, когда часы эмулятора
+ * доходят до {@code start + (t - t0) / speed}, где {@code t0} — время первого события файла.
+ * При ускоренных часах лента ускоряется вместе с ними; {@code speed <= 0} — без пауз.
+ */
+final class FeedPacer {
+    private final double speed;
+    private final EmulatorClock clock;
+    private boolean started;
+    private long firstEventNanos;
+    private long startNanos;
+
+    FeedPacer(double speed, EmulatorClock clock) {
+        this.speed = speed;
+        this.clock = clock;
+    }
+
+    void await(long eventNanos) throws InterruptedException {
+        if (speed <= 0) {
+            return;
+        }
+        if (!started) {
+            started = true;
+            firstEventNanos = eventNanos;
+            startNanos = clock.nanos();
+            return;
+        }
+        clock.sleepUntil(startNanos + (long) ((eventNanos - firstEventNanos) / speed));
+    }
+}
@@ -0,0 +1,13 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+import java.time.Instant;
+
+/**
+ * Состояние воспроизведения исторических данных для админки.
+ *
+ * @param events        применено событий
+ * @param skipped       пропущено событий по неизвестным инструментам
+ * @param simulatedTime историческое время последнего применённого события
+ */
+public record FeedStatus(boolean running, String file, double speed, long events, long skipped, Instant simulatedTime) {
+}
@@ -0,0 +1,260 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.matching.MatchingResult;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
+import ru.tinkoff.invest.emulator.core.model.*;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Воспроизведение исторических рыночных данных (CSV или {@link BinaryTickWriter бинарный формат})
+ * в стаканы эмулятора с настраиваемой скоростью.
+ * <p>
+ * Все команды идут через {@link OrderGateway}, поэтому попадают в журнал и стримы как обычные заявки:
+ * <ul>
+ *   <li>BOOK — объём уровня держит одна заявка счёта {@value #FEED_ACCOUNT}: она выставляется,
+ *       заменяется на новый объём или снимается при нулевом объёме. Перед этим снимаются уровни ленты
+ *       на противоположной стороне по этой цене и через неё — устаревшие, лента не торгует сама с собой;</li>
+ *   <li>TRADE — заявка {@link OrderType#LIMIT_IOC} агрессора по цене сделки: остаток не встаёт в стакан.
+ *       Так исторические сделки исполняют заявки бота, стоящие по этой цене.</li>
+ * </ul>
+ * Файлы читаются потоково, состояние — только заявки ленты по уровням. Работает в отдельном потоке,
+ * который стартует после готовности приложения.
+ */
+@Slf4j
+@Service
+public class MarketDataFeed {
+    static final String FEED_ACCOUNT = "market-data-feed";
+
+    private final EmulatorProperties.Feed config;
+    private final OrderBookRegistry orderBookRegistry;
+    private final OrderGateway orderGateway;
+    private final EmulatorClock clock;
+    // Заявки ленты по инструменту и цене; меняются только потоком воспроизведения
+    private final Map<String, FeedLevels> levels = new HashMap<>();
+    private final Set<String> unknownInstruments = new HashSet<>();
+
+    private volatile Thread thread;
+    private volatile String currentFile;
+    private volatile long events;
+    private volatile long skipped;
+    private volatile long simulatedNanos;
+
+    public MarketDataFeed(EmulatorProperties properties, OrderBookRegistry orderBookRegistry, OrderGateway orderGateway,
+                          EmulatorClock clock) {
+        this.config = properties.getFeed();
+        this.orderBookRegistry = orderBookRegistry;
+        this.orderGateway = orderGateway;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (config.getFiles().isEmpty()) {
+            log.warn("MarketDataFeed: enabled, but no files configured");
+            return;
+        }
+        Thread feedThread = new Thread(this::run, "market-data-feed");
+        feedThread.setDaemon(true);
+        thread = feedThread;
+        feedThread.start();
+        log.info("MarketDataFeed: replaying {} at speed {}", config.getFiles(),
+                config.getSpeed() > 0 ? config.getSpeed() + "x" : "max");
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread feedThread = thread;
+        if (feedThread != null) {
+            feedThread.interrupt();
+        }
+    }
+
+    public FeedStatus getStatus() {
+        Thread feedThread = thread;
+        long nanos = simulatedNanos;
+        return new FeedStatus(feedThread != null && feedThread.isAlive(), currentFile, config.getSpeed(),
+                events, skipped, nanos != 0 ? Instant.ofEpochSecond(0, nanos) : null);
+    }
+
+    private void run() {
+        try {
+            do {
+                if (config.isClearBooks()) {
+                    clearBooks();
+                }
+                for (String file : config.getFiles()) {
+                    replay(Path.of(file));
+                }
+            } while (config.isLoop());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.error("MarketDataFeed: replay failed", e);
+        } finally {
+            currentFile = null;
+        }
+    }
+
+    /**
+     * Проигрывает файл в темпе {@code emulator.feed.speed}.
+     */
+    public void replay(Path path) throws IOException, InterruptedException {
+        currentFile = path.toString();
+        FeedPacer pacer = new FeedPacer(config.getSpeed(), clock);
+        long applied = 0;
+        long start = System.nanoTime();
+        try (TickReader reader = TickReader.open(path)) {
+            TickEvent event;
+            while ((event = reader.next()) != null) {
+                pacer.await(event.timestampNanos());
+                if (apply(event)) {
+                    applied++;
+                }
+            }
+        }
+        log.info("MarketDataFeed: {} ticks from {} applied in {} ms", applied, path,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Снимает все заявки через шлюз, чтобы очистка попала в журнал и стримы.
+     */
+    void clearBooks() {
+        levels.clear();
+        for (OrderBookManager book : orderBookRegistry.getBooks()) {
+            for (Order order : book.getAllOrders()) {
+                orderGateway.cancel(order.getId()).join();
+            }
+        }
+    }
+
+    /**
+     * @return {@code false}, если инструмент не торгуется в эмуляторе или цена вне сетки его шага
+     */
+    boolean apply(TickEvent event) {
+        OrderBookManager book = orderBookRegistry.find(event.instrumentId());
+        if (book == null) {
+            skipped++;
+            if (unknownInstruments.add(event.instrumentId())) {
+                log.warn("MarketDataFeed: unknown instrument {}, its ticks are skipped", event.instrumentId());
+            }
+            return false;
+        }
+        long price;
+        try {
+            price = book.getTickSize().toTicks(event.price());
+        } catch (IllegalArgumentException e) {
+            skipped++;
+            log.warn("MarketDataFeed: tick skipped: {}", e.getMessage());
+            return false;
+        }
+        if (event.type() == TickType.BOOK) {
+            setLevel(book, event.side(), price, event.quantity());
+        } else {
+            trade(book, event.side(), price, event.quantity());
+        }
+        events++;
+        simulatedNanos = event.timestampNanos();
+        return true;
+    }
+
+    private void setLevel(OrderBookManager book, OrderDirection side, long price, long quantity) {
+        FeedLevels bookLevels = levels.computeIfAbsent(book.getInstrumentId(), k -> new FeedLevels());
+        Map<Long, UUID> feedOrders = bookLevels.side(side);
+        UUID existingId = feedOrders.get(price);
+        Order existing = existingId != null ? book.getOrder(existingId) : null;
+        if (quantity <= 0) {
+            feedOrders.remove(price);
+            if (existing != null) {
+                orderGateway.cancel(existingId).join();
+            }
+            return;
+        }
+        cancelCrossed(bookLevels, side, price);
+        if (existing != null && existing.getRemainingQuantity() == quantity) {
+            return;
+        }
+        UUID id = UUID.randomUUID();
+        MatchingResult result = null;
+        if (existing != null) {
+            result = orderGateway.replace(existingId, id, quantity, price).join();
+        }
+        if (result == null || !result.accepted()) {
+            // Заявку ленты успели исполнить между событиями
+            result = orderGateway.place(feedOrder(id, book, side, price, quantity)).join();
+        }
+        if (result.order().getRemainingQuantity() > 0) {
+            feedOrders.put(price, id);
+        } else {
+            feedOrders.remove(price);
+        }
+    }
+
+    /**
+     * Снимает уровни ленты на противоположной стороне по цене {@code price} и через неё.
+     */
+    private void cancelCrossed(FeedLevels bookLevels, OrderDirection side, long price) {
+        NavigableMap<Long, UUID> crossed = side == OrderDirection.BUY
+                ? bookLevels.asks.headMap(price, true)
+                : bookLevels.bids.tailMap(price, true);
+        for (UUID id : crossed.values()) {
+            // Уже исполненную заявку шлюз отклонит
+            orderGateway.cancel(id).join();
+        }
+        crossed.clear();
+    }
+
+    private void trade(OrderBookManager book, OrderDirection aggressor, long price, long quantity) {
+        orderGateway.place(feedOrder(UUID.randomUUID(), book, aggressor, OrderType.LIMIT_IOC, price, quantity)).join();
+    }
+
+    private Order feedOrder(UUID id, OrderBookManager book, OrderDirection direction, long price, long quantity) {
+        return feedOrder(id, book, direction, OrderType.LIMIT, price, quantity);
+    }
+
+    private Order feedOrder(UUID id, OrderBookManager book, OrderDirection direction, OrderType type,
+                            long price, long quantity) {
+        return Order.builder()
+                .id(id)
+                .instrumentId(book.getInstrumentId())
+                .accountId(FEED_ACCOUNT)
+                .source(OrderSource.FEED)
+                .direction(direction)
+                .type(type)
+                .price(price)
+                .quantity(quantity)
+                .createdAtNanos(clock.nanos())
+                .build();
+    }
+
+    private static final class FeedLevels {
+        private final NavigableMap<Long, UUID> bids = new TreeMap<>();
+        private final NavigableMap<Long, UUID> asks = new TreeMap<>();
+
+        Map<Long, UUID> side(OrderDirection direction) {
+            return direction == OrderDirection.BUY ? bids : asks;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+
+import java.math.BigDecimal;
+
+/**
+ * Событие исторических рыночных данных.
+ *
+ * @param timestampNanos время события, наносекунды от эпохи
+ * @param instrumentId   uid, figi или ticker инструмента
+ * @param price          цена в валюте; переводится в шаги по {@code minPriceIncrement} стакана
+ */
+public record TickEvent(long timestampNanos, String instrumentId, TickType type, OrderDirection side,
+                        BigDecimal price, long quantity) {
+}
@@ -0,0 +1,27 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Потоковое чтение файла исторических данных: в памяти только буфер чтения, размер файла не ограничен.
+ */
+public interface TickReader extends Closeable {
+
+    /**
+     * Следующее событие или {@code null} в конце файла.
+     *
+     * @throws IOException при ошибке чтения или некорректной записи
+     */
+    TickEvent next() throws IOException;
+
+    /**
+     * Формат по расширению: {@code .csv} — {@link CsvTickReader}, иначе бинарный {@link BinaryTickReader}.
+     */
+    static TickReader open(Path path) throws IOException {
+        return path.getFileName().toString().toLowerCase().endsWith(".csv")
+                ? new CsvTickReader(path)
+                : new BinaryTickReader(path);
+    }
+}
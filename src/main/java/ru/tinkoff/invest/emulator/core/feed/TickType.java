@@ -0,0 +1,15 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+/**
+ * Тип исторического события.
+ */
+public enum TickType {
+    /**
+     * Объём уровня стакана на стороне {@code side}; 0 — уровень исчез.
+     */
+    BOOK,
+    /**
+     * Сделка, {@code side} — направление агрессора.
+     */
+    TRADE
+}
@@ -0,0 +1,634 @@
+package ru.tinkoff.invest.emulator.core.journal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.model.*;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only журнал принятых команд (post, cancel, replace, сброс и загрузка снапшота из админки) для восстановления
+ * стаканов и счёта после падения.
+ * <p>
+ * Запись идёт в отображённый в память сегмент файла: append занимает место под запись CAS-ом общей позиции
+ * конца журнала и пишет её несколькими {@code put} в {@link MappedByteBuffer} — без блокировок и системных
+ * вызовов, поэтому команды разных инструментов пишутся параллельно. Порядок записей одного инструмента
+ * задаёт write lock его стакана, под которым идёт append. Данные переживают падение процесса
+ * сразу, а падение ОС — после {@code force()}. {@code force()} выполняет фоновый поток раз в
+ * {@code sync-interval-ms} и, если задано, после каждых {@code sync-every-records} записей, поэтому
+ * вызывающий поток на диск не ждёт.
+ * <p>
+ * Формат: заголовок (magic, версия, размер сегмента), затем записи {@code [int длина][byte тип][данные]}.
+ * Длина публикуется последней, после release-барьера, поэтому оборванная запись читается как длина 0 —
+ * конец журнала; записи, закоммиченные параллельно после неё, при этом тоже теряются. Запись проверяется
+ * и измеряется до того, как под неё занято место; если её заполнение всё же упало, занятое место
+ * закрывается записью {@code SKIP}, а не остаётся дырой. Длина {@code -1} или нехватка места под длину
+ * в конце сегмента — продолжение в следующем сегменте.
+ */
+@Slf4j
+@Service
+public class CommandJournal {
+    private static final int MAGIC = 0x4A524E4C;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int END_OF_SEGMENT = -1;
+
+    static final byte SEED = 1;
+    static final byte PLACE = 2;
+    static final byte CANCEL = 3;
+    static final byte REPLACE = 4;
+    static final byte RESET = 5;
+    static final byte ACCOUNT = 6;
+    static final byte TRADES = 7;
+    // Место записи, заполнение которой упало: пропускается при чтении
+    static final byte SKIP = 8;
+
+    private static final int ORDER_SIZE = 16 + 1 + 1 + 8 + 8 + 8 + 1 + 8 + 4 + 1;
+    private static final int TRADE_SIZE = 16 + 16 + 8 + 8;
+
+    private final EmulatorProperties.Journal config;
+    private FileChannel channel;
+    private long segmentSize;
+    // Позиция следующей записи от начала файла; место под запись занимается CAS-ом
+    private final AtomicLong tail = new AtomicLong();
+    // Отображённые сегменты по номеру: текущий и предыдущий, в который ещё могут дописывать
+    private final Map<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong sinceSync = new AtomicLong();
+    private volatile boolean suspended;
+    private ScheduledExecutorService syncer;
+
+    @Autowired
+    public CommandJournal(EmulatorProperties properties) {
+        this(properties.getJournal());
+    }
+
+    CommandJournal(EmulatorProperties.Journal config) {
+        this.config = config;
+    }
+
+    /**
+     * Журнал, который ничего не пишет: для тестов и бенчмарков, собирающих компоненты вручную.
+     */
+    public static CommandJournal disabled() {
+        return new CommandJournal(new EmulatorProperties.Journal());
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Path path = Path.of(config.getPath());
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                segmentSize = config.getSegmentSize().toBytes();
+                if (segmentSize < HEADER_SIZE + 1024) {
+                    throw new IllegalStateException("Journal segment is too small: " + segmentSize);
+                }
+                segment(0).putInt(0, MAGIC).putInt(4, VERSION).putLong(8, segmentSize);
+                tail.set(HEADER_SIZE);
+            } else {
+                segmentSize = readHeader(channel, path);
+                Cursor end = walk(channel, segmentSize, null);
+                if (channel.size() > end.base + segmentSize) {
+                    channel.truncate(end.base + segmentSize);
+                }
+                // Хвост сегмента обнуляется: там могли остаться байты оборванной записи до рестарта
+                MappedByteBuffer last = segment(end.base / segmentSize);
+                int i = end.position;
+                for (; i + 8 <= segmentSize; i += 8) {
+                    last.putLong(i, 0);
+                }
+                for (; i < segmentSize; i++) {
+                    last.put(i, (byte) 0);
+                }
+                tail.set(end.base + end.position);
+                records.set(end.records);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open command journal " + path, e);
+        }
+        startSyncer();
+        log.info("CommandJournal opened: {} ({} records, segment {} bytes)", path, records.get(), segmentSize);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        force();
+        segments.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("CommandJournal close failed", e);
+        }
+        channel = null;
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    /**
+     * Количество записей в журнале.
+     */
+    public long size() {
+        return records.get();
+    }
+
+    /**
+     * Заявка, уже стоящая в стакане на момент начала журнала (начальная ликвидность).
+     */
+    public void seed(Order order) {
+        if (accepts()) {
+            appendOrder(SEED, order);
+        }
+    }
+
+    /**
+     * Все заявки стаканов как начальное состояние журнала.
+     */
+    public void seed(Collection<OrderBookManager> books) {
+        for (OrderBookManager book : books) {
+            book.getRestingOrders().forEach(this::seed);
+        }
+    }
+
+    public void place(Order order) {
+        if (accepts()) {
+            appendOrder(PLACE, order);
+        }
+    }
+
+    public void cancel(String instrumentId, UUID orderId) {
+        if (!accepts()) {
+            return;
+        }
+        ByteBuffer buf = begin(CANCEL, 16 + sizeOf(instrumentId));
+        try {
+            putString(buf, instrumentId);
+            putUuid(buf, orderId);
+        } finally {
+            commit(buf);
+        }
+    }
+
+    public void replace(String instrumentId, UUID orderId, UUID newOrderId, long quantity, long price) {
+        if (!accepts()) {
+            return;
+        }
+        ByteBuffer buf = begin(REPLACE, 16 + 16 + 8 + 8 + sizeOf(instrumentId));
+        try {
+            putString(buf, instrumentId);
+            putUuid(buf, orderId);
+            putUuid(buf, newOrderId);
+            buf.putLong(quantity);
+            buf.putLong(price);
+        } finally {
+            commit(buf);
+        }
+    }
+
+    /**
+     * Сделки, которыми исполнилась только что записанная команда, для сверки при воспроизведении.
+     */
+    public void trades(String instrumentId, List<Trade> trades) {
+        if (trades.isEmpty() || !config.isRecordTrades() || !accepts()) {
+            return;
+        }
+        ByteBuffer buf = begin(TRADES, sizeOf(instrumentId) + 4 + trades.size() * TRADE_SIZE);
+        try {
+            putString(buf, instrumentId);
+            buf.putInt(trades.size());
+            for (Trade trade : trades) {
+                putUuid(buf, trade.getAggressorOrderId());
+                putUuid(buf, trade.getPassiveOrderId());
+                buf.putLong(trade.getPrice());
+                buf.putLong(trade.getQuantity());
+            }
+        } finally {
+            commit(buf);
+        }
+    }
+
+    /**
+     * Сброс эмулятора из админки: счёт к начальному, стаканы заново заполнены заявками {@code books}.
+     * Вызывающий держит write lock всех стаканов, поэтому записи сброса не перемежаются командами.
+     */
+    public void reset(Collection<OrderBookManager> books) {
+        if (!accepts()) {
+            return;
+        }
+        commit(begin(RESET, 0));
+        for (OrderBookManager book : books) {
+            book.getRestingOrders().forEach(order -> appendOrder(SEED, order));
+        }
+    }
+
+    /**
+     * Состояние загружено из снапшота: сброс, баланс и позиции {@code account}, затем заявки {@code books}.
+     * Как и {@link #reset(Collection)}, вызывается под write lock всех стаканов.
+     */
+    public void restore(Account account, Collection<OrderBookManager> books) {
+        if (!accepts()) {
+            return;
+        }
+        List<Order> orders = new ArrayList<>();
+        books.forEach(book -> orders.addAll(book.getRestingOrders()));
+        List<Position> positions = new ArrayList<>(account.getPositions().values());
+        String balance = account.getBalance().toString();
+        int size = 4 + sizeOf(balance);
+        for (Position position : positions) {
+            size += 8 + sizeOf(position.getInstrumentId())
+                    + sizeOf(decimalString(position.getAveragePrice())) + sizeOf(decimalString(position.getCurrentPrice()));
+        }
+        commit(begin(RESET, 0));
+        ByteBuffer buf = begin(ACCOUNT, size);
+        try {
+            putString(buf, balance);
+            buf.putInt(positions.size());
+            for (Position position : positions) {
+                putString(buf, position.getInstrumentId());
+                buf.putLong(position.getQuantity());
+                putString(buf, decimalString(position.getAveragePrice()));
+                putString(buf, decimalString(position.getCurrentPrice()));
+            }
+        } finally {
+            commit(buf);
+        }
+        orders.forEach(order -> appendOrder(SEED, order));
+    }
+
+    /**
+     * Читает журнал с начала. На время чтения запись новых команд приостановлена: восстановление
+     * проходит через обычные компоненты, которые иначе записали бы команды повторно.
+     */
+    public void replay(Visitor visitor) {
+        if (!isEnabled()) {
+            return;
+        }
+        suspended = true;
+        try {
+            walk(channel, segmentSize, visitor);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay command journal", e);
+        } finally {
+            suspended = false;
+        }
+    }
+
+    /**
+     * Читает журнал {@code path} без открытия на запись, например для офлайн-воспроизведения.
+     *
+     * @return количество прочитанных записей
+     */
+    public static long read(Path path, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return walk(channel, readHeader(channel, path), visitor).records;
+        }
+    }
+
+    private boolean accepts() {
+        return channel != null && !suspended;
+    }
+
+    private void appendOrder(byte type, Order order) {
+        if (order.getDirection() == null || order.getType() == null || order.getStatus() == null) {
+            throw new IllegalArgumentException("Order " + order.getId() + " has no direction, type or status");
+        }
+        ByteBuffer buf = begin(type, ORDER_SIZE + sizeOf(order.getInstrumentId()) + sizeOf(order.getAccountId()));
+        try {
+            putUuid(buf, order.getId());
+            putString(buf, order.getInstrumentId());
+            putString(buf, order.getAccountId());
+            buf.put((byte) order.getDirection().ordinal());
+            buf.put((byte) order.getType().ordinal());
+            buf.putLong(order.getPrice());
+            buf.putLong(order.getQuantity());
+            buf.putLong(order.getFilledQuantity());
+            buf.put((byte) order.getStatus().ordinal());
+            buf.putLong(EmulatorClock.epochSecond(order.getCreatedAtNanos()));
+            buf.putInt(EmulatorClock.nanoOfSecond(order.getCreatedAtNanos()));
+            buf.put(order.getSource() != null ? (byte) order.getSource().ordinal() : -1);
+        } finally {
+            commit(buf);
+        }
+    }
+
+    /**
+     * Занимает место под запись и возвращает буфер на нём, ограниченный концом записи: поле длины остаётся
+     * нулевым до {@link #commit(ByteBuffer)}, который вызывается в {@code finally}.
+     * Запись, не помещающаяся в остаток сегмента, уходит в следующий; занявший переход помечает конец сегмента.
+     */
+    private ByteBuffer begin(byte type, int payloadSize) {
+        int size = 4 + 1 + payloadSize;
+        if (size > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("Journal record of " + size + " bytes exceeds segment " + segmentSize);
+        }
+        while (true) {
+            long position = tail.get();
+            long index = position / segmentSize;
+            int offset = (int) (position % segmentSize);
+            if (offset + size <= segmentSize) {
+                if (tail.compareAndSet(position, position + size)) {
+                    ByteBuffer buf = segment(index).duplicate();
+                    buf.limit(offset + size);
+                    buf.position(offset);
+                    buf.mark();
+                    buf.putInt(0);
+                    buf.put(type);
+                    return buf;
+                }
+            } else if (tail.compareAndSet(position, (index + 1) * segmentSize)) {
+                endSegment(index, offset);
+            }
+        }
+    }
+
+    /**
+     * Публикует длину записи. Если данные записаны не до конца (заполнение бросило исключение),
+     * запись помечается {@link #SKIP}: занятое место пропускается при чтении, а не обрывает журнал.
+     */
+    private void commit(ByteBuffer buf) {
+        boolean complete = buf.position() == buf.limit();
+        int end = buf.limit();
+        buf.reset();
+        int start = buf.position();
+        if (!complete) {
+            buf.put(start + 4, SKIP);
+        }
+        // Данные записи видны раньше длины: читатель не примет недописанную запись за закоммиченную
+        VarHandle.releaseFence();
+        buf.putInt(start, end - start - 4);
+        if (!complete) {
+            return;
+        }
+        records.incrementAndGet();
+        int syncEvery = config.getSyncEveryRecords();
+        if (syncEvery > 0 && sinceSync.incrementAndGet() % syncEvery == 0) {
+            syncer.execute(this::force);
+        }
+    }
+
+    private void endSegment(long index, int offset) {
+        MappedByteBuffer previous = segment(index);
+        if (segmentSize - offset >= 4) {
+            previous.putInt(offset, END_OF_SEGMENT);
+        }
+        segment(index + 1);
+        segments.remove(index - 1);
+        if (syncer != null) {
+            syncer.execute(previous::force);
+        }
+    }
+
+    private MappedByteBuffer segment(long index) {
+        return segments.computeIfAbsent(index, i -> {
+            try {
+                return channel.map(FileChannel.MapMode.READ_WRITE, i * segmentSize, segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map journal segment at " + i * segmentSize, e);
+            }
+        });
+    }
+
+    private void force() {
+        segments.values().forEach(MappedByteBuffer::force);
+    }
+
+    private void startSyncer() {
+        if (config.getSyncIntervalMs() <= 0 && config.getSyncEveryRecords() <= 0) {
+            return;
+        }
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (config.getSyncIntervalMs() > 0) {
+            syncer.scheduleWithFixedDelay(this::force,
+                    config.getSyncIntervalMs(), config.getSyncIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static long readHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IllegalStateException("Not a command journal: " + path);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported journal version " + version + ": " + path);
+        }
+        return header.getLong();
+    }
+
+    /**
+     * Проходит записи от начала журнала до первой незакоммиченной; возвращает позицию для дозаписи.
+     */
+    private static Cursor walk(FileChannel channel, long segmentSize, Visitor visitor) throws IOException {
+        long base = 0;
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+        buf.position(HEADER_SIZE);
+        long count = 0;
+        while (true) {
+            int length = buf.remaining() >= 4 ? buf.getInt(buf.position()) : END_OF_SEGMENT;
+            if (length == 0) {
+                return new Cursor(base, buf.position(), count);
+            }
+            if (length == END_OF_SEGMENT) {
+                base += segmentSize;
+                if (base >= channel.size()) {
+                    return new Cursor(base, 0, count);
+                }
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, base, segmentSize);
+                continue;
+            }
+            int start = buf.position() + 4;
+            buf.position(start + length);
+            if (buf.get(start) == SKIP) {
+                continue;
+            }
+            if (visitor != null) {
+                dispatch(buf.duplicate().position(start), visitor);
+            }
+            count++;
+        }
+    }
+
+    private static void dispatch(ByteBuffer buf, Visitor visitor) {
+        byte type = buf.get();
+        switch (type) {
+            case SEED -> visitor.seed(readOrder(buf));
+            case PLACE -> visitor.place(readOrder(buf));
+            case CANCEL -> visitor.cancel(readString(buf), readUuid(buf));
+            case REPLACE -> visitor.replace(readString(buf), readUuid(buf), readUuid(buf), buf.getLong(), buf.getLong());
+            case RESET -> visitor.reset();
+            case ACCOUNT -> visitor.account(toDecimal(readString(buf)), readPositions(buf));
+            case TRADES -> readTrades(buf, visitor);
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static Order readOrder(ByteBuffer buf) {
+        UUID id = readUuid(buf);
+        String instrumentId = readString(buf);
+        String accountId = readString(buf);
+        OrderDirection direction = OrderDirection.values()[buf.get()];
+        OrderType type = OrderType.values()[buf.get()];
+        long price = buf.getLong();
+        long quantity = buf.getLong();
+        long filled = buf.getLong();
+        OrderStatus status = OrderStatus.values()[buf.get()];
+        long createdAt = EmulatorClock.toEpochNanos(buf.getLong(), buf.getInt());
+        byte source = buf.get();
+        return Order.builder()
+                .id(id)
+                .instrumentId(instrumentId)
+                .accountId(accountId)
+                .direction(direction)
+                .type(type)
+                .price(price)
+                .quantity(quantity)
+                .filledQuantity(filled)
+                .status(status)
+                .createdAtNanos(createdAt)
+                .source(source >= 0 ? OrderSource.values()[source] : null)
+                .build();
+    }
+
+    private static void readTrades(ByteBuffer buf, Visitor visitor) {
+        String instrumentId = readString(buf);
+        int count = buf.getInt();
+        for (int i = 0; i < count; i++) {
+            visitor.trade(instrumentId, readUuid(buf), readUuid(buf), buf.getLong(), buf.getLong());
+        }
+    }
+
+    private static List<Position> readPositions(ByteBuffer buf) {
+        int count = buf.getInt();
+        List<Position> positions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            positions.add(new Position(readString(buf), buf.getLong(),
+                    toDecimal(readString(buf)), toDecimal(readString(buf))));
+        }
+        return positions;
+    }
+
+    private static String decimalString(BigDecimal value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static BigDecimal toDecimal(String value) {
+        return value != null ? new BigDecimal(value) : null;
+    }
+
+    /**
+     * Размер строки в записи; длина пишется в {@code short}, поэтому более длинная строка отклоняется
+     * до того, как под запись занято место.
+     */
+    private static int sizeOf(String value) {
+        if (value != null && value.length() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String is too long for journal: " + value.length() + " chars");
+        }
+        return 2 + (value != null ? 2 * value.length() : 0);
+    }
+
+    private static void putString(ByteBuffer buf, String value) {
+        if (value == null) {
+            buf.putShort((short) -1);
+            return;
+        }
+        buf.putShort((short) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buf.putChar(value.charAt(i));
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        short length = buf.getShort();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buf.getChar();
+        }
+        return new String(chars);
+    }
+
+    private static void putUuid(ByteBuffer buf, UUID id) {
+        buf.putLong(id != null ? id.getMostSignificantBits() : 0);
+        buf.putLong(id != null ? id.getLeastSignificantBits() : 0);
+    }
+
+    private static UUID readUuid(ByteBuffer buf) {
+        long msb = buf.getLong();
+        long lsb = buf.getLong();
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+
+    private record Cursor(long base, int position, long records) {
+    }
+
+    /**
+     * Получатель записей журнала при {@link #replay(Visitor)}, в порядке записи.
+     */
+    public interface Visitor {
+        void seed(Order order);
+
+        void place(Order order);
+
+        void cancel(String instrumentId, UUID orderId);
+
+        void replace(String instrumentId, UUID orderId, UUID newOrderId, long quantity, long price);
+
+        void reset();
+
+        void account(BigDecimal balance, List<Position> positions);
+
+        /**
+         * Сделка, записанная после команды; восстановлению не нужна, используется для сверки.
+         */
+        default void trade(String instrumentId, UUID aggressorOrderId, UUID passiveOrderId, long price, long quantity) {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.tinkoff.invest.emulator.core.journal;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import ru.tinkoff.invest.emulator.core.matching.MatchingResult;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.Position;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+import ru.tinkoff.invest.emulator.core.state.AccountManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Восстановление стаканов и счёта из {@link CommandJournal} при старте, до того как gRPC-сервер
+ * начнёт принимать запросы.
+ * <p>
+ * Пустой журнал начинается со снимка стаканов после инициализации (SEED), иначе стаканы очищаются
+ * и команды журнала исполняются заново через {@link OrderGateway}: матчинг детерминирован, поэтому
+ * получаются те же заявки и остатки, а сделки через обычную подписку приводят счёт к тому же состоянию.
+ */
+@Slf4j
+@Component
+// Снапшот, загруженный при старте, сам попадает в пустой журнал и затем воспроизводится из него
+@DependsOn("snapshotService")
+@RequiredArgsConstructor
+public class JournalRecovery {
+    private final CommandJournal journal;
+    private final OrderBookRegistry orderBookRegistry;
+    private final OrderGateway orderGateway;
+    private final AccountManager accountManager;
+
+    @PostConstruct
+    public void recover() {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        if (journal.size() == 0) {
+            journal.seed(orderBookRegistry.getBooks());
+            log.info("JournalRecovery: new journal seeded with {} orders", journal.size());
+            return;
+        }
+
+        long start = System.nanoTime();
+        orderBookRegistry.clear();
+        accountManager.reset().join();
+        journal.replay(new CommandJournal.Visitor() {
+            @Override
+            public void seed(Order order) {
+                OrderBookManager book = find(order.getInstrumentId());
+                if (book != null) {
+                    book.addOrder(order);
+                }
+            }
+
+            @Override
+            public void place(Order order) {
+                if (find(order.getInstrumentId()) != null) {
+                    execute("place " + order.getId(), () -> orderGateway.place(order));
+                }
+            }
+
+            @Override
+            public void cancel(String instrumentId, UUID orderId) {
+                execute("cancel " + orderId, () -> orderGateway.cancel(orderId));
+            }
+
+            @Override
+            public void replace(String instrumentId, UUID orderId, UUID newOrderId, long quantity, long price) {
+                execute("replace " + orderId, () -> orderGateway.replace(orderId, newOrderId, quantity, price));
+            }
+
+            @Override
+            public void reset() {
+                // Сброс счёта встаёт после сделок, уже отданных в шину
+                accountManager.reset().join();
+                orderBookRegistry.clear();
+            }
+
+            @Override
+            public void account(BigDecimal balance, List<Position> positions) {
+                accountManager.restore(balance, positions).join();
+            }
+        });
+        accountManager.awaitTrades().join();
+        log.info("JournalRecovery: replayed {} commands in {} ms, {} orders in books",
+                journal.size(), (System.nanoTime() - start) / 1_000_000, orderBookRegistry.getAllOrders().size());
+    }
+
+    /**
+     * Команда пишется в журнал до исполнения, поэтому в нём есть и те, что упали в живом прогоне:
+     * при воспроизведении они падают так же, и это не должно останавливать старт эмулятора.
+     */
+    private void execute(String command, Supplier<CompletableFuture<MatchingResult>> action) {
+        try {
+            action.get().join();
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.warn("JournalRecovery: {} failed as in the original run: {}", command, cause.toString());
+        }
+    }
+
+    private OrderBookManager find(String instrumentId) {
+        OrderBookManager book = orderBookRegistry.find(instrumentId);
+        if (book == null) {
+            // Инструмент убрали из watchlist после записи журнала
+            log.warn("JournalRecovery: skipping command for unknown instrument {}", instrumentId);
+        }
+        return book;
+    }
+}
@@ -0,0 +1,257 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Единственный писатель стакана: команды (post, cancel, replace) от любых потоков попадают
+ * в заранее выделенный кольцевой буфер и исполняются одним потоком строго в порядке номеров.
+ * <p>
+ * Схема как в LMAX Disruptor: производитель захватывает номер слота через CAS, заполняет слот и публикует
+ * его, записывая номер круга в {@code published}. Писатель забирает все подряд опубликованные слоты пачкой,
+ * берёт write lock стакана один раз на пачку (он нужен только для читателей снапшотов) и завершает
+ * future уже после отпускания блокировки. Если буфер полон, производитель ждёт, пока писатель
+ * освободит место.
+ */
+@Slf4j
+public final class BookSequencer implements AutoCloseable {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 1_000_000;
+
+    private final OrderBookManager book;
+    private final OrderCommandHandler handler;
+
+    private final OrderCommand[] slots;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicIntegerArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long consumed = -1;
+
+    // Результаты пачки: копируются из слотов, чтобы освободить буфер до завершения future
+    private final CompletableFuture<?>[] pendingFutures;
+    private final MatchingResult[] pendingResults;
+    private final Throwable[] pendingErrors;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean writerParked;
+
+    BookSequencer(OrderBookManager book, OrderCommandHandler handler, int bufferSize) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Ring buffer size must be a power of two, got " + bufferSize);
+        }
+        this.book = book;
+        this.handler = handler;
+        this.slots = new OrderCommand[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            slots[i] = new OrderCommand();
+        }
+        this.mask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.published = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            published.set(i, -1);
+        }
+        this.pendingFutures = new CompletableFuture<?>[bufferSize];
+        this.pendingResults = new MatchingResult[bufferSize];
+        this.pendingErrors = new Throwable[bufferSize];
+
+        String ticker = book.getInstrument().getTicker() != null ? book.getInstrument().getTicker() : book.getInstrumentId();
+        this.writer = new Thread(this::runWriter, "sequencer-" + ticker);
+        this.writer.setDaemon(true);
+    }
+
+    void start() {
+        writer.start();
+        log.info("Sequencer started for {} with ring buffer of {} slots", book.getInstrumentId(), slots.length);
+    }
+
+    public CompletableFuture<MatchingResult> place(Order order) {
+        CompletableFuture<MatchingResult> future = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = slot(sequence);
+        command.type = OrderCommand.Type.PLACE;
+        command.order = order;
+        command.future = future;
+        publish(sequence);
+        return future;
+    }
+
+    public CompletableFuture<MatchingResult> cancel(UUID orderId) {
+        CompletableFuture<MatchingResult> future = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = slot(sequence);
+        command.type = OrderCommand.Type.CANCEL;
+        command.orderId = orderId;
+        command.future = future;
+        publish(sequence);
+        return future;
+    }
+
+    public CompletableFuture<MatchingResult> replace(UUID orderId, UUID newOrderId, long quantity, long price) {
+        CompletableFuture<MatchingResult> future = new CompletableFuture<>();
+        long sequence = claim();
+        OrderCommand command = slot(sequence);
+        command.type = OrderCommand.Type.REPLACE;
+        command.orderId = orderId;
+        command.newOrderId = newOrderId;
+        command.quantity = quantity;
+        command.price = price;
+        command.future = future;
+        publish(sequence);
+        return future;
+    }
+
+    private OrderCommand slot(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    private long claim() {
+        while (true) {
+            if (!running) {
+                throw new IllegalStateException("Sequencer for " + book.getInstrumentId() + " is stopped");
+            }
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - slots.length > consumed) {
+                // Буфер полон: ждём писателя
+                LockSupport.parkNanos(1_000);
+                continue;
+            }
+            if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private void publish(long sequence) {
+        published.set((int) (sequence & mask), (int) (sequence >>> indexShift));
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) (sequence & mask)) == (int) (sequence >>> indexShift);
+    }
+
+    private void runWriter() {
+        long next = 0;
+        int idle = 0;
+        while (true) {
+            long available = next - 1;
+            long maxClaimed = claimed.get();
+            while (available < maxClaimed && isPublished(available + 1)) {
+                available++;
+            }
+
+            if (available < next) {
+                if (!running) {
+                    break;
+                }
+                idle = idle(idle, next);
+                continue;
+            }
+            idle = 0;
+            processBatch(next, available);
+            next = available + 1;
+        }
+        log.info("Sequencer stopped for {}", book.getInstrumentId());
+    }
+
+    private int idle(int idle, long next) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            writerParked = true;
+            if (!isPublished(next) && running) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            writerParked = false;
+        }
+        return idle + 1;
+    }
+
+    private void processBatch(long from, long to) {
+        int count = (int) (to - from + 1);
+        ReentrantReadWriteLock.WriteLock lock = book.getLock().writeLock();
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                OrderCommand command = slot(from + i);
+                try {
+                    pendingResults[i] = handler.execute(book, command);
+                } catch (RuntimeException e) {
+                    log.error("Sequencer {}: command {} failed", book.getInstrumentId(), command.type, e);
+                    pendingErrors[i] = e;
+                }
+            }
+            // События пачки уходят в дорожки под блокировкой и до ответов клиентам
+            handler.flushEvents();
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < count; i++) {
+            OrderCommand command = slot(from + i);
+            pendingFutures[i] = command.future;
+            command.clear();
+        }
+        consumed = to;
+
+        for (int i = 0; i < count; i++) {
+            complete(i);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(int i) {
+        CompletableFuture<MatchingResult> future = (CompletableFuture<MatchingResult>) pendingFutures[i];
+        Throwable error = pendingErrors[i];
+        MatchingResult result = pendingResults[i];
+        pendingFutures[i] = null;
+        pendingErrors[i] = null;
+        pendingResults[i] = null;
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(result);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Команды, захваченные в момент остановки, писатель уже не обработает
+        IllegalStateException stopped = new IllegalStateException("Sequencer for " + book.getInstrumentId() + " is stopped");
+        for (long sequence = consumed + 1; sequence <= claimed.get(); sequence++) {
+            while (!isPublished(sequence)) {
+                Thread.onSpinWait();
+            }
+            OrderCommand command = slot(sequence);
+            if (command.future != null) {
+                command.future.completeExceptionally(stopped);
+            }
+            command.clear();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.journal.CommandJournal;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.Position;
+import ru.tinkoff.invest.emulator.core.model.Trade;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Офлайн-воспроизведение журнала команд ({@link CommandJournal}) через {@link ProRataMatchingEngine}
+ * со сверкой сделок с записанными.
+ * <p>
+ * Без Spring, gRPC и доставки событий: стаканы инструментов из журнала создаются заново, команды
+ * исполняются одним потоком через тот же {@link OrderCommandHandler}, что и в эмуляторе. Сделки каждой
+ * команды сравниваются с записанными после неё (заявка-агрессор, пассивная заявка, цена, количество),
+ * поэтому изменение движка проверяется на часах реального трафика за секунды.
+ * <p>
+ * Запуск: {@code ./gradlew replayJournal -Pjournal=data/journal.bin [-PbookType=LADDER]}.
+ */
+public class JournalReplayer {
+    private static final int MAX_REPORTED_MISMATCHES = 20;
+
+    private final BookType bookType;
+
+    public JournalReplayer(BookType bookType) {
+        this.bookType = bookType;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: JournalReplayer <journal> [TREE_MAP|LADDER]");
+            System.exit(2);
+        }
+        BookType bookType = args.length > 1 ? BookType.valueOf(args[1]) : BookType.TREE_MAP;
+        // Matching пишет лог на каждую заявку: при воспроизведении он занял бы большую часть времени
+        LoggingSystem.get(JournalReplayer.class.getClassLoader())
+                .setLogLevel("ru.tinkoff.invest.emulator", LogLevel.WARN);
+
+        ReplayReport report = new JournalReplayer(bookType).replay(Path.of(args[0]));
+        System.out.println(report.summary());
+        System.exit(report.mismatches() == 0 ? 0 : 1);
+    }
+
+    public ReplayReport replay(Path journal) throws IOException {
+        Set<String> instruments = new LinkedHashSet<>();
+        CommandJournal.read(journal, new InstrumentCollector(instruments));
+
+        // Стаканы приходят из журнала со своим временем; часы нужны только заменам и сделкам
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(properties(instruments), clock);
+        registry.init();
+        EventBus eventBus = new EventBus(1);
+        try {
+            Session session = new Session(registry,
+                    new OrderCommandHandler(new ProRataMatchingEngine(registry, eventBus, clock), eventBus, clock));
+            long start = System.nanoTime();
+            long records = CommandJournal.read(journal, session);
+            session.finish();
+            return session.report(records, System.nanoTime() - start);
+        } finally {
+            eventBus.shutdown();
+        }
+    }
+
+    /**
+     * Стаканы без начальной ликвидности: всё содержимое приходит из журнала.
+     */
+    private EmulatorProperties properties(Set<String> instruments) {
+        EmulatorProperties props = new EmulatorProperties();
+        EmulatorProperties.OrderBook orderbook = new EmulatorProperties.OrderBook();
+        orderbook.setBookType(bookType);
+        props.setOrderbook(orderbook);
+        for (String instrumentId : instruments) {
+            EmulatorProperties.Instrument instrument = new EmulatorProperties.Instrument();
+            instrument.setUid(instrumentId);
+            instrument.setTicker(instrumentId);
+            instrument.setMinPriceIncrement(new BigDecimal("0.01"));
+            props.getInstruments().add(instrument);
+        }
+        return props;
+    }
+
+    private record InstrumentCollector(Set<String> instruments) implements CommandJournal.Visitor {
+        @Override
+        public void seed(Order order) {
+            instruments.add(order.getInstrumentId());
+        }
+
+        @Override
+        public void place(Order order) {
+            instruments.add(order.getInstrumentId());
+        }
+
+        @Override
+        public void cancel(String instrumentId, UUID orderId) {
+            instruments.add(instrumentId);
+        }
+
+        @Override
+        public void replace(String instrumentId, UUID orderId, UUID newOrderId, long quantity, long price) {
+            instruments.add(instrumentId);
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void account(BigDecimal balance, List<Position> positions) {
+        }
+    }
+
+    /**
+     * Исполняет команды журнала и сверяет сделки. Сделки команды записываются сразу после неё под
+     * блокировкой стакана, но между ними могут оказаться записи других инструментов, поэтому
+     * ожидающие сверки сделки хранятся по инструменту.
+     */
+    private static final class Session implements CommandJournal.Visitor {
+        private final OrderBookRegistry registry;
+        private final OrderCommandHandler handler;
+        private final Map<String, ArrayDeque<Trade>> produced = new HashMap<>();
+        private final List<String> firstMismatches = new ArrayList<>();
+        private long orders;
+        private long producedTrades;
+        private long recordedTrades;
+        private long mismatches;
+        private long unrecorded;
+
+        Session(OrderBookRegistry registry, OrderCommandHandler handler) {
+            this.registry = registry;
+            this.handler = handler;
+        }
+
+        @Override
+        public void seed(Order order) {
+            registry.get(order.getInstrumentId()).addOrder(order);
+        }
+
+        @Override
+        public void place(Order order) {
+            OrderBookManager book = registry.get(order.getInstrumentId());
+            executed(book, handler.place(book, order));
+        }
+
+        @Override
+        public void cancel(String instrumentId, UUID orderId) {
+            handler.cancel(registry.get(instrumentId), orderId);
+            handler.flushEvents();
+        }
+
+        @Override
+        public void replace(String instrumentId, UUID orderId, UUID newOrderId, long quantity, long price) {
+            OrderBookManager book = registry.get(instrumentId);
+            executed(book, handler.replace(book, orderId, newOrderId, quantity, price));
+        }
+
+        @Override
+        public void reset() {
+            dropUnrecorded();
+            registry.clear();
+        }
+
+        @Override
+        public void account(BigDecimal balance, List<Position> positions) {
+            // Счёт на матчинг не влияет
+        }
+
+        @Override
+        public void trade(String instrumentId, UUID aggressorOrderId, UUID passiveOrderId, long price, long quantity) {
+            recordedTrades++;
+            ArrayDeque<Trade> pending = produced.get(instrumentId);
+            Trade trade = pending != null ? pending.pollFirst() : null;
+            if (trade == null) {
+                mismatch("recorded trade was not produced: aggressor=" + aggressorOrderId
+                        + " passive=" + passiveOrderId + " price=" + price + " qty=" + quantity);
+                return;
+            }
+            if (!Objects.equals(trade.getAggressorOrderId(), aggressorOrderId)
+                    || !Objects.equals(trade.getPassiveOrderId(), passiveOrderId)
+                    || trade.getPrice() != price
+                    || trade.getQuantity() != quantity) {
+                mismatch("trade differs: recorded aggressor=" + aggressorOrderId + " passive=" + passiveOrderId
+                        + " price=" + price + " qty=" + quantity
+                        + ", produced aggressor=" + trade.getAggressorOrderId() + " passive=" + trade.getPassiveOrderId()
+                        + " price=" + trade.getPrice() + " qty=" + trade.getQuantity());
+            }
+        }
+
+        void finish() {
+            dropUnrecorded();
+        }
+
+        ReplayReport report(long records, long nanos) {
+            // Журнал без записанных сделок: лишними считать нечего
+            long total = recordedTrades > 0 ? mismatches + unrecorded : mismatches;
+            return new ReplayReport(records, orders, producedTrades, recordedTrades, total,
+                    List.copyOf(firstMismatches), nanos);
+        }
+
+        private void executed(OrderBookManager book, MatchingResult result) {
+            // Событий никто не слушает, но буфер потока нужно освобождать
+            handler.flushEvents();
+            orders++;
+            if (!result.trades().isEmpty()) {
+                producedTrades += result.trades().size();
+                produced.computeIfAbsent(book.getInstrumentId(), k -> new ArrayDeque<>()).addAll(result.trades());
+            }
+        }
+
+        private void dropUnrecorded() {
+            for (ArrayDeque<Trade> pending : produced.values()) {
+                unrecorded += pending.size();
+                pending.clear();
+            }
+        }
+
+        private void mismatch(String description) {
+            mismatches++;
+            if (firstMismatches.size() < MAX_REPORTED_MISMATCHES) {
+                firstMismatches.add(description);
+            }
+        }
+    }
+}
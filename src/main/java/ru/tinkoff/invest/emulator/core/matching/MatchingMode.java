@@ -0,0 +1,11 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+/**
+ * Способ сериализации изменений стакана.
+ */
+public enum MatchingMode {
+    /** Вызывающий поток сам берёт write lock стакана (поведение по умолчанию). */
+    LOCKING,
+    /** Один поток-писатель на стакан, команды приходят через кольцевой буфер {@link BookSequencer}. */
+    SEQUENCER
+}
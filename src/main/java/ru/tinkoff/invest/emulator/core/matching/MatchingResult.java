@@ -0,0 +1,22 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.Trade;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Результат команды над стаканом.
+ *
+ * @param accepted {@code false}, если снимаемая или заменяемая заявка уже не стоит в стакане
+ * @param order    выставленная (для replace — новая) или снятая заявка: копия состояния на момент завершения команды,
+ *                 не меняющаяся после снятия блокировки
+ * @param trades   сделки, порождённые командой
+ */
+public record MatchingResult(boolean accepted, Order order, List<Trade> trades) {
+
+    static MatchingResult rejected() {
+        return new MatchingResult(false, null, Collections.emptyList());
+    }
+}
@@ -0,0 +1,32 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import ru.tinkoff.invest.emulator.core.model.Order;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Слот кольцевого буфера {@link BookSequencer}. Создаётся один раз и переиспользуется:
+ * производитель заполняет поля до публикации, писатель читает их и очищает после исполнения.
+ */
+final class OrderCommand {
+    enum Type { PLACE, CANCEL, REPLACE }
+
+    Type type;
+    Order order;          // PLACE
+    UUID orderId;         // CANCEL, REPLACE
+    UUID newOrderId;      // REPLACE
+    long quantity;        // REPLACE
+    long price;           // REPLACE, в шагах цены
+    CompletableFuture<MatchingResult> future;
+
+    void clear() {
+        type = null;
+        order = null;
+        orderId = null;
+        newOrderId = null;
+        quantity = 0;
+        price = 0;
+        future = null;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.event.OrderStateChangedEvent;
+import ru.tinkoff.invest.emulator.core.journal.CommandJournal;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.OrderType;
+import ru.tinkoff.invest.emulator.core.model.Trade;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Исполнение команд над стаканом. Вызывается под write lock стакана — либо потоком клиента
+ * ({@link MatchingMode#LOCKING}), либо писателем {@link BookSequencer}; в обоих режимах
+ * matching и постановка остатка в стакан происходят атомарно. События записываются в {@link EventBus}
+ * и отдаются в дорожки через {@link #flushEvents()} перед снятием блокировки.
+ * <p>
+ * Принятая команда пишется в {@link CommandJournal} до исполнения, под той же блокировкой,
+ * поэтому порядок записей по инструменту совпадает с порядком исполнения.
+ */
+class OrderCommandHandler {
+    private final ProRataMatchingEngine matchingEngine;
+    private final EventBus eventBus;
+    private final EmulatorClock clock;
+    private final CommandJournal journal;
+
+    OrderCommandHandler(ProRataMatchingEngine matchingEngine, EventBus eventBus, EmulatorClock clock) {
+        this(matchingEngine, eventBus, clock, CommandJournal.disabled());
+    }
+
+    OrderCommandHandler(ProRataMatchingEngine matchingEngine, EventBus eventBus, EmulatorClock clock,
+                        CommandJournal journal) {
+        this.matchingEngine = matchingEngine;
+        this.eventBus = eventBus;
+        this.clock = clock;
+        this.journal = journal;
+    }
+
+    MatchingResult execute(OrderBookManager book, OrderCommand command) {
+        return switch (command.type) {
+            case PLACE -> place(book, command.order);
+            case CANCEL -> cancel(book, command.orderId);
+            case REPLACE -> replace(book, command.orderId, command.newOrderId, command.quantity, command.price);
+        };
+    }
+
+    /**
+     * Отдаёт в дорожки события, записанные текущим потоком. Вызывается под write lock, непосредственно
+     * перед его снятием: так порядок событий в дорожке совпадает с порядком исполнения на стакане.
+     */
+    void flushEvents() {
+        eventBus.flush();
+    }
+
+    /**
+     * @throws IllegalArgumentException если цена лимитной заявки вне окна цен стакана; команда не журналируется
+     */
+    MatchingResult place(OrderBookManager book, Order order) {
+        book.checkPrice(order);
+        journal.place(order);
+        MatchingResult result = match(book, order);
+        journal.trades(book.getInstrumentId(), result.trades());
+        return result;
+    }
+
+    private MatchingResult match(OrderBookManager book, Order order) {
+        List<Trade> trades = matchingEngine.executeOrder(order);
+        // If Limit and not fully filled, add remainder to book
+        if (order.getType() == OrderType.LIMIT && !order.isFullyFilled()) {
+            book.addOrder(order);
+        }
+        // Копия под блокировкой: после её снятия стоящую заявку меняют чужие сделки
+        return new MatchingResult(true, order.copy(), trades);
+    }
+
+    MatchingResult cancel(OrderBookManager book, UUID orderId) {
+        Order order = book.getOrder(orderId);
+        if (order == null) {
+            return MatchingResult.rejected();
+        }
+        journal.cancel(book.getInstrumentId(), orderId);
+        if (!book.removeOrder(orderId)) {
+            return MatchingResult.rejected();
+        }
+        return new MatchingResult(true, order, Collections.emptyList());
+    }
+
+    /**
+     * Снимает заявку и выставляет вместо неё новую с теми же параметрами, кроме количества и цены.
+     * Новая заявка теряет приоритет по времени.
+     *
+     * @throws IllegalArgumentException если новая цена вне окна цен стакана; старая заявка остаётся
+     */
+    MatchingResult replace(OrderBookManager book, UUID orderId, UUID newOrderId, long quantity, long price) {
+        Order existing = book.getOrder(orderId);
+        if (existing == null) {
+            return MatchingResult.rejected();
+        }
+        Order replacement = Order.builder()
+                .id(newOrderId)
+                .instrumentId(existing.getInstrumentId())
+                .accountId(existing.getAccountId())
+                .direction(existing.getDirection())
+                .type(existing.getType())
+                .price(price)
+                .quantity(quantity)
+                .source(existing.getSource())
+                .createdAtNanos(clock.nanos())
+                .build();
+        book.checkPrice(replacement);
+        journal.replace(book.getInstrumentId(), orderId, newOrderId, quantity, price);
+        if (!book.removeOrder(orderId)) {
+            return MatchingResult.rejected();
+        }
+
+        eventBus.record(new OrderStateChangedEvent(this, replacement.copy()));
+        MatchingResult result = match(book, replacement);
+        journal.trades(book.getInstrumentId(), result.trades());
+        return result;
+    }
+}
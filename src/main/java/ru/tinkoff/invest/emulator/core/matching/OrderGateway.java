@@ -0,0 +1,159 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.journal.CommandJournal;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Точка входа команд над стаканами (post, cancel, replace) из gRPC и админки.
+ * <p>
+ * В режиме {@link MatchingMode#LOCKING} команда исполняется в потоке вызывающего под write lock стакана
+ * и возвращает уже завершённый future. В режиме {@link MatchingMode#SEQUENCER} команда ставится
+ * в кольцевой буфер {@link BookSequencer} своего инструмента.
+ */
+@Slf4j
+@Service
+public class OrderGateway {
+    private final OrderBookRegistry orderBookRegistry;
+    private final EmulatorProperties properties;
+    private final OrderCommandHandler handler;
+    private final Map<String, BookSequencer> sequencers = new HashMap<>();
+
+    public OrderGateway(OrderBookRegistry orderBookRegistry,
+                        ProRataMatchingEngine matchingEngine,
+                        EventBus eventBus,
+                        EmulatorProperties properties,
+                        EmulatorClock clock) {
+        this(orderBookRegistry, matchingEngine, eventBus, properties, clock, CommandJournal.disabled());
+    }
+
+    @Autowired
+    public OrderGateway(OrderBookRegistry orderBookRegistry,
+                        ProRataMatchingEngine matchingEngine,
+                        EventBus eventBus,
+                        EmulatorProperties properties,
+                        EmulatorClock clock,
+                        CommandJournal journal) {
+        this.orderBookRegistry = orderBookRegistry;
+        this.properties = properties;
+        this.handler = new OrderCommandHandler(matchingEngine, eventBus, clock, journal);
+    }
+
+    @PostConstruct
+    public void init() {
+        EmulatorProperties.Matching matching = properties.getMatching();
+        if (matching == null || matching.getMode() != MatchingMode.SEQUENCER) {
+            log.info("OrderGateway: matching mode LOCKING");
+            return;
+        }
+        for (OrderBookManager book : orderBookRegistry.getBooks()) {
+            BookSequencer sequencer = new BookSequencer(book, handler, matching.getRingBufferSize());
+            sequencers.put(book.getInstrumentId(), sequencer);
+            sequencer.start();
+        }
+        log.info("OrderGateway: matching mode SEQUENCER for {} instruments", sequencers.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sequencers.values().forEach(BookSequencer::close);
+    }
+
+    /**
+     * Исполняет заявку и ставит лимитный остаток в стакан.
+     *
+     * @throws IllegalArgumentException если инструмент не торгуется в эмуляторе
+     */
+    public CompletableFuture<MatchingResult> place(Order order) {
+        OrderBookManager book = orderBookRegistry.get(order.getInstrumentId());
+        BookSequencer sequencer = sequencers.get(book.getInstrumentId());
+        if (sequencer != null) {
+            return sequencer.place(order);
+        }
+        return underLock(book, () -> handler.place(book, order));
+    }
+
+    /**
+     * Снимает заявку; результат с {@code accepted = false}, если заявки уже нет в стакане.
+     */
+    public CompletableFuture<MatchingResult> cancel(UUID orderId) {
+        OrderBookManager book = orderBookRegistry.findByOrderId(orderId);
+        if (book == null) {
+            return CompletableFuture.completedFuture(MatchingResult.rejected());
+        }
+        BookSequencer sequencer = sequencers.get(book.getInstrumentId());
+        if (sequencer != null) {
+            return sequencer.cancel(orderId);
+        }
+        return underLock(book, () -> handler.cancel(book, orderId));
+    }
+
+    /**
+     * Заменяет заявку новой с другими количеством и ценой (в шагах цены).
+     */
+    public CompletableFuture<MatchingResult> replace(UUID orderId, UUID newOrderId, long quantity, long price) {
+        OrderBookManager book = orderBookRegistry.findByOrderId(orderId);
+        if (book == null) {
+            return CompletableFuture.completedFuture(MatchingResult.rejected());
+        }
+        BookSequencer sequencer = sequencers.get(book.getInstrumentId());
+        if (sequencer != null) {
+            return sequencer.replace(orderId, newOrderId, quantity, price);
+        }
+        return underLock(book, () -> handler.replace(book, orderId, newOrderId, quantity, price));
+    }
+
+    /**
+     * Выполняет {@code action} под write lock всех стаканов, взятыми в порядке реестра: ни одна команда
+     * (и писатель {@link BookSequencer}) не исполняется между его шагами. Для сброса и загрузки состояния
+     * из админки; долгие ожидания — после возврата, по возвращённому future.
+     */
+    public <T> T exclusive(Supplier<T> action) {
+        List<Lock> locks = orderBookRegistry.getBooks().stream()
+                .map(book -> (Lock) book.getLock().writeLock())
+                .toList();
+        locks.forEach(Lock::lock);
+        try {
+            return action.get();
+        } finally {
+            try {
+                handler.flushEvents();
+            } finally {
+                for (int i = locks.size() - 1; i >= 0; i--) {
+                    locks.get(i).unlock();
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<MatchingResult> underLock(OrderBookManager book, Supplier<MatchingResult> command) {
+        Lock lock = book.getLock().writeLock();
+        lock.lock();
+        try {
+            return CompletableFuture.completedFuture(command.get());
+        } finally {
+            try {
+                handler.flushEvents();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
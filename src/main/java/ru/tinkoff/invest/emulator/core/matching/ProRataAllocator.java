@@ -0,0 +1,74 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import java.math.BigInteger;
+
+/**
+ * Pro-rata распределение объёма по заявкам уровня на примитивных массивах.
+ * <p>
+ * Шаг 1: каждой заявке — {@code floor(quantity * size / total)} в точной целочисленной арифметике.
+ * Шаг 2: остаток (хвост) раздаётся по одному лоту в порядке FIFO за один проход.
+ * Одного прохода достаточно: хвост равен сумме дробных частей, поэтому он меньше числа заявок
+ * с ненулевой дробной частью, а у каждой такой заявки ещё есть свободный объём.
+ * <p>
+ * Буферы переиспользуются между вызовами, экземпляр не потокобезопасен:
+ * вызывать только под write lock стакана.
+ */
+public final class ProRataAllocator {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private long[] allocations = new long[INITIAL_CAPACITY];
+
+    /**
+     * Буфер размеров заявок вместимостью не меньше {@code count}. Заполняется вызывающим перед {@link #allocate}.
+     */
+    public long[] sizes(int count) {
+        if (sizes.length < count) {
+            int capacity = Math.max(count, sizes.length * 2);
+            sizes = new long[capacity];
+            allocations = new long[capacity];
+        }
+        return sizes;
+    }
+
+    /**
+     * Распределяет {@code quantity} лотов по первым {@code count} элементам буфера {@link #sizes(int)}.
+     *
+     * @param total сумма размеров, {@code 0 < quantity <= total}
+     * @return буфер аллокаций (действителен до следующего вызова), индексы совпадают с буфером размеров
+     */
+    public long[] allocate(int count, long quantity, long total) {
+        if (quantity <= 0 || quantity > total) {
+            throw new IllegalArgumentException("Quantity " + quantity + " must be in (0, " + total + "]");
+        }
+
+        long distributed = 0;
+        for (int i = 0; i < count; i++) {
+            long share = floorShare(quantity, sizes[i], total);
+            allocations[i] = share;
+            distributed += share;
+        }
+
+        long tail = quantity - distributed;
+        for (int i = 0; i < count && tail > 0; i++) {
+            if (allocations[i] < sizes[i]) {
+                allocations[i]++;
+                tail--;
+            }
+        }
+        return allocations;
+    }
+
+    static long floorShare(long quantity, long size, long total) {
+        long high = Math.multiplyHigh(quantity, size);
+        long low = quantity * size;
+        if (high == 0 && low >= 0) {
+            return low / total;
+        }
+        // Произведение не помещается в long — считаем через BigInteger (только для гигантских объёмов)
+        return BigInteger.valueOf(quantity)
+                .multiply(BigInteger.valueOf(size))
+                .divide(BigInteger.valueOf(total))
+                .longValueExact();
+    }
+}
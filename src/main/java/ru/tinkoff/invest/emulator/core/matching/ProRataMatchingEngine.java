@@ -2,22 +2,28 @@ package ru.tinkoff.invest.emulator.core.matching;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
 import ru.tinkoff.invest.emulator.core.event.OrderStateChangedEvent;
 import ru.tinkoff.invest.emulator.core.event.TradeExecutedEvent;
 import ru.tinkoff.invest.emulator.core.model.*;
+import ru.tinkoff.invest.emulator.core.orderbook.BookSide;
 import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
 
-import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ProRataMatchingEngine {
-    private final OrderBookManager orderBookManager;
-    private final ApplicationEventPublisher eventPublisher;
+    private final OrderBookRegistry orderBookRegistry;
+    private final EventBus eventBus;
+    private final EmulatorClock clock;
+    // Scratch-буферы matching по инструментам: каждый используется только под write lock своего стакана
+    private final Map<String, Scratch> scratchByInstrument = new ConcurrentHashMap<>();
 
     public List<Trade> executeOrder(Order aggressorOrder) {
         log.info("MATCHING: Starting execution of order {} [{}] {} {} @ {} qty={}",
@@ -28,6 +34,9 @@ public class ProRataMatchingEngine {
                 aggressorOrder.getPrice(),
                 aggressorOrder.getQuantity());
 
+        OrderBookManager orderBookManager = orderBookRegistry.get(aggressorOrder.getInstrumentId());
+        Scratch scratch = scratchByInstrument.computeIfAbsent(orderBookManager.getInstrumentId(), id -> new Scratch());
+
         orderBookManager.getLock().writeLock().lock();
         boolean bookChanged = false;
         try {
@@ -37,27 +46,31 @@ public class ProRataMatchingEngine {
             }
 
             List<Trade> trades = new ArrayList<>();
-            NavigableMap<BigDecimal, PriceLevel> oppositeSide = getOppositeSide(aggressorOrder.getDirection());
+            BookSide oppositeSide = getOppositeSide(orderBookManager, aggressorOrder.getDirection());
 
             log.debug("MATCHING: Opposite side has {} price levels", oppositeSide.size());
 
-            Iterator<Map.Entry<BigDecimal, PriceLevel>> levelIterator = oppositeSide.entrySet().iterator();
+            long limitPrice = aggressorOrder.getPrice();
+            boolean isLimit = aggressorOrder.getType() != OrderType.MARKET;
+            boolean isBuy = aggressorOrder.getDirection() == OrderDirection.BUY;
 
-            while (aggressorOrder.getRemainingQuantity() > 0 && levelIterator.hasNext()) {
-                Map.Entry<BigDecimal, PriceLevel> entry = levelIterator.next();
-                BigDecimal levelPrice = entry.getKey();
-                PriceLevel level = entry.getValue();
+            while (aggressorOrder.getRemainingQuantity() > 0) {
+                PriceLevel level = oppositeSide.best();
+                if (level == null) {
+                    break;
+                }
+                long levelPrice = level.getPrice();
 
                 log.debug("MATCHING: Checking price level {} with {} orders, total qty={}",
-                        levelPrice, level.getOrdersSortedByTime().size(), level.getTotalQuantity());
+                        levelPrice, level.getOrdersCount(), level.getTotalQuantity());
 
-                if (aggressorOrder.getType() == OrderType.LIMIT) {
-                    if (aggressorOrder.getDirection() == OrderDirection.BUY && levelPrice.compareTo(aggressorOrder.getPrice()) > 0) {
-                        log.debug("MATCHING: BUY limit price {} < ask level {}, stopping", aggressorOrder.getPrice(), levelPrice);
+                if (isLimit) {
+                    if (isBuy && levelPrice > limitPrice) {
+                        log.debug("MATCHING: BUY limit price {} < ask level {}, stopping", limitPrice, levelPrice);
                         break;
                     }
-                    if (aggressorOrder.getDirection() == OrderDirection.SELL && levelPrice.compareTo(aggressorOrder.getPrice()) < 0) {
-                        log.debug("MATCHING: SELL limit price {} > bid level {}, stopping", aggressorOrder.getPrice(), levelPrice);
+                    if (!isBuy && levelPrice < limitPrice) {
+                        log.debug("MATCHING: SELL limit price {} > bid level {}, stopping", limitPrice, levelPrice);
                         break;
                     }
                 }
@@ -66,18 +79,20 @@ public class ProRataMatchingEngine {
 
                 if (quantityToExecute > 0) {
                     log.debug("MATCHING: Executing {} lots at price level {}", quantityToExecute, levelPrice);
-                    List<Trade> levelTrades = executeProRataOnLevel(level, quantityToExecute, levelPrice, aggressorOrder);
+                    List<Trade> levelTrades = executeProRataOnLevel(orderBookManager, scratch, level, quantityToExecute, levelPrice, aggressorOrder);
                     trades.addAll(levelTrades);
                     if (!levelTrades.isEmpty()) {
                         bookChanged = true;
                     }
                 }
 
-                if (level.isEmpty()) {
-                    log.debug("MATCHING: Price level {} is now empty, removing", levelPrice);
-                    levelIterator.remove();
-                    bookChanged = true;
+                if (!level.isEmpty()) {
+                    // Уровень исполнен не полностью — значит, заявка уже исполнена целиком
+                    break;
                 }
+                log.debug("MATCHING: Price level {} is now empty, removing", levelPrice);
+                oppositeSide.remove(levelPrice);
+                bookChanged = true;
             }
 
             if (bookChanged) {
@@ -92,60 +107,49 @@ public class ProRataMatchingEngine {
 
             return trades;
         } finally {
-            orderBookManager.getLock().writeLock().unlock();
+            try {
+                // События уходят в дорожки до unlock, иначе два писателя одного стакана могут отдать их
+                // в порядке, обратном исполнению. Вложенный вызов (gateway, sequencer): события отдаст
+                // тот, кто снимет внешнюю блокировку
+                if (orderBookManager.getLock().getWriteHoldCount() == 1) {
+                    eventBus.flush();
+                }
+            } finally {
+                orderBookManager.getLock().writeLock().unlock();
+            }
         }
     }
 
-    private NavigableMap<BigDecimal, PriceLevel> getOppositeSide(OrderDirection direction) {
+    private BookSide getOppositeSide(OrderBookManager orderBookManager, OrderDirection direction) {
         return direction == OrderDirection.BUY ? orderBookManager.getAsks() : orderBookManager.getBids();
     }
 
-    private List<Trade> executeProRataOnLevel(PriceLevel level, long quantityToExecute, BigDecimal price, Order aggressorOrder) {
-        List<Trade> trades = new ArrayList<>();
+    private List<Trade> executeProRataOnLevel(OrderBookManager orderBookManager, Scratch scratch, PriceLevel level,
+                                              long quantityToExecute, long price, Order aggressorOrder) {
         long totalOnLevel = level.getTotalQuantity();
-        long distributed = 0;
-
-        List<Order> ordersOnLevel = level.getOrdersSortedByTime();
-        Map<Order, Long> allocations = new LinkedHashMap<>();
+        int count = level.getOrdersCount();
 
         log.debug("MATCHING: Pro-Rata allocation: {} lots across {} passive orders (total on level={})",
-                quantityToExecute, ordersOnLevel.size(), totalOnLevel);
-
-        // Step 1: Pro-Rata
-        for (Order passiveOrder : ordersOnLevel) {
-            double share = (double) quantityToExecute * passiveOrder.getRemainingQuantity() / totalOnLevel;
-            long proRataShare = (long) Math.floor(share);
-
-            allocations.put(passiveOrder, proRataShare);
-            distributed += proRataShare;
-            log.trace("MATCHING: Pro-Rata order {} [{}]: share={:.2f}, allocated={}",
-                    passiveOrder.getId(), passiveOrder.getSource(), share, proRataShare);
-        }
-
-        // Step 2: FIFO Tail
-        long tail = quantityToExecute - distributed;
-        if (tail > 0) {
-            log.debug("MATCHING: FIFO tail distribution: {} lots remaining after pro-rata", tail);
-        }
-        while (tail > 0) {
-            for (Order passiveOrder : ordersOnLevel) {
-                if (tail <= 0) break;
-
-                long currentAlloc = allocations.get(passiveOrder);
-                long maxCanAdd = passiveOrder.getRemainingQuantity() - currentAlloc;
-
-                if (maxCanAdd > 0) {
-                    allocations.put(passiveOrder, currentAlloc + 1);
-                    tail--;
-                    log.trace("MATCHING: FIFO +1 to order {}, new alloc={}", passiveOrder.getId(), currentAlloc + 1);
-                }
-            }
+                quantityToExecute, count, totalOnLevel);
+
+        // Step 1-2: Pro-Rata + FIFO Tail
+        OrderNode[] nodes = scratch.nodes(count);
+        long[] sizes = scratch.allocator.sizes(count);
+        int i = 0;
+        for (OrderNode node = level.getFirst(); node != null; node = node.getNext()) {
+            nodes[i] = node;
+            sizes[i] = node.getOrder().getRemainingQuantity();
+            i++;
         }
+        long[] allocations = scratch.allocator.allocate(count, quantityToExecute, totalOnLevel);
 
         // Step 3: Create Trades and Update Orders
-        for (Map.Entry<Order, Long> alloc : allocations.entrySet()) {
-            Order passiveOrder = alloc.getKey();
-            long quantity = alloc.getValue();
+        List<Trade> trades = new ArrayList<>();
+        for (i = 0; i < count; i++) {
+            OrderNode node = nodes[i];
+            nodes[i] = null;
+            Order passiveOrder = node.getOrder();
+            long quantity = allocations[i];
 
             if (quantity > 0) {
                 Trade trade = Trade.builder()
@@ -159,6 +163,7 @@ public class ProRataMatchingEngine {
                         .instrumentId(aggressorOrder.getInstrumentId())
                         .price(price)
                         .quantity(quantity)
+                        .timestampNanos(clock.nanos())
                         .build();
                 trades.add(trade);
 
@@ -168,17 +173,18 @@ public class ProRataMatchingEngine {
                         passiveOrder.getId(), passiveOrder.getSource(),
                         aggressorOrder.getDirection(), price, quantity);
 
-                eventPublisher.publishEvent(new TradeExecutedEvent(this, trade));
+                eventBus.record(new TradeExecutedEvent(this, trade));
 
-                passiveOrder.fill(quantity);
-                eventPublisher.publishEvent(new OrderStateChangedEvent(this, passiveOrder));
+                // Слушатели получают события после снятия блокировки, поэтому в событие идёт копия заявки
+                orderBookManager.fill(node, quantity);
+                eventBus.record(new OrderStateChangedEvent(this, passiveOrder.copy()));
 
                 aggressorOrder.fill(quantity);
-                eventPublisher.publishEvent(new OrderStateChangedEvent(this, aggressorOrder));
+                eventBus.record(new OrderStateChangedEvent(this, aggressorOrder.copy()));
 
                 if (passiveOrder.isFullyFilled()) {
                     log.debug("MATCHING: Passive order {} fully filled, removing from book", passiveOrder.getId());
-                    level.removeOrder(passiveOrder);
+                    level.removeOrder(node);
                     orderBookManager.removeOrderIndex(passiveOrder.getId());
                 }
             }
@@ -186,4 +192,16 @@ public class ProRataMatchingEngine {
 
         return trades;
     }
-}
\ No newline at end of file
+
+    private static final class Scratch {
+        private final ProRataAllocator allocator = new ProRataAllocator();
+        private OrderNode[] nodes = new OrderNode[64];
+
+        OrderNode[] nodes(int count) {
+            if (nodes.length < count) {
+                nodes = new OrderNode[Math.max(count, nodes.length * 2)];
+            }
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import java.util.List;
+
+/**
+ * Итог воспроизведения журнала {@link JournalReplayer}.
+ *
+ * @param records         прочитано записей журнала
+ * @param orders          исполнено заявок (post и replace)
+ * @param producedTrades  сделок при воспроизведении
+ * @param recordedTrades  сделок в журнале; 0 — журнал писался без {@code record-trades}, сверять не с чем
+ * @param mismatches      расхождений с записанными сделками
+ * @param firstMismatches описания первых расхождений
+ */
+public record ReplayReport(long records, long orders, long producedTrades, long recordedTrades,
+                           long mismatches, List<String> firstMismatches, long nanos) {
+
+    public double ordersPerSecond() {
+        return nanos > 0 ? orders * 1_000_000_000.0 / nanos : 0;
+    }
+
+    public boolean verified() {
+        return recordedTrades > 0 && mismatches == 0;
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder(String.format(
+                "Replayed %d records, %d orders in %d ms (%.0f orders/sec): %d trades produced, %d recorded, %d mismatches",
+                records, orders, nanos / 1_000_000, ordersPerSecond(), producedTrades, recordedTrades, mismatches));
+        firstMismatches.forEach(mismatch -> summary.append(System.lineSeparator()).append("  ").append(mismatch));
+        return summary.toString();
+    }
+}
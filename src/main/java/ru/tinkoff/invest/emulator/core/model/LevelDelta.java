@@ -0,0 +1,28 @@
+package ru.tinkoff.invest.emulator.core.model;
+
+import lombok.Value;
+
+/**
+ * Новое состояние одного уровня цены в {@link OrderBookDelta}; {@code quantity == 0} — уровень удалён
+ * (или ушёл за глубину снапшота).
+ */
+@Value
+public class LevelDelta {
+    OrderDirection side; // BUY — bids, SELL — asks
+    long price; // В шагах цены
+    long quantity;
+    int ordersCount;
+    long apiQuantity;
+
+    public static LevelDelta of(OrderDirection side, LevelSnapshot level) {
+        return new LevelDelta(side, level.getPrice(), level.getTotalQuantity(), level.getOrdersCount(), level.getApiQuantity());
+    }
+
+    public static LevelDelta removed(OrderDirection side, long price) {
+        return new LevelDelta(side, price, 0, 0, 0);
+    }
+
+    public boolean isRemoved() {
+        return quantity == 0;
+    }
+}
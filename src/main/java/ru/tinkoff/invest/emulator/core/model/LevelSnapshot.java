@@ -0,0 +1,18 @@
+package ru.tinkoff.invest.emulator.core.model;
+
+import lombok.Value;
+
+/**
+ * Неизменяемые агрегаты уровня цены на момент публикации снапшота стакана.
+ */
+@Value
+public class LevelSnapshot {
+    long price; // В шагах цены
+    long totalQuantity;
+    int ordersCount;
+    long apiQuantity;
+
+    public static LevelSnapshot of(PriceLevel level) {
+        return new LevelSnapshot(level.getPrice(), level.getTotalQuantity(), level.getOrdersCount(), level.getApiQuantity());
+    }
+}
@@ -3,13 +3,13 @@ package ru.tinkoff.invest.emulator.core.model;
 import lombok.Builder;
 import lombok.Data;
 import lombok.ToString;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
 
-import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @ToString
 public class Order {
     private final UUID id;
@@ -17,16 +17,19 @@ public class Order {
     private final String accountId;
     private final OrderDirection direction;
     private final OrderType type;
-    private final BigDecimal price;
+    private final long price; // В шагах цены (см. TickSize)
     private final long quantity; // Initial quantity
     @Builder.Default
     private long filledQuantity = 0;
     @Builder.Default
     private OrderStatus status = OrderStatus.NEW;
-    @Builder.Default
-    private final Instant createdAt = Instant.now();
+    private final long createdAtNanos; // Время эмулятора, наносекунды от эпохи; задаёт создатель заявки
     private final OrderSource source;
 
+    public Instant getCreatedAt() {
+        return EmulatorClock.toInstant(createdAtNanos);
+    }
+
     public long getRemainingQuantity() {
         return quantity - filledQuantity;
     }
@@ -47,4 +50,17 @@ public class Order {
     public boolean isFullyFilled() {
         return filledQuantity >= quantity;
     }
+
+    /**
+     * Копия текущего состояния заявки для чтения вне блокировки стакана.
+     */
+    public Order copy() {
+        return toBuilder().build();
+    }
+
+    public static class OrderBuilder {
+        public OrderBuilder createdAt(Instant createdAt) {
+            return createdAtNanos(EmulatorClock.toEpochNanos(createdAt));
+        }
+    }
 }
@@ -1,24 +1,79 @@
 package ru.tinkoff.invest.emulator.core.model;
 
-import lombok.Data;
+import lombok.Getter;
 
-import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 
-@Data
+/**
+ * Неизменяемый снапшот стакана. {@code OrderBookManager} строит его для версии стакана при первом чтении,
+ * {@code version} растёт монотонно, поэтому читатели могут сравнивать снапшоты между собой.
+ */
+@Getter
 public class OrderBook {
+    /** Значение лучшей цены для пустой стороны стакана. */
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
     private final String instrumentId;
-    // Price -> PriceLevel
+    private final TickSize tickSize;
+    private final long version;
+    private final long bestBid;
+    private final long bestAsk;
+    // Price (ticks) -> LevelSnapshot
     // Bids: High to Low (Descending)
     // Asks: Low to High (Ascending)
-    // But TreeMap natural order is Ascending.
-    // So for Bids we might want `descendingMap()` view when matching, but storage can be standard.
-    private final NavigableMap<BigDecimal, PriceLevel> bids = new TreeMap<>(Collections.reverseOrder());
-    private final NavigableMap<BigDecimal, PriceLevel> asks = new TreeMap<>();
+    private final NavigableMap<Long, LevelSnapshot> bids;
+    private final NavigableMap<Long, LevelSnapshot> asks;
 
-    public OrderBook(String instrumentId) {
+    /**
+     * Карты уровней передаются во владение снапшоту и дальше не должны меняться.
+     */
+    public OrderBook(String instrumentId, TickSize tickSize, long version,
+                     NavigableMap<Long, LevelSnapshot> bids, NavigableMap<Long, LevelSnapshot> asks) {
         this.instrumentId = instrumentId;
+        this.tickSize = tickSize;
+        this.version = version;
+        this.bestBid = bids.isEmpty() ? NO_PRICE : bids.firstKey();
+        this.bestAsk = asks.isEmpty() ? NO_PRICE : asks.firstKey();
+        this.bids = Collections.unmodifiableNavigableMap(bids);
+        this.asks = Collections.unmodifiableNavigableMap(asks);
+    }
+
+    public static OrderBook empty(String instrumentId, TickSize tickSize) {
+        return new OrderBook(instrumentId, tickSize, 0, newBids(), newAsks());
+    }
+
+    public static NavigableMap<Long, LevelSnapshot> newBids() {
+        return new TreeMap<>(Collections.reverseOrder());
+    }
+
+    public static NavigableMap<Long, LevelSnapshot> newAsks() {
+        return new TreeMap<>();
+    }
+
+    /**
+     * Снапшот той же версии, ограниченный {@code depth} лучшими уровнями с каждой стороны.
+     */
+    public OrderBook withDepth(int depth) {
+        if (bids.size() <= depth && asks.size() <= depth) {
+            return this;
+        }
+        return new OrderBook(instrumentId, tickSize, version,
+                firstLevels(bids, newBids(), depth), firstLevels(asks, newAsks(), depth));
+    }
+
+    private static NavigableMap<Long, LevelSnapshot> firstLevels(NavigableMap<Long, LevelSnapshot> source,
+                                                                NavigableMap<Long, LevelSnapshot> target,
+                                                                int depth) {
+        int count = 0;
+        for (Map.Entry<Long, LevelSnapshot> entry : source.entrySet()) {
+            if (count++ >= depth) {
+                break;
+            }
+            target.put(entry.getKey(), entry.getValue());
+        }
+        return target;
     }
 }
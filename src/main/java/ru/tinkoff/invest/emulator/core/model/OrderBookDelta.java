@@ -0,0 +1,59 @@
+package ru.tinkoff.invest.emulator.core.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * Изменения уровней между двумя снапшотами стакана: {@code fromVersion} → {@code toVersion}.
+ * <p>
+ * Клиент применяет дельту, только если его версия равна {@code fromVersion}; дельты с {@code toVersion}
+ * не новее своей версии пропускает, а при разрыве ждёт следующий полный снапшот.
+ */
+@Getter
+public class OrderBookDelta {
+    private final String instrumentId;
+    private final TickSize tickSize;
+    private final long fromVersion;
+    private final long toVersion;
+    private final List<LevelDelta> levels;
+
+    private OrderBookDelta(String instrumentId, TickSize tickSize, long fromVersion, long toVersion, List<LevelDelta> levels) {
+        this.instrumentId = instrumentId;
+        this.tickSize = tickSize;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.levels = Collections.unmodifiableList(levels);
+    }
+
+    /**
+     * Дельта, переводящая снапшот {@code from} в {@code to} (одного стакана и одной глубины).
+     */
+    public static OrderBookDelta between(OrderBook from, OrderBook to) {
+        List<LevelDelta> levels = new ArrayList<>();
+        diff(OrderDirection.BUY, from.getBids(), to.getBids(), levels);
+        diff(OrderDirection.SELL, from.getAsks(), to.getAsks(), levels);
+        return new OrderBookDelta(to.getInstrumentId(), to.getTickSize(), from.getVersion(), to.getVersion(), levels);
+    }
+
+    private static void diff(OrderDirection side, NavigableMap<Long, LevelSnapshot> from,
+                             NavigableMap<Long, LevelSnapshot> to, List<LevelDelta> out) {
+        for (LevelSnapshot level : to.values()) {
+            if (!level.equals(from.get(level.getPrice()))) {
+                out.add(LevelDelta.of(side, level));
+            }
+        }
+        for (Long price : from.keySet()) {
+            if (!to.containsKey(price)) {
+                out.add(LevelDelta.removed(side, price));
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return levels.isEmpty();
+    }
+}
@@ -0,0 +1,35 @@
+package ru.tinkoff.invest.emulator.core.model;
+
+/**
+ * Узел очереди заявок на уровне цены. Знает свой уровень и соседей,
+ * поэтому снятие заявки из стакана — O(1) без поиска по уровню.
+ */
+public final class OrderNode {
+    private final Order order;
+    PriceLevel level;
+    OrderNode prev;
+    OrderNode next;
+
+    OrderNode(Order order, PriceLevel level) {
+        this.order = order;
+        this.level = level;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Уровень, в очереди которого стоит заявка, или {@code null}, если она уже снята.
+     */
+    public PriceLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Следующая по времени заявка на том же уровне.
+     */
+    public OrderNode getNext() {
+        return next;
+    }
+}
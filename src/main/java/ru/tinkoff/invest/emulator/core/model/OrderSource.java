@@ -1,6 +1,11 @@
 package ru.tinkoff.invest.emulator.core.model;
 
+/**
+ * Источник заявки. Порядковый номер пишется в журнал и снапшот, поэтому новые значения добавляются в конец.
+ */
 public enum OrderSource {
     API,
-    ADMIN_PANEL
+    ADMIN_PANEL,
+    // Заявки воспроизведения исторических данных (MarketDataFeed)
+    FEED
 }
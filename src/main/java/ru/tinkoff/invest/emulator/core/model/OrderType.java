@@ -2,5 +2,10 @@ package ru.tinkoff.invest.emulator.core.model;
 
 public enum OrderType {
     LIMIT,
-    MARKET
+    MARKET,
+    /**
+     * Лимитная заявка «исполнить немедленно или снять»: исполняется по цене не хуже лимита,
+     * остаток в стакан не ставится.
+     */
+    LIMIT_IOC
 }
@@ -1,43 +1,109 @@
 package ru.tinkoff.invest.emulator.core.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Getter;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
-@Data
+/**
+ * Уровень цены: двусвязная очередь заявок в порядке поступления (приоритет по времени).
+ * Добавление в хвост и снятие по узлу — O(1).
+ * <p>
+ * Агрегаты (остаток, объём заявок API, число заявок) ведутся инкрементально, поэтому
+ * исполнять заявку уровня нужно через {@link #fill(OrderNode, long)}, а не {@link Order#fill(long)}.
+ */
 public class PriceLevel {
-    private BigDecimal price;
-    private final List<Order> orders = new ArrayList<>();
+    @Getter
+    private final long price; // В шагах цены
+    private OrderNode head;
+    private OrderNode tail;
+    @Getter
+    private int ordersCount;
+    @Getter
+    private long totalQuantity;
+    @Getter
+    private long apiQuantity; // Остаток заявок бота (OrderSource.API)
 
-    public PriceLevel(BigDecimal price) {
+    public PriceLevel(long price) {
         this.price = price;
     }
 
-    public void addOrder(Order order) {
-        orders.add(order);
+    public OrderNode addOrder(Order order) {
+        OrderNode node = new OrderNode(order, this);
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+            node.prev = tail;
+        }
+        tail = node;
+        ordersCount++;
+        addQuantity(order, order.getRemainingQuantity());
+        return node;
     }
 
-    public boolean removeOrder(Order order) {
-        return orders.remove(order);
+    public boolean removeOrder(OrderNode node) {
+        if (node.level != this) {
+            return false;
+        }
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.level = null;
+        ordersCount--;
+        addQuantity(node.getOrder(), -node.getOrder().getRemainingQuantity());
+        return true;
+    }
+
+    /**
+     * Исполняет заявку уровня на {@code amount} лотов и обновляет агрегаты.
+     * Полностью исполненная заявка остаётся в очереди, пока её не снимут через {@link #removeOrder(OrderNode)}.
+     */
+    public void fill(OrderNode node, long amount) {
+        Order order = node.getOrder();
+        long before = order.getRemainingQuantity();
+        order.fill(amount);
+        if (node.level == this) {
+            addQuantity(order, order.getRemainingQuantity() - before);
+        }
+    }
+
+    /**
+     * Самая ранняя заявка уровня, {@code null} если уровень пуст. Дальше — {@link OrderNode#getNext()}.
+     */
+    public OrderNode getFirst() {
+        return head;
     }
 
     public boolean isEmpty() {
-        return orders.isEmpty();
+        return head == null;
     }
 
-    public long getTotalQuantity() {
-        return orders.stream()
-                .mapToLong(Order::getRemainingQuantity)
-                .sum();
+
+    /**
+     * Копия заявок уровня в порядке времени поступления.
+     */
+    public List<Order> getOrders() {
+        List<Order> orders = new ArrayList<>(ordersCount);
+        for (OrderNode node = head; node != null; node = node.next) {
+            orders.add(node.getOrder());
+        }
+        return orders;
     }
-    
-    public List<Order> getOrdersSortedByTime() {
-         // Assuming insertion order is time order for now, as we append to end of list.
-         // If we need strict time sorting, we can sort, but ArrayList maintains insertion order.
-         return new ArrayList<>(orders);
+
+    private void addQuantity(Order order, long delta) {
+        totalQuantity += delta;
+        if (order.getSource() == OrderSource.API) {
+            apiQuantity += delta;
+        }
     }
 }
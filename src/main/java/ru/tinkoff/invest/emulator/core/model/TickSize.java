@@ -0,0 +1,50 @@
+package ru.tinkoff.invest.emulator.core.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Шаг цены инструмента (minPriceIncrement).
+ * <p>
+ * Ядро (стакан, matching, сделки) хранит цену как целое число шагов {@code long}.
+ * BigDecimal создаётся только на границе: gRPC-маппинг, REST/WebSocket DTO и денежные расчёты счёта.
+ */
+public final class TickSize {
+    private final BigDecimal increment;
+
+    public TickSize(BigDecimal increment) {
+        if (increment == null || increment.signum() <= 0) {
+            throw new IllegalArgumentException("minPriceIncrement must be positive, got " + increment);
+        }
+        this.increment = increment;
+    }
+
+    public BigDecimal getIncrement() {
+        return increment;
+    }
+
+    /**
+     * Переводит цену в количество шагов.
+     *
+     * @throws IllegalArgumentException если цены нет или она не кратна шагу
+     */
+    public long toTicks(BigDecimal price) {
+        if (price == null) {
+            throw new IllegalArgumentException("Price is required");
+        }
+        BigDecimal[] ticks = price.divideAndRemainder(increment);
+        if (ticks[1].signum() != 0) {
+            throw new IllegalArgumentException("Price " + price.toPlainString()
+                    + " is not a multiple of minPriceIncrement " + increment.toPlainString());
+        }
+        return ticks[0].longValueExact();
+    }
+
+    public BigDecimal toPrice(long ticks) {
+        return increment.multiply(BigDecimal.valueOf(ticks));
+    }
+
+    @Override
+    public String toString() {
+        return increment.toPlainString();
+    }
+}
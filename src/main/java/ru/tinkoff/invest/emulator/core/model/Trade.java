@@ -2,8 +2,8 @@ package ru.tinkoff.invest.emulator.core.model;
 
 import lombok.Builder;
 import lombok.Data;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
 
-import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
 
@@ -18,8 +18,11 @@ public class Trade {
     private final OrderDirection aggressorDirection;
     private final OrderSource passiveOrderSource;
     private final String instrumentId;
-    private final BigDecimal price;
+    private final long price; // В шагах цены (см. TickSize)
     private final long quantity;
-    @Builder.Default
-    private final Instant timestamp = Instant.now();
+    private final long timestampNanos; // Время эмулятора, наносекунды от эпохи; задаёт движок matching
+
+    public Instant getTimestamp() {
+        return EmulatorClock.toInstant(timestampNanos);
+    }
 }
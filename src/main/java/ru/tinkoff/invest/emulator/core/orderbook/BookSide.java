@@ -0,0 +1,43 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import ru.tinkoff.invest.emulator.core.model.PriceLevel;
+
+/**
+ * Одна сторона стакана (bids или asks): уровни цен в шагах, упорядоченные от лучшего к худшему.
+ * <p>
+ * Реализации не потокобезопасны, доступ защищается блокировкой {@link OrderBookManager}.
+ */
+public interface BookSide extends Iterable<PriceLevel> {
+
+    PriceLevel get(long price);
+
+    PriceLevel getOrCreate(long price);
+
+    /**
+     * Можно ли создать уровень с этой ценой. Сторона с ограниченным окном цен ({@link LadderBookSide})
+     * отвечает {@code false} для цены, которая не помещается в окно вместе с уже стоящими уровнями.
+     */
+    default boolean canHold(long price) {
+        return true;
+    }
+
+    void remove(long price);
+
+    /**
+     * Лучший уровень стороны или {@code null}, если сторона пуста.
+     */
+    PriceLevel best();
+
+    /**
+     * Лучшая цена или {@link ru.tinkoff.invest.emulator.core.model.OrderBook#NO_PRICE}.
+     */
+    long bestPrice();
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    void clear();
+}
@@ -0,0 +1,11 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+/**
+ * Реализация хранения сторон стакана, выбирается через {@code emulator.orderbook.book-type}.
+ */
+public enum BookType {
+    /** TreeMap по цене: O(log n) навигация, без ограничений на диапазон цен. */
+    TREE_MAP,
+    /** Массив уровней вокруг середины стакана: O(1) доступ к уровню и лучшей цене. */
+    LADDER
+}
@@ -0,0 +1,224 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
+import ru.tinkoff.invest.emulator.core.model.PriceLevel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Сторона стакана на массиве уровней, индексированном ценой: {@code levels[price - basePrice]}.
+ * <p>
+ * Окно цен фиксированного размера покрывает {@code halfBand} шагов в каждую сторону от центра.
+ * Индекс лучшего уровня кэшируется, поэтому {@link #best()} — O(1); непустые уровни отмечены в битовой
+ * карте, и переход к следующему уровню пропускает пустые слоты по 64 за шаг. Цена вне окна переносит окно,
+ * если вместе с ней в него помещаются все уровни стороны; иначе цена не принимается —
+ * {@link OrderBookManager#checkPrice} отклоняет такую заявку до matching.
+ */
+public class LadderBookSide implements BookSide {
+    private final boolean descending;
+    private final int halfBand;
+    private final PriceLevel[] levels;
+    private final BitSet occupied;
+
+    private long basePrice;
+    private boolean anchored;
+    private int bestIndex = -1;
+    private int size;
+
+    /**
+     * @param descending {@code true} для bids (лучшая цена — наибольшая)
+     * @param halfBand   количество шагов цены в каждую сторону от центра окна
+     */
+    public LadderBookSide(boolean descending, int halfBand) {
+        if (halfBand <= 0) {
+            throw new IllegalArgumentException("Ladder half band must be positive, got " + halfBand);
+        }
+        this.descending = descending;
+        this.halfBand = halfBand;
+        this.levels = new PriceLevel[2 * halfBand + 1];
+        this.occupied = new BitSet(levels.length);
+    }
+
+    public LadderBookSide(boolean descending, int halfBand, long centerPrice) {
+        this(descending, halfBand);
+        anchor(centerPrice);
+    }
+
+    @Override
+    public PriceLevel get(long price) {
+        int index = indexOf(price);
+        return index < 0 ? null : levels[index];
+    }
+
+    @Override
+    public boolean canHold(long price) {
+        if (size == 0 || indexOf(price) >= 0) {
+            return true;
+        }
+        return Math.max(price, highestPrice()) - Math.min(price, lowestPrice()) < levels.length;
+    }
+
+    /**
+     * @throws IllegalArgumentException если цена не помещается в окно вместе с уровнями стороны
+     *                                  ({@link #canHold(long)} возвращает {@code false})
+     */
+    @Override
+    public PriceLevel getOrCreate(long price) {
+        int index = indexOf(price);
+        if (index < 0) {
+            if (size == 0) {
+                anchor(price);
+            } else {
+                recenter(price);
+            }
+            index = indexOf(price);
+        }
+
+        PriceLevel level = levels[index];
+        if (level == null) {
+            level = new PriceLevel(price);
+            levels[index] = level;
+            occupied.set(index);
+            size++;
+            if (bestIndex < 0 || isBetter(index, bestIndex)) {
+                bestIndex = index;
+            }
+        }
+        return level;
+    }
+
+    @Override
+    public void remove(long price) {
+        int index = indexOf(price);
+        if (index < 0 || levels[index] == null) {
+            return;
+        }
+        levels[index] = null;
+        occupied.clear(index);
+        size--;
+        if (index == bestIndex) {
+            bestIndex = size == 0 ? -1 : nextLevelIndex(index);
+        }
+    }
+
+    @Override
+    public PriceLevel best() {
+        return bestIndex < 0 ? null : levels[bestIndex];
+    }
+
+    @Override
+    public long bestPrice() {
+        return bestIndex < 0 ? OrderBook.NO_PRICE : basePrice + bestIndex;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(levels, null);
+        occupied.clear();
+        size = 0;
+        bestIndex = -1;
+    }
+
+    @Override
+    public Iterator<PriceLevel> iterator() {
+        return new Iterator<>() {
+            private int index = bestIndex;
+            private int remaining = size;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public PriceLevel next() {
+                if (remaining <= 0) {
+                    throw new NoSuchElementException();
+                }
+                PriceLevel level = levels[index];
+                remaining--;
+                if (remaining > 0) {
+                    index = nextLevelIndex(index);
+                }
+                return level;
+            }
+        };
+    }
+
+    int capacity() {
+        return levels.length;
+    }
+
+    private void anchor(long centerPrice) {
+        basePrice = centerPrice - halfBand;
+        anchored = true;
+    }
+
+    private int indexOf(long price) {
+        if (!anchored) {
+            return -1;
+        }
+        long offset = price - basePrice;
+        return offset < 0 || offset >= levels.length ? -1 : (int) offset;
+    }
+
+    private boolean isBetter(int index, int other) {
+        return descending ? index > other : index < other;
+    }
+
+    /**
+     * Следующий (худший) непустой уровень после {@code index}. Вызывается только когда он существует:
+     * все уровни стороны лежат на худшей стороне от лучшего.
+     */
+    private int nextLevelIndex(int index) {
+        return descending ? occupied.previousSetBit(index - 1) : occupied.nextSetBit(index + 1);
+    }
+
+    private long lowestPrice() {
+        return basePrice + occupied.nextSetBit(0);
+    }
+
+    private long highestPrice() {
+        return basePrice + occupied.previousSetBit(levels.length - 1);
+    }
+
+    /**
+     * Переносит окно на середину между крайними уровнями стороны и новой ценой. Уровни лежат в обоих окнах,
+     * поэтому сдвиг меньше размера окна и ничего не теряется. Размер массива не меняется.
+     */
+    private void recenter(long price) {
+        long low = Math.min(price, lowestPrice());
+        long high = Math.max(price, highestPrice());
+        if (high - low >= levels.length) {
+            throw new IllegalArgumentException("Price " + price + " does not fit the ladder band of "
+                    + levels.length + " ticks together with resting levels [" + lowestPrice() + ", "
+                    + highestPrice() + "]");
+        }
+
+        long newBase = (low + high) / 2 - halfBand;
+        int shift = (int) (basePrice - newBase);
+        if (shift > 0) {
+            System.arraycopy(levels, 0, levels, shift, levels.length - shift);
+            Arrays.fill(levels, 0, shift, null);
+        } else {
+            System.arraycopy(levels, -shift, levels, 0, levels.length + shift);
+            Arrays.fill(levels, levels.length + shift, levels.length, null);
+        }
+        occupied.clear();
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] != null) {
+                occupied.set(i);
+            }
+        }
+        basePrice = newBase;
+        bestIndex += shift;
+    }
+}
@@ -1,57 +1,141 @@
 package ru.tinkoff.invest.emulator.core.orderbook;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.stereotype.Service;
 import ru.tinkoff.invest.emulator.config.EmulatorProperties;
-import ru.tinkoff.invest.emulator.core.event.OrderBookChangedEvent;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.model.LevelSnapshot;
 import ru.tinkoff.invest.emulator.core.model.Order;
 import ru.tinkoff.invest.emulator.core.model.OrderBook;
 import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.model.OrderNode;
 import ru.tinkoff.invest.emulator.core.model.OrderSource;
 import ru.tinkoff.invest.emulator.core.model.OrderType;
 import ru.tinkoff.invest.emulator.core.model.PriceLevel;
-import jakarta.annotation.PostConstruct;
+import ru.tinkoff.invest.emulator.core.model.TickSize;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
 
+/**
+ * Стакан одного инструмента со своей блокировкой. Экземпляры создаёт и хранит {@link OrderBookRegistry}.
+ * <p>
+ * Блокировку берут только писатели. После каждого завершённого изменения обновляются {@link TopOfBook}
+ * и копии изменённых заявок, а версия стакана увеличивается. Неизменяемый снапшот {@link OrderBook}
+ * строит писатель в конце изменения, но только пока его читают (аренда {@link #SNAPSHOT_LEASE_NANOS}
+ * продлевается каждым чтением); читатели получают последний опубликованный снапшот без блокировки.
+ * Рассылку снапшотов подписчикам с прореживанием делает {@link OrderBookPublisher}.
+ */
 @Slf4j
-@Service
 public class OrderBookManager {
-    private final OrderBook orderBook;
-    private final Map<UUID, Order> orderIndex = new HashMap<>();
+    private static final int DEFAULT_SNAPSHOT_DEPTH = 50;
+    // Сколько писатель строит снапшоты после последнего чтения
+    private static final long SNAPSHOT_LEASE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String instrumentId;
+    private final TickSize tickSize;
+    private final BookSide bids;
+    private final BookSide asks;
+    private final OrderIndex orderIndex = new OrderIndex();
+    // Копии заявок на момент последней публикации по счёту, только для читателей. Одна карта на все чтения:
+    // счетов в стакане единицы, поэтому поиск по id без счёта перебирает их, а не держит вторую запись на заявку
+    private final Map<String, Map<UUID, Order>> orderViewsByAccount = new ConcurrentHashMap<>();
+    // Заявки, исполненные с последней публикации (обновляются под write lock)
+    private final List<OrderNode> filledSincePublish = new ArrayList<>();
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private final ApplicationEventPublisher eventPublisher;
-    private final EmulatorProperties properties;
+    private final EmulatorProperties.Instrument instrument;
+    private final EmulatorProperties.OrderBook orderbookConfig;
+    private final EmulatorClock clock;
+    private final int snapshotDepth;
+    // Зерно объёмов начальной ликвидности: reset() поднимает тот же стакан, что и старт
+    private final long initialVolumeSeed;
+    // Версия последнего завершённого изменения; снапшот с другой версией устарел
+    private volatile long version;
+    private volatile OrderBook snapshot;
+    // До какого System.nanoTime() писатель строит снапшот в commit()
+    private volatile long snapshotWantedUntil = System.nanoTime();
+    private final TopOfBook topOfBook = new TopOfBook();
+    // Вызывается под write lock при изменении лучших цен, поэтому должен только будить получателя
+    private volatile Runnable topOfBookListener = () -> { };
+
+    /**
+     * Стакан основного инструмента ({@code emulator.instrument}).
+     */
+    public OrderBookManager(EmulatorProperties properties, EmulatorClock clock) {
+        this(properties.getInstrument(), properties.getOrderbook(), clock);
+    }
+
+    public OrderBookManager(EmulatorProperties.Instrument instrument,
+                            EmulatorProperties.OrderBook orderbookConfig,
+                            EmulatorClock clock) {
+        this.instrumentId = instrument.getUid();
+        this.tickSize = new TickSize(instrument.getMinPriceIncrement());
+        this.instrument = instrument;
+        this.orderbookConfig = orderbookConfig;
+        this.clock = clock;
+        this.bids = createSide(true);
+        this.asks = createSide(false);
+        this.snapshotDepth = orderbookConfig != null ? orderbookConfig.getSnapshotDepth() : DEFAULT_SNAPSHOT_DEPTH;
+        this.initialVolumeSeed = orderbookConfig != null && orderbookConfig.getSeed() != null
+                ? orderbookConfig.getSeed()
+                : new Random().nextLong();
+        this.snapshot = OrderBook.empty(instrumentId, tickSize);
+    }
+
+    private BookSide createSide(boolean descending) {
+        BookType bookType = orderbookConfig != null ? orderbookConfig.getBookType() : BookType.TREE_MAP;
+        if (bookType != BookType.LADDER) {
+            return new TreeMapBookSide(descending);
+        }
 
-    public OrderBookManager(EmulatorProperties properties, ApplicationEventPublisher eventPublisher) {
-        this.orderBook = new OrderBook(properties.getInstrument().getUid());
-        this.eventPublisher = eventPublisher;
-        this.properties = properties;
+        int halfBand = instrument.getPriceBandTicks();
+        if (orderbookConfig.getInitialBid() != null && orderbookConfig.getInitialAsk() != null) {
+            long mid = (tickSize.toTicks(orderbookConfig.getInitialBid()) + tickSize.toTicks(orderbookConfig.getInitialAsk())) / 2;
+            return new LadderBookSide(descending, halfBand, mid);
+        }
+        // Без начальных цен окно центрируется по первой выставленной заявке
+        return new LadderBookSide(descending, halfBand);
     }
 
-    @PostConstruct
+    /**
+     * Заполняет стакан начальной ликвидностью из конфига одной загрузкой {@link #load(List)}.
+     */
     public void init() {
-        var orderbookConfig = properties.getOrderbook();
+        List<Order> orders = initialOrders();
+        if (orders != null) {
+            load(orders);
+        }
+    }
+
+    /**
+     * Заявки начальной ликвидности или {@code null}, если в конфиге нет стакана или начальных цен.
+     */
+    private List<Order> initialOrders() {
+        if (orderbookConfig == null) {
+            log.warn("OrderBook {} initialization skipped: no orderbook config", instrumentId);
+            return null;
+        }
         BigDecimal initialBid = orderbookConfig.getInitialBid();
         BigDecimal initialAsk = orderbookConfig.getInitialAsk();
-        BigDecimal priceIncrement = properties.getInstrument().getMinPriceIncrement();
-        String instrumentId = properties.getInstrument().getUid();
 
-        if (initialBid == null || initialAsk == null || priceIncrement == null) {
-            log.warn("OrderBook initialization skipped: missing bid/ask/increment");
-            return;
+        if (initialBid == null || initialAsk == null) {
+            log.warn("OrderBook {} initialization skipped: missing bid/ask", instrumentId);
+            return null;
         }
 
+        long initialBidTicks = tickSize.toTicks(initialBid);
+        long initialAskTicks = tickSize.toTicks(initialAsk);
+
         int levelsCount = orderbookConfig.getLevelsCount();
-        var random = new java.util.Random();
+        long createdAtNanos = clock.nanos();
+        var random = new Random(initialVolumeSeed);
+        List<Order> orders = new ArrayList<>(2 * levelsCount + 2);
 
         // Создаём уровни BID (от лучшего вниз)
         for (int i = 0; i < levelsCount; i++) {
-            BigDecimal price = initialBid.subtract(priceIncrement.multiply(BigDecimal.valueOf(i)));
+            long price = initialBidTicks - i;
             long volume = (i == 0)
                     ? randomInRange(random, orderbookConfig.getBestPriceVolumeMin(), orderbookConfig.getBestPriceVolumeMax())
                     : randomInRange(random, orderbookConfig.getOtherVolumeMin(), orderbookConfig.getOtherVolumeMax());
@@ -65,13 +149,14 @@ public class OrderBookManager {
                     .price(price)
                     .quantity(volume)
                     .source(OrderSource.ADMIN_PANEL)
+                    .createdAtNanos(createdAtNanos)
                     .build();
-            addOrder(bidOrder);
+            orders.add(bidOrder);
         }
 
         // Создаём уровни ASK (от лучшего вверх)
         for (int i = 0; i < levelsCount; i++) {
-            BigDecimal price = initialAsk.add(priceIncrement.multiply(BigDecimal.valueOf(i)));
+            long price = initialAskTicks + i;
             long volume = (i == 0)
                     ? randomInRange(random, orderbookConfig.getBestPriceVolumeMin(), orderbookConfig.getBestPriceVolumeMax())
                     : randomInRange(random, orderbookConfig.getOtherVolumeMin(), orderbookConfig.getOtherVolumeMax());
@@ -85,15 +170,16 @@ public class OrderBookManager {
                     .price(price)
                     .quantity(volume)
                     .source(OrderSource.ADMIN_PANEL)
+                    .createdAtNanos(createdAtNanos)
                     .build();
-            addOrder(askOrder);
+            orders.add(askOrder);
         }
 
         // Заявки маркетмейкера на большие объёмы
         var mmConfig = orderbookConfig.getMarketMaker();
 
         // MM Bid - на N шагов ниже лучшего bid
-        BigDecimal mmBidPrice = initialBid.subtract(priceIncrement.multiply(BigDecimal.valueOf(mmConfig.getBidOffset())));
+        long mmBidPrice = initialBidTicks - mmConfig.getBidOffset();
         Order mmBidOrder = Order.builder()
                 .id(UUID.randomUUID())
                 .instrumentId(instrumentId)
@@ -103,11 +189,12 @@ public class OrderBookManager {
                 .price(mmBidPrice)
                 .quantity(mmConfig.getVolume())
                 .source(OrderSource.ADMIN_PANEL)
+                .createdAtNanos(createdAtNanos)
                 .build();
-        addOrder(mmBidOrder);
+        orders.add(mmBidOrder);
 
         // MM Ask - на N шагов выше лучшего ask
-        BigDecimal mmAskPrice = initialAsk.add(priceIncrement.multiply(BigDecimal.valueOf(mmConfig.getAskOffset())));
+        long mmAskPrice = initialAskTicks + mmConfig.getAskOffset();
         Order mmAskOrder = Order.builder()
                 .id(UUID.randomUUID())
                 .instrumentId(instrumentId)
@@ -117,48 +204,114 @@ public class OrderBookManager {
                 .price(mmAskPrice)
                 .quantity(mmConfig.getVolume())
                 .source(OrderSource.ADMIN_PANEL)
+                .createdAtNanos(createdAtNanos)
                 .build();
-        addOrder(mmAskOrder);
+        orders.add(mmAskOrder);
 
-        log.info("OrderBook initialized: bid={}, ask={}, levels={}, MM bid wall={} @{}, MM ask wall={} @{}",
-                initialBid, initialAsk, levelsCount,
-                mmConfig.getVolume(), mmBidPrice,
-                mmConfig.getVolume(), mmAskPrice);
+        log.info("OrderBook {} initialized: bid={}, ask={}, levels={}, MM bid wall={} @{}, MM ask wall={} @{}",
+                instrument.getTicker(), initialBid, initialAsk, levelsCount,
+                mmConfig.getVolume(), tickSize.toPrice(mmBidPrice),
+                mmConfig.getVolume(), tickSize.toPrice(mmAskPrice));
+        return orders;
     }
 
-    private long randomInRange(java.util.Random random, long min, long max) {
+    private long randomInRange(Random random, long min, long max) {
         return min + (long) (random.nextDouble() * (max - min));
     }
 
     public void clear() {
         lock.writeLock().lock();
         try {
-            orderBook.getBids().clear();
-            orderBook.getAsks().clear();
-            orderIndex.clear();
+            clearState();
             log.info("OrderBook cleared for test");
-            publishEvent();
+            commit();
         } finally {
             lock.writeLock().unlock();
         }
     }
 
     /**
-     * Сброс стакана к начальному состоянию: очистка + реинициализация.
+     * Сброс стакана к начальному состоянию: очистка + реинициализация с теми же объёмами, что при старте
+     * (зерно {@code emulator.orderbook.seed} или выбранное при создании стакана). Id заявок новые.
      */
     public void reset() {
+        List<Order> orders = initialOrders();
+        load(orders != null ? orders : List.of());
+        log.info("OrderBook reset: reinitialized with {} market-maker orders", orders != null ? orders.size() : 0);
+    }
+
+    /**
+     * Заменяет содержимое стакана заявками {@code orders}; на уровне цены они встают в порядке списка.
+     * <p>
+     * Одна блокировка и одна публикация на всю загрузку, а не на каждую заявку, как у {@link #addOrder(Order)}:
+     * так стакан поднимается из снапшота или начальной ликвидности за один проход.
+     */
+    public void load(List<Order> orders) {
         lock.writeLock().lock();
         try {
-            orderBook.getBids().clear();
-            orderBook.getAsks().clear();
-            orderIndex.clear();
-            log.info("OrderBook reset: cleared all orders");
+            clearState();
+            for (Order order : orders) {
+                if (orderIndex.containsKey(order.getId())) {
+                    log.warn("Order {} already exists in order book", order.getId());
+                    continue;
+                }
+                PriceLevel level = getSide(order).getOrCreate(order.getPrice());
+                orderIndex.put(order.getId(), level.addOrder(order));
+                putView(order.copy());
+            }
+            commit();
         } finally {
             lock.writeLock().unlock();
         }
-        // init() вызываем вне блокировки, т.к. он сам берёт write lock в addOrder()
-        init();
-        log.info("OrderBook reset: reinitialized with market-maker orders");
+    }
+
+    /**
+     * Копии стоящих заявок в порядке приоритета: bids от лучшей цены, затем asks, на уровне — по времени.
+     * {@link #load(List)} из этого списка восстанавливает стакан с той же очередью на каждом уровне.
+     */
+    public List<Order> getRestingOrders() {
+        lock.readLock().lock();
+        try {
+            List<Order> orders = new ArrayList<>(orderIndex.size());
+            for (BookSide side : List.of(bids, asks)) {
+                for (PriceLevel level : side) {
+                    for (OrderNode node = level.getFirst(); node != null; node = node.getNext()) {
+                        orders.add(node.getOrder().copy());
+                    }
+                }
+            }
+            return orders;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void clearState() {
+        bids.clear();
+        asks.clear();
+        orderIndex.clear();
+        orderViewsByAccount.clear();
+        filledSincePublish.clear();
+    }
+
+    /**
+     * Проверяет, что остаток лимитной заявки можно будет поставить в стакан, — до matching, чтобы заявка
+     * не получила сделки и затем ошибку. Matching только снимает уровни встречной стороны, поэтому под той же
+     * блокировкой проверка остаётся верной до постановки остатка.
+     *
+     * @throws IllegalArgumentException если цена не помещается в окно цен стакана LADDER
+     */
+    public void checkPrice(Order order) {
+        lock.readLock().lock();
+        try {
+            if (order.getType() == OrderType.LIMIT && !getSide(order).canHold(order.getPrice())) {
+                throw new IllegalArgumentException("Price " + tickSize.toPrice(order.getPrice())
+                        + " is outside of the price band of " + instrumentId + ": "
+                        + instrument.getPriceBandTicks() + " ticks around the resting orders");
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public void addOrder(Order order) {
@@ -169,13 +322,12 @@ public class OrderBookManager {
                 return;
             }
 
-            NavigableMap<BigDecimal, PriceLevel> side = getSide(order);
-            PriceLevel level = side.computeIfAbsent(order.getPrice(), PriceLevel::new);
-            level.addOrder(order);
-            orderIndex.put(order.getId(), order);
+            PriceLevel level = getSide(order).getOrCreate(order.getPrice());
+            orderIndex.put(order.getId(), level.addOrder(order));
+            putView(order.copy());
             log.debug("Added order {} to level {}", order.getId(), order.getPrice());
             
-            publishEvent();
+            commit();
         } finally {
             lock.writeLock().unlock();
         }
@@ -184,40 +336,41 @@ public class OrderBookManager {
     public boolean removeOrder(UUID orderId) {
         lock.writeLock().lock();
         try {
-            Order order = orderIndex.remove(orderId);
-            if (order == null) {
+            OrderNode node = orderIndex.remove(orderId);
+            if (node == null) {
                 return false;
             }
+            removeView(node.getOrder());
 
-            NavigableMap<BigDecimal, PriceLevel> side = getSide(order);
-            PriceLevel level = side.get(order.getPrice());
-            if (level != null) {
-                boolean removed = level.removeOrder(order);
-                if (level.isEmpty()) {
-                    side.remove(order.getPrice());
-                }
-                if (removed) {
-                    publishEvent();
-                }
-                return removed;
+            PriceLevel level = node.getLevel();
+            if (level == null || !level.removeOrder(node)) {
+                return false;
+            }
+            if (level.isEmpty()) {
+                getSide(node.getOrder()).remove(level.getPrice());
             }
-            return false;
+            commit();
+            return true;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * Исполняет заявку уровня; копия заявки для читателей обновится при следующей публикации.
+     */
+    public void fill(OrderNode node, long amount) {
+        node.getLevel().fill(node, amount);
+        filledSincePublish.add(node);
+    }
+
     public void removeOrderIndex(UUID orderId) {
         lock.writeLock().lock();
         try {
-            orderIndex.remove(orderId);
-            // This is called by MatchingEngine usually when order is filled and removed from Level.
-            // MatchingEngine should trigger event or we should?
-            // If MatchingEngine modifies Level directly, OrderBookManager might not know the extent of change.
-            // But usually MatchingEngine calls this to clean up index.
-            // MatchingEngine modifies quantities of orders. That changes the book state (volumes).
-            // OrderBookManager snapshot reads current quantities.
-            // So we should publish event when volumes change too.
+            OrderNode node = orderIndex.remove(orderId);
+            if (node != null) {
+                removeView(node.getOrder());
+            }
         } finally {
             lock.writeLock().unlock();
         }
@@ -225,115 +378,204 @@ public class OrderBookManager {
     
     public void notifyUpdate() {
         // Allow external components (MatchingEngine) to trigger update event after batch changes
-        publishEvent();
+        commit();
     }
-    
-    private void publishEvent() {
-        // Send a snapshot or just notification?
-        // Event contains the OrderBook object (which is mutable!)
-        // Subscribers should probably take a snapshot or we send a snapshot.
-        // Sending the mutable object is dangerous if subscribers read it without lock.
-        // Let's send a shallow snapshot or just the ID.
-        // Or better: Subscribers call getSnapshot inside the lock?
-        // Let's make the event carry the ID, and subscribers fetch?
-        // Or we send a snapshot in the event.
-        // `getSnapshot(50)` covers most needs.
-        
-        // However, making snapshot under lock here is safe.
-        // Let's assume depth 50 is enough for stream.
-        eventPublisher.publishEvent(new OrderBookChangedEvent(this, getSnapshot(50)));
+
+    /**
+     * Завершает изменение: обновляет копии заявок и лучшие цены, увеличивает версию и, если снапшот
+     * недавно читали, строит его. Вызывается под write lock.
+     */
+    private void commit() {
+        for (OrderNode node : filledSincePublish) {
+            // Полностью исполненные заявки уже сняты из стакана и из копий
+            if (node.getLevel() != null) {
+                putView(node.getOrder().copy());
+            }
+        }
+        filledSincePublish.clear();
+
+        // Лучшие цены обновляются раньше и независимо от полного снапшота; рассылка сверяет их версию
+        PriceLevel bestBid = bids.best();
+        PriceLevel bestAsk = asks.best();
+        if (topOfBook.update(
+                bestBid != null ? bestBid.getPrice() : OrderBook.NO_PRICE,
+                bestBid != null ? bestBid.getTotalQuantity() : 0,
+                bestAsk != null ? bestAsk.getPrice() : OrderBook.NO_PRICE,
+                bestAsk != null ? bestAsk.getTotalQuantity() : 0)) {
+            topOfBookListener.run();
+        }
+
+        // Версия пишется до проверки аренды, а читатель продлевает аренду до чтения версии:
+        // либо писатель увидит аренду и построит снапшот, либо читатель увидит новую версию и построит сам
+        version = version + 1;
+        if (System.nanoTime() - snapshotWantedUntil < 0) {
+            snapshot = buildSnapshot();
+        }
+    }
+
+    private OrderBook buildSnapshot() {
+        return new OrderBook(instrumentId, tickSize, version,
+                snapshotSide(bids, OrderBook.newBids()), snapshotSide(asks, OrderBook.newAsks()));
+    }
+
+    private void putView(Order view) {
+        orderViewsByAccount.computeIfAbsent(view.getAccountId(), k -> new ConcurrentHashMap<>()).put(view.getId(), view);
+    }
+
+    private void removeView(Order order) {
+        orderViewsByAccount.computeIfPresent(order.getAccountId(), (accountId, views) -> {
+            views.remove(order.getId());
+            return views.isEmpty() ? null : views;
+        });
+    }
+
+    private NavigableMap<Long, LevelSnapshot> snapshotSide(BookSide source, NavigableMap<Long, LevelSnapshot> target) {
+        int count = 0;
+        for (PriceLevel level : source) {
+            if (count++ >= snapshotDepth) {
+                break;
+            }
+            target.put(level.getPrice(), LevelSnapshot.of(level));
+        }
+        return target;
     }
     
+    /**
+     * Копия заявки на момент последней публикации или {@code null}, если её нет в стакане.
+     */
     public Order getOrder(UUID orderId) {
-        lock.readLock().lock();
-        try {
-            return orderIndex.get(orderId);
-        } finally {
-            lock.readLock().unlock();
+        for (Map<UUID, Order> views : orderViewsByAccount.values()) {
+            Order view = views.get(orderId);
+            if (view != null) {
+                return view;
+            }
         }
+        return null;
     }
 
     public List<Order> getAllOrders() {
-        lock.readLock().lock();
-        try {
-            return new ArrayList<>(orderIndex.values());
-        } finally {
-            lock.readLock().unlock();
-        }
+        List<Order> orders = new ArrayList<>();
+        orderViewsByAccount.values().forEach(views -> orders.addAll(views.values()));
+        return orders;
     }
 
+    /**
+     * Заявки счёта, O(заявок счёта).
+     */
     public List<Order> getOrders(String accountId) {
+        Map<UUID, Order> views = orderViewsByAccount.get(accountId);
+        return views != null ? new ArrayList<>(views.values()) : new ArrayList<>();
+    }
+
+    /**
+     * Заявка счёта или {@code null}, если её нет в стакане или она принадлежит другому счёту.
+     */
+    public Order getOrder(String accountId, UUID orderId) {
+        Map<UUID, Order> views = orderViewsByAccount.get(accountId);
+        return views != null ? views.get(orderId) : null;
+    }
+
+    /**
+     * Версия последнего завершённого изменения стакана.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Последний опубликованный снапшот (глубина {@code snapshot-depth}), без блокировки.
+     * <p>
+     * Пока снапшот читают, его строит писатель в конце каждого изменения, и читатель может отстать
+     * только на изменение, которое ещё идёт. Под read lock снапшот строит лишь первый читатель после
+     * паузы дольше аренды, если стакан за это время менялся: после этого его снова строит писатель.
+     */
+    public OrderBook getSnapshot() {
+        long now = System.nanoTime();
+        boolean leased = now - snapshotWantedUntil < 0;
+        snapshotWantedUntil = now + SNAPSHOT_LEASE_NANOS;
+        OrderBook current = snapshot;
+        if (leased || current.getVersion() == version) {
+            return current;
+        }
         lock.readLock().lock();
         try {
-            return orderIndex.values().stream()
-                    .filter(o -> Objects.equals(o.getAccountId(), accountId))
-                    .collect(Collectors.toList());
+            // Под read lock версия не меняется: параллельные читатели построят одинаковый снапшот
+            current = snapshot;
+            if (current.getVersion() != version) {
+                current = buildSnapshot();
+                snapshot = current;
+            }
+            return current;
         } finally {
             lock.readLock().unlock();
         }
     }
 
+    /**
+     * Снапшот текущей версии, ограниченный {@code depth} уровнями.
+     * Глубже {@code snapshot-depth} уровни не строятся.
+     */
     public OrderBook getSnapshot(int depth) {
-        lock.readLock().lock();
-        try {
-            OrderBook snapshot = new OrderBook(orderBook.getInstrumentId());
-            
-            fillSnapshotSide(orderBook.getBids(), snapshot.getBids(), depth);
-            fillSnapshotSide(orderBook.getAsks(), snapshot.getAsks(), depth);
-            
-            return snapshot;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return getSnapshot().withDepth(depth);
     }
 
-    private void fillSnapshotSide(NavigableMap<BigDecimal, PriceLevel> source, 
-                                  NavigableMap<BigDecimal, PriceLevel> target, 
-                                  int depth) {
-        source.entrySet().stream()
-                .limit(depth)
-                .forEach(entry -> {
-                    PriceLevel originalLevel = entry.getValue();
-                    PriceLevel snapshotLevel = new PriceLevel(originalLevel.getPrice());
-                    originalLevel.getOrders().forEach(snapshotLevel::addOrder);
-                    target.put(entry.getKey(), snapshotLevel);
-                });
+    /**
+     * Лучшая цена покупки в шагах цены или {@link OrderBook#NO_PRICE}, если стакан пуст.
+     */
+    public long getBestBid() {
+        return topOfBook.getBestBid();
     }
 
-    public BigDecimal getBestBid() {
-        lock.readLock().lock();
-        try {
-            return orderBook.getBids().isEmpty() ? null : orderBook.getBids().firstKey();
-        } finally {
-            lock.readLock().unlock();
-        }
+    /**
+     * Лучшая цена продажи в шагах цены или {@link OrderBook#NO_PRICE}, если стакан пуст.
+     */
+    public long getBestAsk() {
+        return topOfBook.getBestAsk();
     }
 
-    public BigDecimal getBestAsk() {
-        lock.readLock().lock();
-        try {
-            return orderBook.getAsks().isEmpty() ? null : orderBook.getAsks().firstKey();
-        } finally {
-            lock.readLock().unlock();
-        }
+    /**
+     * Лучшие цены и объёмы под seqlock, обновляются при каждом изменении стакана.
+     */
+    public TopOfBook getTopOfBook() {
+        return topOfBook;
     }
-    
-    public NavigableMap<BigDecimal, PriceLevel> getBids() {
-        return orderBook.getBids();
+
+    /**
+     * Сигнал об изменении лучших цен. Вызывается писателем под write lock, поэтому не должен
+     * блокироваться: достаточно отметить стакан и разбудить поток рассылки.
+     */
+    public void setTopOfBookListener(Runnable listener) {
+        this.topOfBookListener = listener;
     }
     
-    public NavigableMap<BigDecimal, PriceLevel> getAsks() {
-        return orderBook.getAsks();
+    public BookSide getBids() {
+        return bids;
+    }
+
+    public BookSide getAsks() {
+        return asks;
     }
     
+    public TickSize getTickSize() {
+        return tickSize;
+    }
+
+    public String getInstrumentId() {
+        return instrumentId;
+    }
+
+    public EmulatorProperties.Instrument getInstrument() {
+        return instrument;
+    }
+
     public ReentrantReadWriteLock getLock() {
         return lock;
     }
 
-    private NavigableMap<BigDecimal, PriceLevel> getSide(Order order) {
+    private BookSide getSide(Order order) {
         return switch (order.getDirection()) {
-            case BUY -> orderBook.getBids();
-            case SELL -> orderBook.getAsks();
+            case BUY -> bids;
+            case SELL -> asks;
         };
     }
 }
\ No newline at end of file
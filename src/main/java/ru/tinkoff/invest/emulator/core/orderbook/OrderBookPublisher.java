@@ -0,0 +1,101 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.event.OrderBookChangedEvent;
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
+import ru.tinkoff.invest.emulator.core.model.OrderBookDelta;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Рассылка изменений стакана с прореживанием.
+ * <p>
+ * Стакан на каждое изменение только увеличивает версию. Раз в {@code emulator.orderbook.publish-interval-ms}
+ * публикатор сравнивает её с последней разосланной и, если есть подписчики, строит один снапшот
+ * и публикует {@link OrderBookChangedEvent}. Серия изменений между проходами (например, {@code reset()}
+ * с десятками заявок инициализации) сворачивается в одно событие; без подписчиков снапшот не строится.
+ * <p>
+ * Вместе со снапшотом событие несёт предыдущую публикацию, из которой подписчики получают {@link OrderBookDelta}.
+ * Первая публикация и каждая {@code full-snapshot-every}-я идут без дельты, чтобы подписчики дельт
+ * могли восстановиться после разрыва.
+ */
+@Slf4j
+@Service
+public class OrderBookPublisher {
+    private final OrderBookRegistry registry;
+    private final List<OrderBookSubscribers> subscribers;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int fullSnapshotEvery;
+    // Последний разосланный снапшот и число публикаций по uid инструмента
+    private final Map<String, OrderBook> published = new ConcurrentHashMap<>();
+    private final Map<String, Long> publications = new ConcurrentHashMap<>();
+
+    @Autowired
+    public OrderBookPublisher(OrderBookRegistry registry,
+                              List<OrderBookSubscribers> subscribers,
+                              ApplicationEventPublisher eventPublisher,
+                              EmulatorProperties properties) {
+        this(registry, subscribers, eventPublisher, properties.getOrderbook() != null
+                ? properties.getOrderbook().getFullSnapshotEvery()
+                : new EmulatorProperties.OrderBook().getFullSnapshotEvery());
+    }
+
+    OrderBookPublisher(OrderBookRegistry registry,
+                       List<OrderBookSubscribers> subscribers,
+                       ApplicationEventPublisher eventPublisher,
+                       int fullSnapshotEvery) {
+        this.registry = registry;
+        this.subscribers = subscribers;
+        this.eventPublisher = eventPublisher;
+        this.fullSnapshotEvery = Math.max(1, fullSnapshotEvery);
+    }
+
+    @Scheduled(fixedDelayString = "${emulator.orderbook.publish-interval-ms:50}")
+    public void publishChanges() {
+        for (OrderBookManager book : registry.getBooks()) {
+            publish(book);
+        }
+    }
+
+    private void publish(OrderBookManager book) {
+        String instrumentId = book.getInstrumentId();
+        OrderBook previous = published.get(instrumentId);
+        if (previous != null && previous.getVersion() == book.getVersion()) {
+            return;
+        }
+        if (!hasSubscribers(instrumentId)) {
+            // Версию не запоминаем: первый подписчик получит текущее состояние на ближайшем проходе
+            return;
+        }
+        OrderBook snapshot = book.getSnapshot();
+        long count = publications.merge(instrumentId, 1L, Long::sum);
+        OrderBook base = count % fullSnapshotEvery != 0 ? previous : null;
+        published.put(instrumentId, snapshot);
+        log.trace("Publishing orderbook {} version {}, full={}", instrumentId, snapshot.getVersion(), base == null);
+        eventPublisher.publishEvent(new OrderBookChangedEvent(book, snapshot, base));
+    }
+
+    /**
+     * Последний разосланный снапшот — база, от которой считаются следующие дельты;
+     * {@code null}, если публикаций ещё не было.
+     */
+    public OrderBook getLastPublished(String instrumentId) {
+        return published.get(instrumentId);
+    }
+
+    private boolean hasSubscribers(String instrumentId) {
+        for (OrderBookSubscribers source : subscribers) {
+            if (source.hasOrderBookSubscribers(instrumentId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
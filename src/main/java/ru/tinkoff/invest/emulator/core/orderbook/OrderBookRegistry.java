@@ -0,0 +1,156 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.model.Order;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Стаканы всех инструментов watchlist, по одному {@link OrderBookManager} (и одной блокировке) на инструмент.
+ * <p>
+ * Ключ — uid инструмента; figi и ticker принимаются как синонимы, поскольку клиенты API передают
+ * в {@code instrumentId} любой из них. Набор стаканов фиксируется при старте, поэтому карты
+ * только читаются и не требуют синхронизации.
+ */
+@Slf4j
+@Service
+public class OrderBookRegistry {
+    private final EmulatorProperties properties;
+    // Время начальных заявок стаканов
+    private final EmulatorClock clock;
+    private final Map<String, OrderBookManager> booksByUid = new LinkedHashMap<>();
+    private final Map<String, OrderBookManager> booksByAlias = new LinkedHashMap<>();
+    private OrderBookManager defaultBook;
+
+    public OrderBookRegistry(EmulatorProperties properties, EmulatorClock clock) {
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (EmulatorProperties.Instrument instrument : properties.getWatchlist()) {
+            EmulatorProperties.OrderBook orderbookConfig = instrument.getOrderbook() != null
+                    ? instrument.getOrderbook()
+                    : properties.getOrderbook();
+            OrderBookManager book = new OrderBookManager(instrument, orderbookConfig, clock);
+            register(book);
+            book.init();
+        }
+        if (!booksByUid.isEmpty()) {
+            defaultBook = booksByUid.values().iterator().next();
+        }
+        log.info("OrderBookRegistry initialized: {} instruments {}", booksByUid.size(), booksByUid.keySet());
+    }
+
+    private void register(OrderBookManager book) {
+        EmulatorProperties.Instrument instrument = book.getInstrument();
+        booksByUid.put(instrument.getUid(), book);
+        if (instrument.getFigi() != null) {
+            booksByAlias.putIfAbsent(instrument.getFigi(), book);
+        }
+        if (instrument.getTicker() != null) {
+            booksByAlias.putIfAbsent(instrument.getTicker(), book);
+        }
+    }
+
+    /**
+     * Стакан по uid, figi или ticker; {@code null}, если инструмент не торгуется в эмуляторе.
+     */
+    public OrderBookManager find(String instrumentId) {
+        if (instrumentId == null) {
+            return null;
+        }
+        OrderBookManager book = booksByUid.get(instrumentId);
+        return book != null ? book : booksByAlias.get(instrumentId);
+    }
+
+    /**
+     * Стакан по uid, figi или ticker.
+     *
+     * @throws IllegalArgumentException если инструмент не торгуется в эмуляторе
+     */
+    public OrderBookManager get(String instrumentId) {
+        OrderBookManager book = find(instrumentId);
+        if (book == null) {
+            throw new IllegalArgumentException("Unknown instrument: " + instrumentId);
+        }
+        return book;
+    }
+
+    /**
+     * Стакан основного инструмента ({@code emulator.instrument}).
+     */
+    public OrderBookManager getDefaultBook() {
+        return defaultBook;
+    }
+
+    public Collection<OrderBookManager> getBooks() {
+        return Collections.unmodifiableCollection(booksByUid.values());
+    }
+
+    /**
+     * Стакан, в котором стоит заявка, или {@code null}.
+     */
+    public OrderBookManager findByOrderId(UUID orderId) {
+        for (OrderBookManager book : booksByUid.values()) {
+            if (book.getOrder(orderId) != null) {
+                return book;
+            }
+        }
+        return null;
+    }
+
+    public Order getOrder(UUID orderId) {
+        OrderBookManager book = findByOrderId(orderId);
+        return book != null ? book.getOrder(orderId) : null;
+    }
+
+    /**
+     * Заявка счёта или {@code null}, если её нет или она принадлежит другому счёту.
+     */
+    public Order getOrder(String accountId, UUID orderId) {
+        for (OrderBookManager book : booksByUid.values()) {
+            Order order = book.getOrder(accountId, orderId);
+            if (order != null) {
+                return order;
+            }
+        }
+        return null;
+    }
+
+    public boolean removeOrder(UUID orderId) {
+        OrderBookManager book = findByOrderId(orderId);
+        return book != null && book.removeOrder(orderId);
+    }
+
+    public List<Order> getAllOrders() {
+        List<Order> orders = new ArrayList<>();
+        booksByUid.values().forEach(book -> orders.addAll(book.getAllOrders()));
+        return orders;
+    }
+
+    public List<Order> getOrders(String accountId) {
+        List<Order> orders = new ArrayList<>();
+        booksByUid.values().forEach(book -> orders.addAll(book.getOrders(accountId)));
+        return orders;
+    }
+
+    public void clear() {
+        booksByUid.values().forEach(OrderBookManager::clear);
+    }
+
+    public void reset() {
+        booksByUid.values().forEach(OrderBookManager::reset);
+    }
+}
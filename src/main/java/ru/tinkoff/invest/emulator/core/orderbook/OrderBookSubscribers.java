@@ -0,0 +1,13 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+/**
+ * Источник подписчиков на полный стакан (gRPC-стримы, WebSocket админ-панели).
+ * {@link OrderBookPublisher} не строит снапшот, пока ни у одного источника нет подписчиков на инструмент.
+ */
+public interface OrderBookSubscribers {
+
+    /**
+     * @param instrumentId uid инструмента
+     */
+    boolean hasOrderBookSubscribers(String instrumentId);
+}
@@ -0,0 +1,187 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import ru.tinkoff.invest.emulator.core.model.OrderNode;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Индекс заявок стакана: UUID → {@link OrderNode} на открытой адресации.
+ * <p>
+ * Ключ хранится как две половины UUID в параллельных массивах {@code long[]}, значения — в {@code OrderNode[]},
+ * поэтому на запись нет ни узла HashMap, ни ссылки на объект UUID: слот занимает 20 байт
+ * (8 + 8 + 4 при сжатых ссылках) против ~48 у {@link java.util.HashMap} (Node + ячейка таблицы).
+ * Линейное пробирование, удаление со сдвигом назад (без tombstone), заполнение не выше 1/2.
+ * <p>
+ * Не потокобезопасен: используется только под write lock стакана.
+ */
+public final class OrderIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] msbs;
+    private long[] lsbs;
+    private OrderNode[] values;
+    private int mask;
+    private int size;
+
+    public OrderIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    public OrderIndex(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(UUID id) {
+        return get(id) != null;
+    }
+
+    public OrderNode get(UUID id) {
+        return get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    public OrderNode get(long msb, long lsb) {
+        int i = slot(msb, lsb);
+        while (values[i] != null) {
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return предыдущее значение по ключу или {@code null}
+     */
+    public OrderNode put(UUID id, OrderNode node) {
+        if (node == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int i = slot(msb, lsb);
+        while (values[i] != null) {
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                OrderNode previous = values[i];
+                values[i] = node;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        msbs[i] = msb;
+        lsbs[i] = lsb;
+        values[i] = node;
+        if (++size > values.length >>> 1) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return удалённое значение или {@code null}, если ключа не было
+     */
+    public OrderNode remove(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int i = slot(msb, lsb);
+        while (values[i] != null) {
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                OrderNode removed = values[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public void forEach(Consumer<OrderNode> action) {
+        for (OrderNode node : values) {
+            if (node != null) {
+                action.accept(node);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Освобождает слот {@code free}, подтягивая назад элементы цепочки, чей домашний слот не лежит
+     * циклически между {@code free} и их текущей позицией.
+     */
+    private void shiftBack(int free) {
+        int i = free;
+        while (true) {
+            i = (i + 1) & mask;
+            OrderNode node = values[i];
+            if (node == null) {
+                break;
+            }
+            int home = slot(msbs[i], lsbs[i]);
+            boolean stays = free <= i ? free < home && home <= i : free < home || home <= i;
+            if (!stays) {
+                msbs[free] = msbs[i];
+                lsbs[free] = lsbs[i];
+                values[free] = node;
+                free = i;
+            }
+        }
+        values[free] = null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        OrderNode[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldMsbs[j], oldLsbs[j]);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                msbs[i] = oldMsbs[j];
+                lsbs[i] = oldLsbs[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        values = new OrderNode[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(long msb, long lsb) {
+        // Финализатор из SplitMix64: случайные UUID и так хорошо распределены, но последовательные id — нет
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return (int) h & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity >>> 1 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
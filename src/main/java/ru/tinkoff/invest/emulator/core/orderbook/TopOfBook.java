@@ -0,0 +1,100 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Лучшие цены и объёмы стакана под seqlock: один писатель (держатель write lock стакана),
+ * читатели без блокировок и без аллокаций.
+ * <p>
+ * Писатель делает счётчик нечётным, пишет поля и делает его снова чётным (release).
+ * Читатель повторяет чтение, пока счётчик нечётный или изменился за время чтения.
+ */
+public final class TopOfBook {
+    private static final VarHandle SEQUENCE;
+    private static final VarHandle BID_PRICE;
+    private static final VarHandle BID_QUANTITY;
+    private static final VarHandle ASK_PRICE;
+    private static final VarHandle ASK_QUANTITY;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SEQUENCE = lookup.findVarHandle(TopOfBook.class, "sequence", long.class);
+            BID_PRICE = lookup.findVarHandle(TopOfBook.class, "bidPrice", long.class);
+            BID_QUANTITY = lookup.findVarHandle(TopOfBook.class, "bidQuantity", long.class);
+            ASK_PRICE = lookup.findVarHandle(TopOfBook.class, "askPrice", long.class);
+            ASK_QUANTITY = lookup.findVarHandle(TopOfBook.class, "askQuantity", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Согласованное состояние лучших цен; {@code version} растёт на единицу при каждом изменении.
+     */
+    public record Quote(long version, long bidPrice, long bidQuantity, long askPrice, long askQuantity) {
+    }
+
+    private long sequence;
+    private long bidPrice = OrderBook.NO_PRICE;
+    private long bidQuantity;
+    private long askPrice = OrderBook.NO_PRICE;
+    private long askQuantity;
+
+    /**
+     * Записывает новые лучшие цены, если они изменились. Вызывается только писателем стакана.
+     *
+     * @return {@code true}, если состояние изменилось и версия выросла
+     */
+    boolean update(long newBidPrice, long newBidQuantity, long newAskPrice, long newAskQuantity) {
+        if (bidPrice == newBidPrice && bidQuantity == newBidQuantity
+                && askPrice == newAskPrice && askQuantity == newAskQuantity) {
+            return false;
+        }
+        long seq = sequence;
+        SEQUENCE.setOpaque(this, seq + 1);
+        VarHandle.storeStoreFence();
+        BID_PRICE.setOpaque(this, newBidPrice);
+        BID_QUANTITY.setOpaque(this, newBidQuantity);
+        ASK_PRICE.setOpaque(this, newAskPrice);
+        ASK_QUANTITY.setOpaque(this, newAskQuantity);
+        SEQUENCE.setRelease(this, seq + 2);
+        return true;
+    }
+
+    public long getBestBid() {
+        return (long) BID_PRICE.getAcquire(this);
+    }
+
+    public long getBestAsk() {
+        return (long) ASK_PRICE.getAcquire(this);
+    }
+
+    public long getVersion() {
+        return (long) SEQUENCE.getAcquire(this) >>> 1;
+    }
+
+    /**
+     * Согласованное чтение всех полей.
+     */
+    public Quote read() {
+        while (true) {
+            long before = (long) SEQUENCE.getAcquire(this);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long bp = (long) BID_PRICE.getOpaque(this);
+            long bq = (long) BID_QUANTITY.getOpaque(this);
+            long ap = (long) ASK_PRICE.getOpaque(this);
+            long aq = (long) ASK_QUANTITY.getOpaque(this);
+            VarHandle.loadLoadFence();
+            if ((long) SEQUENCE.getOpaque(this) == before) {
+                return new Quote(before >>> 1, bp, bq, ap, aq);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
+import ru.tinkoff.invest.emulator.core.model.PriceLevel;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Сторона стакана на TreeMap. Для bids порядок обратный (от большей цены к меньшей).
+ */
+public class TreeMapBookSide implements BookSide {
+    private final NavigableMap<Long, PriceLevel> levels;
+
+    public TreeMapBookSide(boolean descending) {
+        this.levels = descending ? new TreeMap<>(Collections.reverseOrder()) : new TreeMap<>();
+    }
+
+    @Override
+    public PriceLevel get(long price) {
+        return levels.get(price);
+    }
+
+    @Override
+    public PriceLevel getOrCreate(long price) {
+        return levels.computeIfAbsent(price, PriceLevel::new);
+    }
+
+    @Override
+    public void remove(long price) {
+        levels.remove(price);
+    }
+
+    @Override
+    public PriceLevel best() {
+        Map.Entry<Long, PriceLevel> first = levels.firstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    @Override
+    public long bestPrice() {
+        return levels.isEmpty() ? OrderBook.NO_PRICE : levels.firstKey();
+    }
+
+    @Override
+    public int size() {
+        return levels.size();
+    }
+
+    @Override
+    public void clear() {
+        levels.clear();
+    }
+
+    @Override
+    public Iterator<PriceLevel> iterator() {
+        return levels.values().iterator();
+    }
+}
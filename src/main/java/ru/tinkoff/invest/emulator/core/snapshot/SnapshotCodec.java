@@ -0,0 +1,248 @@
+package ru.tinkoff.invest.emulator.core.snapshot;
+
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.model.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Бинарный формат {@link StateSnapshot}.
+ * <p>
+ * Заголовок (magic, версия, время снимка), счета с позициями, затем стаканы. У стакана свой словарь
+ * счетов, поэтому заявка — запись фиксированной длины без строк: id, индекс счёта, направление, тип,
+ * статус, источник, цена, количество, исполнено, время создания. Заявки идут в порядке приоритета.
+ * Файл пишется во временный и атомарно переименовывается, читается через отображение в память.
+ */
+final class SnapshotCodec {
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int ORDER_SIZE = 16 + 4 + 4 + 5 * 8 + 4;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * @return размер записанного файла в байтах
+     */
+    static long write(Path path, StateSnapshot snapshot) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long size;
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(snapshot.createdAt().toEpochMilli());
+
+            out.putInt(snapshot.accounts().size());
+            for (Account account : snapshot.accounts()) {
+                out.putString(account.getId());
+                out.putString(decimalString(account.getBalance()));
+                out.putInt(account.getPositions().size());
+                for (Position position : account.getPositions().values()) {
+                    out.putString(position.getInstrumentId());
+                    out.putLong(position.getQuantity());
+                    out.putString(decimalString(position.getAveragePrice()));
+                    out.putString(decimalString(position.getCurrentPrice()));
+                }
+            }
+
+            out.putInt(snapshot.books().size());
+            for (Map.Entry<String, List<Order>> book : snapshot.books().entrySet()) {
+                writeBook(out, book.getKey(), book.getValue());
+            }
+            out.flush();
+            channel.force(true);
+            size = channel.size();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    private static void writeBook(Output out, String instrumentId, List<Order> orders) throws IOException {
+        Map<String, Integer> accountIndex = new HashMap<>();
+        List<String> accounts = new ArrayList<>();
+        for (Order order : orders) {
+            accountIndex.computeIfAbsent(order.getAccountId(), accountId -> {
+                accounts.add(accountId);
+                return accounts.size() - 1;
+            });
+        }
+        out.putString(instrumentId);
+        out.putInt(accounts.size());
+        for (String accountId : accounts) {
+            out.putString(accountId);
+        }
+        out.putInt(orders.size());
+        for (Order order : orders) {
+            ByteBuffer buf = out.ensure(ORDER_SIZE);
+            buf.putLong(order.getId().getMostSignificantBits());
+            buf.putLong(order.getId().getLeastSignificantBits());
+            buf.putInt(accountIndex.get(order.getAccountId()));
+            buf.put((byte) order.getDirection().ordinal());
+            buf.put((byte) order.getType().ordinal());
+            buf.put((byte) order.getStatus().ordinal());
+            buf.put(order.getSource() != null ? (byte) order.getSource().ordinal() : -1);
+            buf.putLong(order.getPrice());
+            buf.putLong(order.getQuantity());
+            buf.putLong(order.getFilledQuantity());
+            buf.putLong(EmulatorClock.epochSecond(order.getCreatedAtNanos()));
+            buf.putInt(EmulatorClock.nanoOfSecond(order.getCreatedAtNanos()));
+        }
+    }
+
+    static StateSnapshot read(Path path) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large: " + size + " bytes");
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buf.remaining() < 16 || buf.getInt() != MAGIC) {
+            throw new IOException("Not a state snapshot: " + path);
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ": " + path);
+        }
+        Instant createdAt = Instant.ofEpochMilli(buf.getLong());
+
+        int accountCount = buf.getInt();
+        List<Account> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            Account account = new Account(readString(buf), toDecimal(readString(buf)));
+            int positionCount = buf.getInt();
+            for (int j = 0; j < positionCount; j++) {
+                Position position = new Position(readString(buf), buf.getLong(),
+                        toDecimal(readString(buf)), toDecimal(readString(buf)));
+                account.getPositions().put(position.getInstrumentId(), position);
+            }
+            accounts.add(account);
+        }
+
+        int bookCount = buf.getInt();
+        Map<String, List<Order>> books = new LinkedHashMap<>();
+        for (int i = 0; i < bookCount; i++) {
+            String instrumentId = readString(buf);
+            books.put(instrumentId, readOrders(buf, instrumentId));
+        }
+        return new StateSnapshot(createdAt, accounts, books);
+    }
+
+    private static List<Order> readOrders(ByteBuffer buf, String instrumentId) {
+        String[] accounts = new String[buf.getInt()];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = readString(buf);
+        }
+        OrderDirection[] directions = OrderDirection.values();
+        OrderType[] types = OrderType.values();
+        OrderStatus[] statuses = OrderStatus.values();
+        OrderSource[] sources = OrderSource.values();
+
+        int count = buf.getInt();
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(buf.getLong(), buf.getLong());
+            String accountId = accounts[buf.getInt()];
+            OrderDirection direction = directions[buf.get()];
+            OrderType type = types[buf.get()];
+            OrderStatus status = statuses[buf.get()];
+            byte source = buf.get();
+            orders.add(Order.builder()
+                    .id(id)
+                    .instrumentId(instrumentId)
+                    .accountId(accountId)
+                    .direction(direction)
+                    .type(type)
+                    .status(status)
+                    .source(source >= 0 ? sources[source] : null)
+                    .price(buf.getLong())
+                    .quantity(buf.getLong())
+                    .filledQuantity(buf.getLong())
+                    .createdAtNanos(EmulatorClock.toEpochNanos(buf.getLong(), buf.getInt()))
+                    .build());
+        }
+        return orders;
+    }
+
+    private static String decimalString(BigDecimal value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static BigDecimal toDecimal(String value) {
+        return value != null ? new BigDecimal(value) : null;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        short length = buf.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Буфер записи в канал: сбрасывается, когда следующее значение в него не помещается.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer ensure(int size) throws IOException {
+            if (buf.remaining() < size) {
+                flush();
+            }
+            return buf;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4).putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8).putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                ensure(2).putShort((short) -1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Short.MAX_VALUE) {
+                throw new IOException("String is too long for snapshot: " + bytes.length + " bytes");
+            }
+            ensure(2 + bytes.length).putShort((short) bytes.length).put(bytes);
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+    }
+}
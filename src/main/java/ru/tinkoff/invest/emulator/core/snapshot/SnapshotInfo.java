@@ -0,0 +1,9 @@
+package ru.tinkoff.invest.emulator.core.snapshot;
+
+import java.time.Instant;
+
+/**
+ * Результат записи или загрузки снапшота для админки и логов.
+ */
+public record SnapshotInfo(String path, Instant createdAt, int books, long orders, long bytes, long millis) {
+}
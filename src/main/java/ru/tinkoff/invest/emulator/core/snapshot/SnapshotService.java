@@ -0,0 +1,180 @@
+package ru.tinkoff.invest.emulator.core.snapshot;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.journal.CommandJournal;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
+import ru.tinkoff.invest.emulator.core.model.Account;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+import ru.tinkoff.invest.emulator.core.state.AccountManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Снапшоты состояния эмулятора (стаканы, стоящие заявки, счёт с позициями) в бинарном файле {@link SnapshotCodec}.
+ * <p>
+ * Загрузка кладёт заявки в стакан одним {@link OrderBookManager#load(List)} — без блокировки и события
+ * на каждую заявку, поэтому стакан с миллионом заявок поднимается за доли секунды, и с теми же объёмами,
+ * что были при записи, а не со случайными из начальной ликвидности.
+ */
+@Slf4j
+@Service
+public class SnapshotService {
+    private final EmulatorProperties.Snapshot config;
+    private final OrderBookRegistry orderBookRegistry;
+    private final OrderGateway orderGateway;
+    private final AccountManager accountManager;
+    private final CommandJournal journal;
+    private final EmulatorClock clock;
+
+    public SnapshotService(EmulatorProperties properties,
+                           OrderBookRegistry orderBookRegistry,
+                           OrderGateway orderGateway,
+                           AccountManager accountManager,
+                           CommandJournal journal,
+                           EmulatorClock clock) {
+        this.config = properties.getSnapshot();
+        this.orderBookRegistry = orderBookRegistry;
+        this.orderGateway = orderGateway;
+        this.accountManager = accountManager;
+        this.journal = journal;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void restoreOnStartup() {
+        if (!config.isRestoreOnStartup()) {
+            return;
+        }
+        Path path = getPath();
+        if (!Files.exists(path)) {
+            log.info("SnapshotService: no snapshot at {}, starting from config", path);
+            return;
+        }
+        if (journal.isEnabled() && journal.size() > 0) {
+            // Журнал продолжается с последнего сброса или загрузки, он новее снапшота
+            log.info("SnapshotService: journal has {} records, snapshot {} not restored", journal.size(), path);
+            return;
+        }
+        restore(path);
+    }
+
+    @Scheduled(fixedDelayString = "${emulator.snapshot.interval-ms:60000}",
+            initialDelayString = "${emulator.snapshot.interval-ms:60000}")
+    public void writeScheduled() {
+        if (config.isScheduled()) {
+            write();
+        }
+    }
+
+    public Path getPath() {
+        return Path.of(config.getPath());
+    }
+
+    public boolean exists() {
+        return Files.exists(getPath());
+    }
+
+    public SnapshotInfo write() {
+        return write(getPath());
+    }
+
+    public SnapshotInfo write(Path path) {
+        long start = System.nanoTime();
+        StateSnapshot snapshot = capture();
+        long bytes;
+        try {
+            bytes = SnapshotCodec.write(path, snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot " + path, e);
+        }
+        SnapshotInfo info = info(path, snapshot, bytes, start);
+        log.info("SnapshotService: written {}", info);
+        return info;
+    }
+
+    public SnapshotInfo restore() {
+        return restore(getPath());
+    }
+
+    /**
+     * Заменяет стаканы и счёт содержимым снапшота. Стаканы инструментов, которых нет в снапшоте, не меняются.
+     * Загрузка идёт через {@link OrderGateway#exclusive}: команды не попадают между стаканами, счётом и журналом.
+     */
+    public SnapshotInfo restore(Path path) {
+        long start = System.nanoTime();
+        StateSnapshot snapshot;
+        long bytes;
+        try {
+            bytes = Files.size(path);
+            snapshot = SnapshotCodec.read(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + path, e);
+        }
+
+        String accountId = accountManager.getAccount().getId();
+        Optional<Account> account = snapshot.accounts().stream()
+                .filter(candidate -> candidate.getId().equals(accountId))
+                .findFirst();
+        orderGateway.exclusive(() -> {
+            snapshot.books().forEach((instrumentId, orders) -> {
+                OrderBookManager book = orderBookRegistry.find(instrumentId);
+                if (book == null) {
+                    log.warn("SnapshotService: skipping book of unknown instrument {}", instrumentId);
+                    return;
+                }
+                book.load(orders);
+            });
+            if (account.isPresent()) {
+                journal.restore(account.get(), orderBookRegistry.getBooks());
+                // Сделки по прежнему состоянию ложатся на счёт до того, как он будет заменён
+                return accountManager.restore(account.get().getBalance(), account.get().getPositions().values());
+            }
+            log.warn("SnapshotService: snapshot has no account {}, account not restored", accountId);
+            // Журналу нужен текущий счёт; слушатели дорожек не берут блокировок стаканов, ожидание не взаимоблокируется
+            journal.restore(accountManager.captureAccount().join(), orderBookRegistry.getBooks());
+            return CompletableFuture.<Void>completedFuture(null);
+        }).join();
+
+        SnapshotInfo info = info(path, snapshot, bytes, start);
+        log.info("SnapshotService: restored {}", info);
+        return info;
+    }
+
+    /**
+     * Заявки всех стаканов под их read lock и счёт на тот же момент. Сделки, исполненные до взятия блокировок,
+     * уже отданы в шину событий, поэтому копия счёта ставится в дорожку счёта под блокировками,
+     * а ожидается после их снятия: matching не стоит, пока сделки применяются к счёту.
+     */
+    private StateSnapshot capture() {
+        Collection<OrderBookManager> books = orderBookRegistry.getBooks();
+        List<Lock> locks = books.stream().map(book -> (Lock) book.getLock().readLock()).toList();
+        Map<String, List<Order>> orders = new LinkedHashMap<>();
+        CompletableFuture<Account> account;
+        locks.forEach(Lock::lock);
+        try {
+            books.forEach(book -> orders.put(book.getInstrumentId(), book.getRestingOrders()));
+            account = accountManager.captureAccount();
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+        return new StateSnapshot(clock.instant(), List.of(account.join()), orders);
+    }
+
+    private static SnapshotInfo info(Path path, StateSnapshot snapshot, long bytes, long start) {
+        return new SnapshotInfo(path.toString(), snapshot.createdAt(), snapshot.books().size(),
+                snapshot.orderCount(), bytes, (System.nanoTime() - start) / 1_000_000);
+    }
+}
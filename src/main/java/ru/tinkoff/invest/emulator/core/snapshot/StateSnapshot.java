@@ -0,0 +1,19 @@
+package ru.tinkoff.invest.emulator.core.snapshot;
+
+import ru.tinkoff.invest.emulator.core.model.Account;
+import ru.tinkoff.invest.emulator.core.model.Order;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Состояние эмулятора на момент {@code createdAt}: счета с позициями и стоящие заявки по uid инструмента
+ * в порядке приоритета.
+ */
+record StateSnapshot(Instant createdAt, List<Account> accounts, Map<String, List<Order>> books) {
+
+    long orderCount() {
+        return books.values().stream().mapToLong(List::size).sum();
+    }
+}
@@ -4,61 +4,140 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
 import ru.tinkoff.invest.emulator.core.model.Account;
 import ru.tinkoff.invest.emulator.core.model.Position;
+import ru.tinkoff.invest.emulator.core.model.TickSize;
 import ru.tinkoff.invest.emulator.core.model.Trade;
 
 import jakarta.annotation.PostConstruct;
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import ru.tinkoff.invest.emulator.core.event.TradeExecutedEvent;
 import ru.tinkoff.invest.emulator.core.model.OrderDirection;
 import ru.tinkoff.invest.emulator.core.model.OrderSource;
-import org.springframework.context.event.EventListener;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AccountManager {
     private final EmulatorProperties properties;
+    private final EventBus eventBus;
     private Account account;
+    private final Map<String, TickSize> tickSizes = new HashMap<>();
 
     @PostConstruct
     public void init() {
+        for (EmulatorProperties.Instrument instrument : properties.getWatchlist()) {
+            tickSizes.put(instrument.getUid(), new TickSize(instrument.getMinPriceIncrement()));
+        }
         account = new Account(
                 properties.getAccount().getId(),
                 properties.getAccount().getInitialBalance()
         );
+        // Все сделки счёта идут через одну дорожку в порядке исполнения, там же выполняются сброс и восстановление
+        eventBus.subscribe(TradeExecutedEvent.class, event -> account.getId(), this::onTradeExecuted);
         log.info("Initialized account {} with balance {}", account.getId(), account.getBalance());
     }
 
     /**
-     * Сброс состояния аккаунта к начальным значениям.
+     * Сброс состояния аккаунта к начальным значениям. Выполняется в дорожке счёта после того, как все дорожки
+     * шины обработали отданные до вызова события: сделки до сброса не лягут на уже обнулённый счёт.
      */
-    public synchronized void reset() {
+    public CompletableFuture<Void> reset() {
+        return afterPublishedEvents(() -> {
+            applyReset();
+            return null;
+        });
+    }
+
+    private synchronized void applyReset() {
         account.setBalance(properties.getAccount().getInitialBalance());
         account.getPositions().clear();
         log.info("Account reset: id={}, balance={}", account.getId(), account.getBalance());
     }
 
-    @EventListener
+    /**
+     * Копия счёта (баланс и позиции) на один момент, для снапшота состояния.
+     */
+    public synchronized Account copyAccount() {
+        Account copy = new Account(account.getId(), account.getBalance());
+        account.getPositions().forEach((instrumentId, position) -> copy.getPositions().put(instrumentId, copyOf(position)));
+        return copy;
+    }
+
+    /**
+     * Копия счёта после применения сделок, отданных в шину до вызова.
+     */
+    public CompletableFuture<Account> captureAccount() {
+        return eventBus.submit(account.getId(), this::copyAccount);
+    }
+
+    /**
+     * Заменяет баланс и позиции счёта сохранёнными в снапшоте или журнале; упорядочено с событиями, как {@link #reset()}.
+     */
+    public CompletableFuture<Void> restore(BigDecimal balance, Collection<Position> positions) {
+        return afterPublishedEvents(() -> {
+            applyRestore(balance, positions);
+            return null;
+        });
+    }
+
+    private synchronized void applyRestore(BigDecimal balance, Collection<Position> positions) {
+        account.setBalance(balance);
+        account.getPositions().clear();
+        positions.forEach(position -> account.getPositions().put(position.getInstrumentId(), copyOf(position)));
+        log.info("Account restored: id={}, balance={}, positions={}", account.getId(), balance, positions.size());
+    }
+
+    private <T> CompletableFuture<T> afterPublishedEvents(Supplier<T> task) {
+        CompletableFuture<Void> drained = eventBus.barrierAll();
+        return eventBus.submit(account.getId(), () -> {
+            drained.join();
+            return task.get();
+        });
+    }
+
+    private static Position copyOf(Position position) {
+        return new Position(position.getInstrumentId(), position.getQuantity(),
+                position.getAveragePrice(), position.getCurrentPrice());
+    }
+
     public void onTradeExecuted(TradeExecutedEvent event) {
         Trade trade = event.getTrade();
+        TickSize tickSize = tickSizes.get(trade.getInstrumentId());
+        if (tickSize == null) {
+            log.warn("Trade {} on unknown instrument {}, account not updated", trade.getId(), trade.getInstrumentId());
+            return;
+        }
 
         // Обновляем аккаунт только если одна из сторон сделки — заявка бота (API)
         if (trade.getAggressorOrderSource() == OrderSource.API) {
             boolean isBuy = trade.getAggressorDirection() == OrderDirection.BUY;
-            updateState(trade.getInstrumentId(), trade.getQuantity(), trade.getPrice(), isBuy);
+            updateState(trade.getInstrumentId(), trade.getQuantity(), tickSize.toPrice(trade.getPrice()), isBuy);
         }
 
         if (trade.getPassiveOrderSource() == OrderSource.API) {
             // Пассивная сторона — противоположное направление от агрессора
             boolean isBuy = trade.getAggressorDirection() != OrderDirection.BUY;
-            updateState(trade.getInstrumentId(), trade.getQuantity(), trade.getPrice(), isBuy);
+            updateState(trade.getInstrumentId(), trade.getQuantity(), tickSize.toPrice(trade.getPrice()), isBuy);
         }
     }
 
+    /**
+     * Завершается, когда сделки, отданные в шину до вызова, применены к счёту.
+     */
+    public CompletableFuture<Void> awaitTrades() {
+        return eventBus.barrier(account.getId());
+    }
+
     public Account getAccount() {
         return account;
     }
@@ -121,18 +200,26 @@ public class AccountManager {
     }
 
     public BigDecimal getPortfolioValue(BigDecimal currentPrice) {
+        return getPortfolioValue(instrumentId -> currentPrice);
+    }
+
+    /**
+     * Стоимость портфеля с оценкой каждой позиции по цене её инструмента.
+     */
+    public BigDecimal getPortfolioValue(Function<String, BigDecimal> priceByInstrument) {
         BigDecimal cash = account.getBalance();
         BigDecimal positionsValue = account.getPositions().values().stream()
                 .map(p -> {
                     // Use current price if provided, else use last known or average (fallback)
-                    BigDecimal price = currentPrice != null ? currentPrice : p.getAveragePrice(); 
+                    BigDecimal currentPrice = priceByInstrument.apply(p.getInstrumentId());
+                    BigDecimal price = currentPrice != null ? currentPrice : p.getAveragePrice();
                     return price.multiply(BigDecimal.valueOf(p.getQuantity()));
                 })
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
         return cash.add(positionsValue);
     }
 
-    public long getMaxLots(boolean isBuy, BigDecimal currentPrice, BigDecimal instrumentPrice) {
+    public long getMaxLots(boolean isBuy, String instrumentId, BigDecimal instrumentPrice) {
         if (instrumentPrice == null || instrumentPrice.compareTo(BigDecimal.ZERO) == 0) {
             log.warn("getMaxLots: instrumentPrice is null or zero, returning 0");
             return 0;
@@ -165,7 +252,7 @@ public class AccountManager {
              // + current position?
              // If we are Long 10, can we sell 10 + maxShort?
              // Usually yes.
-             Position pos = account.getPosition(properties.getInstrument().getUid()); // Assuming single instrument for now as per config
+             Position pos = account.getPosition(instrumentId);
              if (pos != null && pos.getQuantity() > 0) {
                  maxSell += pos.getQuantity();
              }
@@ -0,0 +1,64 @@
+package ru.tinkoff.invest.emulator.core.stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Упорядоченный почтовый ящик одного получателя поверх общего исполнителя.
+ * <p>
+ * Задачи выполняются строго по одной и в порядке постановки, но не в потоке того, кто их поставил:
+ * рассылка только раскладывает сообщения по ящикам, а медленный получатель задерживает лишь свой ящик.
+ * С исполнителем на виртуальных потоках каждый активный ящик занимает свой виртуальный поток.
+ */
+@Slf4j
+public final class Mailbox implements Executor {
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public Mailbox(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (running.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::run);
+            } catch (RejectedExecutionException e) {
+                // Исполнитель остановлен при завершении приложения: доставлять больше некуда
+                running.set(false);
+                tasks.clear();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Mailbox task failed: {}", e.getMessage(), e);
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+        // Задача могла прийти между последним poll и сбросом флага
+        if (!tasks.isEmpty()) {
+            schedule();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.tinkoff.invest.emulator.core.stream;
+
+/**
+ * Что делать, когда клиент не успевает читать стрим и очередь подписчика заполнена.
+ */
+public enum OverflowPolicy {
+    /**
+     * Рыночные данные: в очереди остаётся только последнее значение стакана и лучших цен по инструменту,
+     * при переполнении отбрасываются самые старые сообщения.
+     */
+    CONFLATE,
+    /**
+     * Состояния заявок: ничего не отбрасывается, при переполнении стрим закрывается с {@code RESOURCE_EXHAUSTED}.
+     */
+    DISCONNECT
+}
@@ -1,78 +1,316 @@
 package ru.tinkoff.invest.emulator.core.stream;
 
 import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookSubscribers;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Consumer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
 
+/**
+ * Подписки стримов и рассылка по ним.
+ * <p>
+ * Каждый стрим доставляется через свой {@link StreamSubscriber}: ограниченная очередь с учётом flow control gRPC.
+ * Рассылка только раскладывает сообщения по очередям; отправка идёт в почтовом ящике подписчика на виртуальном потоке.
+ * Рыночные данные конфлируются ({@link OverflowPolicy#CONFLATE}), состояния заявок не теряются, но стрим,
+ * переполнивший очередь, закрывается ({@link OverflowPolicy#DISCONNECT}).
+ */
 @Slf4j
 @Service
-public class StreamManager {
+public class StreamManager implements OrderBookSubscribers {
 
-    private final Map<StreamObserver<?>, Subscription<?>> subscriptions = new ConcurrentHashMap<>();
-    private final Map<String, Set<StreamObserver<?>>> orderBookSubscribers = new ConcurrentHashMap<>();
-    private final Map<String, Set<StreamObserver<?>>> accountSubscribers = new ConcurrentHashMap<>();
+    private final int queueCapacity;
+    // Исполнитель почтовых ящиков подписчиков: по виртуальному потоку на стрим, у которого есть что отправить
+    private final Executor deliveryExecutor;
+    // Один стрим может быть подписан на несколько инструментов и счетов
+    private final Map<StreamObserver<?>, Subscription> subscriptions = new ConcurrentHashMap<>();
+    // Подписчики стакана и глубина, запрошенная каждым из них
+    private final Map<String, Map<StreamSubscriber, Integer>> orderBookSubscribers = new ConcurrentHashMap<>();
+    // Подписки на дельты стакана (OrderBookInstrument.incremental), тоже со своей глубиной
+    private final Map<String, Map<StreamSubscriber, Integer>> orderBookDeltaSubscribers = new ConcurrentHashMap<>();
+    // Подписки на стакан глубины 1: получают только лучшие цены
+    private final Map<String, Set<StreamSubscriber>> topOfBookSubscribers = new ConcurrentHashMap<>();
+    private final Map<String, Set<StreamSubscriber>> accountSubscribers = new ConcurrentHashMap<>();
 
-    public <T> void addOrderBookSubscription(StreamObserver<T> observer, String instrumentId) {
-        orderBookSubscribers.computeIfAbsent(instrumentId, k -> ConcurrentHashMap.newKeySet()).add(observer);
-        subscriptions.put(observer, new Subscription<>(observer, instrumentId));
-        log.info("Added OrderBook subscription for {}", instrumentId);
+    @Autowired
+    public StreamManager(EmulatorProperties properties) {
+        this(properties, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    StreamManager(EmulatorProperties properties, Executor deliveryExecutor) {
+        this.queueCapacity = properties.getStreams().getQueueCapacity();
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (deliveryExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Регистрирует стрим с политикой переполнения. Вызывается из метода gRPC-сервиса до возврата из него:
+     * только тогда на вызов можно повесить обработчики готовности и отмены.
+     */
+    public void register(StreamObserver<?> observer, OverflowPolicy policy) {
+        subscription(observer, policy);
+    }
+
+    /**
+     * @param instrumentId uid инструмента — тот же ключ, с которым стакан публикует обновления
+     * @param depth        глубина стакана для этого подписчика
+     */
+    public <T> void addOrderBookSubscription(StreamObserver<T> observer, String instrumentId, int depth) {
+        Subscription sub = subscription(observer, OverflowPolicy.CONFLATE);
+        sub.instrumentIds().add(instrumentId);
+        putDepth(orderBookSubscribers, instrumentId, sub.subscriber(), depth);
+        unindexIfClosed(sub);
+        log.info("Added OrderBook subscription for {}, depth={}", instrumentId, depth);
+    }
+
+    public <T> void addOrderBookDeltaSubscription(StreamObserver<T> observer, String instrumentId, int depth) {
+        Subscription sub = subscription(observer, OverflowPolicy.CONFLATE);
+        sub.deltaIds().add(instrumentId);
+        putDepth(orderBookDeltaSubscribers, instrumentId, sub.subscriber(), depth);
+        unindexIfClosed(sub);
+        log.info("Added OrderBook delta subscription for {}, depth={}", instrumentId, depth);
+    }
+
+    public <T> void addTopOfBookSubscription(StreamObserver<T> observer, String instrumentId) {
+        Subscription sub = subscription(observer, OverflowPolicy.CONFLATE);
+        sub.topOfBookIds().add(instrumentId);
+        add(topOfBookSubscribers, instrumentId, sub.subscriber());
+        unindexIfClosed(sub);
+        log.info("Added TopOfBook subscription for {}", instrumentId);
     }
 
     public <T> void addOrderStateSubscription(StreamObserver<T> observer, String accountId) {
-        accountSubscribers.computeIfAbsent(accountId, k -> ConcurrentHashMap.newKeySet()).add(observer);
-        subscriptions.put(observer, new Subscription<>(observer, accountId));
+        Subscription sub = subscription(observer, OverflowPolicy.DISCONNECT);
+        sub.accountIds().add(accountId);
+        add(accountSubscribers, accountId, sub.subscriber());
+        unindexIfClosed(sub);
         log.info("Added OrderState subscription for account {}", accountId);
     }
 
+    public void removeOrderBookSubscription(StreamObserver<?> observer, String instrumentId) {
+        Subscription sub = subscriptions.get(observer);
+        if (sub == null) {
+            return;
+        }
+        removeDepth(orderBookSubscribers, instrumentId, sub.subscriber());
+        removeDepth(orderBookDeltaSubscribers, instrumentId, sub.subscriber());
+        remove(topOfBookSubscribers, instrumentId, sub.subscriber());
+        sub.instrumentIds().remove(instrumentId);
+        sub.deltaIds().remove(instrumentId);
+        sub.topOfBookIds().remove(instrumentId);
+    }
+
+    /**
+     * Снимает все подписки стрима: O(число его ключей), без обхода остальных подписчиков.
+     */
     public void removeSubscription(StreamObserver<?> observer) {
-        Subscription<?> sub = subscriptions.remove(observer);
+        Subscription sub = subscriptions.remove(observer);
         if (sub != null) {
-            if (orderBookSubscribers.containsKey(sub.key)) {
-                orderBookSubscribers.get(sub.key).remove(observer);
-            }
-            if (accountSubscribers.containsKey(sub.key)) {
-                accountSubscribers.get(sub.key).remove(observer);
-            }
+            sub.subscriber().close();
+            unindex(sub);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public <T> void broadcastOrderBook(String instrumentId, T message) {
-        Set<StreamObserver<?>> observers = orderBookSubscribers.get(instrumentId);
-        if (observers != null && !observers.isEmpty()) {
-            log.debug("broadcastOrderBook: sending to {} observers for instrumentId={}", observers.size(), instrumentId);
-            observers.forEach(obs -> {
-                try {
-                    ((StreamObserver<T>) obs).onNext(message);
-                } catch (Exception e) {
-                    log.warn("Failed to send to observer, removing: {}", e.getMessage());
-                    removeSubscription(obs);
-                }
-            });
+    private void unindex(Subscription sub) {
+        StreamSubscriber subscriber = sub.subscriber();
+        for (String instrumentId : sub.instrumentIds()) {
+            removeDepth(orderBookSubscribers, instrumentId, subscriber);
+        }
+        for (String instrumentId : sub.deltaIds()) {
+            removeDepth(orderBookDeltaSubscribers, instrumentId, subscriber);
+        }
+        for (String instrumentId : sub.topOfBookIds()) {
+            remove(topOfBookSubscribers, instrumentId, subscriber);
+        }
+        for (String accountId : sub.accountIds()) {
+            remove(accountSubscribers, accountId, subscriber);
+        }
+    }
+
+    private void unindexIfClosed(Subscription sub) {
+        // Стрим мог закрыться (отмена, обрыв) между поиском подписки и добавлением ключа в индекс
+        if (sub.subscriber().isClosed()) {
+            unindex(sub);
+        }
+    }
+
+    /**
+     * Снимает все подписки стрима и завершает его ({@code onCompleted}) после уже начатой отправки.
+     */
+    public void completeSubscription(StreamObserver<?> observer) {
+        Subscription sub = subscriptions.get(observer);
+        if (sub != null) {
+            sub.subscriber().complete();
+            removeSubscription(observer);
+        } else {
+            observer.onCompleted();
+        }
+    }
+
+    /**
+     * Ответ одному стриму (например, подтверждение подписки) — через ту же очередь, что и рассылки,
+     * чтобы не обгонять их и не вызывать {@code onNext} параллельно.
+     */
+    public void send(StreamObserver<?> observer, Object message) {
+        subscription(observer, OverflowPolicy.CONFLATE).subscriber().offer(StreamSubscriber.Kind.RESPONSE, null, message);
+    }
+
+    /**
+     * Рассылка стакана с учётом глубины подписчика.
+     *
+     * @param messageByDepth сообщение для глубины; вызывается для каждого подписчика, поэтому должно кешировать
+     */
+    public <T> void broadcastOrderBook(String instrumentId, IntFunction<T> messageByDepth) {
+        Map<StreamSubscriber, Integer> subscribers = orderBookSubscribers.get(instrumentId);
+        if (subscribers != null && !subscribers.isEmpty()) {
+            log.debug("broadcastOrderBook: sending to {} observers for instrumentId={}", subscribers.size(), instrumentId);
+            send(subscribers, StreamSubscriber.Kind.ORDER_BOOK, instrumentId, messageByDepth);
         } else {
             log.debug("broadcastOrderBook: no observers for instrumentId={}", instrumentId);
         }
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Рассылка подписчикам дельт; {@code messageByDepth} — как в {@link #broadcastOrderBook}.
+     * Дельты не конфлируются: каждая опирается на предыдущую.
+     */
+    public <T> void broadcastOrderBookDelta(String instrumentId, IntFunction<T> messageByDepth) {
+        Map<StreamSubscriber, Integer> subscribers = orderBookDeltaSubscribers.get(instrumentId);
+        if (subscribers != null) {
+            send(subscribers, StreamSubscriber.Kind.ORDER_BOOK_DELTA, instrumentId, messageByDepth);
+        }
+    }
+
+    private <T> void send(Map<StreamSubscriber, Integer> subscribers, StreamSubscriber.Kind kind, String instrumentId,
+                          IntFunction<T> messageByDepth) {
+        subscribers.forEach((subscriber, depth) -> subscriber.offer(kind, instrumentId, messageByDepth.apply(depth)));
+    }
+
+    @Override
+    public boolean hasOrderBookSubscribers(String instrumentId) {
+        Map<StreamSubscriber, Integer> subscribers = orderBookSubscribers.get(instrumentId);
+        return subscribers != null && !subscribers.isEmpty() || hasOrderBookDeltaSubscribers(instrumentId);
+    }
+
+    public boolean hasOrderBookDeltaSubscribers(String instrumentId) {
+        Map<StreamSubscriber, Integer> subscribers = orderBookDeltaSubscribers.get(instrumentId);
+        return subscribers != null && !subscribers.isEmpty();
+    }
+
+    public boolean hasTopOfBookSubscribers(String instrumentId) {
+        Set<StreamSubscriber> subscribers = topOfBookSubscribers.get(instrumentId);
+        return subscribers != null && !subscribers.isEmpty();
+    }
+
+    public <T> void broadcastTopOfBook(String instrumentId, T message) {
+        Set<StreamSubscriber> subscribers = topOfBookSubscribers.get(instrumentId);
+        if (subscribers != null) {
+            subscribers.forEach(subscriber -> subscriber.offer(StreamSubscriber.Kind.TOP_OF_BOOK, instrumentId, message));
+        }
+    }
+
     public <T> void broadcastOrderState(String accountId, T message) {
-        Set<StreamObserver<?>> observers = accountSubscribers.get(accountId);
-        if (observers != null) {
-            observers.forEach(obs -> {
-                try {
-                    ((StreamObserver<T>) obs).onNext(message);
-                } catch (Exception e) {
-                    log.warn("Failed to send to observer, removing: {}", e.getMessage());
-                    removeSubscription(obs);
-                }
-            });
+        Set<StreamSubscriber> subscribers = accountSubscribers.get(accountId);
+        if (subscribers != null) {
+            subscribers.forEach(subscriber -> subscriber.offer(StreamSubscriber.Kind.ORDER_STATE, accountId, message));
         }
     }
 
-    private record Subscription<T>(StreamObserver<T> observer, String key) {}
+    /**
+     * Открытых стримов с подписками.
+     */
+    public int getActiveStreams() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Подписок (инструмент или счёт в стриме) по всем открытым стримам.
+     */
+    public int getActiveSubscriptions() {
+        int count = 0;
+        for (Subscription sub : subscriptions.values()) {
+            count += sub.instrumentIds().size() + sub.deltaIds().size() + sub.topOfBookIds().size()
+                    + sub.accountIds().size();
+        }
+        return count;
+    }
+
+    /**
+     * Глубина очередей и счётчики потерь по каждому стриму.
+     */
+    public List<SubscriberStats> getSubscriberStats() {
+        return subscriptions.values().stream()
+                .map(sub -> {
+                    Set<String> instrumentIds = new HashSet<>(sub.instrumentIds());
+                    instrumentIds.addAll(sub.deltaIds());
+                    instrumentIds.addAll(sub.topOfBookIds());
+                    return sub.subscriber().stats(instrumentIds, Set.copyOf(sub.accountIds()));
+                })
+                .toList();
+    }
+
+    private Subscription subscription(StreamObserver<?> observer, OverflowPolicy policy) {
+        return subscriptions.computeIfAbsent(observer, k -> new Subscription(
+                new StreamSubscriber(observer, policy, queueCapacity, () -> removeSubscription(observer),
+                        deliveryExecutor)));
+    }
+
+    // Добавление и удаление атомарны по ключу: пустые наборы удаляются, чтобы uid инструментов и счетов
+    // от давно закрытых стримов не копились в индексах
+
+    private static void putDepth(Map<String, Map<StreamSubscriber, Integer>> index, String key,
+                            StreamSubscriber subscriber, int depth) {
+        index.compute(key, (k, subscribers) -> {
+            Map<StreamSubscriber, Integer> result = subscribers != null ? subscribers : new ConcurrentHashMap<>();
+            result.put(subscriber, depth);
+            return result;
+        });
+    }
+
+    private static void add(Map<String, Set<StreamSubscriber>> index, String key, StreamSubscriber subscriber) {
+        index.compute(key, (k, subscribers) -> {
+            Set<StreamSubscriber> result = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            result.add(subscriber);
+            return result;
+        });
+    }
+
+    private static void removeDepth(Map<String, Map<StreamSubscriber, Integer>> index, String key, StreamSubscriber subscriber) {
+        index.computeIfPresent(key, (k, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private static void remove(Map<String, Set<StreamSubscriber>> index, String key, StreamSubscriber subscriber) {
+        index.computeIfPresent(key, (k, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private record Subscription(StreamSubscriber subscriber, Set<String> instrumentIds, Set<String> deltaIds,
+                                Set<String> topOfBookIds, Set<String> accountIds) {
+        Subscription(StreamSubscriber subscriber) {
+            this(subscriber, ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet(),
+                    ConcurrentHashMap.newKeySet());
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package ru.tinkoff.invest.emulator.core.stream;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Число живых стримов и подписок в метриках actuator: рост без нагрузки означает, что мёртвые стримы не снимаются.
+ */
+@Component
+@RequiredArgsConstructor
+public class StreamMetrics implements MeterBinder {
+
+    private final StreamManager streamManager;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("emulator.streams.active", streamManager, StreamManager::getActiveStreams)
+                .description("Open gRPC streams with at least one subscription")
+                .register(registry);
+        Gauge.builder("emulator.streams.subscriptions", streamManager, StreamManager::getActiveSubscriptions)
+                .description("Instrument and account subscriptions across open gRPC streams")
+                .register(registry);
+    }
+}
@@ -0,0 +1,268 @@
+package ru.tinkoff.invest.emulator.core.stream;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Доставка сообщений в один стрим с учётом flow control gRPC.
+ * <p>
+ * Сообщения ставятся в ограниченную очередь и уходят в {@code onNext}, только пока
+ * {@link ServerCallStreamObserver#isReady()}: медленный клиент копит очередь здесь, а не буферы Netty.
+ * Остаток отправляется из {@code onReady}. При переполнении действует {@link OverflowPolicy}.
+ * <p>
+ * Отправка идёт через {@link Mailbox} подписчика, а не в потоке рассылки: вызовы {@code onNext}, {@code onCompleted}
+ * и {@code onError} одного стрима последовательны, а медленный стрим не задерживает остальные.
+ */
+@Slf4j
+final class StreamSubscriber {
+    private static final AtomicLong IDS = new AtomicLong();
+
+    /**
+     * Тип сообщения: сообщения конфлируемого типа по одному инструменту заменяют друг друга в очереди.
+     */
+    enum Kind {
+        ORDER_BOOK(true),
+        ORDER_BOOK_DELTA(false),
+        TOP_OF_BOOK(true),
+        ORDER_STATE(false),
+        RESPONSE(false);
+
+        private final boolean conflating;
+
+        Kind(boolean conflating) {
+            this.conflating = conflating;
+        }
+    }
+
+    private final long id = IDS.incrementAndGet();
+    private final StreamObserver<Object> observer;
+    // null, если стрим не даёт flow control (например, обычный StreamObserver в тестах): считается всегда готовым
+    private final ServerCallStreamObserver<Object> callObserver;
+    private final OverflowPolicy policy;
+    private final int capacity;
+    private final Runnable onClose;
+    private final Mailbox mailbox;
+
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    // Ожидающие отправки конфлируемые сообщения по инструменту: новое значение заменяет старое на месте
+    private final Map<Kind, Map<String, Pending>> latest = new EnumMap<>(Kind.class);
+    private boolean closed;
+    // Отправка уже стоит в почтовом ящике или идёт
+    private boolean drainScheduled;
+    private int maxQueueDepth;
+    private long delivered;
+    private long conflated;
+    private long dropped;
+
+    /**
+     * @param onClose вызывается, когда стрим закрыт из-за переполнения, ошибки отправки, отмены клиентом
+     *                или завершения вызова
+     * @param executor исполнитель почтового ящика подписчика
+     */
+    @SuppressWarnings("unchecked")
+    StreamSubscriber(StreamObserver<?> observer, OverflowPolicy policy, int capacity, Runnable onClose,
+                     Executor executor) {
+        this.observer = (StreamObserver<Object>) observer;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.onClose = onClose;
+        this.mailbox = new Mailbox(executor);
+        this.callObserver = observer instanceof ServerCallStreamObserver<?> call
+                ? (ServerCallStreamObserver<Object>) call
+                : null;
+        if (callObserver != null) {
+            try {
+                callObserver.setOnReadyHandler(this::onReady);
+                callObserver.setOnCancelHandler(() -> onTerminated("cancelled by client"));
+                // Закрытие вызова сервером (onCompleted/onError) и обрыв транспорта тоже снимают подписки
+                callObserver.setOnCloseHandler(() -> onTerminated("closed"));
+            } catch (IllegalStateException | UnsupportedOperationException e) {
+                // Обработчики ставятся только до возврата из метода сервиса; без них очередь досылается при следующем сообщении
+                log.debug("Stream {}: call handlers not installed: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ставит сообщение в очередь и, если отправка ещё не запланирована, планирует её в почтовом ящике.
+     *
+     * @param topic uid инструмента или счёта; ключ конфляции вместе с {@code kind}
+     */
+    void offer(Kind kind, String topic, Object message) {
+        boolean open;
+        boolean schedule = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            open = enqueue(kind, topic, message);
+            if (open && !drainScheduled) {
+                drainScheduled = true;
+                schedule = true;
+            }
+        }
+        if (!open) {
+            onClose.run();
+        } else if (schedule) {
+            mailbox.execute(this::drain);
+        }
+    }
+
+    /**
+     * Закрывает стрим штатно: очередь отбрасывается, клиенту уходит {@code onCompleted} после начатой отправки.
+     */
+    void complete() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            close();
+        }
+        mailbox.execute(observer::onCompleted);
+    }
+
+    /**
+     * Отписка без сигнала клиенту: стрим уже завершён с его стороны.
+     */
+    synchronized void close() {
+        closed = true;
+        queue.clear();
+        latest.clear();
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized SubscriberStats stats(Set<String> instrumentIds, Set<String> accountIds) {
+        return new SubscriberStats(id, policy, instrumentIds, accountIds, queue.size(), maxQueueDepth,
+                delivered, conflated, dropped, isReady());
+    }
+
+    private void onReady() {
+        boolean schedule = false;
+        synchronized (this) {
+            if (!closed && !queue.isEmpty() && !drainScheduled) {
+                drainScheduled = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            mailbox.execute(this::drain);
+        }
+    }
+
+    private void onTerminated(String reason) {
+        log.info("Stream {}: {}", id, reason);
+        close();
+        onClose.run();
+    }
+
+    /**
+     * @return {@code false}, если очередь переполнена и стрим закрыт
+     */
+    private boolean enqueue(Kind kind, String topic, Object message) {
+        if (kind.conflating) {
+            Pending pending = latest.computeIfAbsent(kind, k -> new HashMap<>()).get(topic);
+            if (pending != null) {
+                pending.message = message;
+                conflated++;
+                return true;
+            }
+        }
+        if (queue.size() >= capacity && !makeRoom()) {
+            return false;
+        }
+        Pending pending = new Pending(kind, topic, message);
+        queue.add(pending);
+        if (kind.conflating) {
+            latest.get(kind).put(topic, pending);
+        }
+        maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        return true;
+    }
+
+    /**
+     * Освобождает место в полной очереди по политике стрима.
+     *
+     * @return {@code false}, если стрим закрыт
+     */
+    private boolean makeRoom() {
+        if (policy == OverflowPolicy.DISCONNECT) {
+            log.warn("Stream {}: queue overflow ({} messages), disconnecting", id, queue.size());
+            close();
+            mailbox.execute(() -> observer.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Stream queue overflow: client does not keep up")
+                    .asRuntimeException()));
+            return false;
+        }
+        // Дельта, выпавшая из очереди, видна клиенту по разрыву sequence; восстановится по ближайшему полному стакану
+        Pending oldest = queue.poll();
+        forget(oldest);
+        dropped++;
+        return true;
+    }
+
+    /**
+     * Отправка из почтового ящика: {@code onNext} вызывается вне монитора, чтобы производители не ждали сеть.
+     * Пока клиент не готов, остаток ждёт {@code onReady}.
+     */
+    private void drain() {
+        while (true) {
+            Object message;
+            synchronized (this) {
+                if (closed || queue.isEmpty() || !isReady()) {
+                    drainScheduled = false;
+                    return;
+                }
+                Pending pending = queue.poll();
+                forget(pending);
+                message = pending.message;
+                delivered++;
+            }
+            try {
+                observer.onNext(message);
+            } catch (Exception e) {
+                log.warn("Stream {}: failed to send, removing: {}", id, e.getMessage());
+                synchronized (this) {
+                    drainScheduled = false;
+                }
+                close();
+                onClose.run();
+                return;
+            }
+        }
+    }
+
+    private boolean isReady() {
+        return callObserver == null || callObserver.isReady();
+    }
+
+    private void forget(Pending pending) {
+        if (pending.kind.conflating) {
+            latest.get(pending.kind).remove(pending.topic);
+        }
+    }
+
+    private static final class Pending {
+        final Kind kind;
+        final String topic;
+        Object message;
+
+        Pending(Kind kind, String topic, Object message) {
+            this.kind = kind;
+            this.topic = topic;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.tinkoff.invest.emulator.core.stream;
+
+import java.util.Set;
+
+/**
+ * Состояние очереди одного стрима.
+ *
+ * @param queueDepth    сообщений ждёт отправки сейчас
+ * @param maxQueueDepth наибольшая глубина очереди за время жизни стрима
+ * @param conflated     сообщений заменено более свежим значением того же стакана
+ * @param dropped       сообщений отброшено при переполнении
+ */
+public record SubscriberStats(long id, OverflowPolicy policy, Set<String> instrumentIds, Set<String> accountIds,
+                              int queueDepth, int maxQueueDepth, long delivered, long conflated, long dropped,
+                              boolean ready) {
+}
@@ -1,6 +1,8 @@
 package ru.tinkoff.invest.emulator.grpc.mapper;
 
 import com.google.protobuf.Timestamp;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.model.TickSize;
 import ru.tinkoff.piapi.contract.v1.MoneyValue;
 import ru.tinkoff.piapi.contract.v1.Quotation;
 
@@ -21,12 +23,30 @@ public class GrpcMapper {
                 .build();
     }
 
+    public static Quotation toQuotation(long ticks, TickSize tickSize) {
+        return toQuotation(tickSize.toPrice(ticks));
+    }
+
+    public static long toTicks(Quotation quotation, TickSize tickSize) {
+        return tickSize.toTicks(toBigDecimal(quotation));
+    }
+
     public static BigDecimal toBigDecimal(Quotation quotation) {
         if (quotation == null) return BigDecimal.ZERO;
         return BigDecimal.valueOf(quotation.getUnits())
                 .add(BigDecimal.valueOf(quotation.getNano(), 9));
     }
 
+    /**
+     * Время эмулятора ({@link EmulatorClock#nanos()}) без промежуточного {@link Instant}.
+     */
+    public static Timestamp toTimestamp(long epochNanos) {
+        return Timestamp.newBuilder()
+                .setSeconds(EmulatorClock.epochSecond(epochNanos))
+                .setNanos(EmulatorClock.nanoOfSecond(epochNanos))
+                .build();
+    }
+
     public static Timestamp toTimestamp(Instant instant) {
         if (instant == null) return Timestamp.getDefaultInstance();
         return Timestamp.newBuilder()
@@ -35,8 +55,11 @@ public class GrpcMapper {
                 .build();
     }
     
+    /**
+     * {@code null} для отсутствующей метки: подставить текущее время может только вызывающий, у которого есть часы.
+     */
     public static Instant toInstant(Timestamp timestamp) {
-        if (timestamp == null) return Instant.now();
+        if (timestamp == null) return null;
         return Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos());
     }
 
@@ -48,4 +71,8 @@ public class GrpcMapper {
                 .setNano(amount.remainder(BigDecimal.ONE).multiply(BigDecimal.valueOf(1_000_000_000)).intValue())
                 .build();
     }
+
+    public static MoneyValue toMoneyValue(long ticks, TickSize tickSize, String currency) {
+        return toMoneyValue(tickSize.toPrice(ticks), currency);
+    }
 }
@@ -0,0 +1,73 @@
+package ru.tinkoff.invest.emulator.grpc.marshal;
+
+import com.google.protobuf.Message;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+
+import java.io.InputStream;
+
+/**
+ * Маршаллер ответов, принимающий как обычные protobuf-сообщения, так и {@link SerializedMessage}.
+ * <p>
+ * Сгенерированный маршаллер сериализует ответ заново для каждого вызова, поэтому одно обновление стакана
+ * для N подписчиков кодируется N раз. Метод, привязанный через {@link #withPreSerializedResponses},
+ * отправляет байты {@link SerializedMessage} как есть: сообщение сериализуется один раз на всех.
+ */
+public final class PreSerializedMarshaller<T extends Message> implements MethodDescriptor.Marshaller<Object> {
+    private final MethodDescriptor.Marshaller<T> delegate;
+
+    private PreSerializedMarshaller(T defaultInstance) {
+        this.delegate = ProtoUtils.marshaller(defaultInstance);
+    }
+
+    public static <T extends Message> PreSerializedMarshaller<T> of(T defaultInstance) {
+        return new PreSerializedMarshaller<>(defaultInstance);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public InputStream stream(Object value) {
+        if (value instanceof SerializedMessage serialized) {
+            return serialized.stream();
+        }
+        return delegate.stream((T) value);
+    }
+
+    @Override
+    public Object parse(InputStream stream) {
+        return delegate.parse(stream);
+    }
+
+    /**
+     * Копия описания сервиса, в которой ответы {@code method} идут через {@link PreSerializedMarshaller}.
+     * Остальные методы и обработчики не меняются.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <ReqT, RespT extends Message> ServerServiceDefinition withPreSerializedResponses(
+            ServerServiceDefinition definition, MethodDescriptor<ReqT, RespT> method, RespT defaultInstance) {
+        ServiceDescriptor original = definition.getServiceDescriptor();
+        MethodDescriptor<ReqT, Object> rebound = method
+                .toBuilder(method.getRequestMarshaller(), of(defaultInstance))
+                .build();
+
+        ServiceDescriptor.Builder descriptor = ServiceDescriptor.newBuilder(original.getName())
+                .setSchemaDescriptor(original.getSchemaDescriptor());
+        for (MethodDescriptor<?, ?> m : original.getMethods()) {
+            descriptor.addMethod(m.getFullMethodName().equals(method.getFullMethodName()) ? rebound : m);
+        }
+        ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptor.build());
+        for (ServerMethodDefinition<?, ?> m : definition.getMethods()) {
+            if (m.getMethodDescriptor().getFullMethodName().equals(method.getFullMethodName())) {
+                // Обработчик тот же: после стирания типов ему всё равно, что уходит в onNext
+                builder.addMethod(rebound, (ServerCallHandler) m.getServerCallHandler());
+            } else {
+                builder.addMethod(m);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.tinkoff.invest.emulator.grpc.marshal;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Сообщение, уже сериализованное в protobuf. Байты общие для всех получателей и не меняются.
+ *
+ * @see PreSerializedMarshaller
+ */
+public final class SerializedMessage {
+    private final byte[] bytes;
+
+    private SerializedMessage(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public static SerializedMessage of(MessageLite message) {
+        return new SerializedMessage(message.toByteArray());
+    }
+
+    public int size() {
+        return bytes.length;
+    }
+
+    /**
+     * Поток для отправки одному получателю; массив не копируется.
+     */
+    InputStream stream() {
+        return new BytesStream(bytes);
+    }
+
+    /**
+     * {@link KnownLength} и {@link Drainable} позволяют gRPC записать кадр без промежуточного буфера.
+     */
+    private static final class BytesStream extends ByteArrayInputStream implements KnownLength, Drainable {
+        BytesStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int drainTo(OutputStream target) throws java.io.IOException {
+            int length = count - pos;
+            target.write(buf, pos, length);
+            pos = count;
+            return length;
+        }
+    }
+}
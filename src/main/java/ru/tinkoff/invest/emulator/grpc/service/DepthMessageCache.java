@@ -0,0 +1,47 @@
+package ru.tinkoff.invest.emulator.grpc.service;
+
+import java.util.function.IntFunction;
+
+/**
+ * Сообщения одного стакана по допустимым глубинам подписки (1, 10, 20, 30, 40, 50).
+ * Сообщение для глубины строится один раз на версию стакана и дальше раздаётся всем подписчикам этой глубины.
+ */
+final class DepthMessageCache<T> {
+    static final int[] DEPTHS = {1, 10, 20, 30, 40, 50};
+    static final int MAX_DEPTH = 50;
+
+    private final long[] versions = new long[DEPTHS.length];
+    private final Object[] messages = new Object[DEPTHS.length];
+
+    /**
+     * @return {@code true}, если глубину можно запросить в {@code OrderBookInstrument.depth}
+     */
+    static boolean isSupported(int depth) {
+        return indexOf(depth) >= 0;
+    }
+
+    /**
+     * Сообщение версии {@code version} для глубины {@code depth}; строится через {@code build} при первом запросе.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized T get(long version, int depth, IntFunction<T> build) {
+        int i = indexOf(depth);
+        if (i < 0) {
+            throw new IllegalArgumentException("Unsupported depth: " + depth);
+        }
+        if (messages[i] == null || versions[i] != version) {
+            messages[i] = build.apply(depth);
+            versions[i] = version;
+        }
+        return (T) messages[i];
+    }
+
+    private static int indexOf(int depth) {
+        for (int i = 0; i < DEPTHS.length; i++) {
+            if (DEPTHS[i] == depth) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
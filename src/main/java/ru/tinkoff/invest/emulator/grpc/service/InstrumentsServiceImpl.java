@@ -20,15 +20,15 @@ public class InstrumentsServiceImpl extends InstrumentsServiceImplBase {
         String query = request.getQuery();
         log.info("GRPC FindInstrument: query='{}'", query);
 
-        EmulatorProperties.Instrument inst = properties.getInstrument();
-
-        // Simple match
-        boolean match = query.equalsIgnoreCase(inst.getTicker())
-                     || query.equalsIgnoreCase(inst.getFigi())
-                     || query.equalsIgnoreCase(inst.getUid());
-
         FindInstrumentResponse.Builder builder = FindInstrumentResponse.newBuilder();
-        if (match) {
+        for (EmulatorProperties.Instrument inst : properties.getWatchlist()) {
+            // Simple match
+            boolean match = query.equalsIgnoreCase(inst.getTicker())
+                         || query.equalsIgnoreCase(inst.getFigi())
+                         || query.equalsIgnoreCase(inst.getUid());
+            if (!match) {
+                continue;
+            }
             log.info("GRPC FindInstrument: Match found - ticker={}, figi={}, uid={}",
                     inst.getTicker(), inst.getFigi(), inst.getUid());
             builder.addInstruments(InstrumentShort.newBuilder()
@@ -41,7 +41,8 @@ public class InstrumentsServiceImpl extends InstrumentsServiceImplBase {
                     .setApiTradeAvailableFlag(true)
                     .setLot(inst.getLot())
                     .build());
-        } else {
+        }
+        if (builder.getInstrumentsCount() == 0) {
             log.debug("GRPC FindInstrument: No match for query '{}'", query);
         }
 
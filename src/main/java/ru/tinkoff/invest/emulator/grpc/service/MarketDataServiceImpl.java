@@ -1,16 +1,18 @@
 package ru.tinkoff.invest.emulator.grpc.service;
 
 import com.google.protobuf.Timestamp;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
 import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
 import ru.tinkoff.invest.emulator.grpc.mapper.GrpcMapper;
 import ru.tinkoff.piapi.contract.v1.*;
 import ru.tinkoff.piapi.contract.v1.MarketDataServiceGrpc.MarketDataServiceImplBase;
 
-import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -20,24 +22,32 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MarketDataServiceImpl extends MarketDataServiceImplBase {
 
-    private final OrderBookManager orderBookManager;
+    private final OrderBookRegistry orderBookRegistry;
+    private final EmulatorClock clock;
 
     @Override
     public void getOrderBook(GetOrderBookRequest request, StreamObserver<GetOrderBookResponse> responseObserver) {
         log.info("GRPC GetOrderBook: instrumentId={}, depth={}", request.getInstrumentId(), request.getDepth());
 
+        OrderBookManager orderBookManager = orderBookRegistry.find(request.getInstrumentId());
+        if (orderBookManager == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("Instrument not found: " + request.getInstrumentId()).asRuntimeException());
+            return;
+        }
+
         ru.tinkoff.invest.emulator.core.model.OrderBook coreBook = orderBookManager.getSnapshot(request.getDepth());
 
         log.debug("GRPC GetOrderBook: Returning {} bid levels, {} ask levels",
                 coreBook.getBids().size(), coreBook.getAsks().size());
 
         GetOrderBookResponse response = GetOrderBookResponse.newBuilder()
-                .setFigi(request.getInstrumentId()) // Echo back
+                .setFigi(orderBookManager.getInstrument().getFigi())
                 .setDepth(request.getDepth())
-                .addAllBids(mapOrders(coreBook.getBids().values()))
-                .addAllAsks(mapOrders(coreBook.getAsks().values()))
-                .setInstrumentUid(request.getInstrumentId())
-                .setOrderbookTs(GrpcMapper.toTimestamp(Instant.now()))
+                .addAllBids(mapOrders(coreBook.getBids().values(), coreBook.getTickSize()))
+                .addAllAsks(mapOrders(coreBook.getAsks().values(), coreBook.getTickSize()))
+                .setInstrumentUid(orderBookManager.getInstrumentId())
+                .setOrderbookTs(GrpcMapper.toTimestamp(clock.nanos()))
                 .build();
 
         responseObserver.onNext(response);
@@ -62,16 +72,13 @@ public class MarketDataServiceImpl extends MarketDataServiceImplBase {
         responseObserver.onCompleted();
     }
 
-    private List<Order> mapOrders(Iterable<ru.tinkoff.invest.emulator.core.model.PriceLevel> levels) {
-        // Core PriceLevel contains List<Order>.
-        // API Order is just Price + Quantity.
-        // We need to aggregate quantity at each level?
-        // My PriceLevel has `getTotalQuantity`.
-
+    private List<Order> mapOrders(Iterable<ru.tinkoff.invest.emulator.core.model.LevelSnapshot> levels,
+                                  ru.tinkoff.invest.emulator.core.model.TickSize tickSize) {
+        // API Order is just Price + Quantity: the level snapshot already carries the aggregated quantity
         List<Order> result = new java.util.ArrayList<>();
-        for (ru.tinkoff.invest.emulator.core.model.PriceLevel level : levels) {
+        for (ru.tinkoff.invest.emulator.core.model.LevelSnapshot level : levels) {
              result.add(Order.newBuilder()
-                     .setPrice(GrpcMapper.toQuotation(level.getPrice()))
+                     .setPrice(GrpcMapper.toQuotation(level.getPrice(), tickSize))
                      .setQuantity(level.getTotalQuantity())
                      .build());
         }
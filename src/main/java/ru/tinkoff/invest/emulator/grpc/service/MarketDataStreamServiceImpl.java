@@ -1,22 +1,38 @@
 package ru.tinkoff.invest.emulator.grpc.service;
 
+import io.grpc.ServerServiceDefinition;
 import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Scheduled;
 import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.ClockScheduler;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
 import ru.tinkoff.invest.emulator.core.event.OrderBookChangedEvent;
+import ru.tinkoff.invest.emulator.core.model.LevelDelta;
+import ru.tinkoff.invest.emulator.core.model.OrderBookDelta;
 import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookPublisher;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+import ru.tinkoff.invest.emulator.core.orderbook.TopOfBook;
+import ru.tinkoff.invest.emulator.core.stream.OverflowPolicy;
 import ru.tinkoff.invest.emulator.core.stream.StreamManager;
 import ru.tinkoff.invest.emulator.grpc.mapper.GrpcMapper;
+import ru.tinkoff.invest.emulator.grpc.marshal.PreSerializedMarshaller;
+import ru.tinkoff.invest.emulator.grpc.marshal.SerializedMessage;
 import ru.tinkoff.piapi.contract.v1.*;
 import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc.MarketDataStreamServiceImplBase;
 
 import java.math.BigDecimal;
-import java.time.Instant;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -24,13 +40,41 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MarketDataStreamServiceImpl extends MarketDataStreamServiceImplBase {
 
+    private static final int TOP_OF_BOOK_DEPTH = 1;
+    private static final Duration KEEPALIVE_PERIOD = Duration.ofSeconds(5);
+    // Реальное время: SDK отменяет стрим после ~15 секунд без данных, как бы ни шли часы эмулятора
+    private static final Duration KEEPALIVE_MAX_WALL_PERIOD = Duration.ofSeconds(5);
+
     private final StreamManager streamManager;
-    private final OrderBookManager orderBookManager;
-    private final EmulatorProperties properties;
+    private final OrderBookRegistry orderBookRegistry;
+    private final OrderBookPublisher orderBookPublisher;
+    private final EmulatorClock clock;
+    private final ClockScheduler clockScheduler;
+    // Отправка лучших цен: поток спит, пока стакан не изменит TopOfBook, и сверяет версию с отправленной,
+    // промежуточные значения схлопываются
+    private final Thread topOfBookSender = new Thread(this::runTopOfBookSender, "top-of-book-sender");
+    private volatile boolean topOfBookDirty;
+    private volatile boolean running = true;
+    private final Map<String, Long> topOfBookSent = new ConcurrentHashMap<>();
+    // Готовые (уже сериализованные) сообщения стакана и дельт по глубинам, по uid инструмента
+    private final Map<String, DepthMessageCache<SerializedMessage>> orderBookMessages = new ConcurrentHashMap<>();
+    private final Map<String, DepthMessageCache<SerializedMessage>> deltaMessages = new ConcurrentHashMap<>();
+
+    /**
+     * Ответы стрима отправляются через {@link PreSerializedMarshaller}: рассылки передают {@link SerializedMessage},
+     * сериализованный один раз на всех подписчиков.
+     */
+    @Override
+    public ServerServiceDefinition bindService() {
+        return PreSerializedMarshaller.withPreSerializedResponses(super.bindService(),
+                MarketDataStreamServiceGrpc.getMarketDataStreamMethod(), MarketDataResponse.getDefaultInstance());
+    }
 
     @Override
     public StreamObserver<MarketDataRequest> marketDataStream(StreamObserver<MarketDataResponse> responseObserver) {
         log.info("GRPC MarketDataStream: New bidirectional stream established");
+        // Рыночные данные медленному клиенту конфлируются, а не копятся в буферах Netty
+        streamManager.register(responseObserver, OverflowPolicy.CONFLATE);
 
         return new StreamObserver<>() {
             @Override
@@ -41,33 +85,80 @@ public class MarketDataStreamServiceImpl extends MarketDataStreamServiceImplBase
                             subReq.getSubscriptionAction(), subReq.getInstrumentsList().size());
 
                     if (subReq.getSubscriptionAction() == SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE) {
+                        SubscribeOrderBookResponse.Builder subscribeResponse = SubscribeOrderBookResponse.newBuilder()
+                                .setTrackingId("track-" + clock.millis());
+                        // Подписчикам дельт сразу нужен полный стакан, от которого их применять
+                        List<DeltaBase> deltaBooks = new ArrayList<>();
                         for (OrderBookInstrument instr : subReq.getInstrumentsList()) {
+                            OrderBookManager orderBookManager = orderBookRegistry.find(instr.getInstrumentId());
+                            if (orderBookManager == null) {
+                                log.warn("GRPC MarketDataStream: Unknown instrument={}, subscription rejected",
+                                        instr.getInstrumentId());
+                                subscribeResponse.addOrderBookSubscriptions(OrderBookSubscription.newBuilder()
+                                        .setDepth(instr.getDepth())
+                                        .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_INSTRUMENT_NOT_FOUND)
+                                        .setInstrumentUid(instr.getInstrumentId())
+                                        .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE)
+                                        .build());
+                                continue;
+                            }
+
+                            if (!DepthMessageCache.isSupported(instr.getDepth())) {
+                                log.warn("GRPC MarketDataStream: Invalid depth={} for instrument={}, subscription rejected",
+                                        instr.getDepth(), instr.getInstrumentId());
+                                subscribeResponse.addOrderBookSubscriptions(OrderBookSubscription.newBuilder()
+                                        .setDepth(instr.getDepth())
+                                        .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_DEPTH_IS_INVALID)
+                                        .setInstrumentUid(instr.getInstrumentId())
+                                        .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE)
+                                        .build());
+                                continue;
+                            }
+
                             log.info("GRPC MarketDataStream: Subscribing to OrderBook for instrument={}, depth={}",
                                     instr.getInstrumentId(), instr.getDepth());
-                            streamManager.addOrderBookSubscription(responseObserver, instr.getInstrumentId());
-
-                            // Confirm subscription
-                            responseObserver.onNext(MarketDataResponse.newBuilder()
-                                    .setSubscribeOrderBookResponse(SubscribeOrderBookResponse.newBuilder()
-                                            .setTrackingId("track-" + System.currentTimeMillis())
-                                            .addOrderBookSubscriptions(OrderBookSubscription.newBuilder()
-                                                    .setFigi(properties.getInstrument().getFigi())
-                                                    .setDepth(instr.getDepth())
-                                                    .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS)
-                                                    .setInstrumentUid(instr.getInstrumentId())
-                                                    .setStreamId("stream-" + System.currentTimeMillis())
-                                                    .setSubscriptionId(java.util.UUID.randomUUID().toString())
-                                                    .setOrderBookType(OrderBookType.ORDERBOOK_TYPE_EXCHANGE)
-                                                    .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE)
-                                                    .setTicker(properties.getInstrument().getTicker())
-                                                    .setClassCode("TQBR")
-                                                    .build())
-                                            .build())
+                            if (instr.getDepth() == TOP_OF_BOOK_DEPTH) {
+                                // Глубина 1 — только лучшие цены, без построения полного снапшота
+                                streamManager.addTopOfBookSubscription(responseObserver, orderBookManager.getInstrumentId());
+                                signalTopOfBook();
+                            } else if (instr.getIncremental()) {
+                                streamManager.addOrderBookDeltaSubscription(responseObserver, orderBookManager.getInstrumentId(), instr.getDepth());
+                                deltaBooks.add(new DeltaBase(orderBookManager, instr.getDepth()));
+                            } else {
+                                streamManager.addOrderBookSubscription(responseObserver, orderBookManager.getInstrumentId(), instr.getDepth());
+                            }
+
+                            EmulatorProperties.Instrument instrument = orderBookManager.getInstrument();
+                            subscribeResponse.addOrderBookSubscriptions(OrderBookSubscription.newBuilder()
+                                    .setFigi(instrument.getFigi())
+                                    .setDepth(instr.getDepth())
+                                    .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS)
+                                    .setInstrumentUid(instrument.getUid())
+                                    .setStreamId("stream-" + clock.millis())
+                                    .setSubscriptionId(java.util.UUID.randomUUID().toString())
+                                    .setOrderBookType(OrderBookType.ORDERBOOK_TYPE_EXCHANGE)
+                                    .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE)
+                                    .setTicker(instrument.getTicker())
+                                    .setClassCode("TQBR")
                                     .build());
                         }
+
+                        // Confirm subscription
+                        streamManager.send(responseObserver, MarketDataResponse.newBuilder()
+                                .setSubscribeOrderBookResponse(subscribeResponse.build())
+                                .build());
+                        for (DeltaBase base : deltaBooks) {
+                            streamManager.send(responseObserver,
+                                    orderBookMessage(base.book(), deltaBase(base.book()), base.depth()));
+                        }
                     } else {
                         log.info("GRPC MarketDataStream: Unsubscribe request received");
-                        streamManager.removeSubscription(responseObserver);
+                        for (OrderBookInstrument instr : subReq.getInstrumentsList()) {
+                            OrderBookManager orderBookManager = orderBookRegistry.find(instr.getInstrumentId());
+                            if (orderBookManager != null) {
+                                streamManager.removeOrderBookSubscription(responseObserver, orderBookManager.getInstrumentId());
+                            }
+                        }
                     }
                 }
             }
@@ -81,8 +172,7 @@ public class MarketDataStreamServiceImpl extends MarketDataStreamServiceImplBase
             @Override
             public void onCompleted() {
                 log.info("GRPC MarketDataStream: Client closed stream");
-                streamManager.removeSubscription(responseObserver);
-                responseObserver.onCompleted();
+                streamManager.completeSubscription(responseObserver);
             }
         };
     }
@@ -94,90 +184,251 @@ public class MarketDataStreamServiceImpl extends MarketDataStreamServiceImplBase
         log.debug("GRPC MarketDataStream: Broadcasting OrderBook update for instrument={}, bids={}, asks={}",
                 coreBook.getInstrumentId(), coreBook.getBids().size(), coreBook.getAsks().size());
 
-        // Рассчитаем лимиты цен (±10% от текущей цены)
-        BigDecimal bestBid = orderBookManager.getBestBid();
-        BigDecimal bestAsk = orderBookManager.getBestAsk();
-        BigDecimal midPrice = bestBid != null && bestAsk != null
-                ? bestBid.add(bestAsk).divide(BigDecimal.valueOf(2), 2, java.math.RoundingMode.HALF_UP)
-                : BigDecimal.valueOf(7.70);
-        BigDecimal limitUp = midPrice.multiply(BigDecimal.valueOf(1.10));
-        BigDecimal limitDown = midPrice.multiply(BigDecimal.valueOf(0.90));
+        OrderBookManager orderBookManager = orderBookRegistry.find(coreBook.getInstrumentId());
+        if (orderBookManager == null) {
+            return;
+        }
+        // Каждая глубина строится один раз на версию и раздаётся всем её подписчикам
+        streamManager.broadcastOrderBook(coreBook.getInstrumentId(),
+                depth -> orderBookMessage(orderBookManager, coreBook, depth));
+        if (streamManager.hasOrderBookDeltaSubscribers(coreBook.getInstrumentId())) {
+            // Пустая дельта тоже отправляется: по ней клиент сдвигает версию без разрыва
+            streamManager.broadcastOrderBookDelta(coreBook.getInstrumentId(), depth -> event.isFull()
+                    ? orderBookMessage(orderBookManager, coreBook, depth)
+                    : deltaMessage(orderBookManager, event, depth));
+        }
+    }
 
-        OrderBook ob = OrderBook.newBuilder()
-                .setFigi(properties.getInstrument().getFigi())
-                .setDepth(50)
-                .setIsConsistent(true)
-                .setTime(GrpcMapper.toTimestamp(Instant.now()))
-                .addAllBids(mapOrders(coreBook.getBids().values()))
-                .addAllAsks(mapOrders(coreBook.getAsks().values()))
-                .setInstrumentUid(coreBook.getInstrumentId())
-                .setLimitUp(GrpcMapper.toQuotation(limitUp))
-                .setLimitDown(GrpcMapper.toQuotation(limitDown))
-                .setOrderBookType(OrderBookType.ORDERBOOK_TYPE_EXCHANGE)
-                .setTicker(properties.getInstrument().getTicker())
-                .setClassCode("TQBR")
-                .build();
+    /**
+     * Рассылка лучших цен, изменившихся с прошлой отправки. Стакан под write lock только увеличивает
+     * версию {@link TopOfBook}, а значение читается здесь, поэтому серия изменений уходит одним сообщением.
+     */
+    void sendTopOfBookChanges() {
+        for (OrderBookManager orderBookManager : orderBookRegistry.getBooks()) {
+            String instrumentId = orderBookManager.getInstrumentId();
+            if (!streamManager.hasTopOfBookSubscribers(instrumentId)) {
+                // Версию не запоминаем: новый подписчик получит текущие цены на проходе после подписки
+                topOfBookSent.remove(instrumentId);
+                continue;
+            }
+            TopOfBook.Quote quote = orderBookManager.getTopOfBook().read();
+            Long sent = topOfBookSent.put(instrumentId, quote.version());
+            if (sent == null || sent != quote.version()) {
+                streamManager.broadcastTopOfBook(instrumentId,
+                        SerializedMessage.of(buildTopOfBookResponse(orderBookManager, quote)));
+            }
+        }
+    }
 
-        MarketDataResponse response = MarketDataResponse.newBuilder()
-                .setOrderbook(ob)
-                .build();
+    /**
+     * Будит поток рассылки лучших цен. Вызывается стаканом под write lock, поэтому только ставит флаг
+     * и снимает поток с парковки.
+     */
+    void signalTopOfBook() {
+        topOfBookDirty = true;
+        LockSupport.unpark(topOfBookSender);
+    }
 
-        streamManager.broadcastOrderBook(coreBook.getInstrumentId(), response);
+    private void runTopOfBookSender() {
+        while (running) {
+            // Флаг сбрасывается до прохода: изменение во время прохода поднимет его снова
+            if (!topOfBookDirty) {
+                LockSupport.park(this);
+                continue;
+            }
+            topOfBookDirty = false;
+            try {
+                sendTopOfBookChanges();
+            } catch (RuntimeException e) {
+                log.error("Top of book broadcast failed", e);
+            }
+        }
     }
-    
-    private List<Order> mapOrders(Iterable<ru.tinkoff.invest.emulator.core.model.PriceLevel> levels) {
-        List<Order> result = new java.util.ArrayList<>();
-        for (ru.tinkoff.invest.emulator.core.model.PriceLevel level : levels) {
-             result.add(Order.newBuilder()
-                     .setPrice(GrpcMapper.toQuotation(level.getPrice()))
-                     .setQuantity(level.getTotalQuantity())
-                     .build());
+
+    @PostConstruct
+    public void init() {
+        clockScheduler.scheduleAtFixedRate("sendPeriodicOrderBook", this::sendPeriodicOrderBook,
+                KEEPALIVE_PERIOD, KEEPALIVE_MAX_WALL_PERIOD);
+        for (OrderBookManager orderBookManager : orderBookRegistry.getBooks()) {
+            orderBookManager.setTopOfBookListener(this::signalTopOfBook);
         }
-        return result;
+        topOfBookSender.setDaemon(true);
+        topOfBookSender.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(topOfBookSender);
     }
 
     /**
      * Периодическая отправка стакана для поддержания активности стрима.
      * SDK T-Invest отменяет стрим при отсутствии данных ~15 секунд.
+     * Период — 5 секунд времени эмулятора ({@link ClockScheduler}), но не больше 5 секунд реального времени,
+     * чтобы при замедленных часах стрим не простаивал дольше таймаута SDK.
      */
-    @Scheduled(fixedRate = 5000)
     public void sendPeriodicOrderBook() {
-        ru.tinkoff.invest.emulator.core.model.OrderBook coreBook = orderBookManager.getSnapshot(50);
-        if (coreBook == null) {
-            log.debug("sendPeriodicOrderBook: snapshot is null");
-            return;
+        for (OrderBookManager orderBookManager : orderBookRegistry.getBooks()) {
+            if (streamManager.hasOrderBookSubscribers(orderBookManager.getInstrumentId())) {
+                ru.tinkoff.invest.emulator.core.model.OrderBook coreBook = orderBookManager.getSnapshot();
+                log.debug("sendPeriodicOrderBook: broadcasting for instrumentId={}, bids={}, asks={}",
+                        coreBook.getInstrumentId(), coreBook.getBids().size(), coreBook.getAsks().size());
+
+                streamManager.broadcastOrderBook(coreBook.getInstrumentId(),
+                        depth -> orderBookMessage(orderBookManager, coreBook, depth));
+            }
+            if (streamManager.hasOrderBookDeltaSubscribers(orderBookManager.getInstrumentId())) {
+                // Полный стакан для ресинхронизации — та версия, от которой считается следующая дельта
+                ru.tinkoff.invest.emulator.core.model.OrderBook base = deltaBase(orderBookManager);
+                streamManager.broadcastOrderBookDelta(orderBookManager.getInstrumentId(),
+                        depth -> orderBookMessage(orderBookManager, base, depth));
+            }
+            if (streamManager.hasTopOfBookSubscribers(orderBookManager.getInstrumentId())) {
+                streamManager.broadcastTopOfBook(orderBookManager.getInstrumentId(),
+                        SerializedMessage.of(buildTopOfBookResponse(orderBookManager, orderBookManager.getTopOfBook().read())));
+            }
         }
-        log.debug("sendPeriodicOrderBook: broadcasting for instrumentId={}, bids={}, asks={}",
-                coreBook.getInstrumentId(), coreBook.getBids().size(), coreBook.getAsks().size());
+    }
 
-        // Рассчитаем лимиты цен (±10% от текущей цены)
-        BigDecimal bestBid = orderBookManager.getBestBid();
-        BigDecimal bestAsk = orderBookManager.getBestAsk();
-        BigDecimal midPrice = bestBid != null && bestAsk != null
-                ? bestBid.add(bestAsk).divide(BigDecimal.valueOf(2), 2, java.math.RoundingMode.HALF_UP)
-                : BigDecimal.valueOf(7.70);
-        BigDecimal limitUp = midPrice.multiply(BigDecimal.valueOf(1.10));
-        BigDecimal limitDown = midPrice.multiply(BigDecimal.valueOf(0.90));
+    private SerializedMessage orderBookMessage(OrderBookManager orderBookManager,
+                                               ru.tinkoff.invest.emulator.core.model.OrderBook coreBook, int depth) {
+        return orderBookMessages.computeIfAbsent(orderBookManager.getInstrumentId(), k -> new DepthMessageCache<>())
+                .get(coreBook.getVersion(), depth, d -> SerializedMessage.of(
+                        buildOrderBookResponse(orderBookManager, coreBook.withDepth(d), d)));
+    }
+
+    private SerializedMessage deltaMessage(OrderBookManager orderBookManager, OrderBookChangedEvent event, int depth) {
+        return deltaMessages.computeIfAbsent(orderBookManager.getInstrumentId(), k -> new DepthMessageCache<>())
+                .get(event.getOrderBook().getVersion(), depth, d -> SerializedMessage.of(
+                        buildOrderBookDeltaResponse(orderBookManager, event.getDelta(d), d)));
+    }
 
-        OrderBook ob = OrderBook.newBuilder()
-                .setFigi(properties.getInstrument().getFigi())
-                .setDepth(50)
+    private MarketDataResponse buildOrderBookResponse(OrderBookManager orderBookManager,
+                                                      ru.tinkoff.invest.emulator.core.model.OrderBook coreBook,
+                                                      int depth) {
+        EmulatorProperties.Instrument instrument = orderBookManager.getInstrument();
+
+        OrderBook.Builder ob = OrderBook.newBuilder()
+                .setFigi(instrument.getFigi())
+                .setDepth(depth)
                 .setIsConsistent(true)
-                .setTime(GrpcMapper.toTimestamp(Instant.now()))
-                .addAllBids(mapOrders(coreBook.getBids().values()))
-                .addAllAsks(mapOrders(coreBook.getAsks().values()))
+                .setTime(GrpcMapper.toTimestamp(clock.nanos()))
+                .addAllBids(mapOrders(coreBook.getBids().values(), coreBook.getTickSize()))
+                .addAllAsks(mapOrders(coreBook.getAsks().values(), coreBook.getTickSize()))
                 .setInstrumentUid(coreBook.getInstrumentId())
-                .setLimitUp(GrpcMapper.toQuotation(limitUp))
-                .setLimitDown(GrpcMapper.toQuotation(limitDown))
                 .setOrderBookType(OrderBookType.ORDERBOOK_TYPE_EXCHANGE)
-                .setTicker(properties.getInstrument().getTicker())
+                .setTicker(instrument.getTicker())
+                .setClassCode("TQBR")
+                .setSequence(coreBook.getVersion());
+        setPriceLimits(ob, coreBook.getTickSize(), coreBook.getBestBid(), coreBook.getBestAsk());
+
+        return MarketDataResponse.newBuilder()
+                .setOrderbook(ob)
+                .build();
+    }
+
+    private ru.tinkoff.invest.emulator.core.model.OrderBook deltaBase(OrderBookManager orderBookManager) {
+        ru.tinkoff.invest.emulator.core.model.OrderBook published =
+                orderBookPublisher.getLastPublished(orderBookManager.getInstrumentId());
+        // Публикаций ещё не было — первая будет полной, поэтому годится текущий снапшот
+        return published != null ? published : orderBookManager.getSnapshot();
+    }
+
+    private MarketDataResponse buildOrderBookDeltaResponse(OrderBookManager orderBookManager, OrderBookDelta delta,
+                                                           int depth) {
+        EmulatorProperties.Instrument instrument = orderBookManager.getInstrument();
+        ru.tinkoff.invest.emulator.core.model.TickSize tickSize = delta.getTickSize();
+
+        OrderBook.Builder ob = OrderBook.newBuilder()
+                .setFigi(instrument.getFigi())
+                .setDepth(depth)
+                .setIsConsistent(true)
+                .setTime(GrpcMapper.toTimestamp(clock.nanos()))
+                .setInstrumentUid(delta.getInstrumentId())
+                .setOrderBookType(OrderBookType.ORDERBOOK_TYPE_EXCHANGE)
+                .setTicker(instrument.getTicker())
                 .setClassCode("TQBR")
+                .setIsDelta(true)
+                .setSequence(delta.getToVersion())
+                .setPrevSequence(delta.getFromVersion());
+        for (LevelDelta level : delta.getLevels()) {
+            Order order = Order.newBuilder()
+                    .setPrice(GrpcMapper.toQuotation(level.getPrice(), tickSize))
+                    .setQuantity(level.getQuantity())
+                    .build();
+            if (level.getSide() == ru.tinkoff.invest.emulator.core.model.OrderDirection.BUY) {
+                ob.addBids(order);
+            } else {
+                ob.addAsks(order);
+            }
+        }
+
+        return MarketDataResponse.newBuilder()
+                .setOrderbook(ob)
                 .build();
+    }
+
+    private MarketDataResponse buildTopOfBookResponse(OrderBookManager orderBookManager, TopOfBook.Quote quote) {
+        EmulatorProperties.Instrument instrument = orderBookManager.getInstrument();
+        ru.tinkoff.invest.emulator.core.model.TickSize tickSize = orderBookManager.getTickSize();
+
+        OrderBook.Builder ob = OrderBook.newBuilder()
+                .setFigi(instrument.getFigi())
+                .setDepth(TOP_OF_BOOK_DEPTH)
+                .setIsConsistent(true)
+                .setTime(GrpcMapper.toTimestamp(clock.nanos()))
+                .setInstrumentUid(orderBookManager.getInstrumentId())
+                .setOrderBookType(OrderBookType.ORDERBOOK_TYPE_EXCHANGE)
+                .setTicker(instrument.getTicker())
+                .setClassCode("TQBR");
+        if (quote.bidPrice() != ru.tinkoff.invest.emulator.core.model.OrderBook.NO_PRICE) {
+            ob.addBids(Order.newBuilder()
+                    .setPrice(GrpcMapper.toQuotation(quote.bidPrice(), tickSize))
+                    .setQuantity(quote.bidQuantity())
+                    .build());
+        }
+        if (quote.askPrice() != ru.tinkoff.invest.emulator.core.model.OrderBook.NO_PRICE) {
+            ob.addAsks(Order.newBuilder()
+                    .setPrice(GrpcMapper.toQuotation(quote.askPrice(), tickSize))
+                    .setQuantity(quote.askQuantity())
+                    .build());
+        }
+        setPriceLimits(ob, tickSize, quote.bidPrice(), quote.askPrice());
 
-        MarketDataResponse response = MarketDataResponse.newBuilder()
+        return MarketDataResponse.newBuilder()
                 .setOrderbook(ob)
                 .build();
+    }
+
+    /**
+     * Лимиты цен: ±10% от середины спреда.
+     */
+    private void setPriceLimits(OrderBook.Builder ob, ru.tinkoff.invest.emulator.core.model.TickSize tickSize,
+                                long bestBid, long bestAsk) {
+        BigDecimal midPrice = bestBid != ru.tinkoff.invest.emulator.core.model.OrderBook.NO_PRICE
+                && bestAsk != ru.tinkoff.invest.emulator.core.model.OrderBook.NO_PRICE
+                ? tickSize.toPrice(bestBid + bestAsk).divide(BigDecimal.valueOf(2), 2, java.math.RoundingMode.HALF_UP)
+                : BigDecimal.valueOf(7.70);
+        ob.setLimitUp(GrpcMapper.toQuotation(midPrice.multiply(BigDecimal.valueOf(1.10))));
+        ob.setLimitDown(GrpcMapper.toQuotation(midPrice.multiply(BigDecimal.valueOf(0.90))));
+    }
+
+    private List<Order> mapOrders(Iterable<ru.tinkoff.invest.emulator.core.model.LevelSnapshot> levels,
+                                  ru.tinkoff.invest.emulator.core.model.TickSize tickSize) {
+        List<Order> result = new java.util.ArrayList<>();
+        for (ru.tinkoff.invest.emulator.core.model.LevelSnapshot level : levels) {
+             result.add(Order.newBuilder()
+                     .setPrice(GrpcMapper.toQuotation(level.getPrice(), tickSize))
+                     .setQuantity(level.getTotalQuantity())
+                     .build());
+        }
+        return result;
+    }
 
-        streamManager.broadcastOrderBook(coreBook.getInstrumentId(), response);
+    /**
+     * Стакан, которому после подписки на дельты отправляется полный снапшот, и запрошенная глубина.
+     */
+    private record DeltaBase(OrderBookManager book, int depth) {
     }
 }
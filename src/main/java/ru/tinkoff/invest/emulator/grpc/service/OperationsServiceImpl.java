@@ -5,8 +5,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 import ru.tinkoff.invest.emulator.core.model.Account;
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
 import ru.tinkoff.invest.emulator.core.model.Position;
 import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
 import ru.tinkoff.invest.emulator.core.state.AccountManager;
 import ru.tinkoff.invest.emulator.grpc.mapper.GrpcMapper;
 import ru.tinkoff.piapi.contract.v1.*;
@@ -21,32 +23,25 @@ import java.util.stream.Collectors;
 public class OperationsServiceImpl extends OperationsServiceImplBase {
 
     private final AccountManager accountManager;
-    private final OrderBookManager orderBookManager; // To get current prices for valuation
+    private final OrderBookRegistry orderBookRegistry; // To get current prices for valuation
 
     @Override
     public void getPortfolio(PortfolioRequest request, StreamObserver<PortfolioResponse> responseObserver) {
         log.info("GRPC GetPortfolio: accountId={}", request.getAccountId());
 
         Account account = accountManager.getAccount();
-        // Calculate totals
-        // We need current price for each position.
-        // Assuming single instrument TBRU.
-        BigDecimal price = orderBookManager.getBestBid(); // Valuation at Bid? Or last price?
-        if (price == null) price = orderBookManager.getBestAsk();
-        if (price == null) price = BigDecimal.TEN; // Fallback
+        // Calculate totals: each position is valued at the current price of its own book
+        BigDecimal portfolioValue = accountManager.getPortfolioValue(this::getValuationPrice);
 
-        final BigDecimal finalPrice = price;
-        BigDecimal portfolioValue = accountManager.getPortfolioValue(finalPrice);
-
-        log.debug("GRPC GetPortfolio: balance={}, positions={}, valuationPrice={}, portfolioValue={}",
-                account.getBalance(), account.getPositions().size(), finalPrice, portfolioValue);
+        log.debug("GRPC GetPortfolio: balance={}, positions={}, portfolioValue={}",
+                account.getBalance(), account.getPositions().size(), portfolioValue);
 
         PortfolioResponse response = PortfolioResponse.newBuilder()
                 .setTotalAmountPortfolio(GrpcMapper.toMoneyValue(portfolioValue, "RUB"))
                 .setTotalAmountCurrencies(GrpcMapper.toMoneyValue(account.getBalance(), "RUB"))
                 .setAccountId(account.getId())
                 .addAllPositions(account.getPositions().values().stream()
-                        .map(p -> mapPosition(p, finalPrice))
+                        .map(p -> mapPosition(p, getValuationPrice(p.getInstrumentId())))
                         .collect(Collectors.toList()))
                 .build();
 
@@ -79,6 +74,18 @@ public class OperationsServiceImpl extends OperationsServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    private BigDecimal getValuationPrice(String instrumentId) {
+        OrderBookManager orderBookManager = orderBookRegistry.find(instrumentId);
+        if (orderBookManager == null) {
+            return null;
+        }
+        long priceTicks = orderBookManager.getBestBid(); // Valuation at Bid? Or last price?
+        if (priceTicks == OrderBook.NO_PRICE) priceTicks = orderBookManager.getBestAsk();
+        return priceTicks != OrderBook.NO_PRICE
+                ? orderBookManager.getTickSize().toPrice(priceTicks)
+                : BigDecimal.TEN; // Fallback
+    }
+
     private PortfolioPosition mapPosition(Position p, BigDecimal currentPrice) {
         return PortfolioPosition.newBuilder()
                 .setFigi(p.getInstrumentId())
@@ -86,7 +93,7 @@ public class OperationsServiceImpl extends OperationsServiceImplBase {
                 .setInstrumentType("bond")
                 .setQuantity(GrpcMapper.toQuotation(BigDecimal.valueOf(p.getQuantity())))
                 .setAveragePositionPrice(GrpcMapper.toMoneyValue(p.getAveragePrice(), "RUB"))
-                .setCurrentPrice(GrpcMapper.toMoneyValue(currentPrice, "RUB"))
+                .setCurrentPrice(GrpcMapper.toMoneyValue(currentPrice != null ? currentPrice : p.getAveragePrice(), "RUB"))
                 .build();
     }
 
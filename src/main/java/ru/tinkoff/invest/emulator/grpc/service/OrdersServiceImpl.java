@@ -1,19 +1,25 @@
 package ru.tinkoff.invest.emulator.grpc.service;
 
 import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
-import org.springframework.context.ApplicationEventPublisher;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
 import ru.tinkoff.invest.emulator.core.event.OrderStateChangedEvent;
-import ru.tinkoff.invest.emulator.core.matching.ProRataMatchingEngine;
+import ru.tinkoff.invest.emulator.core.matching.MatchingResult;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
 import ru.tinkoff.invest.emulator.core.model.Order;
 import ru.tinkoff.invest.emulator.core.model.OrderDirection;
 import ru.tinkoff.invest.emulator.core.model.OrderSource;
 import ru.tinkoff.invest.emulator.core.model.OrderType;
+import ru.tinkoff.invest.emulator.core.model.TickSize;
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
 import ru.tinkoff.invest.emulator.core.model.Trade;
 import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
 import ru.tinkoff.invest.emulator.core.state.AccountManager;
 import ru.tinkoff.invest.emulator.grpc.mapper.GrpcMapper;
 import ru.tinkoff.piapi.contract.v1.*;
@@ -22,16 +28,19 @@ import ru.tinkoff.piapi.contract.v1.OrdersServiceGrpc.OrdersServiceImplBase;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @GrpcService
 @RequiredArgsConstructor
 public class OrdersServiceImpl extends OrdersServiceImplBase {
 
-    private final OrderBookManager orderBookManager;
-    private final ProRataMatchingEngine matchingEngine;
+    private final OrderBookRegistry orderBookRegistry;
+    private final OrderGateway orderGateway;
     private final AccountManager accountManager;
-    private final ApplicationEventPublisher eventPublisher;
+    private final EventBus eventBus;
+    private final EmulatorClock clock;
 
     @Override
     public void postOrder(PostOrderRequest request, StreamObserver<PostOrderResponse> responseObserver) {
@@ -43,9 +52,17 @@ public class OrdersServiceImpl extends OrdersServiceImplBase {
                 throw Status.INVALID_ARGUMENT.withDescription("Quantity must be positive").asRuntimeException();
             }
 
+            OrderBookManager orderBookManager = orderBookRegistry.find(request.getInstrumentId());
+            if (orderBookManager == null) {
+                responseObserver.onError(Status.NOT_FOUND
+                        .withDescription("Instrument not found: " + request.getInstrumentId()).asRuntimeException());
+                return;
+            }
+
             OrderDirection dir = mapDirection(request.getDirection());
             OrderType type = mapType(request.getOrderType());
-            BigDecimal price = GrpcMapper.toBigDecimal(request.getPrice());
+            TickSize tickSize = orderBookManager.getTickSize();
+            long price = toTicks(request.getPrice(), tickSize);
 
             UUID orderId = request.getOrderId() != null && !request.getOrderId().isEmpty() 
                     ? UUID.fromString(request.getOrderId()) 
@@ -54,46 +71,33 @@ public class OrdersServiceImpl extends OrdersServiceImplBase {
             Order order = Order.builder()
                     .id(orderId)
                     .accountId(request.getAccountId())
-                    .instrumentId(request.getInstrumentId())
+                    .instrumentId(orderBookManager.getInstrumentId())
                     .direction(dir)
                     .type(type)
                     .price(price)
                     .quantity(request.getQuantity())
                     .source(OrderSource.API)
+                    .createdAtNanos(clock.nanos())
                     .build();
             
             // Publish initial state NEW
-            eventPublisher.publishEvent(new OrderStateChangedEvent(this, order));
-            
-            List<Trade> trades = matchingEngine.executeOrder(order);
-            
-            // If Limit and not fully filled, add remainder to book
-            if (order.getType() == OrderType.LIMIT && !order.isFullyFilled()) {
-                orderBookManager.addOrder(order);
-            }
+            eventBus.publish(new OrderStateChangedEvent(this, order.copy()));
 
-            // Construct Response
-            PostOrderResponse response = PostOrderResponse.newBuilder()
-                    .setOrderId(order.getId().toString())
-                    .setExecutionReportStatus(mapStatus(order.getStatus()))
-                    .setLotsRequested(request.getQuantity())
-                    .setLotsExecuted(order.getFilledQuantity())
-                    .setInitialOrderPrice(GrpcMapper.toMoneyValue(price.multiply(BigDecimal.valueOf(request.getQuantity())), "RUB")) // TODO currency
-                    .setInitialSecurityPrice(GrpcMapper.toMoneyValue(price, "RUB"))
-                    .setExecutedOrderPrice(GrpcMapper.toMoneyValue(calculateExecutedValue(trades), "RUB"))
-                    .setDirection(request.getDirection())
-                    .setOrderType(request.getOrderType())
-                    .setFigi(request.getInstrumentId())
-                    .setInstrumentUid(request.getInstrumentId())
-                    .build();
-
-
-            responseObserver.onNext(response);
-            responseObserver.onCompleted();
+            withAccountUpdated(orderGateway.place(order)).whenComplete((result, error) -> {
+                if (error != null) {
+                    log.error("PostOrder failed", error);
+                    responseObserver.onError(toStatus(error));
+                    return;
+                }
+                responseObserver.onNext(toPostOrderResponse(orderBookManager, result.order(), result.trades()));
+                responseObserver.onCompleted();
+            });
 
+        } catch (StatusRuntimeException e) {
+            responseObserver.onError(e);
         } catch (Exception e) {
             log.error("PostOrder failed", e);
-            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+            responseObserver.onError(toStatus(e));
         }
     }
 
@@ -103,32 +107,131 @@ public class OrdersServiceImpl extends OrdersServiceImplBase {
         UUID orderId = UUID.fromString(request.getOrderId());
         
         // We should verify accountId matches order owner.
-        Order order = orderBookManager.getOrder(orderId);
-        if (order != null && !order.getAccountId().equals(request.getAccountId())) {
+        Order order = orderBookRegistry.getOrder(request.getAccountId(), orderId);
+        if (order == null && orderBookRegistry.getOrder(orderId) != null) {
              responseObserver.onError(Status.PERMISSION_DENIED.withDescription("Order belongs to another account").asRuntimeException());
              return;
         }
 
-        boolean removed = orderBookManager.removeOrder(orderId);
-        if (removed) {
-             responseObserver.onNext(CancelOrderResponse.newBuilder()
-                     .setTime(GrpcMapper.toTimestamp(java.time.Instant.now()))
-                     .build());
-             responseObserver.onCompleted();
-        } else {
-             responseObserver.onError(Status.NOT_FOUND.withDescription("Order not found").asRuntimeException());
+        orderGateway.cancel(orderId).whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("CancelOrder failed", error);
+                responseObserver.onError(Status.INTERNAL.withDescription(error.getMessage()).asRuntimeException());
+            } else if (result.accepted()) {
+                responseObserver.onNext(CancelOrderResponse.newBuilder()
+                        .setTime(GrpcMapper.toTimestamp(clock.nanos()))
+                        .build());
+                responseObserver.onCompleted();
+            } else {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("Order not found").asRuntimeException());
+            }
+        });
+    }
+
+    @Override
+    public void replaceOrder(ReplaceOrderRequest request, StreamObserver<PostOrderResponse> responseObserver) {
+        log.info("ReplaceOrder: {}", request);
+
+        try {
+            if (request.getQuantity() <= 0) {
+                throw Status.INVALID_ARGUMENT.withDescription("Quantity must be positive").asRuntimeException();
+            }
+
+            UUID orderId = UUID.fromString(request.getOrderId());
+            Order existing = orderBookRegistry.getOrder(request.getAccountId(), orderId);
+            if (existing == null) {
+                Status status = orderBookRegistry.getOrder(orderId) != null
+                        ? Status.PERMISSION_DENIED.withDescription("Order belongs to another account")
+                        : Status.NOT_FOUND.withDescription("Order not found");
+                responseObserver.onError(status.asRuntimeException());
+                return;
+            }
+
+            OrderBookManager orderBookManager = orderBookRegistry.get(existing.getInstrumentId());
+            long price = request.hasPrice()
+                    ? toTicks(request.getPrice(), orderBookManager.getTickSize())
+                    : existing.getPrice();
+            UUID newOrderId = !request.getIdempotencyKey().isEmpty()
+                    ? UUID.fromString(request.getIdempotencyKey())
+                    : UUID.randomUUID();
+
+            withAccountUpdated(orderGateway.replace(orderId, newOrderId, request.getQuantity(), price)).whenComplete((result, error) -> {
+                if (error != null) {
+                    log.error("ReplaceOrder failed", error);
+                    responseObserver.onError(toStatus(error));
+                } else if (result.accepted()) {
+                    responseObserver.onNext(toPostOrderResponse(orderBookManager, result.order(), result.trades()));
+                    responseObserver.onCompleted();
+                } else {
+                    responseObserver.onError(Status.NOT_FOUND.withDescription("Order not found").asRuntimeException());
+                }
+            });
+
+        } catch (StatusRuntimeException e) {
+            responseObserver.onError(e);
+        } catch (Exception e) {
+            log.error("ReplaceOrder failed", e);
+            responseObserver.onError(toStatus(e));
+        }
+    }
+
+    /**
+     * Цена заявки в шагах; цена вне сетки шага инструмента — ошибка клиента, а не повод округлять.
+     */
+    private static long toTicks(Quotation price, TickSize tickSize) {
+        try {
+            return GrpcMapper.toTicks(price, tickSize);
+        } catch (IllegalArgumentException e) {
+            throw Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException();
         }
     }
 
+    /**
+     * Ошибка команды: отклонённые стаканом параметры (цена вне окна цен) — ошибка клиента, остальное — внутренняя.
+     */
+    private static StatusRuntimeException toStatus(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        Status status = cause instanceof IllegalArgumentException ? Status.INVALID_ARGUMENT : Status.INTERNAL;
+        return status.withDescription(cause.getMessage()).asRuntimeException();
+    }
+
+    /**
+     * Сделки применяются к счёту асинхронно; ответ ждёт их, чтобы GetPositions сразу после PostOrder видел исполнение.
+     */
+    private CompletableFuture<MatchingResult> withAccountUpdated(CompletableFuture<MatchingResult> command) {
+        return command.thenCompose(result -> result.trades().isEmpty()
+                ? CompletableFuture.completedFuture(result)
+                : accountManager.awaitTrades().thenApply(v -> result));
+    }
+
+    private PostOrderResponse toPostOrderResponse(OrderBookManager orderBookManager, Order order, List<Trade> trades) {
+        TickSize tickSize = orderBookManager.getTickSize();
+        return PostOrderResponse.newBuilder()
+                .setOrderId(order.getId().toString())
+                .setExecutionReportStatus(mapStatus(order.getStatus()))
+                .setLotsRequested(order.getQuantity())
+                .setLotsExecuted(order.getFilledQuantity())
+                .setInitialOrderPrice(GrpcMapper.toMoneyValue(order.getPrice() * order.getQuantity(), tickSize, "RUB")) // TODO currency
+                .setInitialSecurityPrice(GrpcMapper.toMoneyValue(order.getPrice(), tickSize, "RUB"))
+                .setExecutedOrderPrice(GrpcMapper.toMoneyValue(calculateExecutedValue(trades), tickSize, "RUB"))
+                .setDirection(mapDirectionProto(order.getDirection()))
+                .setOrderType(mapTypeProto(order.getType()))
+                .setFigi(orderBookManager.getInstrument().getFigi())
+                .setInstrumentUid(orderBookManager.getInstrumentId())
+                .build();
+    }
+
     @Override
     public void getOrders(GetOrdersRequest request, StreamObserver<GetOrdersResponse> responseObserver) {
         log.info("GRPC GetOrders: accountId={}", request.getAccountId());
 
-        List<Order> orders = orderBookManager.getOrders(request.getAccountId());
+        List<Order> orders = orderBookRegistry.getOrders(request.getAccountId());
         log.debug("GRPC GetOrders: Found {} active orders for account {}", orders.size(), request.getAccountId());
 
         GetOrdersResponse.Builder builder = GetOrdersResponse.newBuilder();
         for (Order o : orders) {
+            OrderBookManager orderBookManager = orderBookRegistry.get(o.getInstrumentId());
+            TickSize tickSize = orderBookManager.getTickSize();
             log.trace("GRPC GetOrders: Order {} {} {} @ {} qty={}/{}",
                     o.getId(), o.getDirection(), o.getType(), o.getPrice(),
                     o.getFilledQuantity(), o.getQuantity());
@@ -137,12 +240,12 @@ public class OrdersServiceImpl extends OrdersServiceImplBase {
                     .setLotsRequested(o.getQuantity())
                     .setLotsExecuted(o.getFilledQuantity())
                     .setExecutionReportStatus(mapStatus(o.getStatus()))
-                    .setFigi(o.getInstrumentId())
+                    .setFigi(orderBookManager.getInstrument().getFigi())
                     .setInstrumentUid(o.getInstrumentId())
                     .setDirection(mapDirectionProto(o.getDirection()))
                     .setOrderType(mapTypeProto(o.getType()))
-                    .setInitialOrderPrice(GrpcMapper.toMoneyValue(o.getPrice().multiply(BigDecimal.valueOf(o.getQuantity())), "RUB"))
-                    .setInitialSecurityPrice(GrpcMapper.toMoneyValue(o.getPrice(), "RUB"))
+                    .setInitialOrderPrice(GrpcMapper.toMoneyValue(o.getPrice() * o.getQuantity(), tickSize, "RUB"))
+                    .setInitialSecurityPrice(GrpcMapper.toMoneyValue(o.getPrice(), tickSize, "RUB"))
                     .build());
         }
 
@@ -154,16 +257,24 @@ public class OrdersServiceImpl extends OrdersServiceImplBase {
     public void getMaxLots(GetMaxLotsRequest request, StreamObserver<GetMaxLotsResponse> responseObserver) {
         log.info("GRPC GetMaxLots: accountId={}, instrumentId={}", request.getAccountId(), request.getInstrumentId());
 
+        OrderBookManager orderBookManager = orderBookRegistry.find(request.getInstrumentId());
+        if (orderBookManager == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("Instrument not found: " + request.getInstrumentId()).asRuntimeException());
+            return;
+        }
+
         BigDecimal price = request.hasPrice() ? GrpcMapper.toBigDecimal(request.getPrice()) : null;
         if (price == null || price.compareTo(BigDecimal.ZERO) == 0) {
             // Use current market price if not provided
-             price = orderBookManager.getBestAsk();
-             if (price == null) price = orderBookManager.getBestBid();
+             long marketPrice = orderBookManager.getBestAsk();
+             if (marketPrice == OrderBook.NO_PRICE) marketPrice = orderBookManager.getBestBid();
+             price = marketPrice == OrderBook.NO_PRICE ? null : orderBookManager.getTickSize().toPrice(marketPrice);
              log.debug("GRPC GetMaxLots: No price provided, using market price={}", price);
         }
 
-        long maxBuy = accountManager.getMaxLots(true, null, price);
-        long maxSell = accountManager.getMaxLots(false, null, price);
+        long maxBuy = accountManager.getMaxLots(true, orderBookManager.getInstrumentId(), price);
+        long maxSell = accountManager.getMaxLots(false, orderBookManager.getInstrumentId(), price);
 
         log.debug("GRPC GetMaxLots: price={}, maxBuy={}, maxSell={}", price, maxBuy, maxSell);
 
@@ -182,10 +293,15 @@ public class OrdersServiceImpl extends OrdersServiceImplBase {
         responseObserver.onCompleted();
     }
 
-    private BigDecimal calculateExecutedValue(List<Trade> trades) {
-        return trades.stream()
-                .map(t -> t.getPrice().multiply(BigDecimal.valueOf(t.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Сумма исполнения в шагах цены (price * quantity по всем сделкам).
+     */
+    private long calculateExecutedValue(List<Trade> trades) {
+        long value = 0;
+        for (Trade t : trades) {
+            value += t.getPrice() * t.getQuantity();
+        }
+        return value;
     }
 
     private OrderDirection mapDirection(ru.tinkoff.piapi.contract.v1.OrderDirection d) {
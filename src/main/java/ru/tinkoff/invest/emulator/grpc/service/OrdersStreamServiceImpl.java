@@ -1,45 +1,51 @@
 package ru.tinkoff.invest.emulator.grpc.service;
 
 import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
-import org.springframework.context.event.EventListener;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
 import ru.tinkoff.invest.emulator.core.event.OrderStateChangedEvent;
 import ru.tinkoff.invest.emulator.core.model.Order;
 import ru.tinkoff.invest.emulator.core.model.OrderDirection;
 import ru.tinkoff.invest.emulator.core.model.OrderStatus;
 import ru.tinkoff.invest.emulator.core.model.OrderType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+import ru.tinkoff.invest.emulator.core.stream.OverflowPolicy;
 import ru.tinkoff.invest.emulator.core.stream.StreamManager;
 import ru.tinkoff.invest.emulator.grpc.mapper.GrpcMapper;
 import ru.tinkoff.piapi.contract.v1.*;
 import ru.tinkoff.piapi.contract.v1.OrdersStreamServiceGrpc.OrdersStreamServiceImplBase;
 
-import java.math.BigDecimal;
-
 @Slf4j
 @GrpcService
 @RequiredArgsConstructor
 public class OrdersStreamServiceImpl extends OrdersStreamServiceImplBase {
 
     private final StreamManager streamManager;
+    private final OrderBookRegistry orderBookRegistry;
+    private final EventBus eventBus;
+
+    @PostConstruct
+    public void init() {
+        // Состояния заявок одного счёта уходят в стрим в порядке исполнения
+        eventBus.subscribe(OrderStateChangedEvent.class, event -> event.getOrder().getAccountId(), this::onOrderStateChanged);
+    }
 
     @Override
     public void orderStateStream(OrderStateStreamRequest request, StreamObserver<OrderStateStreamResponse> responseObserver) {
         log.info("GRPC OrderStateStream: New subscription for accounts: {}", request.getAccountsList());
 
-        // In request.getAccountsList() we have accounts to subscribe to.
+        // Состояния заявок не теряются: клиент, переполнивший очередь, отключается. Отмена вызова снимает подписки
+        streamManager.register(responseObserver, OverflowPolicy.DISCONNECT);
         for (String accountId : request.getAccountsList()) {
             streamManager.addOrderStateSubscription(responseObserver, accountId);
             log.debug("GRPC OrderStateStream: Registered observer for account {}", accountId);
         }
-
-        // This is Server Stream, so we don't return immediately, we keep it open.
-        // But we don't have a way to detect client disconnect easily unless we wrap or ping.
-        // For now, simple registration.
     }
 
-    @EventListener
     public void onOrderStateChanged(OrderStateChangedEvent event) {
         Order order = event.getOrder();
         if (order.getAccountId() == null) {
@@ -47,6 +53,13 @@ public class OrdersStreamServiceImpl extends OrdersStreamServiceImplBase {
             return;
         }
 
+        OrderBookManager orderBookManager = orderBookRegistry.find(order.getInstrumentId());
+        if (orderBookManager == null) {
+            log.debug("GRPC OrderStateStream: Skipping event for order {} - unknown instrument {}",
+                    order.getId(), order.getInstrumentId());
+            return;
+        }
+
         log.debug("GRPC OrderStateStream: Broadcasting state change for order {} [{}], status={}, filled={}/{}",
                 order.getId(), order.getSource(), order.getStatus(),
                 order.getFilledQuantity(), order.getQuantity());
@@ -58,11 +71,11 @@ public class OrdersStreamServiceImpl extends OrdersStreamServiceImplBase {
                         .setExecutionReportStatus(mapStatus(order.getStatus()))
                         .setLotsRequested(order.getQuantity())
                         .setLotsExecuted(order.getFilledQuantity())
-                        .setInitialOrderPrice(GrpcMapper.toMoneyValue(order.getPrice().multiply(BigDecimal.valueOf(order.getQuantity())), "RUB"))
+                        .setInitialOrderPrice(GrpcMapper.toMoneyValue(order.getPrice() * order.getQuantity(), orderBookManager.getTickSize(), "RUB"))
                         .setDirection(mapDirection(order.getDirection()))
                         .setOrderType(mapType(order.getType()))
                         .setInstrumentUid(order.getInstrumentId())
-                        .setTicker(order.getInstrumentId())
+                        .setTicker(orderBookManager.getInstrument().getTicker())
                         .build())
                 .build();
         
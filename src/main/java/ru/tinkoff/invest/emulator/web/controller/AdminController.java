@@ -2,21 +2,32 @@ package ru.tinkoff.invest.emulator.web.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import ru.tinkoff.invest.emulator.config.EmulatorProperties;
-import ru.tinkoff.invest.emulator.core.matching.ProRataMatchingEngine;
+import org.springframework.web.server.ResponseStatusException;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.feed.FeedStatus;
+import ru.tinkoff.invest.emulator.core.feed.MarketDataFeed;
+import ru.tinkoff.invest.emulator.core.journal.CommandJournal;
+import ru.tinkoff.invest.emulator.core.matching.MatchingResult;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
 import ru.tinkoff.invest.emulator.core.model.*;
 import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+import ru.tinkoff.invest.emulator.core.snapshot.SnapshotInfo;
+import ru.tinkoff.invest.emulator.core.snapshot.SnapshotService;
 import ru.tinkoff.invest.emulator.core.state.AccountManager;
+import ru.tinkoff.invest.emulator.core.stream.StreamManager;
+import ru.tinkoff.invest.emulator.core.stream.SubscriberStats;
 import ru.tinkoff.invest.emulator.web.dto.CreateOrderRequest;
 import ru.tinkoff.invest.emulator.web.dto.OrderBookDto;
 import ru.tinkoff.invest.emulator.web.dto.OrderDto;
 
-import java.time.Instant;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -25,41 +36,40 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AdminController {
 
-    private final OrderBookManager orderBookManager;
-    private final ProRataMatchingEngine matchingEngine;
+    private final OrderBookRegistry orderBookRegistry;
+    private final OrderGateway orderGateway;
     private final AccountManager accountManager;
-    private final EmulatorProperties properties;
+    private final StreamManager streamManager;
+    private final CommandJournal commandJournal;
+    private final SnapshotService snapshotService;
+    private final MarketDataFeed marketDataFeed;
+    private final EmulatorClock clock;
 
     @GetMapping("/orderbook")
-    public OrderBookDto getOrderBook() {
-        log.debug("REST GetOrderBook: Fetching orderbook snapshot");
-        OrderBook book = orderBookManager.getSnapshot(20);
+    public OrderBookDto getOrderBook(@RequestParam(required = false) String instrumentId) {
+        log.debug("REST GetOrderBook: Fetching orderbook snapshot for instrumentId={}", instrumentId);
+        OrderBook book = resolveBook(instrumentId).getSnapshot(20);
+        TickSize tickSize = book.getTickSize();
         log.debug("REST GetOrderBook: bids={} levels, asks={} levels",
                 book.getBids().size(), book.getAsks().size());
         return OrderBookDto.builder()
                 .instrumentId(book.getInstrumentId())
                 .depth(20)
-                .timestamp(Instant.now())
+                .timestamp(clock.instant())
                 .bids(book.getBids().entrySet().stream()
                         .map(e -> OrderBookDto.PriceLevelDto.builder()
-                                .price(e.getKey())
+                                .price(tickSize.toPrice(e.getKey()))
                                 .quantity(e.getValue().getTotalQuantity())
-                                .ordersCount(e.getValue().getOrders().size())
-                                .apiQuantity(e.getValue().getOrders().stream()
-                                        .filter(o -> o.getSource() == OrderSource.API)
-                                        .mapToLong(Order::getRemainingQuantity)
-                                        .sum())
+                                .ordersCount(e.getValue().getOrdersCount())
+                                .apiQuantity(e.getValue().getApiQuantity())
                                 .build())
                         .collect(Collectors.toList()))
                 .asks(book.getAsks().entrySet().stream()
                         .map(e -> OrderBookDto.PriceLevelDto.builder()
-                                .price(e.getKey())
+                                .price(tickSize.toPrice(e.getKey()))
                                 .quantity(e.getValue().getTotalQuantity())
-                                .ordersCount(e.getValue().getOrders().size())
-                                .apiQuantity(e.getValue().getOrders().stream()
-                                        .filter(o -> o.getSource() == OrderSource.API)
-                                        .mapToLong(Order::getRemainingQuantity)
-                                        .sum())
+                                .ordersCount(e.getValue().getOrdersCount())
+                                .apiQuantity(e.getValue().getApiQuantity())
                                 .build())
                         .collect(Collectors.toList()))
                 .build();
@@ -68,7 +78,7 @@ public class AdminController {
     @GetMapping("/orders")
     public List<OrderDto> getOrders() {
         log.debug("REST GetOrders: Fetching all active orders");
-        List<Order> orders = orderBookManager.getAllOrders();
+        List<Order> orders = orderBookRegistry.getAllOrders();
         log.debug("REST GetOrders: Found {} active orders", orders.size());
 
         return orders.stream()
@@ -82,7 +92,8 @@ public class AdminController {
         log.info("REST CreateOrder [ADMIN_PANEL]: {} {} @ {} qty={}",
                 request.getDirection(), request.getOrderType(), request.getPrice(), request.getQuantity());
 
-        String instrumentId = request.getInstrumentId() != null ? request.getInstrumentId() : properties.getInstrument().getUid();
+        OrderBookManager orderBookManager = resolveBook(request.getInstrumentId());
+        String instrumentId = orderBookManager.getInstrumentId();
         String accountId = request.getAccountId() != null ? request.getAccountId() : "admin-market-maker";
 
         Order order = Order.builder()
@@ -91,35 +102,30 @@ public class AdminController {
                 .accountId(accountId)
                 .direction(request.getDirection())
                 .type(request.getOrderType())
-                .price(request.getPrice())
+                .price(toTicks(orderBookManager, request))
                 .quantity(request.getQuantity())
                 .source(OrderSource.ADMIN_PANEL)
+                .createdAtNanos(clock.nanos())
                 .build();
 
         log.debug("REST CreateOrder: Created order {} for account {}", order.getId(), accountId);
 
-        List<Trade> trades = matchingEngine.executeOrder(order);
+        // Исполнение и постановка остатка в стакан происходят атомарно внутри gateway
+        MatchingResult result = place(order);
 
         log.info("REST CreateOrder: Order {} executed with {} trades, remaining={}",
-                order.getId(), trades.size(), order.getRemainingQuantity());
+                order.getId(), result.trades().size(), result.order().getRemainingQuantity());
 
         // NOTE: Account state is updated via TradeExecutedEvent in AccountManager.onTradeExecuted()
         // No need to call updateState here - it would cause double counting
 
-        // If Limit and remainder, add to book
-        if (order.getType() == OrderType.LIMIT && !order.isFullyFilled()) {
-            log.debug("REST CreateOrder: Adding remainder {} lots to orderbook at {}",
-                    order.getRemainingQuantity(), order.getPrice());
-            orderBookManager.addOrder(order);
-        }
-
-        return mapOrder(order);
+        return mapOrder(result.order());
     }
 
     @DeleteMapping("/orders/{id}")
     public ResponseEntity<Void> cancelOrder(@PathVariable String id) {
         log.info("REST CancelOrder: id={}", id);
-        boolean removed = orderBookManager.removeOrder(UUID.fromString(id));
+        boolean removed = orderGateway.cancel(UUID.fromString(id)).join().accepted();
         if (removed) {
             log.info("REST CancelOrder: Order {} successfully removed", id);
             return ResponseEntity.ok().build();
@@ -137,15 +143,95 @@ public class AdminController {
         return account;
     }
 
+    /**
+     * Очереди gRPC-стримов: глубина, доставлено, сконфлировано и отброшено по каждому подписчику.
+     */
+    @GetMapping("/streams")
+    public List<SubscriberStats> getStreams() {
+        return streamManager.getSubscriberStats();
+    }
+
     @PostMapping("/reset")
     public ResponseEntity<String> resetEmulator() {
         log.info("REST Reset: Resetting emulator to initial state");
-        accountManager.reset();
-        orderBookManager.reset();
+        // Стаканы и журнал сбрасываются без команд между шагами; сброс счёта встаёт в дорожку после сделок,
+        // отданных до блокировок, и ожидается уже без них
+        orderGateway.exclusive(() -> {
+            orderBookRegistry.reset();
+            commandJournal.reset(orderBookRegistry.getBooks());
+            return accountManager.reset();
+        }).join();
         log.info("REST Reset: Emulator reset complete");
         return ResponseEntity.ok("Emulator reset to initial state");
     }
 
+    @PostMapping("/snapshot")
+    public SnapshotInfo writeSnapshot() {
+        log.info("REST Snapshot: writing state snapshot to {}", snapshotService.getPath());
+        return snapshotService.write();
+    }
+
+    @PostMapping("/snapshot/restore")
+    public SnapshotInfo restoreSnapshot() {
+        if (!snapshotService.exists()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Snapshot not found: " + snapshotService.getPath());
+        }
+        log.info("REST Snapshot: restoring state from {}", snapshotService.getPath());
+        return snapshotService.restore();
+    }
+
+    /**
+     * Воспроизведение исторических данных: файл, скорость, применено событий и историческое время.
+     */
+    @GetMapping("/feed")
+    public FeedStatus getFeed() {
+        return marketDataFeed.getStatus();
+    }
+
+    /**
+     * Стакан по uid/figi/ticker; без instrumentId — стакан основного инструмента из конфига.
+     */
+    private OrderBookManager resolveBook(String instrumentId) {
+        if (instrumentId == null) {
+            return orderBookRegistry.getDefaultBook();
+        }
+        OrderBookManager orderBookManager = orderBookRegistry.find(instrumentId);
+        if (orderBookManager == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Instrument not found: " + instrumentId);
+        }
+        return orderBookManager;
+    }
+
+    /**
+     * Заявка через gateway; цена вне окна цен стакана — ошибка запроса, а не сервера.
+     */
+    private MatchingResult place(Order order) {
+        try {
+            return orderGateway.place(order).join();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IllegalArgumentException cause) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, cause.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Цена заявки в шагах: рыночная заявка может прийти без цены, цена вне сетки шага отклоняется.
+     */
+    private static long toTicks(OrderBookManager orderBookManager, CreateOrderRequest request) {
+        if (request.getPrice() == null && request.getOrderType() == OrderType.MARKET) {
+            return 0;
+        }
+        try {
+            return orderBookManager.getTickSize().toTicks(request.getPrice());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     private OrderDto mapOrder(Order order) {
         return OrderDto.builder()
                 .id(order.getId().toString())
@@ -153,7 +239,7 @@ public class AdminController {
                 .accountId(order.getAccountId())
                 .direction(order.getDirection())
                 .type(order.getType())
-                .price(order.getPrice())
+                .price(orderBookRegistry.get(order.getInstrumentId()).getTickSize().toPrice(order.getPrice()))
                 .quantity(order.getQuantity())
                 .filledQuantity(order.getFilledQuantity())
                 .status(order.getStatus().name())
@@ -0,0 +1,22 @@
+package ru.tinkoff.invest.emulator.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Изменившиеся уровни стакана между версиями {@code fromVersion} и {@code toVersion};
+ * {@code quantity == 0} — уровень удалён.
+ */
+@Data
+@Builder
+public class OrderBookDeltaDto {
+    private String instrumentId;
+    private long fromVersion;
+    private long toVersion;
+    private List<OrderBookDto.PriceLevelDto> bids;
+    private List<OrderBookDto.PriceLevelDto> asks;
+    private Instant timestamp;
+}
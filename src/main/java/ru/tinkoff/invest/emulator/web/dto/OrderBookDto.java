@@ -12,6 +12,7 @@ import java.util.List;
 public class OrderBookDto {
     private String instrumentId;
     private int depth;
+    private long version; // Версия снапшота, от которой применяются дельты ORDERBOOK_DELTA
     private List<PriceLevelDto> bids;
     private List<PriceLevelDto> asks;
     private Instant timestamp;
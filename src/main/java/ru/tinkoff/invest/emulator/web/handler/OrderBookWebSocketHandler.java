@@ -1,6 +1,10 @@
 package ru.tinkoff.invest.emulator.web.handler;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
@@ -9,89 +13,215 @@ import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
 import ru.tinkoff.invest.emulator.core.event.OrderBookChangedEvent;
-import ru.tinkoff.invest.emulator.core.model.Order;
-import ru.tinkoff.invest.emulator.core.model.OrderSource;
+import ru.tinkoff.invest.emulator.core.model.LevelDelta;
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
+import ru.tinkoff.invest.emulator.core.model.OrderBookDelta;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.model.TickSize;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookSubscribers;
+import ru.tinkoff.invest.emulator.web.dto.OrderBookDeltaDto;
 import ru.tinkoff.invest.emulator.web.dto.OrderBookDto;
 
 import java.io.IOException;
-import java.time.Instant;
-import java.util.Set;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Стакан основного инструмента для админ-панели.
+ * <p>
+ * При подключении клиент получает полный стакан ({@code ORDERBOOK_UPDATE} с версией), дальше — только
+ * изменившиеся уровни ({@code ORDERBOOK_DELTA}) и периодически снова полный стакан для ресинхронизации.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class OrderBookWebSocketHandler extends TextWebSocketHandler {
+public class OrderBookWebSocketHandler extends TextWebSocketHandler implements OrderBookSubscribers {
 
-    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+    // Отправка в каждую сессию идёт через её writer: заблокированный sendMessage задерживает только её
+    private final Map<WebSocketSession, SessionWriter> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
     private final ObjectMapper objectMapper;
+    private final EmulatorProperties properties;
+    private final OrderBookRegistry orderBookRegistry;
+    private final MeterRegistry meterRegistry;
+    private final EmulatorClock clock;
+    private Counter conflatedFrames;
+    private Counter slowClients;
+    // Последний разосланный снапшот: база для дельт, которые придут новому клиенту
+    private volatile OrderBook lastPublished;
+
+    @PostConstruct
+    public void init() {
+        conflatedFrames = Counter.builder("emulator.websocket.conflated")
+                .description("Order book frames replaced by a newer one before reaching a slow WebSocket client")
+                .register(meterRegistry);
+        slowClients = Counter.builder("emulator.websocket.slow-clients")
+                .description("WebSocket sessions dropped for exceeding send time or buffer limits")
+                .register(meterRegistry);
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        sessions.add(session);
+        EmulatorProperties.WebSocket limits = properties.getWebsocket();
+        sessions.put(session, new SessionWriter(session, sendExecutor, limits.getSendTimeLimitMs(),
+                limits.getBufferSizeLimit(), conflatedFrames::increment, () -> {
+                    slowClients.increment();
+                    sessions.remove(session);
+                }));
         log.info("WS: Client connected, sessionId={}, total sessions={}", session.getId(), sessions.size());
+
+        OrderBook base = lastPublished;
+        if (base == null) {
+            // Публикаций ещё не было — первая будет полной
+            base = orderBookRegistry.getDefaultBook().getSnapshot();
+        }
+        try {
+            TextMessage snapshot = new TextMessage(objectMapper.writeValueAsString(new WebSocketMessage("ORDERBOOK_UPDATE", toDto(base))));
+            send(session, snapshot, () -> snapshot);
+        } catch (IOException e) {
+            log.error("WS: Failed to send initial orderbook, sessionId={}", session.getId(), e);
+        }
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessions.remove(session);
+        SessionWriter writer = sessions.remove(session);
+        if (writer != null) {
+            writer.close();
+        }
         log.info("WS: Client disconnected, sessionId={}, status={}, remaining sessions={}",
                 session.getId(), status, sessions.size());
     }
 
+    @Override
+    public boolean hasOrderBookSubscribers(String instrumentId) {
+        // Админ-панель показывает стакан основного инструмента
+        return !sessions.isEmpty() && instrumentId.equals(properties.getInstrument().getUid());
+    }
+
     @EventListener
     public void handleOrderBookChange(OrderBookChangedEvent event) {
+        // Админ-панель показывает стакан основного инструмента
+        if (!event.getOrderBook().getInstrumentId().equals(properties.getInstrument().getUid())) {
+            return;
+        }
+        lastPublished = event.getOrderBook();
+
         if (sessions.isEmpty()) {
             log.trace("WS: No active sessions, skipping orderbook broadcast");
             return;
         }
 
-        log.debug("WS: Broadcasting orderbook update to {} sessions", sessions.size());
+        log.debug("WS: Broadcasting orderbook {} to {} sessions", event.isFull() ? "snapshot" : "delta", sessions.size());
 
         try {
-            OrderBookDto dto = OrderBookDto.builder()
-                    .instrumentId(event.getOrderBook().getInstrumentId())
-                    .depth(50)
-                    .timestamp(Instant.now())
-                    .bids(event.getOrderBook().getBids().entrySet().stream()
-                            .map(e -> OrderBookDto.PriceLevelDto.builder()
-                                    .price(e.getKey())
-                                    .quantity(e.getValue().getTotalQuantity())
-                                    .ordersCount(e.getValue().getOrders().size())
-                                    .apiQuantity(e.getValue().getOrders().stream()
-                                            .filter(o -> o.getSource() == OrderSource.API)
-                                            .mapToLong(Order::getRemainingQuantity)
-                                            .sum())
-                                    .build())
-                            .collect(Collectors.toList()))
-                    .asks(event.getOrderBook().getAsks().entrySet().stream()
-                            .map(e -> OrderBookDto.PriceLevelDto.builder()
-                                    .price(e.getKey())
-                                    .quantity(e.getValue().getTotalQuantity())
-                                    .ordersCount(e.getValue().getOrders().size())
-                                    .apiQuantity(e.getValue().getOrders().stream()
-                                            .filter(o -> o.getSource() == OrderSource.API)
-                                            .mapToLong(Order::getRemainingQuantity)
-                                            .sum())
-                                    .build())
-                            .collect(Collectors.toList()))
+            // Сериализуется один раз на все сессии; TextMessage неизменяем и тоже общий
+            SnapshotFrame snapshot = new SnapshotFrame(event.getOrderBook());
+            TextMessage message = event.isFull()
+                    ? snapshot.get()
+                    : new TextMessage(objectMapper.writeValueAsString(
+                            new WebSocketMessage("ORDERBOOK_DELTA", toDeltaDto(event.getDelta()))));
+
+            sessions.keySet().forEach(session -> send(session, message, snapshot));
+            log.trace("WS: Queued orderbook update for {} sessions", sessions.size());
+        } catch (IOException | UncheckedIOException e) {
+            log.error("WS: Failed to broadcast orderbook", e);
+        }
+    }
+
+    private void send(WebSocketSession session, TextMessage message, Supplier<TextMessage> snapshot) {
+        SessionWriter writer = sessions.get(session);
+        if (writer != null) {
+            writer.offer(message, snapshot);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+
+    private OrderBookDto toDto(OrderBook book) {
+        TickSize tickSize = book.getTickSize();
+        return OrderBookDto.builder()
+                .instrumentId(book.getInstrumentId())
+                .depth(50)
+                .version(book.getVersion())
+                .timestamp(clock.instant())
+                .bids(book.getBids().values().stream()
+                        .map(level -> OrderBookDto.PriceLevelDto.builder()
+                                .price(tickSize.toPrice(level.getPrice()))
+                                .quantity(level.getTotalQuantity())
+                                .ordersCount(level.getOrdersCount())
+                                .apiQuantity(level.getApiQuantity())
+                                .build())
+                        .collect(Collectors.toList()))
+                .asks(book.getAsks().values().stream()
+                        .map(level -> OrderBookDto.PriceLevelDto.builder()
+                                .price(tickSize.toPrice(level.getPrice()))
+                                .quantity(level.getTotalQuantity())
+                                .ordersCount(level.getOrdersCount())
+                                .apiQuantity(level.getApiQuantity())
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    private OrderBookDeltaDto toDeltaDto(OrderBookDelta delta) {
+        TickSize tickSize = delta.getTickSize();
+        List<OrderBookDto.PriceLevelDto> bids = new ArrayList<>();
+        List<OrderBookDto.PriceLevelDto> asks = new ArrayList<>();
+        for (LevelDelta level : delta.getLevels()) {
+            OrderBookDto.PriceLevelDto dto = OrderBookDto.PriceLevelDto.builder()
+                    .price(tickSize.toPrice(level.getPrice()))
+                    .quantity(level.getQuantity())
+                    .ordersCount(level.getOrdersCount())
+                    .apiQuantity(level.getApiQuantity())
                     .build();
+            (level.getSide() == OrderDirection.BUY ? bids : asks).add(dto);
+        }
+        return OrderBookDeltaDto.builder()
+                .instrumentId(delta.getInstrumentId())
+                .fromVersion(delta.getFromVersion())
+                .toVersion(delta.getToVersion())
+                .timestamp(clock.instant())
+                .bids(bids)
+                .asks(asks)
+                .build();
+    }
 
-            // Wrap in "type/data" envelope
-            String message = objectMapper.writeValueAsString(new WebSocketMessage("ORDERBOOK_UPDATE", dto));
+    /**
+     * Полный стакан версии события: сериализуется, только если понадобился хотя бы одной отстающей сессии.
+     */
+    private final class SnapshotFrame implements Supplier<TextMessage> {
+        private final OrderBook book;
+        private TextMessage frame;
 
-            int sentCount = 0;
-            for (WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    session.sendMessage(new TextMessage(message));
-                    sentCount++;
+        SnapshotFrame(OrderBook book) {
+            this.book = book;
+        }
+
+        @Override
+        public TextMessage get() {
+            if (frame == null) {
+                try {
+                    frame = new TextMessage(objectMapper.writeValueAsString(new WebSocketMessage("ORDERBOOK_UPDATE", toDto(book))));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
             }
-            log.trace("WS: Sent orderbook update to {} open sessions", sentCount);
-        } catch (IOException e) {
-            log.error("WS: Failed to broadcast orderbook", e);
+            return frame;
         }
     }
 
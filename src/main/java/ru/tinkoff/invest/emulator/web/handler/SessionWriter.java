@@ -0,0 +1,136 @@
+package ru.tinkoff.invest.emulator.web.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import ru.tinkoff.invest.emulator.core.stream.Mailbox;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Асинхронная отправка кадров стакана в одну WebSocket-сессию.
+ * <p>
+ * Сессия обёрнута в {@link ConcurrentWebSocketSessionDecorator} с лимитами времени отправки и буфера,
+ * сама отправка идёт в {@link Mailbox} на виртуальном потоке. Пока предыдущий кадр не ушёл, следующие
+ * схлопываются: в ожидании остаётся один кадр, а если ждал уже какой-то, он заменяется полным стаканом
+ * последней версии. Сессия, отправка в которую висит дольше лимита, отключается как медленная.
+ */
+@Slf4j
+final class SessionWriter {
+    private final WebSocketSession session;
+    private final Mailbox mailbox;
+    private final Executor executor;
+    private final long sendTimeLimitMs;
+    private final Runnable onConflated;
+    private final Runnable onSlow;
+
+    private TextMessage pending;
+    private boolean scheduled;
+    // Начало текущей отправки, 0 — отправки нет
+    private long sendingSince;
+    private boolean closed;
+
+    /**
+     * @param onConflated вызывается на каждый кадр, заменённый более свежим
+     * @param onSlow      вызывается один раз, когда сессия отключена как медленная
+     */
+    SessionWriter(WebSocketSession session, Executor executor, long sendTimeLimitMs, int bufferSizeLimit,
+                  Runnable onConflated, Runnable onSlow) {
+        this.session = new ConcurrentWebSocketSessionDecorator(session, (int) sendTimeLimitMs, bufferSizeLimit);
+        this.mailbox = new Mailbox(executor);
+        this.executor = executor;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.onConflated = onConflated;
+        this.onSlow = onSlow;
+    }
+
+    /**
+     * @param frame    кадр по порядку (дельта или полный стакан)
+     * @param snapshot полный стакан той же версии — замена, если клиент ещё не получил предыдущий кадр
+     */
+    void offer(TextMessage frame, Supplier<TextMessage> snapshot) {
+        boolean schedule = false;
+        boolean slow = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (sendingSince != 0 && System.currentTimeMillis() - sendingSince > sendTimeLimitMs) {
+                slow = true;
+            } else {
+                if (pending != null) {
+                    pending = snapshot.get();
+                    onConflated.run();
+                } else {
+                    pending = frame;
+                }
+                if (!scheduled) {
+                    scheduled = true;
+                    schedule = true;
+                }
+            }
+        }
+        if (slow) {
+            terminate("send blocked for more than " + sendTimeLimitMs + " ms");
+        } else if (schedule) {
+            mailbox.execute(this::flush);
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        pending = null;
+    }
+
+    private void flush() {
+        while (true) {
+            TextMessage message;
+            synchronized (this) {
+                if (closed || pending == null) {
+                    scheduled = false;
+                    return;
+                }
+                message = pending;
+                pending = null;
+                sendingSince = System.currentTimeMillis();
+            }
+            try {
+                session.sendMessage(message);
+            } catch (SessionLimitExceededException e) {
+                // Декоратор уже закрыл сессию
+                terminate(e.getMessage());
+            } catch (IOException e) {
+                // Сессия после ошибки отправки ненадёжна: закрываем её и учитываем так же, как медленную
+                terminate("send failed: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    sendingSince = 0;
+                }
+            }
+        }
+    }
+
+    private void terminate(String reason) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            close();
+        }
+        log.warn("WS: Dropping slow client sessionId={}: {}", session.getId(), reason);
+        onSlow.run();
+        // Закрытие может блокироваться так же, как отправка, поэтому не в потоке рассылки
+        executor.execute(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("WS: Failed to close sessionId={}: {}", session.getId(), e.getMessage());
+            }
+        });
+    }
+}
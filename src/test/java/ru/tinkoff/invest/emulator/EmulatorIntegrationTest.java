@@ -10,6 +10,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import ru.tinkoff.invest.emulator.config.EmulatorProperties;
 import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
 import ru.tinkoff.invest.emulator.core.model.Order;
 import ru.tinkoff.invest.emulator.core.model.OrderSource;
 import ru.tinkoff.piapi.contract.v1.*;
@@ -32,6 +33,8 @@ public class EmulatorIntegrationTest {
     private EmulatorProperties properties;
     
     @Autowired
+    private OrderBookRegistry orderBookRegistry;
+
     private OrderBookManager orderBookManager;
 
     private ManagedChannel channel;
@@ -42,6 +45,7 @@ public class EmulatorIntegrationTest {
 
     @BeforeEach
     void setUp() {
+        orderBookManager = orderBookRegistry.getDefaultBook();
         orderBookManager.clear();
         channel = ManagedChannelBuilder.forAddress("localhost", 9090)
                 .usePlaintext()
@@ -68,7 +72,7 @@ public class EmulatorIntegrationTest {
         orderBookManager.addOrder(Order.builder()
                 .id(UUID.randomUUID())
                 .instrumentId(instrumentId)
-                .price(new BigDecimal("110"))
+                .price(orderBookManager.getTickSize().toTicks(new BigDecimal("110")))
                 .quantity(100)
                 .direction(ru.tinkoff.invest.emulator.core.model.OrderDirection.SELL)
                 .type(ru.tinkoff.invest.emulator.core.model.OrderType.LIMIT)
@@ -10,7 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import ru.tinkoff.invest.emulator.config.EmulatorProperties;
-import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
 import ru.tinkoff.invest.emulator.core.model.OrderDirection;
 import ru.tinkoff.invest.emulator.core.model.OrderType;
 import ru.tinkoff.piapi.contract.v1.*;
@@ -34,7 +34,7 @@ public class StreamsIntegrationTest {
     private EmulatorProperties properties;
     
     @Autowired
-    private OrderBookManager orderBookManager;
+    private OrderBookRegistry orderBookRegistry;
     
     private ManagedChannel channel;
     private MarketDataStreamServiceGrpc.MarketDataStreamServiceStub marketDataStreamStub;
@@ -43,7 +43,7 @@ public class StreamsIntegrationTest {
 
     @BeforeEach
     void setUp() {
-        orderBookManager.clear();
+        orderBookRegistry.clear();
         channel = ManagedChannelBuilder.forAddress("localhost", 9095)
                 .usePlaintext()
                 .build();
@@ -0,0 +1,80 @@
+package ru.tinkoff.invest.emulator.core.clock;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.core.model.Order;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmulatorClockTest {
+
+    private static final Instant START = Instant.parse("2024-03-01T07:00:00Z");
+
+    @Test
+    void testFixedStepClockIsDeterministic() throws InterruptedException {
+        FixedStepClock clock = new FixedStepClock(EmulatorClock.toEpochNanos(START), Duration.ofMillis(1));
+
+        assertEquals(START, clock.instant());
+        assertEquals(START.plusMillis(1), clock.instant());
+        clock.advance(Duration.ofMinutes(1));
+        clock.sleepUntil(EmulatorClock.toEpochNanos(START.plusSeconds(3600)));
+        assertEquals(START.plusSeconds(3600), clock.instant());
+        // Ожидание в прошлое часы назад не переводит
+        clock.sleepUntil(EmulatorClock.toEpochNanos(START));
+        assertEquals(START.plusSeconds(3600).plusMillis(1), clock.instant());
+    }
+
+    @Test
+    void testAcceleratedClockRunsFaster() throws InterruptedException {
+        AcceleratedClock clock = new AcceleratedClock(EmulatorClock.toEpochNanos(START), 1000);
+        long wallStart = System.nanoTime();
+
+        clock.sleepUntil(EmulatorClock.toEpochNanos(START.plusSeconds(10)));
+
+        assertFalse(clock.instant().isBefore(START.plusSeconds(10)));
+        // 10 секунд эмулятора при ускорении 1000 — около 10 мс реального времени
+        assertTrue(System.nanoTime() - wallStart < Duration.ofSeconds(5).toNanos());
+        assertEquals(Duration.ofMillis(5), clock.toWall(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void testWallClockFollowsSystemTime() {
+        WallClock clock = new WallClock();
+        Instant before = Instant.now().minusMillis(50);
+
+        Instant now = clock.instant();
+
+        assertTrue(now.isAfter(before));
+        assertTrue(now.isBefore(Instant.now().plusMillis(50)));
+    }
+
+    @Test
+    void testSchedulerCapsWallPeriodOfSlowClock() throws InterruptedException {
+        // 5 секунд эмулятора при замедлении в 1000 раз — почти полтора часа реального времени
+        ClockScheduler scheduler = new ClockScheduler(new AcceleratedClock(EmulatorClock.toEpochNanos(START), 0.001));
+        CountDownLatch runs = new CountDownLatch(2);
+        try {
+            scheduler.scheduleAtFixedRate("keepalive", runs::countDown, Duration.ofSeconds(5), Duration.ofMillis(20));
+
+            assertTrue(runs.await(5, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void testOrderKeepsCreationTimeSetByCreator() {
+        assertEquals(START.plusSeconds(5), Order.builder().createdAt(START.plusSeconds(5)).build().getCreatedAt());
+    }
+
+    @Test
+    void testEpochNanosConversionHandlesPreEpochInstants() {
+        Instant instant = Instant.ofEpochSecond(-2, 300);
+
+        assertEquals(instant, EmulatorClock.toInstant(EmulatorClock.toEpochNanos(instant)));
+    }
+}
@@ -0,0 +1,125 @@
+package ru.tinkoff.invest.emulator.core.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.core.model.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBusTest {
+
+    private final EventBus eventBus = new EventBus(4);
+
+    @AfterEach
+    void tearDown() {
+        eventBus.shutdown();
+    }
+
+    private static OrderStateChangedEvent event(String accountId, long filled) {
+        Order order = Order.builder()
+                .id(UUID.randomUUID())
+                .accountId(accountId)
+                .quantity(1_000)
+                .filledQuantity(filled)
+                .build();
+        return new OrderStateChangedEvent(EventBusTest.class, order);
+    }
+
+    @Test
+    void testRecordedEventsAreDeliveredOnlyAfterFlush() throws Exception {
+        CountDownLatch delivered = new CountDownLatch(1);
+        eventBus.subscribe(OrderStateChangedEvent.class, e -> e.getOrder().getAccountId(), e -> delivered.countDown());
+
+        eventBus.record(event("acc", 0));
+        assertFalse(delivered.await(100, TimeUnit.MILLISECONDS));
+
+        eventBus.flush();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testOrderIsPreservedPerKey() throws Exception {
+        int accounts = 8;
+        int perAccount = 500;
+        Map<String, List<Long>> received = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(accounts * perAccount);
+        eventBus.subscribe(OrderStateChangedEvent.class, e -> e.getOrder().getAccountId(), e -> {
+            // Один ключ — одна дорожка, поэтому список счёта пишет только один поток
+            received.computeIfAbsent(e.getOrder().getAccountId(), k -> new ArrayList<>()).add(e.getOrder().getFilledQuantity());
+            done.countDown();
+        });
+
+        for (int i = 0; i < perAccount; i++) {
+            for (int a = 0; a < accounts; a++) {
+                eventBus.record(event("acc-" + a, i));
+            }
+            eventBus.flush();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int a = 0; a < accounts; a++) {
+            List<Long> fills = received.get("acc-" + a);
+            assertEquals(perAccount, fills.size());
+            for (int i = 0; i < perAccount; i++) {
+                assertEquals(i, fills.get(i).longValue());
+            }
+        }
+    }
+
+    @Test
+    void testFailingListenerDoesNotStopLane() throws Exception {
+        CountDownLatch delivered = new CountDownLatch(2);
+        eventBus.subscribe(OrderStateChangedEvent.class, e -> "same", e -> {
+            delivered.countDown();
+            throw new IllegalStateException("listener failure");
+        });
+
+        eventBus.publish(event("acc", 0));
+        eventBus.publish(event("acc", 1));
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFullLaneMakesPublisherWaitWithoutLosingEvents() throws Exception {
+        EventBus bounded = new EventBus(1, 2);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            List<Long> received = new ArrayList<>();
+            bounded.subscribe(OrderStateChangedEvent.class, e -> "same", e -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                received.add(e.getOrder().getFilledQuantity());
+            });
+
+            // Первое событие занимает поток дорожки, два — очередь, четвёртое ждёт места
+            CompletableFuture<Void> publisher = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 4; i++) {
+                    bounded.publish(event("acc", i));
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(publisher.isDone(), "publisher did not wait for a full lane");
+            assertEquals(1, bounded.getFullLaneWaits());
+
+            release.countDown();
+            publisher.get(5, TimeUnit.SECONDS);
+            bounded.barrier("same").get(5, TimeUnit.SECONDS);
+            assertEquals(List.of(0L, 1L, 2L, 3L), received);
+        } finally {
+            bounded.shutdown();
+        }
+    }
+}
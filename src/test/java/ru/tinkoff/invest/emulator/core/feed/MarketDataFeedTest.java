@@ -0,0 +1,201 @@
+package ru.tinkoff.invest.emulator.core.feed;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.FixedStepClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
+import ru.tinkoff.invest.emulator.core.matching.ProRataMatchingEngine;
+import ru.tinkoff.invest.emulator.core.model.*;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketDataFeedTest {
+
+    private static final String INSTRUMENT_ID = "TBRU";
+
+    @TempDir
+    Path dir;
+
+    private EventBus eventBus;
+    private OrderBookRegistry registry;
+    private OrderGateway gateway;
+    private MarketDataFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        EmulatorProperties props = new EmulatorProperties();
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(INSTRUMENT_ID);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
+        props.setInstrument(inst);
+        props.getFeed().setSpeed(0);
+
+        eventBus = new EventBus(1);
+        EmulatorClock clock = new WallClock();
+        registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        gateway = new OrderGateway(registry, new ProRataMatchingEngine(registry, eventBus, clock), eventBus, props, clock);
+        gateway.init();
+        feed = new MarketDataFeed(props, registry, gateway, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventBus.shutdown();
+    }
+
+    @Test
+    void testBinaryFormatRoundTripsCsv() throws IOException {
+        Path csv = csv(
+                "timestamp,instrumentId,type,side,price,quantity",
+                "2024-03-01T10:00:00.000000125Z,TBRU,BOOK,BUY,7.68,100",
+                "# комментарий",
+                "1709287200001,SBER,TRADE,SELL,301.5,3",
+                "2024-03-01T10:00:00.002Z,TBRU,BOOK,SELL,7.70,0");
+        List<TickEvent> events = readAll(csv);
+        assertEquals(3, events.size());
+        assertEquals(1_709_287_200_000_000_125L, events.get(0).timestampNanos());
+        assertEquals(1_709_287_200_001_000_000L, events.get(1).timestampNanos());
+        assertEquals(TickType.TRADE, events.get(1).type());
+
+        Path bin = dir.resolve("ticks.bin");
+        try (BinaryTickWriter writer = new BinaryTickWriter(Files.newOutputStream(bin))) {
+            for (TickEvent event : events) {
+                writer.write(event);
+            }
+        }
+
+        assertEquals(events, readAll(bin));
+    }
+
+    @Test
+    void testBinaryReaderRejectsForeignFile() throws IOException {
+        Path bin = dir.resolve("foreign.bin");
+        Files.write(bin, new byte[16]);
+
+        assertThrows(IOException.class, () -> TickReader.open(bin));
+    }
+
+    @Test
+    void testTicksDriveOrderBook() throws Exception {
+        OrderBookManager book = registry.getDefaultBook();
+        Order resting = Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT_ID)
+                .accountId("test-account")
+                .source(OrderSource.API)
+                .direction(OrderDirection.SELL)
+                .type(OrderType.LIMIT)
+                .price(770)
+                .quantity(20)
+                .build();
+        gateway.place(resting).join();
+
+        feed.replay(csv(
+                "1000,TBRU,BOOK,BUY,7.68,100",
+                "1001,TBRU,BOOK,SELL,7.70,50",
+                "1002,UNKNOWN,BOOK,SELL,1.00,10",
+                "1003,TBRU,BOOK,BUY,7.68,120"));
+
+        assertEquals(768, book.getBids().bestPrice());
+        assertEquals(120, book.getBids().best().getTotalQuantity());
+        assertEquals(1, book.getBids().best().getOrders().size());
+        assertEquals(70, book.getAsks().best().getTotalQuantity());
+
+        // Сделка исполняется против стакана эмулятора, включая заявку бота
+        feed.replay(csv("1004,TBRU,TRADE,BUY,7.70,30"));
+        assertEquals(40, book.getAsks().best().getTotalQuantity());
+
+        // Уровень ленты исчез — в стакане остаётся только заявка бота
+        feed.replay(csv("1005,TBRU,BOOK,SELL,7.70,0"));
+        Order bot = book.getOrder(resting.getId());
+        assertNotNull(bot);
+        assertTrue(bot.getFilledQuantity() > 0);
+        assertEquals(bot.getRemainingQuantity(), book.getAsks().best().getTotalQuantity());
+        assertTrue(book.getOrders(MarketDataFeed.FEED_ACCOUNT).stream()
+                .allMatch(order -> order.getDirection() == OrderDirection.BUY && order.getSource() == OrderSource.FEED));
+
+        FeedStatus status = feed.getStatus();
+        assertEquals(5, status.events());
+        assertEquals(1, status.skipped());
+        assertEquals(Instant.ofEpochMilli(1005), status.simulatedTime());
+    }
+
+    @Test
+    void testCrossedLevelUpdateDoesNotTradeWithFeed() throws Exception {
+        OrderBookManager book = registry.getDefaultBook();
+        feed.clearBooks();
+
+        feed.replay(csv(
+                "1000,TBRU,BOOK,SELL,7.70,50",
+                "1001,TBRU,BOOK,SELL,7.72,30",
+                // Новый лучший бид через устаревший аск 7.70
+                "1002,TBRU,BOOK,BUY,7.71,40"));
+
+        assertEquals(771, book.getBids().bestPrice());
+        assertEquals(40, book.getBids().best().getTotalQuantity());
+        assertEquals(772, book.getAsks().bestPrice());
+        assertEquals(30, book.getAsks().best().getTotalQuantity());
+        assertTrue(book.getOrders(MarketDataFeed.FEED_ACCOUNT).stream()
+                .allMatch(order -> order.getFilledQuantity() == 0));
+    }
+
+    @Test
+    void testTradeRemainderDoesNotRest() throws Exception {
+        OrderBookManager book = registry.getDefaultBook();
+        feed.clearBooks();
+
+        feed.replay(csv(
+                "1000,TBRU,BOOK,SELL,7.70,10",
+                "1001,TBRU,TRADE,BUY,7.70,25"));
+
+        assertTrue(book.getBids().isEmpty());
+        assertTrue(book.getAsks().isEmpty());
+    }
+
+    @Test
+    void testPacerFollowsSpeed() throws InterruptedException {
+        FixedStepClock clock = new FixedStepClock(0, Duration.ZERO);
+        FeedPacer pacer = new FeedPacer(100, clock);
+        pacer.await(5_000_000_000L);
+        pacer.await(7_000_000_000L);
+
+        // 2 секунды истории при скорости 100 — 20 мс времени эмулятора
+        assertEquals(20_000_000L, clock.peek());
+    }
+
+    private Path csv(String... lines) throws IOException {
+        Path file = Files.createTempFile(dir, "ticks", ".csv");
+        Files.write(file, List.of(lines));
+        return file;
+    }
+
+    private static List<TickEvent> readAll(Path path) throws IOException {
+        List<TickEvent> events = new ArrayList<>();
+        try (TickReader reader = TickReader.open(path)) {
+            TickEvent event;
+            while ((event = reader.next()) != null) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+}
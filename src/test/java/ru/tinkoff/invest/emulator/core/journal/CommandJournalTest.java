@@ -0,0 +1,364 @@
+package ru.tinkoff.invest.emulator.core.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
+import ru.tinkoff.invest.emulator.core.matching.ProRataMatchingEngine;
+import ru.tinkoff.invest.emulator.core.model.*;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+import ru.tinkoff.invest.emulator.core.state.AccountManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandJournalTest {
+
+    private static final String INSTRUMENT_ID = "TBRU";
+
+    @TempDir
+    Path dir;
+
+    private final List<CommandJournal> opened = new ArrayList<>();
+    private final List<EventBus> buses = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(CommandJournal::close);
+        buses.forEach(EventBus::shutdown);
+    }
+
+    private CommandJournal open(DataSize segmentSize) {
+        EmulatorProperties.Journal config = new EmulatorProperties.Journal();
+        config.setEnabled(true);
+        config.setPath(dir.resolve("journal.bin").toString());
+        config.setSegmentSize(segmentSize);
+        config.setSyncIntervalMs(0);
+        CommandJournal journal = new CommandJournal(config);
+        journal.open();
+        opened.add(journal);
+        return journal;
+    }
+
+    private Order createOrder(OrderSource source, OrderDirection direction, long price, long quantity) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT_ID)
+                .accountId("test-account")
+                .source(source)
+                .direction(direction)
+                .type(OrderType.LIMIT)
+                .price(price)
+                .quantity(quantity)
+                .build();
+    }
+
+    @Test
+    void testRecordsSurviveReopen() {
+        CommandJournal journal = open(DataSize.ofMegabytes(1));
+        Order seed = createOrder(OrderSource.ADMIN_PANEL, OrderDirection.SELL, 770, 100).toBuilder()
+                .filledQuantity(40)
+                .status(OrderStatus.PARTIALLY_FILLED)
+                .createdAt(Instant.ofEpochSecond(1_700_000_000L, 123))
+                .build();
+        Order placed = createOrder(OrderSource.API, OrderDirection.BUY, 769, 10);
+        UUID newId = UUID.randomUUID();
+        journal.seed(seed);
+        journal.place(placed);
+        journal.replace(INSTRUMENT_ID, placed.getId(), newId, 20, 768);
+        journal.cancel(INSTRUMENT_ID, newId);
+        journal.reset(List.of());
+        journal.close();
+
+        CommandJournal reopened = open(DataSize.ofMegabytes(1));
+        assertEquals(5, reopened.size());
+        List<String> records = new ArrayList<>();
+        reopened.replay(new RecordingVisitor(records));
+
+        assertEquals(List.of(
+                "seed " + seed,
+                "place " + placed,
+                "replace " + INSTRUMENT_ID + " " + placed.getId() + " " + newId + " 20 768",
+                "cancel " + INSTRUMENT_ID + " " + newId,
+                "reset"), records);
+    }
+
+    @Test
+    void testAppendContinuesAcrossSegments() {
+        CommandJournal journal = open(DataSize.ofKilobytes(2));
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Order order = createOrder(OrderSource.API, OrderDirection.BUY, 700 + i, 1);
+            orders.add(order);
+            journal.place(order);
+        }
+        journal.close();
+
+        // Размер сегмента берётся из заголовка файла, а не из конфига
+        CommandJournal reopened = open(DataSize.ofMegabytes(1));
+        Order last = createOrder(OrderSource.API, OrderDirection.SELL, 800, 1);
+        orders.add(last);
+        reopened.place(last);
+
+        List<String> records = new ArrayList<>();
+        reopened.replay(new RecordingVisitor(records));
+        assertEquals(orders.stream().map(order -> "place " + order).toList(), records);
+    }
+
+    @Test
+    void testFailedAppendDoesNotHideLaterRecords() {
+        CommandJournal journal = open(DataSize.ofMegabytes(1));
+        Order first = createOrder(OrderSource.API, OrderDirection.BUY, 770, 1);
+        journal.place(first);
+        Trade trade = Trade.builder().aggressorOrderId(first.getId()).price(770).quantity(1).build();
+        // Место под сделки уже занято, когда заполнение падает на null
+        assertThrows(NullPointerException.class, () -> journal.trades(INSTRUMENT_ID, Arrays.asList(trade, null)));
+        Order tooLong = createOrder(OrderSource.API, OrderDirection.BUY, 771, 1).toBuilder()
+                .accountId("a".repeat(Short.MAX_VALUE + 1))
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> journal.place(tooLong));
+        Order last = createOrder(OrderSource.API, OrderDirection.SELL, 772, 1);
+        journal.place(last);
+        journal.close();
+
+        CommandJournal reopened = open(DataSize.ofMegabytes(1));
+        assertEquals(2, reopened.size());
+        List<String> records = new ArrayList<>();
+        reopened.replay(new RecordingVisitor(records));
+        assertEquals(List.of("place " + first, "place " + last), records);
+    }
+
+    @Test
+    void testConcurrentAppendsKeepEveryRecord() throws Exception {
+        CommandJournal journal = open(DataSize.ofKilobytes(4));
+        int writers = 8;
+        int ordersPerWriter = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                long price = 1000L * w;
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < ordersPerWriter; i++) {
+                        journal.place(createOrder(OrderSource.API, OrderDirection.BUY, price + i, 1));
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        journal.close();
+
+        CommandJournal reopened = open(DataSize.ofKilobytes(4));
+        assertEquals(writers * ordersPerWriter, reopened.size());
+        List<Long> prices = new ArrayList<>();
+        reopened.replay(new CommandJournal.Visitor() {
+            @Override
+            public void seed(Order order) {
+                fail("unexpected seed");
+            }
+
+            @Override
+            public void place(Order order) {
+                prices.add(order.getPrice());
+            }
+
+            @Override
+            public void cancel(String instrumentId, UUID orderId) {
+                fail("unexpected cancel");
+            }
+
+            @Override
+            public void replace(String instrumentId, UUID orderId, UUID newOrderId, long quantity, long price) {
+                fail("unexpected replace");
+            }
+
+            @Override
+            public void reset() {
+                fail("unexpected reset");
+            }
+
+            @Override
+            public void account(BigDecimal balance, List<Position> positions) {
+                fail("unexpected account");
+            }
+        });
+        assertEquals(writers * ordersPerWriter, prices.size());
+        // Записи каждого писателя идут в порядке append
+        for (int w = 0; w < writers; w++) {
+            long first = 1000L * w;
+            List<Long> own = prices.stream().filter(price -> price >= first && price < first + 1000).toList();
+            assertEquals(LongStream.range(first, first + ordersPerWriter).boxed().toList(), own);
+        }
+    }
+
+    @Test
+    void testDisabledJournalIgnoresCommands() {
+        CommandJournal journal = CommandJournal.disabled();
+        journal.open();
+        journal.place(createOrder(OrderSource.API, OrderDirection.BUY, 700, 1));
+
+        assertFalse(journal.isEnabled());
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    void testRecoveryRebuildsBookAndAccount() {
+        Emulator first = new Emulator(open(DataSize.ofMegabytes(1)));
+        first.recovery.recover();
+        OrderGateway gateway = first.gateway;
+        Order resting = createOrder(OrderSource.ADMIN_PANEL, OrderDirection.SELL, 770, 100);
+        gateway.place(resting).join();
+        gateway.place(createOrder(OrderSource.ADMIN_PANEL, OrderDirection.SELL, 771, 50)).join();
+        gateway.place(createOrder(OrderSource.API, OrderDirection.BUY, 770, 30)).join();
+        Order bid = createOrder(OrderSource.API, OrderDirection.BUY, 765, 10);
+        gateway.place(bid).join();
+        gateway.replace(bid.getId(), UUID.randomUUID(), 15, 766).join();
+        Order cancelled = createOrder(OrderSource.API, OrderDirection.BUY, 760, 5);
+        gateway.place(cancelled).join();
+        gateway.cancel(cancelled.getId()).join();
+        first.awaitTrades();
+        first.journal.close();
+
+        Emulator second = new Emulator(open(DataSize.ofMegabytes(1)));
+        second.recovery.recover();
+
+        assertEquals(describe(first.book()), describe(second.book()));
+        assertEquals(70, second.book().getOrder(resting.getId()).getRemainingQuantity());
+        assertEquals(first.accountManager.getAccount().getBalance(), second.accountManager.getAccount().getBalance());
+        assertEquals(first.accountManager.getAccount().getPositions().get(INSTRUMENT_ID).getQuantity(),
+                second.accountManager.getAccount().getPositions().get(INSTRUMENT_ID).getQuantity());
+        // Восстановление не дописывает в журнал повторно
+        assertEquals(first.journal.size(), second.journal.size());
+    }
+
+    @Test
+    void testRecoverySkipsCommandsThatFailedInOriginalRun() {
+        Emulator first = new Emulator(open(DataSize.ofMegabytes(1)), BookType.LADDER);
+        first.recovery.recover();
+        first.gateway.place(createOrder(OrderSource.ADMIN_PANEL, OrderDirection.SELL, 770, 100)).join();
+        // Команда попала в журнал, но исполнение упало: цена далеко за окном лестницы
+        first.journal.place(createOrder(OrderSource.API, OrderDirection.SELL, 770 + (1L << 25), 1));
+        Order after = createOrder(OrderSource.API, OrderDirection.BUY, 765, 10);
+        first.gateway.place(after).join();
+        first.awaitTrades();
+        first.journal.close();
+
+        Emulator second = new Emulator(open(DataSize.ofMegabytes(1)), BookType.LADDER);
+        assertDoesNotThrow(second.recovery::recover);
+
+        assertEquals(describe(first.book()), describe(second.book()));
+        assertNotNull(second.book().getOrder(after.getId()));
+    }
+
+    private static List<String> describe(OrderBookManager book) {
+        return book.getAllOrders().stream()
+                .sorted(Comparator.comparing(Order::getId))
+                .map(order -> order.getId() + " " + order.getPrice() + " " + order.getRemainingQuantity())
+                .toList();
+    }
+
+    /**
+     * Компоненты эмулятора над одним журналом, как их связывает Spring.
+     */
+    private class Emulator {
+        final CommandJournal journal;
+        final OrderBookRegistry registry;
+        final AccountManager accountManager;
+        final OrderGateway gateway;
+        final JournalRecovery recovery;
+
+        Emulator(CommandJournal journal) {
+            this(journal, BookType.TREE_MAP);
+        }
+
+        Emulator(CommandJournal journal, BookType bookType) {
+            EmulatorProperties props = new EmulatorProperties();
+            EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+            inst.setUid(INSTRUMENT_ID);
+            inst.setMinPriceIncrement(new BigDecimal("0.01"));
+            props.setInstrument(inst);
+            EmulatorProperties.OrderBook orderbook = new EmulatorProperties.OrderBook();
+            orderbook.setBookType(bookType);
+            props.setOrderbook(orderbook);
+            EmulatorProperties.Account account = new EmulatorProperties.Account();
+            account.setId("test-account");
+            account.setInitialBalance(new BigDecimal("100000"));
+            props.setAccount(account);
+
+            EventBus eventBus = new EventBus(1);
+            buses.add(eventBus);
+            this.journal = journal;
+            EmulatorClock clock = new WallClock();
+            registry = new OrderBookRegistry(props, clock);
+            registry.init();
+            accountManager = new AccountManager(props, eventBus);
+            accountManager.init();
+            gateway = new OrderGateway(registry, new ProRataMatchingEngine(registry, eventBus, clock), eventBus, props, clock, journal);
+            gateway.init();
+            recovery = new JournalRecovery(journal, registry, gateway, accountManager);
+        }
+
+        OrderBookManager book() {
+            return registry.getDefaultBook();
+        }
+
+        void awaitTrades() {
+            accountManager.awaitTrades().join();
+        }
+    }
+
+    private record RecordingVisitor(List<String> records) implements CommandJournal.Visitor {
+        @Override
+        public void seed(Order order) {
+            records.add("seed " + order);
+        }
+
+        @Override
+        public void place(Order order) {
+            records.add("place " + order);
+        }
+
+        @Override
+        public void cancel(String instrumentId, UUID orderId) {
+            records.add("cancel " + instrumentId + " " + orderId);
+        }
+
+        @Override
+        public void replace(String instrumentId, UUID orderId, UUID newOrderId, long quantity, long price) {
+            records.add("replace " + instrumentId + " " + orderId + " " + newOrderId + " " + quantity + " " + price);
+        }
+
+        @Override
+        public void reset() {
+            records.add("reset");
+        }
+
+        @Override
+        public void account(BigDecimal balance, List<Position> positions) {
+            records.add("account " + balance + " " + positions);
+        }
+    }
+}
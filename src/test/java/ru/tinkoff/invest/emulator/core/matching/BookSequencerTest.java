@@ -0,0 +1,150 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.model.*;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class BookSequencerTest {
+
+    private static final String INSTRUMENT_ID = "TBRU";
+
+    private OrderBookManager orderBookManager;
+    private BookSequencer sequencer;
+
+    @BeforeEach
+    void setUp() {
+        EmulatorProperties props = new EmulatorProperties();
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(INSTRUMENT_ID);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
+        props.setInstrument(inst);
+
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        orderBookManager = registry.getDefaultBook();
+        EventBus eventBus = mock(EventBus.class);
+        ProRataMatchingEngine matchingEngine = new ProRataMatchingEngine(registry, eventBus, clock);
+        // Маленький буфер, чтобы производители упирались в заполненное кольцо
+        sequencer = new BookSequencer(orderBookManager, new OrderCommandHandler(matchingEngine, eventBus, clock), 8);
+        sequencer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sequencer.close();
+    }
+
+    private Order createOrder(OrderDirection direction, long price, long quantity) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT_ID)
+                .accountId("test-account")
+                .source(OrderSource.API)
+                .direction(direction)
+                .type(OrderType.LIMIT)
+                .price(price)
+                .quantity(quantity)
+                .build();
+    }
+
+    @Test
+    void testPlaceMatchesAndRestsRemainder() {
+        sequencer.place(createOrder(OrderDirection.SELL, 770, 100)).join();
+
+        MatchingResult result = sequencer.place(createOrder(OrderDirection.BUY, 770, 150)).join();
+
+        assertTrue(result.accepted());
+        assertEquals(1, result.trades().size());
+        assertEquals(100, result.order().getFilledQuantity());
+        assertEquals(770, orderBookManager.getBestBid());
+        assertEquals(50, orderBookManager.getBids().best().getTotalQuantity());
+    }
+
+    @Test
+    void testConcurrentProducersAreSerialized() throws Exception {
+        int producers = 4;
+        int ordersPerProducer = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<CompletableFuture<MatchingResult>> futures = new ArrayList<>();
+        try {
+            List<CompletableFuture<List<CompletableFuture<MatchingResult>>>> batches = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                batches.add(CompletableFuture.supplyAsync(() -> {
+                    List<CompletableFuture<MatchingResult>> placed = new ArrayList<>();
+                    for (int i = 0; i < ordersPerProducer; i++) {
+                        placed.add(sequencer.place(createOrder(OrderDirection.BUY, 700 + i % 10, 1)));
+                    }
+                    return placed;
+                }, executor));
+            }
+            for (CompletableFuture<List<CompletableFuture<MatchingResult>>> batch : batches) {
+                futures.addAll(batch.get(10, TimeUnit.SECONDS));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(producers * ordersPerProducer, orderBookManager.getAllOrders().size());
+        long total = 0;
+        for (PriceLevel level : orderBookManager.getBids()) {
+            total += level.getTotalQuantity();
+        }
+        assertEquals(producers * ordersPerProducer, total);
+    }
+
+    @Test
+    void testCancel() {
+        Order order = createOrder(OrderDirection.BUY, 700, 10);
+        sequencer.place(order).join();
+
+        assertTrue(sequencer.cancel(order.getId()).join().accepted());
+        assertNull(orderBookManager.getOrder(order.getId()));
+        assertFalse(sequencer.cancel(order.getId()).join().accepted());
+    }
+
+    @Test
+    void testReplaceLosesTimePriority() {
+        Order first = createOrder(OrderDirection.SELL, 770, 10);
+        Order second = createOrder(OrderDirection.SELL, 770, 10);
+        sequencer.place(first).join();
+        sequencer.place(second).join();
+
+        UUID newId = UUID.randomUUID();
+        MatchingResult result = sequencer.replace(first.getId(), newId, 20, 770).join();
+
+        assertTrue(result.accepted());
+        assertEquals(newId, result.order().getId());
+        assertNull(orderBookManager.getOrder(first.getId()));
+        PriceLevel level = orderBookManager.getAsks().best();
+        assertEquals(30, level.getTotalQuantity());
+        assertEquals(second.getId(), level.getFirst().getOrder().getId());
+    }
+
+    @Test
+    void testPlaceAfterCloseIsRejected() {
+        sequencer.close();
+
+        assertThrows(IllegalStateException.class, () -> sequencer.place(createOrder(OrderDirection.BUY, 700, 1)));
+    }
+}
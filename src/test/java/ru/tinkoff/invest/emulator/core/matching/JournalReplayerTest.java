@@ -0,0 +1,117 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.journal.CommandJournal;
+import ru.tinkoff.invest.emulator.core.model.*;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalReplayerTest {
+
+    private static final String INSTRUMENT_ID = "TBRU";
+
+    @TempDir
+    Path dir;
+
+    private EmulatorProperties props;
+    private CommandJournal journal;
+    private EventBus eventBus;
+    private OrderGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        props = new EmulatorProperties();
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(INSTRUMENT_ID);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
+        props.setInstrument(inst);
+        props.getJournal().setEnabled(true);
+        props.getJournal().setPath(dir.resolve("journal.bin").toString());
+        props.getJournal().setSyncIntervalMs(0);
+
+        journal = new CommandJournal(props);
+        journal.open();
+        eventBus = new EventBus(1);
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        gateway = new OrderGateway(registry, new ProRataMatchingEngine(registry, eventBus, clock), eventBus, props, clock, journal);
+        gateway.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+        eventBus.shutdown();
+    }
+
+    private Order createOrder(OrderDirection direction, long price, long quantity) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT_ID)
+                .accountId("test-account")
+                .source(OrderSource.API)
+                .direction(direction)
+                .type(OrderType.LIMIT)
+                .price(price)
+                .quantity(quantity)
+                .build();
+    }
+
+    @Test
+    void testReplayReproducesRecordedTrades() throws Exception {
+        gateway.place(createOrder(OrderDirection.SELL, 771, 40)).join();
+        gateway.place(createOrder(OrderDirection.SELL, 771, 60)).join();
+        gateway.place(createOrder(OrderDirection.BUY, 771, 70)).join();
+        Order bid = createOrder(OrderDirection.BUY, 765, 10);
+        gateway.place(bid).join();
+        gateway.replace(bid.getId(), UUID.randomUUID(), 50, 771).join();
+        gateway.cancel(bid.getId()).join();
+        journal.close();
+
+        ReplayReport report = new JournalReplayer(BookType.TREE_MAP).replay(dir.resolve("journal.bin"));
+
+        assertEquals(5, report.orders());
+        assertTrue(report.recordedTrades() > 0);
+        assertEquals(report.recordedTrades(), report.producedTrades());
+        assertEquals(0, report.mismatches(), report.summary());
+        assertTrue(report.verified());
+    }
+
+    @Test
+    void testReplayReportsDivergentTrades() throws Exception {
+        Order resting = createOrder(OrderDirection.SELL, 770, 100);
+        Order aggressor = createOrder(OrderDirection.BUY, 770, 30);
+        journal.seed(resting);
+        journal.place(aggressor);
+        // Записано исполнение 20 лотов, а движок исполнит 30
+        journal.trades(INSTRUMENT_ID, List.of(Trade.builder()
+                .aggressorOrderId(aggressor.getId())
+                .passiveOrderId(resting.getId())
+                .instrumentId(INSTRUMENT_ID)
+                .price(770)
+                .quantity(20)
+                .build()));
+        journal.close();
+
+        ReplayReport report = new JournalReplayer(BookType.TREE_MAP).replay(dir.resolve("journal.bin"));
+
+        assertEquals(1, report.mismatches());
+        assertFalse(report.verified());
+        assertTrue(report.firstMismatches().get(0).contains("trade differs"));
+    }
+}
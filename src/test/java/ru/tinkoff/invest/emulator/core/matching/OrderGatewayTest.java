@@ -0,0 +1,181 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.event.OrderStateChangedEvent;
+import ru.tinkoff.invest.emulator.core.model.*;
+import ru.tinkoff.invest.emulator.core.orderbook.BookType;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderGatewayTest {
+
+    private static final String INSTRUMENT_ID = "TBRU";
+    private static final String MAKER = "maker";
+    private static final int WRITERS = 8;
+    private static final int ORDERS_PER_WRITER = 500;
+
+    private EventBus eventBus;
+    private OrderGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        EmulatorProperties props = new EmulatorProperties();
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(INSTRUMENT_ID);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
+        props.setInstrument(inst);
+
+        eventBus = new EventBus(4);
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        gateway = new OrderGateway(registry, new ProRataMatchingEngine(registry, eventBus, clock), eventBus, props, clock);
+        gateway.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+        eventBus.shutdown();
+    }
+
+    private static Order createOrder(String accountId, OrderDirection direction, long quantity) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT_ID)
+                .accountId(accountId)
+                .source(OrderSource.API)
+                .direction(direction)
+                .type(OrderType.LIMIT)
+                .price(770)
+                .quantity(quantity)
+                .build();
+    }
+
+    @Test
+    void testOrderStatesOfConcurrentFillsArriveInExecutionOrder() throws Exception {
+        Order passive = createOrder(MAKER, OrderDirection.SELL, WRITERS * ORDERS_PER_WRITER);
+        List<Long> filled = new ArrayList<>();
+        eventBus.subscribe(OrderStateChangedEvent.class, event -> event.getOrder().getAccountId(), event -> {
+            if (event.getOrder().getId().equals(passive.getId())) {
+                // Все состояния одного счёта обрабатываются одной дорожкой
+                filled.add(event.getOrder().getFilledQuantity());
+            }
+        });
+        gateway.place(passive).join();
+
+        ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<CompletableFuture<Void>> done = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                String accountId = "taker-" + w;
+                done.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < ORDERS_PER_WRITER; i++) {
+                        gateway.place(createOrder(accountId, OrderDirection.BUY, 1)).join();
+                    }
+                }, writers));
+            }
+            CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            writers.shutdown();
+        }
+        eventBus.barrier(MAKER).join();
+
+        assertEquals(WRITERS * ORDERS_PER_WRITER, filled.size());
+        for (int i = 0; i < filled.size(); i++) {
+            assertEquals(i + 1L, filled.get(i).longValue(), "state of the passive order went backwards at " + i);
+        }
+    }
+
+    @Test
+    void testExclusiveHoldsCommandsUntilActionCompletes() throws Exception {
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> admin = CompletableFuture.supplyAsync(() -> gateway.exclusive(() -> {
+            inside.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }));
+        assertTrue(inside.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<MatchingResult> placed = CompletableFuture.supplyAsync(
+                () -> gateway.place(createOrder(MAKER, OrderDirection.SELL, 10)).join());
+        Thread.sleep(100);
+        assertFalse(placed.isDone(), "command ran inside the exclusive section");
+
+        release.countDown();
+        assertEquals(1, admin.get(5, TimeUnit.SECONDS));
+        assertTrue(placed.get(5, TimeUnit.SECONDS).accepted());
+    }
+
+    @Test
+    void testResultOrderIsNotChangedByLaterFills() {
+        Order resting = createOrder(MAKER, OrderDirection.SELL, 10);
+        MatchingResult placed = gateway.place(resting).join();
+
+        gateway.place(createOrder("taker", OrderDirection.BUY, 4)).join();
+
+        assertNotSame(resting, placed.order());
+        assertEquals(0, placed.order().getFilledQuantity());
+        assertEquals(4, resting.getFilledQuantity());
+    }
+
+    @Test
+    void testLadderRejectsPriceOutsideBandBeforeMatching() {
+        EmulatorProperties props = new EmulatorProperties();
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(INSTRUMENT_ID);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
+        inst.setPriceBandTicks(10);
+        props.setInstrument(inst);
+        EmulatorProperties.OrderBook orderbook = new EmulatorProperties.OrderBook();
+        orderbook.setBookType(BookType.LADDER);
+        props.setOrderbook(orderbook);
+
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        OrderGateway ladder = new OrderGateway(registry, new ProRataMatchingEngine(registry, eventBus, clock), eventBus, props, clock);
+        ladder.init();
+        try {
+            Order ask = createOrder(MAKER, OrderDirection.SELL, 10);
+            ladder.place(ask).join();
+            ladder.place(createOrder(MAKER, OrderDirection.BUY, 5).toBuilder().price(760).build()).join();
+
+            // Покупка через весь стакан по цене, которую сторона bids не вместит вместе с уровнем 760:
+            // отказ до matching, встречная заявка не тронута
+            Order outlier = createOrder("taker", OrderDirection.BUY, 20).toBuilder().price(790).build();
+            assertThrows(IllegalArgumentException.class, () -> ladder.place(outlier).join());
+            assertEquals(0, registry.getDefaultBook().getOrder(ask.getId()).getFilledQuantity());
+
+            // Цена вне окна, но вместе с уровнями стороны помещается — окно переносится
+            Order shifted = createOrder("taker", OrderDirection.BUY, 5).toBuilder().price(745).build();
+            assertTrue(ladder.place(shifted).join().accepted());
+            assertEquals(760, registry.getDefaultBook().getBestBid());
+            assertEquals(2, registry.getDefaultBook().getBids().size());
+        } finally {
+            ladder.shutdown();
+        }
+    }
+}
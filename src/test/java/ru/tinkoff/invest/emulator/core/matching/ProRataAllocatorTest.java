@@ -0,0 +1,74 @@
+package ru.tinkoff.invest.emulator.core.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProRataAllocatorTest {
+
+    private final ProRataAllocator allocator = new ProRataAllocator();
+
+    private long[] allocate(long quantity, long... orderSizes) {
+        long[] sizes = allocator.sizes(orderSizes.length);
+        long total = 0;
+        for (int i = 0; i < orderSizes.length; i++) {
+            sizes[i] = orderSizes[i];
+            total += orderSizes[i];
+        }
+        long[] allocations = allocator.allocate(orderSizes.length, quantity, total);
+        long[] result = new long[orderSizes.length];
+        System.arraycopy(allocations, 0, result, 0, orderSizes.length);
+        return result;
+    }
+
+    @Test
+    void testExactProRata() {
+        assertArrayEquals(new long[]{20, 10}, allocate(30, 100, 50));
+    }
+
+    @Test
+    void testTailGoesToEarliestOrders() {
+        // 10 * 1/3 = 3.33 каждой, хвост 1 — первой по времени
+        assertArrayEquals(new long[]{4, 3, 3}, allocate(10, 10, 10, 10));
+        assertArrayEquals(new long[]{1, 1, 0}, allocate(2, 1, 1, 1));
+    }
+
+    @Test
+    void testTailSkipsOrdersWithoutFreeVolume() {
+        // 5 * 1/6 = 0.83 и 5 * 5/6 = 4.17: хвост 1 первой заявке, вторая уже получила floor
+        assertArrayEquals(new long[]{1, 4}, allocate(5, 1, 5));
+    }
+
+    @Test
+    void testFullLevelExecution() {
+        assertArrayEquals(new long[]{7, 3, 5}, allocate(15, 7, 3, 5));
+    }
+
+    @Test
+    void testLargeVolumesDoNotOverflow() {
+        long big = Long.MAX_VALUE / 4;
+        long[] result = allocate(big, big, big);
+        assertEquals(big, result[0] + result[1]);
+        assertEquals(big / 2 + 1, result[0]);
+    }
+
+    @Test
+    void testBuffersGrow() {
+        long[] sizes = new long[1_000];
+        Arrays.fill(sizes, 3);
+        long[] result = allocate(1_000, sizes);
+        long sum = 0;
+        for (long allocation : result) {
+            assertEquals(1, allocation);
+            sum += allocation;
+        }
+        assertEquals(1_000, sum);
+    }
+
+    @Test
+    void testRejectsQuantityAboveTotal() {
+        assertThrows(IllegalArgumentException.class, () -> allocate(11, 5, 5));
+    }
+}
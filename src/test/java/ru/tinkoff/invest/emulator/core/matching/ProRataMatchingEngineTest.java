@@ -2,18 +2,23 @@ package ru.tinkoff.invest.emulator.core.matching;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.FixedStepClock;
 import ru.tinkoff.invest.emulator.core.model.*;
 import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
 
-import org.springframework.context.ApplicationEventPublisher;
 import static org.mockito.Mockito.mock;
 
 class ProRataMatchingEngineTest {
@@ -21,17 +26,25 @@ class ProRataMatchingEngineTest {
     private OrderBookManager orderBookManager;
     private ProRataMatchingEngine matchingEngine;
     private final String INSTRUMENT_ID = "TBRU";
-    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private static final Instant START = Instant.parse("2024-03-01T07:00:00Z");
 
     @BeforeEach
     void setUp() {
         EmulatorProperties props = new EmulatorProperties();
         EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
         inst.setUid(INSTRUMENT_ID);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
         props.setInstrument(inst);
         
-        orderBookManager = new OrderBookManager(props, eventPublisher);
-        matchingEngine = new ProRataMatchingEngine(orderBookManager, eventPublisher);
+        EmulatorClock clock = new FixedStepClock(EmulatorClock.toEpochNanos(START), Duration.ofSeconds(1));
+        OrderBookRegistry registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        orderBookManager = registry.getDefaultBook();
+        matchingEngine = new ProRataMatchingEngine(registry, mock(EventBus.class), clock);
+    }
+
+    private long ticks(BigDecimal price) {
+        return orderBookManager.getTickSize().toTicks(price);
     }
 
     private Order createOrder(OrderDirection direction, BigDecimal price, long quantity) {
@@ -42,7 +55,7 @@ class ProRataMatchingEngineTest {
                 .source(OrderSource.API)
                 .direction(direction)
                 .type(OrderType.LIMIT)
-                .price(price)
+                .price(ticks(price))
                 .quantity(quantity)
                 .build();
     }
@@ -55,11 +68,24 @@ class ProRataMatchingEngineTest {
                 .source(OrderSource.API)
                 .direction(direction)
                 .type(OrderType.MARKET)
-                .price(BigDecimal.ZERO) // Market order price ignored usually, but good to be explicit
+                .price(0) // Market order price ignored usually, but good to be explicit
                 .quantity(quantity)
                 .build();
     }
 
+    @Test
+    void testTradesTakeTimestampsFromEngineClock() {
+        BigDecimal price = new BigDecimal("7.70");
+        orderBookManager.addOrder(createOrder(OrderDirection.SELL, price, 10));
+        orderBookManager.addOrder(createOrder(OrderDirection.SELL, price, 10));
+
+        List<Trade> trades = matchingEngine.executeOrder(createOrder(OrderDirection.BUY, price, 20));
+
+        assertEquals(2, trades.size());
+        assertEquals(START, trades.get(0).getTimestamp());
+        assertEquals(START.plusSeconds(1), trades.get(1).getTimestamp());
+    }
+
     @Test
     void testBasicProRataDistribution() {
         // A: 100, B: 50. Ask 7.70.
@@ -174,10 +200,10 @@ class ProRataMatchingEngineTest {
         
         // Verify OrderBook state
         // L1 should be gone
-        assertNull(orderBookManager.getAsks().get(p1));
+        assertNull(orderBookManager.getAsks().get(ticks(p1)));
         // L2 should remain with C
-        assertNotNull(orderBookManager.getAsks().get(p2));
-        assertFalse(orderBookManager.getAsks().get(p2).isEmpty());
+        assertNotNull(orderBookManager.getAsks().get(ticks(p2)));
+        assertFalse(orderBookManager.getAsks().get(ticks(p2)).isEmpty());
     }
 
     @Test
@@ -233,7 +259,22 @@ class ProRataMatchingEngineTest {
         List<Trade> trades = matchingEngine.executeOrder(buyLimit);
         
         assertEquals(1, trades.size());
-        assertEquals(new BigDecimal("100"), trades.get(0).getPrice());
+        assertEquals(ticks(new BigDecimal("100")), trades.get(0).getPrice());
         assertEquals(10, sell.getFilledQuantity());
     }
+
+    @Test
+    void testOrderOnUnknownInstrumentIsRejected() {
+        Order aggressor = Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId("UNKNOWN")
+                .accountId("test-account")
+                .source(OrderSource.API)
+                .direction(OrderDirection.BUY)
+                .type(OrderType.MARKET)
+                .quantity(1)
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> matchingEngine.executeOrder(aggressor));
+    }
 }
@@ -0,0 +1,32 @@
+package ru.tinkoff.invest.emulator.core.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TickSizeTest {
+
+    private final TickSize tickSize = new TickSize(new BigDecimal("0.05"));
+
+    @Test
+    void testPriceOnGridConvertsExactly() {
+        assertEquals(154, tickSize.toTicks(new BigDecimal("7.70")));
+        assertEquals(154, tickSize.toTicks(new BigDecimal("7.7000")));
+        assertEquals(0, tickSize.toTicks(BigDecimal.ZERO));
+        assertEquals(0, new BigDecimal("7.70").compareTo(tickSize.toPrice(154)));
+    }
+
+    @Test
+    void testPriceOffGridIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> tickSize.toTicks(new BigDecimal("7.72")));
+        assertThrows(IllegalArgumentException.class, () -> tickSize.toTicks(new BigDecimal("7.701")));
+    }
+
+    @Test
+    void testMissingPriceIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> tickSize.toTicks(null));
+    }
+}
@@ -0,0 +1,140 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
+import ru.tinkoff.invest.emulator.core.model.PriceLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LadderBookSideTest {
+
+    private static List<Long> prices(BookSide side) {
+        List<Long> result = new ArrayList<>();
+        for (PriceLevel level : side) {
+            result.add(level.getPrice());
+        }
+        return result;
+    }
+
+    @Test
+    void testBidsIterateFromHighestPrice() {
+        LadderBookSide bids = new LadderBookSide(true, 10, 100);
+        bids.getOrCreate(98);
+        bids.getOrCreate(101);
+        bids.getOrCreate(95);
+
+        assertEquals(101, bids.bestPrice());
+        assertEquals(List.of(101L, 98L, 95L), prices(bids));
+    }
+
+    @Test
+    void testAsksIterateFromLowestPrice() {
+        LadderBookSide asks = new LadderBookSide(false, 10, 100);
+        asks.getOrCreate(104);
+        asks.getOrCreate(99);
+        asks.getOrCreate(107);
+
+        assertEquals(99, asks.bestPrice());
+        assertEquals(List.of(99L, 104L, 107L), prices(asks));
+    }
+
+    @Test
+    void testRemoveBestMovesToNextLevel() {
+        LadderBookSide asks = new LadderBookSide(false, 10, 100);
+        asks.getOrCreate(100);
+        asks.getOrCreate(105);
+
+        asks.remove(100);
+        assertEquals(105, asks.bestPrice());
+        assertEquals(1, asks.size());
+
+        asks.remove(105);
+        assertTrue(asks.isEmpty());
+        assertNull(asks.best());
+        assertEquals(OrderBook.NO_PRICE, asks.bestPrice());
+    }
+
+    @Test
+    void testGetOrCreateReturnsSameLevel() {
+        LadderBookSide bids = new LadderBookSide(true, 10, 100);
+        PriceLevel level = bids.getOrCreate(100);
+
+        assertSame(level, bids.getOrCreate(100));
+        assertSame(level, bids.get(100));
+        assertNull(bids.get(99));
+        assertNull(bids.get(1_000));
+        assertEquals(1, bids.size());
+    }
+
+    @Test
+    void testPriceOutsideBandRecentersWindow() {
+        LadderBookSide bids = new LadderBookSide(true, 10, 100);
+        bids.getOrCreate(100);
+        bids.getOrCreate(95);
+
+        assertTrue(bids.canHold(112));
+        bids.getOrCreate(112);
+
+        assertEquals(21, bids.capacity());
+        assertEquals(112, bids.bestPrice());
+        assertEquals(List.of(112L, 100L, 95L), prices(bids));
+        assertNotNull(bids.get(95));
+    }
+
+    @Test
+    void testEmptySideReanchorsInsteadOfGrowing() {
+        LadderBookSide asks = new LadderBookSide(false, 10);
+        asks.getOrCreate(5_000);
+        asks.remove(5_000);
+
+        asks.getOrCreate(100_000);
+
+        assertEquals(21, asks.capacity());
+        assertEquals(100_000, asks.bestPrice());
+    }
+
+    @Test
+    void testPriceThatDoesNotFitWithRestingLevelsIsRejected() {
+        LadderBookSide asks = new LadderBookSide(false, 10, 100);
+        asks.getOrCreate(100);
+        asks.getOrCreate(105);
+
+        assertFalse(asks.canHold(121));
+        assertThrows(IllegalArgumentException.class, () -> asks.getOrCreate(121));
+        assertEquals(List.of(100L, 105L), prices(asks));
+
+        // Сторона освободилась от нижнего уровня — та же цена помещается
+        asks.remove(100);
+        assertTrue(asks.canHold(121));
+        asks.getOrCreate(121);
+        assertEquals(List.of(105L, 121L), prices(asks));
+    }
+
+    @Test
+    void testIterationSkipsSparseLevels() {
+        LadderBookSide asks = new LadderBookSide(false, 200, 100);
+        asks.getOrCreate(-90);
+        asks.getOrCreate(35);
+        asks.getOrCreate(290);
+
+        assertEquals(List.of(-90L, 35L, 290L), prices(asks));
+        asks.remove(-90);
+        assertEquals(35, asks.bestPrice());
+    }
+
+    @Test
+    void testClear() {
+        LadderBookSide bids = new LadderBookSide(true, 10, 100);
+        bids.getOrCreate(100);
+        bids.getOrCreate(99);
+
+        bids.clear();
+
+        assertTrue(bids.isEmpty());
+        assertEquals(OrderBook.NO_PRICE, bids.bestPrice());
+        assertFalse(bids.iterator().hasNext());
+    }
+}
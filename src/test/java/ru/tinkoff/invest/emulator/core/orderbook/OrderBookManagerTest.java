@@ -2,34 +2,40 @@ package ru.tinkoff.invest.emulator.core.orderbook;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
 import ru.tinkoff.invest.emulator.core.model.Order;
 import ru.tinkoff.invest.emulator.core.model.OrderBook;
 import ru.tinkoff.invest.emulator.core.model.OrderDirection;
 import ru.tinkoff.invest.emulator.core.model.OrderType;
+import ru.tinkoff.invest.emulator.core.model.PriceLevel;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 import ru.tinkoff.invest.emulator.config.EmulatorProperties;
 
-import org.springframework.context.ApplicationEventPublisher;
-import static org.mockito.Mockito.mock;
 
 class OrderBookManagerTest {
 
     private OrderBookManager manager;
     private final String INSTRUMENT = "TEST";
-    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
 
     @BeforeEach
     void setUp() {
         EmulatorProperties props = new EmulatorProperties();
         EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
         inst.setUid(INSTRUMENT);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
         props.setInstrument(inst);
-        manager = new OrderBookManager(props, eventPublisher);
+        manager = new OrderBookManager(props, new WallClock());
+    }
+
+    private long ticks(BigDecimal price) {
+        return manager.getTickSize().toTicks(price);
     }
 
     private Order createOrder(OrderDirection dir, BigDecimal price) {
@@ -40,7 +46,7 @@ class OrderBookManagerTest {
                 .source(ru.tinkoff.invest.emulator.core.model.OrderSource.API)
                 .direction(dir)
                 .type(OrderType.LIMIT)
-                .price(price)
+                .price(ticks(price))
                 .quantity(10)
                 .build();
     }
@@ -51,12 +57,12 @@ class OrderBookManagerTest {
         manager.addOrder(order);
         
         assertEquals(order, manager.getOrder(order.getId()));
-        assertEquals(new BigDecimal("100"), manager.getBestBid());
+        assertEquals(ticks(new BigDecimal("100")), manager.getBestBid());
         
         boolean removed = manager.removeOrder(order.getId());
         assertTrue(removed);
         assertNull(manager.getOrder(order.getId()));
-        assertNull(manager.getBestBid());
+        assertEquals(OrderBook.NO_PRICE, manager.getBestBid());
     }
 
     @Test
@@ -67,8 +73,8 @@ class OrderBookManagerTest {
         manager.addOrder(createOrder(OrderDirection.SELL, new BigDecimal("105"))); // Best ask
         manager.addOrder(createOrder(OrderDirection.SELL, new BigDecimal("106")));
         
-        assertEquals(new BigDecimal("101"), manager.getBestBid());
-        assertEquals(new BigDecimal("105"), manager.getBestAsk());
+        assertEquals(ticks(new BigDecimal("101")), manager.getBestBid());
+        assertEquals(ticks(new BigDecimal("105")), manager.getBestAsk());
     }
 
     @Test
@@ -80,10 +86,186 @@ class OrderBookManagerTest {
         
         OrderBook snapshot = manager.getSnapshot(10);
         assertEquals(10, snapshot.getBids().size());
-        assertEquals(new BigDecimal("100"), snapshot.getBids().firstKey());
-        assertEquals(new BigDecimal("91"), snapshot.getBids().lastKey());
+        assertEquals(ticks(new BigDecimal("100")), (long) snapshot.getBids().firstKey());
+        assertEquals(ticks(new BigDecimal("91")), (long) snapshot.getBids().lastKey());
         
         OrderBook snapshotDeep = manager.getSnapshot(20);
         assertEquals(15, snapshotDeep.getBids().size());
     }
+
+    @Test
+    void testRemoveOrderKeepsTimePriority() {
+        Order first = createOrder(OrderDirection.SELL, new BigDecimal("105"));
+        Order middle = createOrder(OrderDirection.SELL, new BigDecimal("105"));
+        Order last = createOrder(OrderDirection.SELL, new BigDecimal("105"));
+        manager.addOrder(first);
+        manager.addOrder(middle);
+        manager.addOrder(last);
+
+        assertTrue(manager.removeOrder(middle.getId()));
+        assertFalse(manager.removeOrder(middle.getId()));
+
+        PriceLevel level = manager.getAsks().get(ticks(new BigDecimal("105")));
+        assertEquals(List.of(first, last), level.getOrders());
+        assertEquals(2, level.getOrdersCount());
+
+        assertTrue(manager.removeOrder(first.getId()));
+        assertTrue(manager.removeOrder(last.getId()));
+        assertNull(manager.getAsks().get(ticks(new BigDecimal("105"))));
+        assertEquals(OrderBook.NO_PRICE, manager.getBestAsk());
+    }
+
+    @Test
+    void testLevelAggregatesFollowAddFillAndRemove() {
+        Order botOrder = createOrder(OrderDirection.BUY, new BigDecimal("100"));
+        Order adminOrder = Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT)
+                .accountId("admin")
+                .source(ru.tinkoff.invest.emulator.core.model.OrderSource.ADMIN_PANEL)
+                .direction(OrderDirection.BUY)
+                .type(OrderType.LIMIT)
+                .price(ticks(new BigDecimal("100")))
+                .quantity(30)
+                .build();
+        manager.addOrder(botOrder);
+        manager.addOrder(adminOrder);
+
+        PriceLevel level = manager.getBids().get(ticks(new BigDecimal("100")));
+        assertEquals(40, level.getTotalQuantity());
+        assertEquals(10, level.getApiQuantity());
+        assertEquals(2, level.getOrdersCount());
+
+        level.fill(level.getFirst(), 4);
+        assertEquals(36, level.getTotalQuantity());
+        assertEquals(6, level.getApiQuantity());
+
+        manager.removeOrder(adminOrder.getId());
+        assertEquals(6, level.getTotalQuantity());
+        assertEquals(6, level.getApiQuantity());
+        assertEquals(1, level.getOrdersCount());
+    }
+
+    @Test
+    void testPublishedSnapshotIsVersionedAndImmutable() {
+        Order order = createOrder(OrderDirection.BUY, new BigDecimal("100"));
+        manager.addOrder(order);
+        OrderBook before = manager.getSnapshot();
+
+        manager.addOrder(createOrder(OrderDirection.BUY, new BigDecimal("100")));
+        OrderBook after = manager.getSnapshot();
+
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertEquals(10, before.getBids().firstEntry().getValue().getTotalQuantity());
+        assertEquals(20, after.getBids().firstEntry().getValue().getTotalQuantity());
+        assertEquals(ticks(new BigDecimal("100")), after.getBestBid());
+        assertThrows(UnsupportedOperationException.class, () -> after.getBids().clear());
+    }
+
+    @Test
+    void testOrderViewUpdatesOnPublish() {
+        Order order = createOrder(OrderDirection.SELL, new BigDecimal("105"));
+        manager.addOrder(order);
+        PriceLevel level = manager.getAsks().get(ticks(new BigDecimal("105")));
+
+        manager.fill(level.getFirst(), 4);
+        assertEquals(0, manager.getOrder(order.getId()).getFilledQuantity());
+
+        manager.notifyUpdate();
+        assertEquals(4, manager.getOrder(order.getId()).getFilledQuantity());
+        assertEquals(6, manager.getSnapshot().getAsks().firstEntry().getValue().getTotalQuantity());
+    }
+
+    @Test
+    void testOrdersByAccountFollowAddFillAndRemove() {
+        Order mine = createOrder(OrderDirection.SELL, new BigDecimal("105"));
+        Order other = Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT)
+                .accountId("other-account")
+                .source(ru.tinkoff.invest.emulator.core.model.OrderSource.API)
+                .direction(OrderDirection.SELL)
+                .type(OrderType.LIMIT)
+                .price(ticks(new BigDecimal("105")))
+                .quantity(10)
+                .build();
+        manager.addOrder(mine);
+        manager.addOrder(other);
+
+        assertEquals(List.of(mine), manager.getOrders("test-account"));
+        assertNotNull(manager.getOrder("test-account", mine.getId()));
+        assertNull(manager.getOrder("test-account", other.getId()));
+
+        PriceLevel level = manager.getAsks().get(ticks(new BigDecimal("105")));
+        manager.fill(level.getFirst(), 3);
+        manager.notifyUpdate();
+        assertEquals(3, manager.getOrders("test-account").get(0).getFilledQuantity());
+
+        manager.removeOrder(mine.getId());
+        assertTrue(manager.getOrders("test-account").isEmpty());
+        assertEquals(1, manager.getOrders("other-account").size());
+    }
+
+    @Test
+    void testLoadRestoresRestingOrdersInPriority() {
+        Order first = createOrder(OrderDirection.BUY, new BigDecimal("100"));
+        Order second = createOrder(OrderDirection.BUY, new BigDecimal("100"));
+        Order better = createOrder(OrderDirection.BUY, new BigDecimal("101"));
+        Order ask = createOrder(OrderDirection.SELL, new BigDecimal("105"));
+        manager.addOrder(first);
+        manager.addOrder(second);
+        manager.addOrder(better);
+        manager.addOrder(ask);
+        manager.fill(manager.getBids().get(ticks(new BigDecimal("100"))).getFirst(), 4);
+        manager.notifyUpdate();
+
+        List<Order> resting = manager.getRestingOrders();
+        assertEquals(List.of(better.getId(), first.getId(), second.getId(), ask.getId()),
+                resting.stream().map(Order::getId).toList());
+
+        manager.addOrder(createOrder(OrderDirection.SELL, new BigDecimal("110")));
+        long version = manager.getVersion();
+        manager.load(resting);
+
+        // Одна публикация на всю загрузку, прежнее содержимое заменено
+        assertEquals(version + 1, manager.getVersion());
+        assertEquals(4, manager.getAllOrders().size());
+        PriceLevel level = manager.getBids().get(ticks(new BigDecimal("100")));
+        assertEquals(first.getId(), level.getFirst().getOrder().getId());
+        assertEquals(16, level.getTotalQuantity());
+        assertEquals(ticks(new BigDecimal("105")), manager.getBestAsk());
+    }
+
+    @Test
+    void testResetRestoresStartupVolumes() {
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(INSTRUMENT);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
+        EmulatorProperties.OrderBook config = new EmulatorProperties.OrderBook();
+        config.setInitialBid(new BigDecimal("7.69"));
+        config.setInitialAsk(new BigDecimal("7.70"));
+
+        OrderBookManager book = new OrderBookManager(inst, config, new WallClock());
+        book.init();
+        List<String> startup = volumes(book);
+        book.removeOrder(book.getBids().best().getFirst().getOrder().getId());
+
+        book.reset();
+        assertEquals(startup, volumes(book));
+
+        // Заданное зерно повторяет объёмы и между запусками
+        config.setSeed(42L);
+        OrderBookManager first = new OrderBookManager(inst, config, new WallClock());
+        OrderBookManager second = new OrderBookManager(inst, config, new WallClock());
+        first.init();
+        second.init();
+        assertEquals(volumes(first), volumes(second));
+    }
+
+    private static List<String> volumes(OrderBookManager book) {
+        OrderBook snapshot = book.getSnapshot();
+        return Stream.concat(snapshot.getBids().values().stream(), snapshot.getAsks().values().stream())
+                .map(level -> level.getPrice() + ":" + level.getTotalQuantity())
+                .toList();
+    }
 }
@@ -0,0 +1,192 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.OrderBookChangedEvent;
+import ru.tinkoff.invest.emulator.core.model.LevelDelta;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
+import ru.tinkoff.invest.emulator.core.model.OrderBookDelta;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.model.OrderSource;
+import ru.tinkoff.invest.emulator.core.model.OrderType;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OrderBookPublisherTest {
+
+    private static final String INSTRUMENT_ID = "TBRU";
+
+    // Стакан публикует свои события (лучшие цены) отдельно, проверяем только публикатор
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final AtomicBoolean subscribed = new AtomicBoolean(true);
+    private OrderBookManager book;
+    private OrderBookPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        EmulatorProperties props = new EmulatorProperties();
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(INSTRUMENT_ID);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
+        props.setInstrument(inst);
+
+        EmulatorClock clock = new WallClock();
+        OrderBookRegistry registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        book = registry.getDefaultBook();
+        publisher = new OrderBookPublisher(registry, List.of(instrumentId -> subscribed.get()), eventPublisher, 3);
+    }
+
+    private UUID addOrder(long price, long quantity) {
+        UUID id = UUID.randomUUID();
+        book.addOrder(Order.builder()
+                .id(id)
+                .instrumentId(INSTRUMENT_ID)
+                .accountId("test-account")
+                .source(OrderSource.API)
+                .direction(OrderDirection.BUY)
+                .type(OrderType.LIMIT)
+                .price(price)
+                .quantity(quantity)
+                .build());
+        return id;
+    }
+
+    @Test
+    void testBurstIsCoalescedIntoOneSnapshot() {
+        for (int i = 0; i < 40; i++) {
+            addOrder(700 + i, 10);
+        }
+
+        publisher.publishChanges();
+        publisher.publishChanges();
+
+        ArgumentCaptor<OrderBookChangedEvent> captor = ArgumentCaptor.forClass(OrderBookChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        assertEquals(40, captor.getValue().getOrderBook().getBids().size());
+        assertEquals(book.getVersion(), captor.getValue().getOrderBook().getVersion());
+    }
+
+    @Test
+    void testNothingIsBuiltWithoutSubscribers() {
+        subscribed.set(false);
+        addOrder(700, 10);
+
+        publisher.publishChanges();
+        verify(eventPublisher, never()).publishEvent(any(OrderBookChangedEvent.class));
+
+        // Первый подписчик получает накопленное состояние
+        subscribed.set(true);
+        publisher.publishChanges();
+        verify(eventPublisher, times(1)).publishEvent(any(OrderBookChangedEvent.class));
+    }
+
+    @Test
+    void testSnapshotIsBuiltLazilyPerVersion() {
+        addOrder(700, 10);
+        long version = book.getVersion();
+
+        assertSame(book.getSnapshot(), book.getSnapshot());
+        assertEquals(version, book.getSnapshot().getVersion());
+
+        addOrder(701, 10);
+        assertEquals(version + 1, book.getSnapshot().getVersion());
+        assertEquals(2, book.getSnapshot().getBids().size());
+    }
+
+    @Test
+    void testTopOfBookListenerFiresOnlyWhenBestPricesChange() {
+        AtomicInteger signals = new AtomicInteger();
+        book.setTopOfBookListener(signals::incrementAndGet);
+
+        addOrder(700, 10);
+        assertEquals(1, signals.get());
+
+        // Заявка глубже лучшей цены не меняет TopOfBook — рассылку не будим
+        addOrder(690, 10);
+        assertEquals(1, signals.get());
+
+        addOrder(700, 5);
+        assertEquals(2, signals.get());
+    }
+
+    @Test
+    void testSnapshotReadDoesNotWaitForWriter() throws Exception {
+        addOrder(700, 10);
+        book.getSnapshot();
+        addOrder(701, 10);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            book.getLock().writeLock().lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                book.getLock().writeLock().unlock();
+            }
+        });
+        writer.start();
+        try {
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+            // Снапшот новой версии построил писатель: чтение не ждёт занятого стакана
+            OrderBook snapshot = assertTimeoutPreemptively(Duration.ofSeconds(1), () -> book.getSnapshot());
+            assertEquals(book.getVersion(), snapshot.getVersion());
+            assertEquals(2, snapshot.getBids().size());
+        } finally {
+            release.countDown();
+            writer.join();
+        }
+    }
+
+    @Test
+    void testDeltaCarriesChangedLevelsAndFullSnapshotsRecur() {
+        addOrder(700, 10);
+        UUID removed = addOrder(701, 10);
+        publisher.publishChanges();
+
+        addOrder(700, 5);
+        book.removeOrder(removed);
+        publisher.publishChanges();
+
+        addOrder(702, 1);
+        publisher.publishChanges();
+
+        ArgumentCaptor<OrderBookChangedEvent> captor = ArgumentCaptor.forClass(OrderBookChangedEvent.class);
+        verify(eventPublisher, times(3)).publishEvent(captor.capture());
+        List<OrderBookChangedEvent> events = captor.getAllValues();
+
+        assertTrue(events.get(0).isFull());
+
+        OrderBookDelta delta = events.get(1).getDelta();
+        assertEquals(events.get(0).getOrderBook().getVersion(), delta.getFromVersion());
+        assertEquals(events.get(1).getOrderBook().getVersion(), delta.getToVersion());
+        assertEquals(List.of(
+                new LevelDelta(OrderDirection.BUY, 700, 15, 2, 15),
+                LevelDelta.removed(OrderDirection.BUY, 701)), delta.getLevels());
+
+        // Каждая третья публикация — полный снапшот
+        assertTrue(events.get(2).isFull());
+        assertSame(events.get(2).getOrderBook(), publisher.getLastPublished(INSTRUMENT_ID));
+    }
+}
@@ -0,0 +1,95 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.model.OrderSource;
+import ru.tinkoff.invest.emulator.core.model.OrderType;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBookRegistryTest {
+
+    private OrderBookRegistry registry;
+
+    private static EmulatorProperties.Instrument instrument(String uid, String figi, String ticker, String increment) {
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(uid);
+        inst.setFigi(figi);
+        inst.setTicker(ticker);
+        inst.setMinPriceIncrement(new BigDecimal(increment));
+        return inst;
+    }
+
+    @BeforeEach
+    void setUp() {
+        EmulatorProperties props = new EmulatorProperties();
+        props.setInstrument(instrument("uid-tbru", "FIGI-TBRU", "TBRU", "0.01"));
+        props.setInstruments(List.of(
+                instrument("uid-sber", "FIGI-SBER", "SBER", "0.01"),
+                instrument("uid-tbru", "FIGI-TBRU", "TBRU", "0.01"),
+                instrument("uid-gazp", "FIGI-GAZP", "GAZP", "0.05")));
+        EmulatorClock clock = new WallClock();
+        registry = new OrderBookRegistry(props, clock);
+        registry.init();
+    }
+
+    private Order createOrder(String instrumentId, String accountId) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(instrumentId)
+                .accountId(accountId)
+                .source(OrderSource.API)
+                .direction(OrderDirection.BUY)
+                .type(OrderType.LIMIT)
+                .price(100)
+                .quantity(10)
+                .build();
+    }
+
+    @Test
+    void testOneBookPerInstrument() {
+        assertEquals(3, registry.getBooks().size());
+        assertEquals("uid-tbru", registry.getDefaultBook().getInstrumentId());
+        assertEquals(new BigDecimal("0.05"), registry.get("uid-gazp").getTickSize().getIncrement());
+    }
+
+    @Test
+    void testLookupByUidFigiAndTicker() {
+        OrderBookManager sber = registry.get("uid-sber");
+        assertSame(sber, registry.find("FIGI-SBER"));
+        assertSame(sber, registry.find("SBER"));
+        assertNotSame(sber, registry.get("TBRU"));
+    }
+
+    @Test
+    void testUnknownInstrument() {
+        assertNull(registry.find("UNKNOWN"));
+        assertNull(registry.find(null));
+        assertThrows(IllegalArgumentException.class, () -> registry.get("UNKNOWN"));
+    }
+
+    @Test
+    void testOrdersAreKeptPerBook() {
+        Order sberOrder = createOrder("uid-sber", "acc-1");
+        Order gazpOrder = createOrder("uid-gazp", "acc-1");
+        registry.get("uid-sber").addOrder(sberOrder);
+        registry.get("uid-gazp").addOrder(gazpOrder);
+
+        assertSame(registry.get("uid-sber"), registry.findByOrderId(sberOrder.getId()));
+        assertNull(registry.get("uid-tbru").getOrder(sberOrder.getId()));
+        assertEquals(2, registry.getOrders("acc-1").size());
+
+        assertTrue(registry.removeOrder(gazpOrder.getId()));
+        assertFalse(registry.removeOrder(gazpOrder.getId()));
+        assertEquals(List.of(sberOrder), registry.getAllOrders());
+    }
+}
@@ -0,0 +1,113 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.core.model.Order;
+import ru.tinkoff.invest.emulator.core.model.OrderDirection;
+import ru.tinkoff.invest.emulator.core.model.OrderNode;
+import ru.tinkoff.invest.emulator.core.model.OrderSource;
+import ru.tinkoff.invest.emulator.core.model.OrderType;
+import ru.tinkoff.invest.emulator.core.model.PriceLevel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderIndexTest {
+
+    private final PriceLevel level = new PriceLevel(100);
+
+    private OrderNode node(UUID id) {
+        return level.addOrder(Order.builder()
+                .id(id)
+                .instrumentId("TEST")
+                .accountId("test-account")
+                .source(OrderSource.API)
+                .direction(OrderDirection.BUY)
+                .type(OrderType.LIMIT)
+                .price(100)
+                .quantity(1)
+                .build());
+    }
+
+    @Test
+    void testPutGetRemove() {
+        OrderIndex index = new OrderIndex();
+        UUID id = UUID.randomUUID();
+        OrderNode node = node(id);
+
+        assertNull(index.put(id, node));
+        assertSame(node, index.get(id));
+        assertTrue(index.containsKey(id));
+        assertEquals(1, index.size());
+
+        assertSame(node, index.remove(id));
+        assertNull(index.get(id));
+        assertNull(index.remove(id));
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    void testPutReplacesExistingValue() {
+        OrderIndex index = new OrderIndex();
+        UUID id = UUID.randomUUID();
+        OrderNode first = node(id);
+        OrderNode second = node(id);
+
+        index.put(id, first);
+        assertSame(first, index.put(id, second));
+        assertSame(second, index.get(id));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testMatchesHashMapUnderRandomChurn() {
+        OrderIndex index = new OrderIndex();
+        Map<UUID, OrderNode> reference = new HashMap<>();
+        List<UUID> keys = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            int op = random.nextInt(3);
+            if (op == 0 || keys.isEmpty()) {
+                // Последовательные id дают длинные цепочки пробирования
+                UUID id = new UUID(0, random.nextInt(2_000));
+                OrderNode node = node(id);
+                assertSame(reference.put(id, node), index.put(id, node));
+                keys.add(id);
+            } else if (op == 1) {
+                UUID id = keys.get(random.nextInt(keys.size()));
+                assertSame(reference.remove(id), index.remove(id));
+            } else {
+                UUID id = keys.get(random.nextInt(keys.size()));
+                assertSame(reference.get(id), index.get(id));
+            }
+            assertEquals(reference.size(), index.size());
+        }
+
+        List<OrderNode> values = new ArrayList<>();
+        index.forEach(values::add);
+        assertEquals(reference.size(), values.size());
+        assertTrue(reference.values().containsAll(values));
+    }
+
+    @Test
+    void testClear() {
+        OrderIndex index = new OrderIndex();
+        for (int i = 0; i < 100; i++) {
+            UUID id = UUID.randomUUID();
+            index.put(id, node(id));
+        }
+
+        index.clear();
+
+        assertTrue(index.isEmpty());
+        UUID id = UUID.randomUUID();
+        index.put(id, node(id));
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,67 @@
+package ru.tinkoff.invest.emulator.core.orderbook;
+
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.invest.emulator.core.model.OrderBook;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopOfBookTest {
+
+    @Test
+    void testEmptyBookHasNoPrices() {
+        TopOfBook topOfBook = new TopOfBook();
+
+        TopOfBook.Quote quote = topOfBook.read();
+        assertEquals(0, quote.version());
+        assertEquals(OrderBook.NO_PRICE, quote.bidPrice());
+        assertEquals(OrderBook.NO_PRICE, quote.askPrice());
+        assertEquals(OrderBook.NO_PRICE, topOfBook.getBestBid());
+    }
+
+    @Test
+    void testUpdateBumpsVersionOnlyOnChange() {
+        TopOfBook topOfBook = new TopOfBook();
+
+        assertTrue(topOfBook.update(768, 100, 770, 50));
+        assertFalse(topOfBook.update(768, 100, 770, 50));
+        assertTrue(topOfBook.update(768, 90, 770, 50));
+
+        TopOfBook.Quote quote = topOfBook.read();
+        assertEquals(2, quote.version());
+        assertEquals(new TopOfBook.Quote(2, 768, 90, 770, 50), quote);
+        assertEquals(768, topOfBook.getBestBid());
+        assertEquals(770, topOfBook.getBestAsk());
+    }
+
+    @Test
+    void testReaderNeverSeesTornQuote() throws InterruptedException {
+        TopOfBook topOfBook = new TopOfBook();
+        topOfBook.update(0, 0, 0, 0);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<TopOfBook.Quote> torn = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                TopOfBook.Quote quote = topOfBook.read();
+                // Писатель всегда пишет четыре одинаковых значения
+                if (quote.bidPrice() != quote.bidQuantity()
+                        || quote.bidPrice() != quote.askPrice()
+                        || quote.bidPrice() != quote.askQuantity()) {
+                    torn.set(quote);
+                }
+            }
+        });
+        reader.start();
+        for (long i = 1; i <= 200_000; i++) {
+            topOfBook.update(i, i, i, i);
+        }
+        running.set(false);
+        reader.join();
+
+        assertNull(torn.get());
+        assertEquals(200_000, topOfBook.read().askQuantity());
+    }
+}
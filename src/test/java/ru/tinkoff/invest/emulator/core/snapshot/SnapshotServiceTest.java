@@ -0,0 +1,123 @@
+package ru.tinkoff.invest.emulator.core.snapshot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.clock.EmulatorClock;
+import ru.tinkoff.invest.emulator.core.clock.WallClock;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
+import ru.tinkoff.invest.emulator.core.journal.CommandJournal;
+import ru.tinkoff.invest.emulator.core.matching.OrderGateway;
+import ru.tinkoff.invest.emulator.core.matching.ProRataMatchingEngine;
+import ru.tinkoff.invest.emulator.core.model.*;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
+import ru.tinkoff.invest.emulator.core.state.AccountManager;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotServiceTest {
+
+    private static final String INSTRUMENT_ID = "TBRU";
+
+    @TempDir
+    Path dir;
+
+    private EventBus eventBus;
+    private OrderBookRegistry registry;
+    private AccountManager accountManager;
+    private SnapshotService snapshotService;
+
+    @BeforeEach
+    void setUp() {
+        EmulatorProperties props = new EmulatorProperties();
+        EmulatorProperties.Instrument inst = new EmulatorProperties.Instrument();
+        inst.setUid(INSTRUMENT_ID);
+        inst.setMinPriceIncrement(new BigDecimal("0.01"));
+        props.setInstrument(inst);
+        EmulatorProperties.Account account = new EmulatorProperties.Account();
+        account.setId("test-account");
+        account.setInitialBalance(new BigDecimal("100000"));
+        props.setAccount(account);
+        props.getSnapshot().setPath(dir.resolve("snapshot.bin").toString());
+
+        eventBus = new EventBus(1);
+        EmulatorClock clock = new WallClock();
+        registry = new OrderBookRegistry(props, clock);
+        registry.init();
+        accountManager = new AccountManager(props, eventBus);
+        accountManager.init();
+        snapshotService = new SnapshotService(props, registry,
+                new OrderGateway(registry, new ProRataMatchingEngine(registry, eventBus, clock), eventBus, props, clock),
+                accountManager, CommandJournal.disabled(), clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventBus.shutdown();
+    }
+
+    private Order createOrder(OrderSource source, OrderDirection direction, long price, long quantity) {
+        return Order.builder()
+                .id(UUID.randomUUID())
+                .instrumentId(INSTRUMENT_ID)
+                .accountId(source == OrderSource.API ? "test-account" : "market-maker")
+                .source(source)
+                .direction(direction)
+                .type(OrderType.LIMIT)
+                .price(price)
+                .quantity(quantity)
+                .createdAt(Instant.ofEpochSecond(1_700_000_000L, 42))
+                .build();
+    }
+
+    @Test
+    void testWriteAndRestoreRoundTrip() {
+        OrderBookManager book = registry.getDefaultBook();
+        book.addOrder(createOrder(OrderSource.ADMIN_PANEL, OrderDirection.BUY, 768, 100));
+        book.addOrder(createOrder(OrderSource.API, OrderDirection.BUY, 768, 20));
+        book.addOrder(createOrder(OrderSource.ADMIN_PANEL, OrderDirection.SELL, 770, 50));
+        book.fill(book.getAsks().best().getFirst(), 15);
+        book.notifyUpdate();
+        accountManager.updateState(INSTRUMENT_ID, 15, new BigDecimal("7.70"), true);
+        List<String> before = describe(book);
+        BigDecimal balance = accountManager.getAccount().getBalance();
+
+        SnapshotInfo written = snapshotService.write();
+        assertEquals(3, written.orders());
+        assertTrue(Files.exists(snapshotService.getPath()));
+
+        book.load(List.of(createOrder(OrderSource.API, OrderDirection.SELL, 800, 1)));
+        accountManager.reset().join();
+
+        SnapshotInfo restored = snapshotService.restore();
+        assertEquals(3, restored.orders());
+        assertEquals(before, describe(book));
+        assertEquals(35, book.getAsks().best().getTotalQuantity());
+        assertEquals(balance, accountManager.getAccount().getBalance());
+        Position position = accountManager.getAccount().getPositions().get(INSTRUMENT_ID);
+        assertEquals(15, position.getQuantity());
+        assertEquals(0, new BigDecimal("7.70").compareTo(position.getAveragePrice()));
+    }
+
+    @Test
+    void testRestoreRejectsForeignFile() throws Exception {
+        Files.write(snapshotService.getPath(), new byte[64]);
+
+        assertThrows(UncheckedIOException.class, () -> snapshotService.restore());
+    }
+
+    private static List<String> describe(OrderBookManager book) {
+        return book.getRestingOrders().stream().map(Order::toString).toList();
+    }
+}
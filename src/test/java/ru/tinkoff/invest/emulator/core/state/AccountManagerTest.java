@@ -6,12 +6,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+import ru.tinkoff.invest.emulator.core.event.EventBus;
 import ru.tinkoff.invest.emulator.core.event.TradeExecutedEvent;
 import ru.tinkoff.invest.emulator.core.model.OrderDirection;
 import ru.tinkoff.invest.emulator.core.model.OrderSource;
+import ru.tinkoff.invest.emulator.core.model.TickSize;
 import ru.tinkoff.invest.emulator.core.model.Trade;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -23,11 +26,17 @@ class AccountManagerTest {
     private static final String ACCOUNT_ID = "test-account";
     private static final String INSTRUMENT_ID = "test-instrument";
     private static final BigDecimal INITIAL_BALANCE = new BigDecimal("200000");
+    private static final BigDecimal MIN_PRICE_INCREMENT = new BigDecimal("0.01");
+    private static final TickSize TICK_SIZE = new TickSize(MIN_PRICE_INCREMENT);
 
     @Mock
     private EmulatorProperties properties;
     @Mock
     private EmulatorProperties.Account accountProperties;
+    @Mock
+    private EmulatorProperties.Instrument instrumentProperties;
+    @Mock
+    private EventBus eventBus;
 
     private AccountManager accountManager;
 
@@ -36,8 +45,11 @@ class AccountManagerTest {
         when(properties.getAccount()).thenReturn(accountProperties);
         when(accountProperties.getId()).thenReturn(ACCOUNT_ID);
         when(accountProperties.getInitialBalance()).thenReturn(INITIAL_BALANCE);
+        when(properties.getWatchlist()).thenReturn(List.of(instrumentProperties));
+        when(instrumentProperties.getUid()).thenReturn(INSTRUMENT_ID);
+        when(instrumentProperties.getMinPriceIncrement()).thenReturn(MIN_PRICE_INCREMENT);
 
-        accountManager = new AccountManager(properties);
+        accountManager = new AccountManager(properties, eventBus);
         accountManager.init();
     }
 
@@ -52,7 +64,7 @@ class AccountManagerTest {
                 .aggressorOrderSource(OrderSource.API)
                 .aggressorDirection(OrderDirection.BUY)
                 .passiveOrderSource(OrderSource.ADMIN_PANEL)
-                .price(price)
+                .price(TICK_SIZE.toTicks(price))
                 .quantity(quantity)
                 .build();
         TradeExecutedEvent event = new TradeExecutedEvent(this, trade);
@@ -84,7 +96,7 @@ class AccountManagerTest {
                 .aggressorOrderSource(OrderSource.ADMIN_PANEL)
                 .aggressorDirection(OrderDirection.BUY) // Aggressor buys, so passive (API) sells
                 .passiveOrderSource(OrderSource.API)
-                .price(sellPrice)
+                .price(TICK_SIZE.toTicks(sellPrice))
                 .quantity(sellQuantity)
                 .build();
         TradeExecutedEvent event = new TradeExecutedEvent(this, trade);
@@ -110,7 +122,7 @@ class AccountManagerTest {
                 .aggressorOrderSource(OrderSource.ADMIN_PANEL)
                 .aggressorDirection(OrderDirection.BUY)
                 .passiveOrderSource(OrderSource.ADMIN_PANEL)
-                .price(new BigDecimal("100"))
+                .price(TICK_SIZE.toTicks(new BigDecimal("100")))
                 .quantity(10)
                 .build();
         TradeExecutedEvent event = new TradeExecutedEvent(this, trade);
@@ -122,4 +134,31 @@ class AccountManagerTest {
         assertEquals(0, INITIAL_BALANCE.compareTo(accountManager.getAccount().getBalance()));
         assertEquals(0, accountManager.getAccount().getPosition(INSTRUMENT_ID).getQuantity());
     }
+
+    @Test
+    void reset_ShouldApplyAfterTradesPublishedBefore() {
+        EventBus bus = new EventBus(4);
+        try {
+            AccountManager manager = new AccountManager(properties, bus);
+            manager.init();
+            for (int i = 0; i < 1000; i++) {
+                bus.publish(new TradeExecutedEvent(this, Trade.builder()
+                        .id(UUID.randomUUID())
+                        .instrumentId(INSTRUMENT_ID)
+                        .aggressorOrderSource(OrderSource.API)
+                        .aggressorDirection(OrderDirection.BUY)
+                        .passiveOrderSource(OrderSource.ADMIN_PANEL)
+                        .price(TICK_SIZE.toTicks(new BigDecimal("100")))
+                        .quantity(1)
+                        .build()));
+            }
+
+            manager.reset().join();
+
+            assertEquals(0, INITIAL_BALANCE.compareTo(manager.getAccount().getBalance()));
+            assertEquals(0, manager.getAccount().getPosition(INSTRUMENT_ID).getQuantity());
+        } finally {
+            bus.shutdown();
+        }
+    }
 }
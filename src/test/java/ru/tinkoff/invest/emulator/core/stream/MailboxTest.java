@@ -0,0 +1,63 @@
+package ru.tinkoff.invest.emulator.core.stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailboxTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testTasksRunInSubmissionOrder() throws Exception {
+        Mailbox mailbox = new Mailbox(executor);
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 0; i < 1000; i++) {
+            int n = i;
+            mailbox.execute(() -> seen.add(n));
+        }
+        mailbox.execute(done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, seen.get(i).intValue());
+        }
+    }
+
+    @Test
+    void testBlockedMailboxDoesNotHoldUpOthers() throws Exception {
+        Mailbox stalled = new Mailbox(executor);
+        Mailbox healthy = new Mailbox(executor);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+
+        // Как заблокированный WebSocketSession.sendMessage
+        stalled.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        healthy.execute(delivered::countDown);
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+}
@@ -0,0 +1,192 @@
+package ru.tinkoff.invest.emulator.core.stream;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.tinkoff.invest.emulator.config.EmulatorProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StreamManagerTest {
+
+    private static final String INSTRUMENT_ID = "TBRU";
+
+    private static final int QUEUE_CAPACITY = 3;
+
+    // Почтовые ящики выполняются в вызывающем потоке: доставка в тестах синхронная
+    private final StreamManager streamManager = new StreamManager(properties(), Runnable::run);
+
+    private static EmulatorProperties properties() {
+        EmulatorProperties props = new EmulatorProperties();
+        props.getStreams().setQueueCapacity(QUEUE_CAPACITY);
+        return props;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCallStreamObserver<String> slowCall() {
+        ServerCallStreamObserver<String> call = mock(ServerCallStreamObserver.class);
+        when(call.isReady()).thenReturn(false);
+        return call;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEachSubscriberReceivesItsDepthAndMessagesAreBuiltOncePerDepth() {
+        StreamObserver<String> shallow1 = mock(StreamObserver.class);
+        StreamObserver<String> shallow2 = mock(StreamObserver.class);
+        StreamObserver<String> deep = mock(StreamObserver.class);
+        streamManager.addOrderBookSubscription(shallow1, INSTRUMENT_ID, 10);
+        streamManager.addOrderBookSubscription(shallow2, INSTRUMENT_ID, 10);
+        streamManager.addOrderBookSubscription(deep, INSTRUMENT_ID, 50);
+
+        Map<Integer, String> cache = new HashMap<>();
+        List<Integer> built = new ArrayList<>();
+        streamManager.broadcastOrderBook(INSTRUMENT_ID, depth -> cache.computeIfAbsent(depth, d -> {
+            built.add(d);
+            return "depth-" + d;
+        }));
+
+        verify(shallow1).onNext("depth-10");
+        verify(shallow2).onNext("depth-10");
+        verify(deep).onNext("depth-50");
+        assertEquals(2, built.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDeltaSubscribersAreSeparateFromSnapshotSubscribers() {
+        StreamObserver<String> snapshots = mock(StreamObserver.class);
+        StreamObserver<String> deltas = mock(StreamObserver.class);
+        streamManager.addOrderBookSubscription(snapshots, INSTRUMENT_ID, 20);
+        streamManager.addOrderBookDeltaSubscription(deltas, INSTRUMENT_ID, 30);
+
+        streamManager.broadcastOrderBookDelta(INSTRUMENT_ID, depth -> "delta-" + depth);
+
+        verify(deltas).onNext("delta-30");
+        verifyNoInteractions(snapshots);
+        assertTrue(streamManager.hasOrderBookDeltaSubscribers(INSTRUMENT_ID));
+
+        streamManager.removeSubscription(deltas);
+        assertFalse(streamManager.hasOrderBookDeltaSubscribers(INSTRUMENT_ID));
+        assertTrue(streamManager.hasOrderBookSubscribers(INSTRUMENT_ID));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFailingObserverIsRemoved() {
+        StreamObserver<String> broken = mock(StreamObserver.class);
+        doThrow(new IllegalStateException("closed")).when(broken).onNext(any());
+        streamManager.addOrderBookSubscription(broken, INSTRUMENT_ID, 10);
+
+        streamManager.broadcastOrderBook(INSTRUMENT_ID, depth -> "book");
+
+        assertFalse(streamManager.hasOrderBookSubscribers(INSTRUMENT_ID));
+    }
+
+    @Test
+    void testMarketDataIsConflatedWhileClientIsNotReady() {
+        ServerCallStreamObserver<String> call = slowCall();
+        streamManager.register(call, OverflowPolicy.CONFLATE);
+        ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(call).setOnReadyHandler(onReady.capture());
+        streamManager.addOrderBookSubscription(call, INSTRUMENT_ID, 10);
+        streamManager.addTopOfBookSubscription(call, INSTRUMENT_ID);
+
+        for (int version = 1; version <= 5; version++) {
+            int v = version;
+            streamManager.broadcastOrderBook(INSTRUMENT_ID, depth -> "book-" + v);
+            streamManager.broadcastTopOfBook(INSTRUMENT_ID, "tob-" + v);
+        }
+        verify(call, never()).onNext(any());
+        SubscriberStats stats = streamManager.getSubscriberStats().get(0);
+        assertEquals(2, stats.queueDepth());
+        assertEquals(8, stats.conflated());
+
+        when(call.isReady()).thenReturn(true);
+        onReady.getValue().run();
+
+        verify(call).onNext("book-5");
+        verify(call).onNext("tob-5");
+        verify(call, times(2)).onNext(any());
+        assertEquals(0, streamManager.getSubscriberStats().get(0).queueDepth());
+    }
+
+    @Test
+    void testOldestDeltaIsDroppedOnOverflow() {
+        ServerCallStreamObserver<String> call = slowCall();
+        streamManager.register(call, OverflowPolicy.CONFLATE);
+        streamManager.addOrderBookDeltaSubscription(call, INSTRUMENT_ID, 10);
+
+        for (int version = 1; version <= QUEUE_CAPACITY + 2; version++) {
+            int v = version;
+            streamManager.broadcastOrderBookDelta(INSTRUMENT_ID, depth -> "delta-" + v);
+        }
+
+        SubscriberStats stats = streamManager.getSubscriberStats().get(0);
+        assertEquals(QUEUE_CAPACITY, stats.queueDepth());
+        assertEquals(2, stats.dropped());
+        assertTrue(streamManager.hasOrderBookDeltaSubscribers(INSTRUMENT_ID));
+    }
+
+    @Test
+    void testOrderStateOverflowDisconnectsWithoutDropping() {
+        ServerCallStreamObserver<String> call = slowCall();
+        streamManager.register(call, OverflowPolicy.DISCONNECT);
+        streamManager.addOrderStateSubscription(call, "account");
+
+        for (int i = 0; i < QUEUE_CAPACITY; i++) {
+            streamManager.broadcastOrderState("account", "state-" + i);
+        }
+        assertEquals(0, streamManager.getSubscriberStats().get(0).dropped());
+
+        streamManager.broadcastOrderState("account", "overflow");
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(call).onError(error.capture());
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, ((StatusRuntimeException) error.getValue()).getStatus().getCode());
+        verify(call, never()).onNext(any());
+        assertTrue(streamManager.getSubscriberStats().isEmpty());
+    }
+
+    @Test
+    void testCancelledStreamIsRemovedFromAllKeys() {
+        ServerCallStreamObserver<String> call = slowCall();
+        streamManager.register(call, OverflowPolicy.DISCONNECT);
+        ArgumentCaptor<Runnable> onCancel = ArgumentCaptor.forClass(Runnable.class);
+        verify(call).setOnCancelHandler(onCancel.capture());
+        streamManager.addOrderStateSubscription(call, "account-1");
+        streamManager.addOrderStateSubscription(call, "account-2");
+        assertEquals(1, streamManager.getActiveStreams());
+        assertEquals(2, streamManager.getActiveSubscriptions());
+
+        onCancel.getValue().run();
+        streamManager.broadcastOrderState("account-1", "state");
+
+        assertEquals(0, streamManager.getActiveStreams());
+        assertEquals(0, streamManager.getActiveSubscriptions());
+        verify(call, never()).onNext(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPartialUnsubscribeKeepsOtherInstruments() {
+        StreamObserver<String> observer = mock(StreamObserver.class);
+        streamManager.addOrderBookSubscription(observer, INSTRUMENT_ID, 10);
+        streamManager.addOrderBookSubscription(observer, "SBER", 20);
+
+        streamManager.removeOrderBookSubscription(observer, INSTRUMENT_ID);
+
+        assertFalse(streamManager.hasOrderBookSubscribers(INSTRUMENT_ID));
+        assertTrue(streamManager.hasOrderBookSubscribers("SBER"));
+        assertEquals(1, streamManager.getActiveSubscriptions());
+    }
+}
@@ -0,0 +1,61 @@
+package ru.tinkoff.invest.emulator.grpc.marshal;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreSerializedMarshallerTest {
+
+    private final PreSerializedMarshaller<MarketDataResponse> marshaller =
+            PreSerializedMarshaller.of(MarketDataResponse.getDefaultInstance());
+
+    private static MarketDataResponse response() {
+        return MarketDataResponse.newBuilder()
+                .setOrderbook(OrderBook.newBuilder().setInstrumentUid("TBRU").setDepth(10))
+                .build();
+    }
+
+    @Test
+    void testSerializedMessageIsSentAsIs() throws Exception {
+        MarketDataResponse response = response();
+        SerializedMessage message = SerializedMessage.of(response);
+
+        // Одни и те же байты читаются любым числом получателей
+        for (int i = 0; i < 3; i++) {
+            try (InputStream stream = marshaller.stream(message)) {
+                assertEquals(message.size(), stream.available());
+                assertEquals(response, marshaller.parse(stream));
+            }
+        }
+    }
+
+    @Test
+    void testPlainMessageIsSerializedByProtobuf() {
+        MarketDataResponse response = response();
+
+        assertEquals(response, marshaller.parse(marshaller.stream(response)));
+    }
+
+    @Test
+    void testOnlyTargetMethodIsRebound() {
+        ServerServiceDefinition original = new MarketDataStreamServiceGrpc.MarketDataStreamServiceImplBase() { }
+                .bindService();
+        MethodDescriptor<?, ?> method = MarketDataStreamServiceGrpc.getMarketDataStreamMethod();
+
+        ServerServiceDefinition rebound = PreSerializedMarshaller.withPreSerializedResponses(original,
+                MarketDataStreamServiceGrpc.getMarketDataStreamMethod(), MarketDataResponse.getDefaultInstance());
+
+        assertEquals(original.getMethods().size(), rebound.getMethods().size());
+        assertInstanceOf(PreSerializedMarshaller.class,
+                rebound.getMethod(method.getFullMethodName()).getMethodDescriptor().getResponseMarshaller());
+        String other = MarketDataStreamServiceGrpc.getMarketDataServerSideStreamMethod().getFullMethodName();
+        assertSame(original.getMethod(other).getMethodDescriptor(), rebound.getMethod(other).getMethodDescriptor());
+    }
+}
@@ -7,7 +7,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
-import ru.tinkoff.invest.emulator.core.orderbook.OrderBookManager;
+import ru.tinkoff.invest.emulator.core.orderbook.OrderBookRegistry;
 import org.junit.jupiter.api.BeforeEach;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -25,11 +25,11 @@ class AdminControllerTest {
     private MockMvc mockMvc;
 
     @Autowired
-    private OrderBookManager orderBookManager;
+    private OrderBookRegistry orderBookRegistry;
 
     @BeforeEach
     void setUp() {
-        orderBookManager.clear();
+        orderBookRegistry.clear();
     }
 
     @Test
@@ -40,6 +40,13 @@ class AdminControllerTest {
                 .andExpect(jsonPath("$.bids").isArray());
     }
 
+    @Test
+    void testGetStreams() throws Exception {
+        mockMvc.perform(get("/api/streams"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray());
+    }
+
     @Test
     void testGetAccount() throws Exception {
         mockMvc.perform(get("/api/account"))
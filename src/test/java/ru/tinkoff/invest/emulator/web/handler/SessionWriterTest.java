@@ -0,0 +1,100 @@
+package ru.tinkoff.invest.emulator.web.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SessionWriterTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch firstSendStarted = new CountDownLatch(1);
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final AtomicInteger conflated = new AtomicInteger();
+    private final AtomicInteger slow = new AtomicInteger();
+    private WebSocketSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn("s1");
+        // Первая отправка висит, пока тест её не отпустит — как вкладка браузера, которая не читает
+        doAnswer(invocation -> {
+            TextMessage message = invocation.getArgument(0);
+            if (sent.isEmpty()) {
+                firstSendStarted.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            sent.add(message.getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private SessionWriter writer(long sendTimeLimitMs) {
+        return new SessionWriter(session, executor, sendTimeLimitMs, 512 * 1024,
+                conflated::incrementAndGet, slow::incrementAndGet);
+    }
+
+    @Test
+    void testPendingFramesConflateToLatestSnapshot() throws Exception {
+        SessionWriter writer = writer(5000);
+
+        writer.offer(new TextMessage("full-1"), () -> new TextMessage("full-1"));
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        writer.offer(new TextMessage("delta-2"), () -> new TextMessage("full-2"));
+        writer.offer(new TextMessage("delta-3"), () -> new TextMessage("full-3"));
+        release.countDown();
+
+        verify(session, timeout(5000).times(2)).sendMessage(any());
+        assertEquals(List.of("full-1", "full-3"), sent);
+        assertEquals(1, conflated.get());
+        assertEquals(0, slow.get());
+    }
+
+    @Test
+    void testBlockedSessionIsDroppedAsSlow() throws Exception {
+        SessionWriter writer = writer(50);
+
+        writer.offer(new TextMessage("full-1"), () -> new TextMessage("full-1"));
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        writer.offer(new TextMessage("delta-2"), () -> new TextMessage("full-2"));
+
+        assertEquals(1, slow.get());
+        verify(session, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    void testFailedSendClosesSessionAsNotReliable() throws Exception {
+        doThrow(new IOException("broken pipe")).when(session).sendMessage(any());
+        SessionWriter writer = writer(5000);
+
+        writer.offer(new TextMessage("full-1"), () -> new TextMessage("full-1"));
+
+        verify(session, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1, slow.get());
+    }
+}